@@ -0,0 +1,82 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+
+/**
+ * Benchmark of {@link ExceedanceModel} curve fills. Each invocation computes
+ * exceedance curves for a batch of ground motions and accumulates the
+ * rate-scaled results into a single curve, mirroring the innermost loop of a
+ * hazard calculation.
+ *
+ * @author Peter Powers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExceedanceBenchmark {
+
+  private static final int SIZE = 1000;
+
+  @Param
+  ExceedanceModel model;
+
+  @Param({ "3.0" })
+  double truncation;
+
+  private double[] xs;
+  private double[] μs;
+  private double[] σs;
+  private double[] rates;
+  private double[] utilYs;
+  private double[] curveYs;
+
+  @Setup
+  public void setup() {
+    CalcConfig config = CalcConfig.Builder.withDefaults().build();
+    xs = config.hazard.logModelCurves().get(Imt.PGA).xValues().stream()
+        .mapToDouble(Double::doubleValue)
+        .toArray();
+    Random random = new Random(0);
+    μs = new double[SIZE];
+    σs = new double[SIZE];
+    rates = new double[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      μs[i] = Math.log(0.001 + random.nextDouble());
+      σs[i] = 0.5 + 0.3 * random.nextDouble();
+      rates[i] = 1e-4 * random.nextDouble();
+    }
+    utilYs = new double[xs.length];
+    curveYs = new double[xs.length];
+  }
+
+  @Benchmark
+  public double[] curveFill() {
+    for (int i = 0; i < SIZE; i++) {
+      model.exceedance(μs[i], σs[i], truncation, Imt.PGA, xs, utilYs);
+      double rate = rates[i];
+      for (int j = 0; j < xs.length; j++) {
+        curveYs[j] += utilYs[j] * rate;
+      }
+    }
+    return curveYs;
+  }
+
+}
@@ -0,0 +1,66 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.usgs.earthquake.nshmp.eq.model.HazardModel;
+
+/**
+ * End-to-end benchmark of {@link HazardCalcs#hazard} using the PEER test
+ * models bundled with nshmp-haz. Hazard is computed on the calling thread for
+ * the first site listed in each model's {@code sites.csv} file.
+ *
+ * @author Peter Powers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HazardBenchmark {
+
+  private static final Path MODEL_DIR = Paths.get("etc", "peer", "models");
+
+  @Param({
+      "Set1-Case1",
+      "Set1-Case5-fast",
+      "Set1-Case10-fast",
+      "Set2-Case2a-fast",
+      "Set2-Case5a" })
+  String model;
+
+  private HazardModel hazardModel;
+  private CalcConfig config;
+  private Site site;
+  private final Optional<Executor> executor = Optional.empty();
+
+  @Setup
+  public void setup() throws Exception {
+    Path modelPath = MODEL_DIR.resolve(model);
+    hazardModel = HazardModel.load(modelPath);
+    config = hazardModel.config();
+    site = Sites.fromCsv(modelPath.resolve("sites.csv"), config).iterator().next();
+  }
+
+  @Benchmark
+  public Hazard hazard() throws Exception {
+    return HazardCalcs.hazard(hazardModel, config, site, executor);
+  }
+
+}
@@ -0,0 +1,90 @@
+package gov.usgs.earthquake.nshmp.eq.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gov.usgs.earthquake.nshmp.eq.fault.surface.ApproxGriddedSurface;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.DefaultGriddedSurface;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.GriddedSurface;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationList;
+
+/**
+ * Benchmark of {@link Distance#compute(GriddedSurface, Location)} for the
+ * gridded surface implementations used by fault and subduction interface
+ * sources. Distances are computed to a grid of sites surrounding a ~45 km long
+ * surface.
+ *
+ * @author Peter Powers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+  public enum SurfaceType {
+    DEFAULT,
+    APPROX;
+  }
+
+  @Param
+  SurfaceType surfaceType;
+
+  private GriddedSurface surface;
+  private Location[] sites;
+
+  @Setup
+  public void setup() {
+
+    LocationList upperTrace = LocationList.create(
+        Location.create(34.0, -118.0),
+        Location.create(34.2, -118.05),
+        Location.create(34.4, -118.0));
+
+    if (surfaceType == SurfaceType.DEFAULT) {
+      surface = DefaultGriddedSurface.builder()
+          .trace(upperTrace)
+          .depth(0.0)
+          .dip(50.0)
+          .width(15.0)
+          .build();
+    } else {
+      LocationList lowerTrace = LocationList.create(
+          Location.create(34.0, -117.9, 12.0),
+          Location.create(34.2, -117.95, 12.0),
+          Location.create(34.4, -117.9, 12.0));
+      surface = new ApproxGriddedSurface(upperTrace, lowerTrace, 1.0);
+    }
+
+    int n = 10;
+    sites = new Location[n * n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        sites[i * n + j] = Location.create(33.7 + 0.1 * i, -118.5 + 0.1 * j);
+      }
+    }
+  }
+
+  @Benchmark
+  public void compute(Blackhole bh) {
+    for (Location site : sites) {
+      bh.consume(Distance.compute(surface, site));
+    }
+  }
+
+}
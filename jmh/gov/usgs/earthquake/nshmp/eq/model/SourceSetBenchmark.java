@@ -0,0 +1,86 @@
+package gov.usgs.earthquake.nshmp.eq.model;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gov.usgs.earthquake.nshmp.calc.Site;
+import gov.usgs.earthquake.nshmp.geo.Location;
+
+/**
+ * Benchmarks of {@code SourceSet} conversions that precede ground motion
+ * calculations: {@link GridSourceSet} table building and
+ * {@link SystemSourceSet} input list creation. Neither source type is present
+ * in the PEER test models so the benchmarks require a national model, such as
+ * the 2014 USGS NSHM for the western U.S., checked out adjacent to nshmp-haz.
+ * Use the {@code modelPath} parameter to supply an alternate path.
+ *
+ * @author Peter Powers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SourceSetBenchmark {
+
+  @Param({ "../nshm-cous-2014/Western US" })
+  String modelPath;
+
+  @Param({ "34.05,-118.25" })
+  String location;
+
+  private final List<GridSourceSet> gridSets = new ArrayList<>();
+  private final List<SystemSourceSet> systemSets = new ArrayList<>();
+  private Location loc;
+  private Site site;
+
+  @Setup
+  public void setup() throws Exception {
+    String[] latLon = location.split(",");
+    loc = Location.create(Double.valueOf(latLon[0]), Double.valueOf(latLon[1]));
+    site = Site.builder().location(loc).build();
+    HazardModel hazardModel = HazardModel.load(Paths.get(modelPath));
+    for (SourceSet<? extends Source> sourceSet : hazardModel) {
+      if (sourceSet.type() == SourceType.GRID) {
+        gridSets.add((GridSourceSet) sourceSet);
+      } else if (sourceSet.type() == SourceType.SYSTEM) {
+        systemSets.add((SystemSourceSet) sourceSet);
+      }
+    }
+  }
+
+  @Benchmark
+  public void gridTables(Blackhole bh) {
+    checkState(!gridSets.isEmpty(), "No grid source sets in model: %s", modelPath);
+    for (GridSourceSet gridSet : gridSets) {
+      bh.consume(GridSourceSet.optimizer(loc).apply(gridSet));
+    }
+  }
+
+  @Benchmark
+  public void systemInputs(Blackhole bh) {
+    checkState(!systemSets.isEmpty(), "No system source sets in model: %s", modelPath);
+    for (SystemSourceSet systemSet : systemSets) {
+      bh.consume(SystemSourceSet.toInputsFunction(site).apply(systemSet));
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+package gov.usgs.earthquake.nshmp.gmm;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link GroundMotionModel#calc(GmmInput)} for every {@link Gmm}.
+ * Models are evaluated for PGA, or their first supported {@link Imt} if PGA is
+ * not supported, over a fixed set of inputs spanning a range of magnitudes and
+ * distances.
+ *
+ * @author Peter Powers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GmmBenchmark {
+
+  private static final int SIZE = 100;
+
+  @Param
+  Gmm gmm;
+
+  private GroundMotionModel model;
+  private GmmInput[] inputs;
+
+  @Setup
+  public void setup() {
+    Imt imt = gmm.supportedIMTs().contains(Imt.PGA)
+        ? Imt.PGA
+        : gmm.supportedIMTs().iterator().next();
+    model = gmm.instance(imt);
+    Random random = new Random(0);
+    inputs = new GmmInput[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      double rJB = 200.0 * random.nextDouble();
+      inputs[i] = GmmInput.builder()
+          .withDefaults()
+          .mag(5.0 + 3.0 * random.nextDouble())
+          .distances(rJB, Math.sqrt(rJB * rJB + 25.0), rJB)
+          .build();
+    }
+  }
+
+  @Benchmark
+  public void calc(Blackhole bh) {
+    for (GmmInput input : inputs) {
+      bh.consume(model.calc(input));
+    }
+  }
+
+}
@@ -0,0 +1,199 @@
+package gov.usgs.earthquake.nshmp.gmm;
+
+import static gov.usgs.earthquake.nshmp.gmm.Imt.PGA;
+import static gov.usgs.earthquake.nshmp.gmm.Imt.SA0P2;
+import static gov.usgs.earthquake.nshmp.gmm.Imt.SA1P0;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link SpectralGroundMotionModel} versus
+ * {@link BatchGroundMotionModel} evaluation of the NGA-West2 models when
+ * ground motions are required for more than one {@link Imt}. Both benchmarks
+ * compute the same ground motions for a set of ruptures and a single site,
+ * which mirrors how hazard calculations evaluate an {@code InputList}: batch
+ * evaluation iterates ruptures once per {@code Imt} and spectral evaluation
+ * iterates {@code Imt}s once per rupture.
+ *
+ * <p>{@code HAZARD} benchmarks the three {@code Imt}s of a typical hazard
+ * calculation; {@code SPECTRUM} benchmarks all spectral periods supported by
+ * a model.
+ *
+ * @author Peter Powers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectralBenchmark {
+
+  private static final int SIZE = 200;
+
+  @Param({ "ASK_14", "BSSA_14", "CB_14", "CY_14", "IDRISS_14" })
+  Gmm gmm;
+
+  @Param({ "HAZARD", "SPECTRUM" })
+  String imtSet;
+
+  private List<BatchGroundMotionModel> batchModels;
+  private SpectralGroundMotionModel spectralModel;
+  private GmmInput[] inputs;
+  private Inputs batchInputs;
+  private ScalarGroundMotion[] gms;
+  private double[] μ;
+  private double[] σ;
+
+  @Setup
+  public void setup() {
+    Set<Imt> imts = imtSet.equals("HAZARD")
+        ? ImmutableSet.copyOf(EnumSet.of(PGA, SA0P2, SA1P0))
+        : gmm.responseSpectrumIMTs();
+    batchModels = new ArrayList<>();
+    for (Imt imt : imts) {
+      batchModels.add((BatchGroundMotionModel) gmm.instance(imt));
+    }
+    spectralModel = gmm.spectralInstance(imts);
+    gms = new ScalarGroundMotion[imts.size()];
+
+    Random random = new Random(0);
+    inputs = new GmmInput[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      double rJB = 200.0 * random.nextDouble();
+      double zTop = 10.0 * random.nextDouble();
+      double rX = random.nextBoolean() ? rJB : -rJB;
+      inputs[i] = GmmInput.builder()
+          .withDefaults()
+          .mag(5.0 + 3.0 * random.nextDouble())
+          .distances(rJB, Math.sqrt(rJB * rJB + zTop * zTop), rX)
+          .dip(30.0 + 60.0 * random.nextDouble())
+          .width(5.0 + 15.0 * random.nextDouble())
+          .zTop(zTop)
+          .zHyp(zTop + 5.0)
+          .rake(random.nextBoolean() ? 90.0 : 0.0)
+          .build();
+    }
+    batchInputs = new Inputs(inputs);
+    μ = new double[SIZE];
+    σ = new double[SIZE];
+  }
+
+  @Benchmark
+  public void batch(Blackhole bh) {
+    for (BatchGroundMotionModel model : batchModels) {
+      model.calc(batchInputs, μ, σ);
+      bh.consume(μ);
+      bh.consume(σ);
+    }
+  }
+
+  @Benchmark
+  public void spectral(Blackhole bh) {
+    for (GmmInput input : inputs) {
+      spectralModel.calc(input, gms);
+      bh.consume(gms);
+    }
+  }
+
+  /* Batch inputs for ruptures that share the site of the first input. */
+  private static final class Inputs implements BatchGroundMotionModel.Inputs {
+
+    private final GmmInput[] inputs;
+
+    Inputs(GmmInput[] inputs) {
+      this.inputs = inputs;
+    }
+
+    @Override
+    public int size() {
+      return inputs.length;
+    }
+
+    @Override
+    public double Mw(int index) {
+      return inputs[index].Mw;
+    }
+
+    @Override
+    public double rJB(int index) {
+      return inputs[index].rJB;
+    }
+
+    @Override
+    public double rRup(int index) {
+      return inputs[index].rRup;
+    }
+
+    @Override
+    public double rX(int index) {
+      return inputs[index].rX;
+    }
+
+    @Override
+    public double dip(int index) {
+      return inputs[index].dip;
+    }
+
+    @Override
+    public double width(int index) {
+      return inputs[index].width;
+    }
+
+    @Override
+    public double zTop(int index) {
+      return inputs[index].zTop;
+    }
+
+    @Override
+    public double zHyp(int index) {
+      return inputs[index].zHyp;
+    }
+
+    @Override
+    public double rake(int index) {
+      return inputs[index].rake;
+    }
+
+    @Override
+    public double vs30() {
+      return inputs[0].vs30;
+    }
+
+    @Override
+    public boolean vsInf() {
+      return inputs[0].vsInf;
+    }
+
+    @Override
+    public double z1p0() {
+      return inputs[0].z1p0;
+    }
+
+    @Override
+    public double z2p5() {
+      return inputs[0].z2p5;
+    }
+  }
+
+}
@@ -1,7 +1,6 @@
 package gov.usgs.earthquake.nshmp;
 
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.NEWLINE;
-import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -10,7 +9,6 @@ import java.nio.file.Paths;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 
@@ -90,6 +88,14 @@ public class DeaggCalc {
             .extend(CalcConfig.Builder.fromFile(userConfigPath))
             .build();
       }
+
+      /* Deaggregation requires ground motions. */
+      if (config.performance.gridCurveTables || config.performance.hazardOnly) {
+        config = CalcConfig.Builder.copyOf(config)
+            .gridCurveTables(false)
+            .hazardOnly(false)
+            .build();
+      }
       log.info(config.toString());
 
       log.info("");
@@ -130,8 +136,8 @@ public class DeaggCalc {
     ExecutorService execSvc = null;
     ThreadCount threadCount = config.performance.threadCount;
     if (threadCount != ThreadCount.ONE) {
-      execSvc = newFixedThreadPool(threadCount.value());
-      log.info("Threads: " + ((ThreadPoolExecutor) execSvc).getCorePoolSize());
+      execSvc = config.performance.executorType.create(threadCount.value());
+      log.info("Threads: " + threadCount.value() + " (" + config.performance.executorType + ")");
     } else {
       log.info("Threads: Running on calling thread");
     }
@@ -143,7 +149,7 @@ public class DeaggCalc {
 
     for (Site site : sites) {
       Hazard hazard = HazardCalc.calc(model, config, site, executor);
-      Deaggregation deagg = calc(hazard, returnPeriod);
+      Deaggregation deagg = calc(hazard, returnPeriod, executor);
       handler.add(hazard, Optional.of(deagg));
       log.fine(hazard.toString());
     }
@@ -161,7 +167,7 @@ public class DeaggCalc {
 
   /**
    * Deaggregate probabilistic seismic hazard at the supplied return period (in
-   * years). Deaggregation currently runs on a single thread.
+   * years). Deaggregation runs on the current thread.
    * 
    * <p>Call this method with the {@link Hazard} result of
    * {@link HazardCalc#calc(HazardModel, CalcConfig, Site, Optional)} to which
@@ -180,6 +186,24 @@ public class DeaggCalc {
     return HazardCalcs.deaggregation(hazard, returnPeriod, Optional.empty());
   }
 
+  /**
+   * Deaggregate probabilistic seismic hazard at the supplied return period (in
+   * years). If an {@code executor} is supplied, each source set is
+   * deaggregated at each IMT as a separate task; otherwise, deaggregation runs
+   * on the current thread.
+   *
+   * @param returnPeriod at which to deaggregate
+   * @param executor to use ({@link Optional})
+   * @return a {@code Deaggregation} object
+   * @see #calc(Hazard, double)
+   */
+  public static Deaggregation calc(
+      Hazard hazard,
+      double returnPeriod,
+      Optional<Executor> executor) {
+    return HazardCalcs.deaggregation(hazard, returnPeriod, Optional.empty(), executor);
+  }
+
   private static final String PROGRAM = DeaggCalc.class.getSimpleName();
   private static final String USAGE_COMMAND =
       "java -cp nshmp-haz.jar gov.usgs.earthquake.nshmp.DeaggCalc model sites returnPeriod [config]";
@@ -3,6 +3,7 @@ package gov.usgs.earthquake.nshmp;
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.NEWLINE;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 
+import com.google.common.base.Function;
 import com.google.common.base.Throwables;
 
 import java.io.BufferedReader;
@@ -18,11 +19,15 @@ import java.util.Properties;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 
 import gov.usgs.earthquake.nshmp.calc.CalcConfig;
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics;
+import gov.usgs.earthquake.nshmp.calc.Deaggregation;
 import gov.usgs.earthquake.nshmp.calc.Hazard;
 import gov.usgs.earthquake.nshmp.calc.HazardCalcs;
 import gov.usgs.earthquake.nshmp.calc.HazardExport;
@@ -102,6 +107,17 @@ public class HazardCalc {
             .extend(CalcConfig.Builder.fromFile(userConfigPath))
             .build();
       }
+
+      /*
+       * Hazard curves are not deaggregated from ground motions; don't retain
+       * them. Deaggregation at deagg.iml, if set, is binned as curves are
+       * computed.
+       */
+      if (!config.performance.hazardOnly) {
+        config = CalcConfig.Builder.copyOf(config)
+            .hazardOnly(true)
+            .build();
+      }
       log.info(config.toString());
 
       log.info("");
@@ -157,8 +173,8 @@ public class HazardCalc {
     ExecutorService execSvc = null;
     ThreadCount threadCount = config.performance.threadCount;
     if (threadCount != ThreadCount.ONE) {
-      execSvc = newFixedThreadPool(threadCount.value());
-      log.info("Threads: " + ((ThreadPoolExecutor) execSvc).getCorePoolSize());
+      execSvc = config.performance.executorType.create(threadCount.value());
+      log.info("Threads: " + threadCount.value() + " (" + config.performance.executorType + ")");
     } else {
       log.info("Threads: Running on calling thread");
     }
@@ -167,10 +183,18 @@ public class HazardCalc {
     log.info(PROGRAM + ": calculating ...");
 
     HazardExport handler = HazardExport.create(config, sites, log);
-    for (Site site : sites) {
-      Hazard hazard = calc(model, config, site, executor);
-      handler.add(hazard, Optional.empty());
-      log.fine(hazard.toString());
+    CalcMetrics metrics = CalcMetrics.create();
+    int siteConcurrency = config.performance.siteConcurrency;
+    if (executor.isPresent() && siteConcurrency > 1) {
+      log.info("Sites in flight: " + siteConcurrency);
+      calcConcurrent(siteCalc(model, config, executor), config, sites, handler, metrics, log);
+    } else {
+      for (Site site : sites) {
+        Hazard hazard = calc(model, config, site, executor);
+        handler.add(hazard, deaggregation(hazard, config));
+        metrics.add(hazard.metrics());
+        log.fine(hazard.toString());
+      }
     }
     handler.expire();
 
@@ -178,12 +202,127 @@ public class HazardCalc {
         PROGRAM + ": %s sites completed in %s",
         handler.resultsProcessed(), handler.elapsedTime()));
 
+    /* Summary of work done and time spent per source set and stage */
+    metrics.write(handler.outputDir());
+
     if (threadCount != ThreadCount.ONE) {
       execSvc.shutdown();
     }
     return handler.outputDir();
   }
 
+  /*
+   * Compute hazard at multiple sites concurrently. Each site calculation runs
+   * on a thread from a dedicated site pool and distributes its own tasks to the
+   * shared calculation executor; site threads spend most of their time waiting
+   * on those tasks, which is why they are kept separate from the calculation
+   * pool. No more than 'performance.siteConcurrency' sites are in flight at
+   * once. Each site thread passes its result, tagged with the site index,
+   * directly to the exporter, which writes results in site order and blocks
+   * site threads that get 'output.flushLimit' or more sites ahead of the next
+   * site to be written. The site at that index was submitted earlier and never
+   * blocks, so a slow site holds back later results without deadlock. A failed
+   * site, however, never supplies its result, so the first failure aborts the
+   * exporter to release blocked site threads and is then rethrown here.
+   *
+   * Method is package visible for testing.
+   */
+  static void calcConcurrent(
+      final Function<Site, Hazard> siteCalc,
+      final CalcConfig config,
+      Iterable<Site> sites,
+      final HazardExport handler,
+      final CalcMetrics metrics,
+      final Logger log) throws IOException {
+
+    int siteConcurrency = config.performance.siteConcurrency;
+    ExecutorService siteSvc = newFixedThreadPool(siteConcurrency);
+    final Semaphore inFlight = new Semaphore(siteConcurrency);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    try {
+      int index = 0;
+      for (final Site site : sites) {
+        acquire(inFlight, 1, failure);
+        final int siteIndex = index++;
+        siteSvc.submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Hazard hazard = siteCalc.apply(site);
+              handler.add(siteIndex, hazard, deaggregation(hazard, config));
+              metrics.add(hazard.metrics());
+              log.fine(hazard.toString());
+            } catch (Throwable t) {
+              if (failure.compareAndSet(null, t)) {
+                handler.abort(t);
+              }
+            } finally {
+              inFlight.release();
+            }
+          }
+        });
+      }
+      acquire(inFlight, siteConcurrency, failure);
+    } finally {
+      siteSvc.shutdownNow();
+    }
+  }
+
+  /* Compute hazard at a single site. */
+  private static Function<Site, Hazard> siteCalc(
+      final HazardModel model,
+      final CalcConfig config,
+      final Optional<Executor> executor) {
+
+    return new Function<Site, Hazard>() {
+      @Override
+      public Hazard apply(Site site) {
+        return calc(model, config, site, executor);
+      }
+    };
+  }
+
+  /*
+   * Deaggregate hazard at the configured deaggregation iml, if set. Source
+   * contributions were binned while hazard was computed, so ground motions
+   * need not have been retained.
+   */
+  private static Optional<Deaggregation> deaggregation(Hazard hazard, CalcConfig config) {
+    return Double.isNaN(config.deagg.iml)
+        ? Optional.empty()
+        : Optional.of(Deaggregation.atIml(hazard, config.deagg.iml, Optional.empty()));
+  }
+
+  /*
+   * Acquire site permits, rethrowing the first failure of any site. Permits
+   * may be held indefinitely by site threads that are stuck after a failure,
+   * so failures are checked while waiting rather than only on acquisition.
+   */
+  private static void acquire(
+      Semaphore inFlight,
+      int permits,
+      AtomicReference<Throwable> failure) throws IOException {
+
+    try {
+      while (!inFlight.tryAcquire(permits, 100, TimeUnit.MILLISECONDS)) {
+        checkFailure(failure);
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ie);
+    }
+    checkFailure(failure);
+  }
+
+  private static void checkFailure(AtomicReference<Throwable> failure) throws IOException {
+    Throwable t = failure.get();
+    if (t != null) {
+      Throwables.throwIfInstanceOf(t, IOException.class);
+      Throwables.throwIfUnchecked(t);
+      throw new RuntimeException(t);
+    }
+  }
+
   static final String TMP_LOG = "nshmp-haz-log";
 
   static Path createTempLog() {
@@ -1,7 +1,6 @@
 package gov.usgs.earthquake.nshmp;
 
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.NEWLINE;
-import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -18,7 +17,6 @@ import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 
@@ -141,9 +139,9 @@ public class RateCalc {
     ThreadCount threadCount = config.performance.threadCount;
     EqRateExport export = null;
     if (threadCount != ThreadCount.ONE) {
-      ExecutorService poolExecutor = newFixedThreadPool(threadCount.value());
+      ExecutorService poolExecutor = config.performance.executorType.create(threadCount.value());
       ListeningExecutorService executor = MoreExecutors.listeningDecorator(poolExecutor);
-      log.info("Threads: " + ((ThreadPoolExecutor) poolExecutor).getCorePoolSize());
+      log.info("Threads: " + threadCount.value() + " (" + config.performance.executorType + ")");
       log.info(PROGRAM + ": calculating ...");
       export = concurrentCalc(model, config, sites, log, executor);
       executor.shutdown();
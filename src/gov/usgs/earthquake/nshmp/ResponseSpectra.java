@@ -6,6 +6,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,6 +16,7 @@ import gov.usgs.earthquake.nshmp.gmm.GmmInput;
 import gov.usgs.earthquake.nshmp.gmm.GroundMotionModel;
 import gov.usgs.earthquake.nshmp.gmm.Imt;
 import gov.usgs.earthquake.nshmp.gmm.ScalarGroundMotion;
+import gov.usgs.earthquake.nshmp.gmm.SpectralGroundMotionModel;
 
 /**
  * Entry point for computing deterministic response spectra.
@@ -67,15 +69,15 @@ public class ResponseSpectra {
    * @return a Result
    */
   public static Result spectrum(Gmm model, GmmInput input) {
-    Set<Imt> imts = model.responseSpectrumIMTs();
+    SpectralGroundMotionModel spectralModel = model.spectralInstance(model.responseSpectrumIMTs());
+    List<Imt> imts = spectralModel.imts();
+    ScalarGroundMotion[] sgms = new ScalarGroundMotion[imts.size()];
+    spectralModel.calc(input, sgms);
     Result spectrum = new Result(imts.size());
-    int i = 0;
-    for (Imt imt : imts) {
-      ScalarGroundMotion sgm = model.instance(imt).calc(input);
-      spectrum.periods[i] = imt.period();
-      spectrum.means[i] = sgm.mean();
-      spectrum.sigmas[i] = sgm.sigma();
-      i++;
+    for (int i = 0; i < imts.size(); i++) {
+      spectrum.periods[i] = imts.get(i).period();
+      spectrum.means[i] = sgms[i].mean();
+      spectrum.sigmas[i] = sgms[i].sigma();
     }
     return spectrum;
   }
@@ -145,12 +147,13 @@ public class ResponseSpectra {
       ImmutableList.Builder<Double> means = ImmutableList.builder();
       ImmutableList.Builder<Double> sigmas = ImmutableList.builder();
 
-      ScalarGroundMotion pgaGm = gmm.instance(Imt.PGA).calc(input);
-      means.add(pgaGm.mean());
-      sigmas.add(pgaGm.sigma());
-
-      for (Imt imt : saImts) {
-        ScalarGroundMotion sgm = gmm.instance(imt).calc(input);
+      /* PGA precedes all SA Imts in iteration order */
+      Set<Imt> imts = EnumSet.of(Imt.PGA);
+      imts.addAll(saImts);
+      SpectralGroundMotionModel spectralModel = gmm.spectralInstance(imts);
+      ScalarGroundMotion[] sgms = new ScalarGroundMotion[imts.size()];
+      spectralModel.calc(input, sgms);
+      for (ScalarGroundMotion sgm : sgms) {
         means.add(sgm.mean());
         sigmas.add(sgm.sigma());
       }
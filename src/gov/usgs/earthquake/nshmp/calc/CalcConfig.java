@@ -88,6 +88,9 @@ public final class CalcConfig {
   /** Performance and optimization configuration. */
   public final Performance performance;
 
+  /* Created on first use; see gmmCache(). */
+  private transient volatile GmmCache gmmCache;
+
   private CalcConfig(
       Optional<Path> resource,
       Hazard hazard,
@@ -106,6 +109,28 @@ public final class CalcConfig {
     this.rate = rate;
   }
 
+  /*
+   * The ground motion cache shared by all calculations that use this
+   * configuration, or null if caching is disabled. The cache is created on
+   * first use and is released along with this configuration.
+   */
+  GmmCache gmmCache() {
+    if (performance.gmmCacheSize == 0) {
+      return null;
+    }
+    GmmCache cache = gmmCache;
+    if (cache == null) {
+      synchronized (this) {
+        cache = gmmCache;
+        if (cache == null) {
+          cache = GmmCache.create(performance.gmmCacheSize, performance.gmmCacheSnap);
+          gmmCache = cache;
+        }
+      }
+    }
+    return cache;
+  }
+
   /**
    * Hazard calculation configuration.
    */
@@ -448,12 +473,31 @@ public final class CalcConfig {
      */
     public final Double contributorLimit;
 
+    /**
+     * An intensity measure level (in linear units, e.g. g) at which to
+     * deaggregate hazard while hazard curves are computed. When set, the
+     * contributions of each source set are binned by distance, magnitude, and
+     * epsilon as its curves are built, and the resulting hazard may be
+     * deaggregated at this level via
+     * {@link Deaggregation#atIml(Hazard, double, java.util.Optional)} without
+     * retaining ground motions, including when
+     * {@link Performance#hazardOnly} is set. Deaggregation at other levels, or
+     * at a return period, still requires retained ground motions and is not
+     * affected by this setting. {@code HazardCalc} writes deaggregation results
+     * for each site when this is set.
+     *
+     * <p><b>Default:</b> {@code NaN} (not set)
+     */
+    public final double iml;
+
     private Deagg(
         Bins bins,
-        double contributorLimit) {
+        double contributorLimit,
+        double iml) {
 
       this.bins = bins;
       this.contributorLimit = contributorLimit;
+      this.iml = iml;
     }
 
     private StringBuilder asString() {
@@ -471,7 +515,8 @@ public final class CalcConfig {
           .append("min=").append(bins.εMin).append(", ")
           .append("max=").append(bins.εMax).append(", ")
           .append("Δ=").append(bins.Δε)
-          .append(formatEntry(Key.CONTRIBUTOR_LIMIT, contributorLimit));
+          .append(formatEntry(Key.CONTRIBUTOR_LIMIT, contributorLimit))
+          .append(formatEntry(Key.IML, iml));
     }
 
     /**
@@ -537,16 +582,19 @@ public final class CalcConfig {
 
       Bins bins;
       Double contributorLimit;
+      Double iml;
 
       Deagg build() {
         return new Deagg(
             bins,
-            contributorLimit);
+            contributorLimit,
+            iml);
       }
 
       void copy(Deagg that) {
         this.bins = that.bins;
         this.contributorLimit = that.contributorLimit;
+        this.iml = that.iml;
       }
 
       void extend(Builder that) {
@@ -556,12 +604,16 @@ public final class CalcConfig {
         if (that.contributorLimit != null) {
           this.contributorLimit = that.contributorLimit;
         }
+        if (that.iml != null) {
+          this.iml = that.iml;
+        }
       }
 
       static Builder defaults() {
         Builder b = new Builder();
         b.bins = Bins.defaults();
         b.contributorLimit = 1.0;
+        b.iml = Double.NaN;
         return b;
       }
 
@@ -577,6 +629,7 @@ public final class CalcConfig {
         checkNotNull(bins.εMax, STATE_ERROR, Deagg.ID, Key.BINS + ".εMax");
         checkNotNull(bins.Δε, STATE_ERROR, Deagg.ID, Key.BINS + ".Δε");
         checkNotNull(contributorLimit, STATE_ERROR, Deagg.ID, Key.CONTRIBUTOR_LIMIT);
+        checkNotNull(iml, STATE_ERROR, Deagg.ID, Key.IML);
       }
     }
   }
@@ -993,16 +1046,153 @@ public final class CalcConfig {
      */
     public final ThreadCount threadCount;
 
+    /**
+     * The type of executor to use when distributing calculations. Ignored if
+     * {@link #threadCount} is {@link ThreadCount#ONE}.
+     *
+     * <p><b>Default:</b> {@link ExecutorType#FIXED}
+     */
+    public final ExecutorType executorType;
+
+    /**
+     * The maximum number of sites to process concurrently when computing
+     * hazard for multiple sites (e.g. a map). A value greater than one allows
+     * several sites to be in flight at once, keeping threads busy when
+     * per-site calculations are small. Results are always returned in site
+     * order. Ignored if {@link #threadCount} is {@link ThreadCount#ONE}.
+     *
+     * <p><b>Default:</b> {@code 1}
+     */
+    public final int siteConcurrency;
+
+    /**
+     * The maximum number of optimized grid source tables to retain for reuse
+     * across sites. Tables are cached per {@code GridSourceSet} and keyed by
+     * site location, snapped to {@link #gridCacheSnap} if positive. Grid
+     * source sets with identical nodes also share the node distances computed
+     * when building tables, so most tables built for a site reuse distances
+     * even when {@link #gridCacheSnap} is zero. A value of zero disables
+     * caching. Ignored if {@link #optimizeGrids} is {@code false}.
+     *
+     * <p><b>Default:</b> {@code 0}
+     */
+    public final int gridCacheSize;
+
+    /**
+     * The spacing, in decimal degrees, to which site locations are snapped
+     * when looking up cached grid source tables. Sites that snap to the same
+     * location share a table built at the snapped location, trading accuracy
+     * for reuse in dense map calculations. A value of zero keys tables by exact
+     * site location and yields results identical to uncached calculations.
+     * Ignored if {@link #gridCacheSize} is zero.
+     *
+     * <p><b>Default:</b> {@code 0.0}
+     */
+    public final double gridCacheSnap;
+
+    /**
+     * Whether to compute hazard from optimized grid source sets using
+     * precomputed magnitude-distance curve tables, or not. When enabled,
+     * unit-rate hazard curves for each magnitude-distance bin and ground motion
+     * model are computed once per grid source set, calculation configuration,
+     * and set of site terms (vs30, vsInf, z1p0, z2p5); grid hazard at each site
+     * is then the rate-weighted sum of table curves. This mode is intended for
+     * map calculations in which all sites share site terms. Results may differ
+     * slightly from those of the standard calculation due to floating point
+     * summation order.
+     *
+     * <p>Curve tables do not retain ground motions and are therefore not used
+     * when {@link DataType#GMM} output is requested or {@link Deagg#iml} is
+     * set; deaggregation of hazard computed using curve tables is not
+     * supported. Ignored if
+     * {@link #optimizeGrids} is {@code false}.
+     *
+     * <p><b>Default:</b> {@code false}
+     */
+    public final boolean gridCurveTables;
+
+    /**
+     * Whether to discard the ground motions computed for each source once
+     * hazard curves have been derived from them, or not. Ground motions are
+     * otherwise retained with a {@code Hazard} result so that it may be
+     * deaggregated; discarding them substantially reduces the memory required
+     * per site, which matters when many sites are processed concurrently.
+     * {@code HazardCalc} always enables this setting and {@code DeaggCalc}
+     * always disables it; hazard computed with this setting enabled may only
+     * be deaggregated at {@link Deagg#iml}.
+     *
+     * <p><b>Default:</b> {@code false}
+     */
+    public final boolean hazardOnly;
+
+    /**
+     * Whether fault, cluster, and interface sources generate their ruptures on
+     * demand, each time they are iterated, rather than once when a model is
+     * loaded, or not. Lazy sources retain only their parent surface,
+     * magnitude-frequency distributions, and floating rules, reducing model
+     * load time and memory, at the cost of recreating floating ruptures for
+     * every site. Results are unaffected. This setting is only read when a
+     * model is loaded and must therefore be set in a model's configuration.
+     *
+     * <p><b>Default:</b> {@code false}
+     */
+    public final boolean lazyRuptures;
+
+    /**
+     * The maximum number of scalar ground motions to retain in a cache shared
+     * by all calculations, keyed by ground motion model, intensity measure
+     * type, and {@code GmmInput} field values. Ground motion models are
+     * evaluated at most once for each key while an entry is retained; least
+     * recently used entries are evicted once the cache is full. Caching is
+     * most effective for expensive models evaluated for many identical inputs,
+     * such as those derived from optimized grid source sets. When enabled,
+     * ground motion models are not evaluated in batches. A value of zero
+     * disables caching.
+     *
+     * <p><b>Default:</b> {@code 0}
+     */
+    public final int gmmCacheSize;
+
+    /**
+     * The spacing, in km, to which the distances (rJB, rRup, and rX) of a
+     * {@code GmmInput} are snapped when keying cached ground motions. Inputs
+     * that snap to the same distances share a ground motion computed at the
+     * snapped distances, trading accuracy for reuse. A value of zero keys
+     * ground motions by exact distance and yields results identical to
+     * uncached calculations. Ignored if {@link #gmmCacheSize} is zero.
+     *
+     * <p><b>Default:</b> {@code 0.0}
+     */
+    public final double gmmCacheSnap;
+
     private Performance(
         boolean optimizeGrids,
         boolean collapseMfds,
         int systemPartition,
-        ThreadCount threadCount) {
+        ThreadCount threadCount,
+        ExecutorType executorType,
+        int siteConcurrency,
+        int gridCacheSize,
+        double gridCacheSnap,
+        boolean gridCurveTables,
+        boolean hazardOnly,
+        boolean lazyRuptures,
+        int gmmCacheSize,
+        double gmmCacheSnap) {
 
       this.optimizeGrids = optimizeGrids;
       this.collapseMfds = collapseMfds;
       this.systemPartition = systemPartition;
       this.threadCount = threadCount;
+      this.executorType = executorType;
+      this.siteConcurrency = siteConcurrency;
+      this.gridCacheSize = gridCacheSize;
+      this.gridCacheSnap = gridCacheSnap;
+      this.gridCurveTables = gridCurveTables;
+      this.hazardOnly = hazardOnly;
+      this.lazyRuptures = lazyRuptures;
+      this.gmmCacheSize = gmmCacheSize;
+      this.gmmCacheSnap = gmmCacheSnap;
     }
 
     private StringBuilder asString() {
@@ -1011,7 +1201,16 @@ public final class CalcConfig {
           .append(formatEntry(Key.OPTIMIZE_GRIDS, optimizeGrids))
           .append(formatEntry(Key.COLLAPSE_MFDS, collapseMfds))
           .append(formatEntry(Key.SYSTEM_PARTITION, systemPartition))
-          .append(formatEntry(Key.THREAD_COUNT, threadCount.name()));
+          .append(formatEntry(Key.THREAD_COUNT, threadCount.name()))
+          .append(formatEntry(Key.EXECUTOR_TYPE, executorType.name()))
+          .append(formatEntry(Key.SITE_CONCURRENCY, siteConcurrency))
+          .append(formatEntry(Key.GRID_CACHE_SIZE, gridCacheSize))
+          .append(formatEntry(Key.GRID_CACHE_SNAP, gridCacheSnap))
+          .append(formatEntry(Key.GRID_CURVE_TABLES, gridCurveTables))
+          .append(formatEntry(Key.HAZARD_ONLY, hazardOnly))
+          .append(formatEntry(Key.LAZY_RUPTURES, lazyRuptures))
+          .append(formatEntry(Key.GMM_CACHE_SIZE, gmmCacheSize))
+          .append(formatEntry(Key.GMM_CACHE_SNAP, gmmCacheSnap));
     }
 
     private static final class Builder {
@@ -1020,13 +1219,31 @@ public final class CalcConfig {
       Boolean collapseMfds;
       Integer systemPartition;
       ThreadCount threadCount;
+      ExecutorType executorType;
+      Integer siteConcurrency;
+      Integer gridCacheSize;
+      Double gridCacheSnap;
+      Boolean gridCurveTables;
+      Boolean hazardOnly;
+      Boolean lazyRuptures;
+      Integer gmmCacheSize;
+      Double gmmCacheSnap;
 
       Performance build() {
         return new Performance(
             optimizeGrids,
             collapseMfds,
             systemPartition,
-            threadCount);
+            threadCount,
+            executorType,
+            siteConcurrency,
+            gridCacheSize,
+            gridCacheSnap,
+            gridCurveTables,
+            hazardOnly,
+            lazyRuptures,
+            gmmCacheSize,
+            gmmCacheSnap);
       }
 
       void copy(Performance that) {
@@ -1034,6 +1251,15 @@ public final class CalcConfig {
         this.collapseMfds = that.collapseMfds;
         this.systemPartition = that.systemPartition;
         this.threadCount = that.threadCount;
+        this.executorType = that.executorType;
+        this.siteConcurrency = that.siteConcurrency;
+        this.gridCacheSize = that.gridCacheSize;
+        this.gridCacheSnap = that.gridCacheSnap;
+        this.gridCurveTables = that.gridCurveTables;
+        this.hazardOnly = that.hazardOnly;
+        this.lazyRuptures = that.lazyRuptures;
+        this.gmmCacheSize = that.gmmCacheSize;
+        this.gmmCacheSnap = that.gmmCacheSnap;
       }
 
       void extend(Builder that) {
@@ -1049,6 +1275,33 @@ public final class CalcConfig {
         if (that.threadCount != null) {
           this.threadCount = that.threadCount;
         }
+        if (that.executorType != null) {
+          this.executorType = that.executorType;
+        }
+        if (that.siteConcurrency != null) {
+          this.siteConcurrency = that.siteConcurrency;
+        }
+        if (that.gridCacheSize != null) {
+          this.gridCacheSize = that.gridCacheSize;
+        }
+        if (that.gridCacheSnap != null) {
+          this.gridCacheSnap = that.gridCacheSnap;
+        }
+        if (that.gridCurveTables != null) {
+          this.gridCurveTables = that.gridCurveTables;
+        }
+        if (that.hazardOnly != null) {
+          this.hazardOnly = that.hazardOnly;
+        }
+        if (that.lazyRuptures != null) {
+          this.lazyRuptures = that.lazyRuptures;
+        }
+        if (that.gmmCacheSize != null) {
+          this.gmmCacheSize = that.gmmCacheSize;
+        }
+        if (that.gmmCacheSnap != null) {
+          this.gmmCacheSnap = that.gmmCacheSnap;
+        }
       }
 
       static Builder defaults() {
@@ -1057,6 +1310,15 @@ public final class CalcConfig {
         b.collapseMfds = true;
         b.systemPartition = 1000;
         b.threadCount = ThreadCount.ALL;
+        b.executorType = ExecutorType.FIXED;
+        b.siteConcurrency = 1;
+        b.gridCacheSize = 0;
+        b.gridCacheSnap = 0.0;
+        b.gridCurveTables = false;
+        b.hazardOnly = false;
+        b.lazyRuptures = false;
+        b.gmmCacheSize = 0;
+        b.gmmCacheSnap = 0.0;
         return b;
       }
 
@@ -1065,6 +1327,20 @@ public final class CalcConfig {
         checkNotNull(collapseMfds, STATE_ERROR, Performance.ID, Key.COLLAPSE_MFDS);
         checkNotNull(systemPartition, STATE_ERROR, Performance.ID, Key.SYSTEM_PARTITION);
         checkNotNull(threadCount, STATE_ERROR, Performance.ID, Key.THREAD_COUNT);
+        checkNotNull(executorType, STATE_ERROR, Performance.ID, Key.EXECUTOR_TYPE);
+        checkNotNull(siteConcurrency, STATE_ERROR, Performance.ID, Key.SITE_CONCURRENCY);
+        checkState(siteConcurrency > 0, "%s.%s must be > 0", Performance.ID, Key.SITE_CONCURRENCY);
+        checkNotNull(gridCacheSize, STATE_ERROR, Performance.ID, Key.GRID_CACHE_SIZE);
+        checkNotNull(gridCacheSnap, STATE_ERROR, Performance.ID, Key.GRID_CACHE_SNAP);
+        checkState(gridCacheSize >= 0, "%s.%s must be >= 0", Performance.ID, Key.GRID_CACHE_SIZE);
+        checkState(gridCacheSnap >= 0.0, "%s.%s must be >= 0", Performance.ID, Key.GRID_CACHE_SNAP);
+        checkNotNull(gridCurveTables, STATE_ERROR, Performance.ID, Key.GRID_CURVE_TABLES);
+        checkNotNull(hazardOnly, STATE_ERROR, Performance.ID, Key.HAZARD_ONLY);
+        checkNotNull(lazyRuptures, STATE_ERROR, Performance.ID, Key.LAZY_RUPTURES);
+        checkNotNull(gmmCacheSize, STATE_ERROR, Performance.ID, Key.GMM_CACHE_SIZE);
+        checkNotNull(gmmCacheSnap, STATE_ERROR, Performance.ID, Key.GMM_CACHE_SNAP);
+        checkState(gmmCacheSize >= 0, "%s.%s must be >= 0", Performance.ID, Key.GMM_CACHE_SIZE);
+        checkState(gmmCacheSnap >= 0.0, "%s.%s must be >= 0", Performance.ID, Key.GMM_CACHE_SNAP);
       }
     }
   }
@@ -1092,6 +1368,15 @@ public final class CalcConfig {
     COLLAPSE_MFDS,
     SYSTEM_PARTITION,
     THREAD_COUNT,
+    EXECUTOR_TYPE,
+    SITE_CONCURRENCY,
+    GRID_CACHE_SIZE,
+    GRID_CACHE_SNAP,
+    GRID_CURVE_TABLES,
+    HAZARD_ONLY,
+    LAZY_RUPTURES,
+    GMM_CACHE_SIZE,
+    GMM_CACHE_SNAP,
     /* output */
     DIRECTORY,
     DATA_TYPES,
@@ -1099,6 +1384,7 @@ public final class CalcConfig {
     /* deagg */
     BINS,
     CONTRIBUTOR_LIMIT,
+    IML,
     /* rate */
     DISTANCE,
     DISTRIBUTION_FORMAT,
@@ -1210,6 +1496,14 @@ public final class CalcConfig {
     writer.close();
   }
 
+  /**
+   * Return this config in JSON format. The returned string is the same as the
+   * contents of a file written by {@link #write(Path)}.
+   */
+  public String toJson() {
+    return GSON.toJson(this);
+  }
+
   /**
    * A builder of configuration instances.
    */
@@ -1269,6 +1563,17 @@ public final class CalcConfig {
       return b;
     }
 
+    /**
+     * Create a new builder from the supplied JSON string, such as one returned
+     * by {@link CalcConfig#toJson()}. This will only set those fields that are
+     * explicitely defined.
+     *
+     * @param json configuration string
+     */
+    public static Builder fromJson(String json) {
+      return GSON.fromJson(checkNotNull(json), Builder.class);
+    }
+
     /**
      * Initialize a new builder with all fields initialized to default values.
      */
@@ -1338,6 +1643,40 @@ public final class CalcConfig {
       return this;
     }
 
+    /**
+     * Set whether to compute grid source hazard using precomputed curve
+     * tables. Deaggregation requires this to be {@code false}.
+     * 
+     * @see Performance#gridCurveTables
+     */
+    public Builder gridCurveTables(boolean gridCurveTables) {
+      this.performance.gridCurveTables = gridCurveTables;
+      return this;
+    }
+
+    /**
+     * Set whether to discard ground motions once hazard curves have been
+     * computed. Deaggregation at a return period requires this to be
+     * {@code false}.
+     * 
+     * @see Performance#hazardOnly
+     */
+    public Builder hazardOnly(boolean hazardOnly) {
+      this.performance.hazardOnly = hazardOnly;
+      return this;
+    }
+
+    /**
+     * Set the intensity measure level at which to deaggregate hazard while
+     * hazard curves are computed.
+     * 
+     * @see Deagg#iml
+     */
+    public Builder deaggIml(double iml) {
+      this.deagg.iml = iml;
+      return this;
+    }
+
     private void validateState() {
       checkState(!built, "This %s instance as already been used", ID + ".Builder");
       hazard.validate();
@@ -4,17 +4,25 @@ import static com.google.common.util.concurrent.Futures.allAsList;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.Futures.transform;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.math.IntMath;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.SourceSetMetrics;
+import gov.usgs.earthquake.nshmp.calc.Transforms.ChunkConsolidator;
+import gov.usgs.earthquake.nshmp.calc.Transforms.ChunkTransform;
 import gov.usgs.earthquake.nshmp.calc.Transforms.ClusterCurveConsolidator;
 import gov.usgs.earthquake.nshmp.calc.Transforms.ClusterToCurves;
 import gov.usgs.earthquake.nshmp.calc.Transforms.CurveConsolidator;
 import gov.usgs.earthquake.nshmp.calc.Transforms.CurveSetConsolidator;
+import gov.usgs.earthquake.nshmp.calc.Transforms.GridTableToCurves;
 import gov.usgs.earthquake.nshmp.calc.Transforms.ParallelSystemToCurves;
 import gov.usgs.earthquake.nshmp.calc.Transforms.SourceToCurves;
 import gov.usgs.earthquake.nshmp.calc.Transforms.SystemToCurves;
@@ -41,36 +49,76 @@ final class CalcFactory {
   static HazardCurveSet sourcesToCurves(
       SourceSet<? extends Source> sources,
       CalcConfig config,
-      Site site) {
+      Site site,
+      SourceSetMetrics metrics) {
 
-    SourceToCurves sourceToCurves = new SourceToCurves(sources, config, site);
+    SourceToCurves sourceToCurves = new SourceToCurves(sources, config, site, metrics);
     List<HazardCurves> curvesList = new ArrayList<>();
     for (Source source : sources.iterableForLocation(site.location)) {
       curvesList.add(sourceToCurves.apply(source));
     }
-    CurveConsolidator consolidateFn = new CurveConsolidator(sources, config);
+    CurveConsolidator consolidateFn = new CurveConsolidator(sources, config, site);
     return consolidateFn.apply(curvesList);
   }
 
-  /* Asynchronously compute hazard curves for a SourceSet. */
+  /*
+   * Asynchronously compute hazard curves for a SourceSet. Sources are grouped
+   * into chunks, each of which is processed by a single task.
+   */
   static ListenableFuture<HazardCurveSet> sourcesToCurves(
       SourceSet<? extends Source> sources,
       CalcConfig config,
       Site site,
+      SourceSetMetrics metrics,
       Executor ex) {
 
-    SourceToCurves sourceToCurves = new SourceToCurves(sources, config, site);
-    AsyncList<HazardCurves> curvesList = AsyncList.create();
-    for (Source source : sources.iterableForLocation(site.location)) {
-      ListenableFuture<HazardCurves> curves = transform(
-          immediateFuture(source),
-          sourceToCurves,
+    ChunkTransform<Source, HazardCurves> sourcesToCurves = new ChunkTransform<>(
+        new SourceToCurves(sources, config, site, metrics));
+    List<Source> sourceList = ImmutableList.copyOf(sources.iterableForLocation(site.location));
+    int chunkSize = chunkSize(sourceList.size(), 1, config);
+    AsyncList<List<HazardCurves>> curvesList = AsyncList.create();
+    for (List<Source> chunk : Lists.partition(sourceList, chunkSize)) {
+      ListenableFuture<List<HazardCurves>> curves = transform(
+          immediateFuture(chunk),
+          sourcesToCurves,
           ex);
       curvesList.add(curves);
     }
     return transform(
         allAsList(curvesList),
-        new CurveConsolidator(sources, config),
+        new ChunkConsolidator<>(new CurveConsolidator(sources, config, site)),
+        ex);
+  }
+
+  /*
+   * Compute hazard curves for an optimized grid source table using
+   * precomputed curve tables.
+   */
+  static HazardCurveSet gridTableToCurves(
+      SourceSet<? extends Source> table,
+      GridCurveTable curveTable,
+      CalcConfig config,
+      Site site,
+      SourceSetMetrics metrics) {
+
+    return new GridTableToCurves(curveTable, config, site, metrics).apply(table);
+  }
+
+  /*
+   * Asynchronously compute hazard curves for an optimized grid source table
+   * using precomputed curve tables.
+   */
+  static ListenableFuture<HazardCurveSet> gridTableToCurves(
+      SourceSet<? extends Source> table,
+      GridCurveTable curveTable,
+      CalcConfig config,
+      Site site,
+      SourceSetMetrics metrics,
+      Executor ex) {
+
+    return transform(
+        immediateFuture(table),
+        new GridTableToCurves(curveTable, config, site, metrics),
         ex);
   }
 
@@ -78,9 +126,10 @@ final class CalcFactory {
   static HazardCurveSet systemToCurves(
       SystemSourceSet sources,
       CalcConfig config,
-      Site site) {
+      Site site,
+      SourceSetMetrics metrics) {
 
-    return new SystemToCurves(config, site).apply(sources);
+    return new SystemToCurves(config, site, metrics).apply(sources);
   }
 
   /* Asynchronously compute hazard curves for a SystemSourceSet. */
@@ -88,11 +137,12 @@ final class CalcFactory {
       SystemSourceSet sources,
       CalcConfig config,
       Site site,
+      SourceSetMetrics metrics,
       final Executor ex) {
 
     return transform(
         immediateFuture(sources),
-        new ParallelSystemToCurves(site, config, ex),
+        new ParallelSystemToCurves(site, config, metrics, ex),
         ex);
   }
 
@@ -100,47 +150,76 @@ final class CalcFactory {
   static HazardCurveSet clustersToCurves(
       ClusterSourceSet sources,
       CalcConfig config,
-      Site site) {
+      Site site,
+      SourceSetMetrics metrics) {
 
-    ClusterToCurves clusterToCurves = new ClusterToCurves(sources, config, site);
+    ClusterToCurves clusterToCurves = new ClusterToCurves(sources, config, site, metrics);
     List<ClusterCurves> curvesList = new ArrayList<>();
     for (ClusterSource source : sources.iterableForLocation(site.location)) {
       curvesList.add(clusterToCurves.apply(source));
     }
-    ClusterCurveConsolidator consolidateFn = new ClusterCurveConsolidator(sources, config);
+    ClusterCurveConsolidator consolidateFn = new ClusterCurveConsolidator(sources, config, site);
     return consolidateFn.apply(curvesList);
   }
 
-  /* Asynchronously compute hazard curves for a ClusterSourceSet. */
+  /*
+   * Asynchronously compute hazard curves for a ClusterSourceSet. Sources are
+   * grouped into chunks, each of which is processed by a single task.
+   */
   static ListenableFuture<HazardCurveSet> clustersToCurves(
       ClusterSourceSet sources,
       CalcConfig config,
       Site site,
+      SourceSetMetrics metrics,
       Executor ex) {
 
-    ClusterToCurves clusterToCurves = new ClusterToCurves(sources, config, site);
-    AsyncList<ClusterCurves> curvesList = AsyncList.create();
-    for (ClusterSource source : sources.iterableForLocation(site.location)) {
-      ListenableFuture<ClusterCurves> curves = transform(
-          immediateFuture(source),
-          clusterToCurves,
+    ChunkTransform<ClusterSource, ClusterCurves> clustersToCurves = new ChunkTransform<>(
+        new ClusterToCurves(sources, config, site, metrics));
+    List<ClusterSource> sourceList = ImmutableList.copyOf(
+        sources.iterableForLocation(site.location));
+    int chunkSize = chunkSize(sourceList.size(), 1, config);
+    AsyncList<List<ClusterCurves>> curvesList = AsyncList.create();
+    for (List<ClusterSource> chunk : Lists.partition(sourceList, chunkSize)) {
+      ListenableFuture<List<ClusterCurves>> curves = transform(
+          immediateFuture(chunk),
+          clustersToCurves,
           ex);
       curvesList.add(curves);
     }
     return transform(
         allAsList(curvesList),
-        new ClusterCurveConsolidator(sources, config),
+        new ChunkConsolidator<>(new ClusterCurveConsolidator(sources, config, site)),
         ex);
   }
 
+  /*
+   * The target number of tasks per thread used when chunking sources or inputs.
+   * Several tasks per thread leaves room for load balancing when task durations
+   * vary while keeping the total task count, and associated queueing and future
+   * allocation overhead, proportional to the number of threads rather than the
+   * number of sources.
+   */
+  private static final int TASKS_PER_THREAD = 4;
+
+  /*
+   * Compute a chunk size for distributing 'size' elements across the threads
+   * available to a calculation. The returned value is never less than
+   * 'minSize'.
+   */
+  static int chunkSize(int size, int minSize, CalcConfig config) {
+    int taskCount = config.performance.threadCount.value() * TASKS_PER_THREAD;
+    return Math.max(minSize, IntMath.divide(size, taskCount, RoundingMode.CEILING));
+  }
+
   /* Reduce hazard curves to a result. */
   static Hazard toHazardResult(
       HazardModel model,
       CalcConfig config,
       Site site,
+      CalcMetrics metrics,
       List<HazardCurveSet> curveSets) {
 
-    return new CurveSetConsolidator(model, config, site).apply(curveSets);
+    return new CurveSetConsolidator(model, config, site, metrics).apply(curveSets);
   }
 
   /* Asynchronously reduce hazard curves to a result. */
@@ -148,12 +227,13 @@ final class CalcFactory {
       HazardModel model,
       CalcConfig config,
       Site site,
+      CalcMetrics metrics,
       AsyncList<HazardCurveSet> curveSets,
       Executor ex) throws InterruptedException, ExecutionException {
 
     return transform(
         allAsList(curveSets),
-        new CurveSetConsolidator(model, config, site), ex).get();
+        new CurveSetConsolidator(model, config, site, metrics), ex).get();
   }
 
 }
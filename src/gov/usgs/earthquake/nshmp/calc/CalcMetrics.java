@@ -0,0 +1,301 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static com.google.common.base.CaseFormat.LOWER_CAMEL;
+import static com.google.common.base.CaseFormat.UPPER_UNDERSCORE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import gov.usgs.earthquake.nshmp.eq.model.Source;
+import gov.usgs.earthquake.nshmp.eq.model.SourceSet;
+import gov.usgs.earthquake.nshmp.gmm.Gmm;
+
+/**
+ * Counters and timings collected over the course of a hazard calculation.
+ * Metrics are recorded for each {@code SourceSet} in a model and are the same
+ * whether a calculation runs on the current thread or is distributed across an
+ * {@code Executor}. Stage times are the sums of the wall times of all tasks
+ * executing a stage and will therefore exceed the elapsed time of a
+ * multi-threaded calculation.
+ *
+ * <p>Metrics for a single site are available via {@link Hazard#metrics()};
+ * metrics for multiple sites may be combined using {@link #add(CalcMetrics)}.
+ *
+ * @author Peter Powers
+ */
+public final class CalcMetrics {
+
+  /** The file name used when writing metrics to a directory. */
+  public static final String FILE_NAME = "metrics.json";
+
+  /** Timed stages of a hazard calculation. */
+  public enum Stage {
+
+    /** Creation of ground motion model inputs from sources. */
+    SOURCE_TO_INPUTS,
+
+    /** Evaluation of ground motion models. */
+    INPUTS_TO_GROUND_MOTIONS,
+
+    /** Computation of exceedance curves from ground motions. */
+    GROUND_MOTIONS_TO_CURVES;
+
+    @Override
+    public String toString() {
+      return UPPER_UNDERSCORE.to(LOWER_CAMEL, name());
+    }
+  }
+
+  private final Map<SourceSet<? extends Source>, SourceSetMetrics> sourceSets;
+
+  private CalcMetrics() {
+    sourceSets = new LinkedHashMap<>();
+  }
+
+  /** Create a new, empty metrics container. */
+  public static CalcMetrics create() {
+    return new CalcMetrics();
+  }
+
+  /*
+   * Return the metrics for a SourceSet, creating them if necessary. Source
+   * sets are registered on the thread that submits calculation tasks.
+   */
+  synchronized SourceSetMetrics sourceSet(SourceSet<? extends Source> sourceSet) {
+    SourceSetMetrics metrics = sourceSets.get(sourceSet);
+    if (metrics == null) {
+      metrics = new SourceSetMetrics(sourceSet);
+      sourceSets.put(sourceSet, metrics);
+    }
+    return metrics;
+  }
+
+  /**
+   * The metrics for each {@code SourceSet}, in the order in which source sets
+   * were processed.
+   */
+  public synchronized List<SourceSetMetrics> sourceSets() {
+    return ImmutableList.copyOf(sourceSets.values());
+  }
+
+  /**
+   * Add the values of the supplied metrics to this container. Metrics are
+   * combined by {@code SourceSet}.
+   *
+   * @param metrics to add
+   * @return this container
+   */
+  public synchronized CalcMetrics add(CalcMetrics metrics) {
+    for (SourceSetMetrics ssm : metrics.sourceSets()) {
+      sourceSet(ssm.sourceSet).add(ssm);
+    }
+    return this;
+  }
+
+  /**
+   * Save these metrics in JSON format to the specified directory.
+   *
+   * @param dir the directory to write to
+   * @throws IOException if there is a problem writing the file
+   */
+  public void write(Path dir) throws IOException {
+    Path file = dir.resolve(FILE_NAME);
+    try (Writer writer = Files.newBufferedWriter(file, UTF_8)) {
+      GSON.toJson(toJson(), writer);
+    }
+  }
+
+  private static final Gson GSON = new GsonBuilder()
+      .setPrettyPrinting()
+      .create();
+
+  private JsonObject toJson() {
+    SourceSetMetrics total = new SourceSetMetrics(null);
+    JsonArray sourceSetArray = new JsonArray();
+    for (SourceSetMetrics ssm : sourceSets()) {
+      total.add(ssm);
+      JsonObject sourceSetJson = new JsonObject();
+      sourceSetJson.addProperty("name", ssm.sourceSet.name());
+      sourceSetJson.addProperty("type", ssm.sourceSet.type().toString());
+      ssm.addTo(sourceSetJson);
+      sourceSetArray.add(sourceSetJson);
+    }
+    JsonObject totalJson = new JsonObject();
+    total.addTo(totalJson);
+    JsonObject json = new JsonObject();
+    json.add("total", totalJson);
+    json.add("sourceSets", sourceSetArray);
+    return json;
+  }
+
+  /**
+   * Counters and timings for a single {@code SourceSet}. Counters are updated
+   * concurrently by calculation tasks; values are only guaranteed to be
+   * complete once a calculation has finished.
+   */
+  public static final class SourceSetMetrics {
+
+    private final SourceSet<? extends Source> sourceSet;
+    private final LongAdder sources = new LongAdder();
+    private final LongAdder ruptures = new LongAdder();
+    private final LongAdder inputs = new LongAdder();
+    private final LongAdder exceedances = new LongAdder();
+    private final LongAdder gmmCacheHits = new LongAdder();
+    private final LongAdder gmmCacheMisses = new LongAdder();
+    private final ConcurrentMap<Gmm, LongAdder> gmmCalcs = new ConcurrentHashMap<>();
+    private final Map<Stage, LongAdder> stageNanos = Maps.newEnumMap(Stage.class);
+
+    SourceSetMetrics(SourceSet<? extends Source> sourceSet) {
+      this.sourceSet = sourceSet;
+      for (Stage stage : Stage.values()) {
+        stageNanos.put(stage, new LongAdder());
+      }
+    }
+
+    /** The {@code SourceSet} these metrics apply to. */
+    public SourceSet<? extends Source> sourceSet() {
+      return sourceSet;
+    }
+
+    /** The number of sources visited. */
+    public long sources() {
+      return sources.sum();
+    }
+
+    /** The number of ruptures generated. */
+    public long ruptures() {
+      return ruptures.sum();
+    }
+
+    /** The number of ground motion model inputs created. */
+    public long inputs() {
+      return inputs.sum();
+    }
+
+    /** The number of exceedance curves computed. */
+    public long exceedances() {
+      return exceedances.sum();
+    }
+
+    /**
+     * The number of ground motions found in the ground motion cache, if
+     * enabled.
+     */
+    public long gmmCacheHits() {
+      return gmmCacheHits.sum();
+    }
+
+    /**
+     * The number of ground motions not found in, and subsequently computed and
+     * added to, the ground motion cache, if enabled.
+     */
+    public long gmmCacheMisses() {
+      return gmmCacheMisses.sum();
+    }
+
+    /** The number of evaluations of each ground motion model. */
+    public Map<Gmm, Long> gmmCalcs() {
+      Map<Gmm, Long> calcs = Maps.newEnumMap(Gmm.class);
+      for (Entry<Gmm, LongAdder> entry : gmmCalcs.entrySet()) {
+        calcs.put(entry.getKey(), entry.getValue().sum());
+      }
+      return calcs;
+    }
+
+    /**
+     * The total wall time spent in a calculation stage.
+     *
+     * @param stage of interest
+     * @param unit of returned value
+     */
+    public long time(Stage stage, TimeUnit unit) {
+      return unit.convert(stageNanos.get(stage).sum(), TimeUnit.NANOSECONDS);
+    }
+
+    void addSources(int count) {
+      sources.add(count);
+    }
+
+    void addRuptures(int count) {
+      ruptures.add(count);
+    }
+
+    void addInputs(int count) {
+      inputs.add(count);
+    }
+
+    void addExceedances(int count) {
+      exceedances.add(count);
+    }
+
+    void addGmmCacheHits(int count) {
+      gmmCacheHits.add(count);
+    }
+
+    void addGmmCacheMisses(int count) {
+      gmmCacheMisses.add(count);
+    }
+
+    void addGmmCalcs(Gmm gmm, int count) {
+      gmmCalcs.computeIfAbsent(gmm, g -> new LongAdder()).add(count);
+    }
+
+    /* Add the time elapsed since 'start', a System.nanoTime() value. */
+    void addTime(Stage stage, long start) {
+      stageNanos.get(stage).add(System.nanoTime() - start);
+    }
+
+    private void add(SourceSetMetrics that) {
+      sources.add(that.sources());
+      ruptures.add(that.ruptures());
+      inputs.add(that.inputs());
+      exceedances.add(that.exceedances());
+      gmmCacheHits.add(that.gmmCacheHits());
+      gmmCacheMisses.add(that.gmmCacheMisses());
+      for (Entry<Gmm, Long> entry : that.gmmCalcs().entrySet()) {
+        gmmCalcs.computeIfAbsent(entry.getKey(), g -> new LongAdder()).add(entry.getValue());
+      }
+      for (Stage stage : Stage.values()) {
+        stageNanos.get(stage).add(that.stageNanos.get(stage).sum());
+      }
+    }
+
+    private void addTo(JsonObject json) {
+      json.addProperty("sources", sources());
+      json.addProperty("ruptures", ruptures());
+      json.addProperty("inputs", inputs());
+      json.addProperty("exceedances", exceedances());
+      json.addProperty("gmmCacheHits", gmmCacheHits());
+      json.addProperty("gmmCacheMisses", gmmCacheMisses());
+      JsonObject gmmJson = new JsonObject();
+      for (Entry<Gmm, Long> entry : gmmCalcs().entrySet()) {
+        gmmJson.addProperty(entry.getKey().name(), entry.getValue());
+      }
+      json.add("gmmCalcs", gmmJson);
+      JsonObject timeJson = new JsonObject();
+      for (Stage stage : Stage.values()) {
+        timeJson.addProperty(stage.toString(), time(stage, TimeUnit.MILLISECONDS));
+      }
+      json.add("timeMs", timeJson);
+    }
+  }
+
+}
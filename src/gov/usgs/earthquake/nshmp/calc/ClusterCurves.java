@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static gov.usgs.earthquake.nshmp.data.XySequence.immutableCopyOf;
 
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.data.XySequence;
@@ -16,19 +17,26 @@ import gov.usgs.earthquake.nshmp.gmm.Imt;
  * {@code GroundMotionModel} used. The curves will have been scaled by source
  * and rupture weights, but not by {@code GroundMotionModel} weights.
  *
+ * <p>When deaggregating at a fixed intensity measure level, the exceedances
+ * of that level for each {@code Source} in the cluster are also carried
+ * along.
+ *
  * @author Peter Powers
  */
 final class ClusterCurves {
 
   final ClusterGroundMotions clusterGroundMotions;
   final Map<Imt, Map<Gmm, XySequence>> curveMap;
+  final List<ImlExceedances> exceedances;
 
   private ClusterCurves(
       ClusterGroundMotions clusterGroundMotions,
-      Map<Imt, Map<Gmm, XySequence>> curveMap) {
+      Map<Imt, Map<Gmm, XySequence>> curveMap,
+      List<ImlExceedances> exceedances) {
 
     this.clusterGroundMotions = clusterGroundMotions;
     this.curveMap = curveMap;
+    this.exceedances = exceedances;
   }
 
   static Builder builder(ClusterGroundMotions clusterGroundMotions) {
@@ -42,6 +50,7 @@ final class ClusterCurves {
 
     private final ClusterGroundMotions clusterGroundMotions;
     private final Map<Imt, Map<Gmm, XySequence>> curveMap;
+    private List<ImlExceedances> exceedances;
 
     private Builder(ClusterGroundMotions clusterGroundMotions) {
       this.clusterGroundMotions = clusterGroundMotions;
@@ -60,12 +69,18 @@ final class ClusterCurves {
       return this;
     }
 
+    /* Supply exceedances in the order of the sources in the cluster. */
+    Builder exceedances(List<ImlExceedances> exceedances) {
+      this.exceedances = exceedances;
+      return this;
+    }
+
     ClusterCurves build() {
       checkState(!built, "This %s instance has already been used", ID);
       // TODO check that all gmms have been set? it'll be difficult to
       // track whether all curves for all inputs have been added
       built = true;
-      return new ClusterCurves(clusterGroundMotions, curveMap);
+      return new ClusterCurves(clusterGroundMotions, curveMap, exceedances);
     }
 
   }
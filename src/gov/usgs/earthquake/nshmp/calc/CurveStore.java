@@ -0,0 +1,347 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.google.common.base.Strings;
+import com.google.common.primitives.Doubles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import gov.usgs.earthquake.nshmp.data.XySequence;
+import gov.usgs.earthquake.nshmp.geo.Bounds;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+
+/**
+ * A memory-mapped binary store of hazard curves for the sites of a map region.
+ * A store has a fixed-size header followed by one curve slot for every node in
+ * the grid defined by the map bounds and spacing. Slots are ordered ascending
+ * in longitude and descending in latitude, as in NSHMP binary files, so the
+ * position of a site's curve is computed directly from its location.
+ *
+ * <p>A {@link Writer} may put curves in any order, and puts to different sites
+ * may proceed concurrently. Slots that are never written hold zero-valued
+ * curves. A {@link Reader} maps a store read-only and returns the curve at any
+ * site without loading the rest of the file.
+ *
+ * <p>Curve values are annual rates of exceedance stored as little-endian
+ * {@code float}s or {@code double}s. The header layout is:
+ *
+ * <pre>
+ * offset  size  content
+ *      0     8  magic ("NSHMPCRV")
+ *      8     4  format version (int)
+ *     12     4  header size in bytes (int)
+ *     16     4  value size in bytes, 4 or 8 (int)
+ *     20     4  IML count (int)
+ *     24     4  row (latitude) count (int)
+ *     28     4  column (longitude) count (int)
+ *     32     8  minimum longitude (double)
+ *     40     8  maximum latitude (double)
+ *     48     8  spacing (double)
+ *     56     8  vs30 (double)
+ *     64    32  Imt name (US-ASCII, space padded)
+ *     96   8*n  IMLs (double)
+ * </pre>
+ *
+ * @author Peter Powers
+ */
+public final class CurveStore {
+
+  private static final byte[] MAGIC = "NSHMPCRV".getBytes(US_ASCII);
+  private static final int VERSION = 1;
+  private static final int IMT_NAME_SIZE = 32;
+  private static final int IMLS_OFFSET = 96;
+
+  /* Maximum distance of a location from a grid node, as a fraction of spacing. */
+  private static final double NODE_TOLERANCE = 1e-3;
+
+  private final Imt imt;
+  private final double[] imls;
+  private final double minLon;
+  private final double maxLat;
+  private final double spacing;
+  private final double vs30;
+  private final int rows;
+  private final int columns;
+  private final int valueSize;
+  private final int headerSize;
+  private final int curveSize;
+
+  private CurveStore(
+      Imt imt,
+      double[] imls,
+      double minLon,
+      double maxLat,
+      double spacing,
+      double vs30,
+      int rows,
+      int columns,
+      int valueSize) {
+
+    this.imt = imt;
+    this.imls = imls;
+    this.minLon = minLon;
+    this.maxLat = maxLat;
+    this.spacing = spacing;
+    this.vs30 = vs30;
+    this.rows = rows;
+    this.columns = columns;
+    this.valueSize = valueSize;
+    this.headerSize = IMLS_OFFSET + imls.length * Double.BYTES;
+    this.curveSize = imls.length * valueSize;
+  }
+
+  /* Total size of a store in bytes. */
+  private long size() {
+    return headerSize + (long) rows * columns * curveSize;
+  }
+
+  /*
+   * Compute the byte position of the curve for a location. Locations must fall
+   * on a grid node within the store bounds; locations off the grid would
+   * otherwise silently resolve to a neighboring node.
+   */
+  private int position(Location loc) {
+    double rowOffset = (maxLat - loc.lat()) / spacing;
+    double columnOffset = (loc.lon() - minLon) / spacing;
+    int row = (int) Math.rint(rowOffset);
+    int column = (int) Math.rint(columnOffset);
+    checkElementIndex(row, rows, "Latitude row");
+    checkElementIndex(column, columns, "Longitude column");
+    checkArgument(
+        Math.abs(rowOffset - row) <= NODE_TOLERANCE &&
+            Math.abs(columnOffset - column) <= NODE_TOLERANCE,
+        "Location %s is not on a grid node (spacing: %s)", loc, spacing);
+    return headerSize + (row * columns + column) * curveSize;
+  }
+
+  private void writeHeader(ByteBuffer buffer) {
+    buffer.put(MAGIC)
+        .putInt(VERSION)
+        .putInt(headerSize)
+        .putInt(valueSize)
+        .putInt(imls.length)
+        .putInt(rows)
+        .putInt(columns)
+        .putDouble(minLon)
+        .putDouble(maxLat)
+        .putDouble(spacing)
+        .putDouble(vs30)
+        .put(Strings.padEnd(imt.name(), IMT_NAME_SIZE, ' ').getBytes(US_ASCII));
+    for (double iml : imls) {
+      buffer.putDouble(iml);
+    }
+  }
+
+  private static CurveStore readHeader(ByteBuffer buffer) {
+    byte[] magic = new byte[MAGIC.length];
+    buffer.get(magic);
+    checkArgument(
+        new String(magic, US_ASCII).equals(new String(MAGIC, US_ASCII)),
+        "Not a curve store");
+    int version = buffer.getInt();
+    checkArgument(version == VERSION, "Unsupported curve store version [%s]", version);
+    int headerSize = buffer.getInt();
+    int valueSize = buffer.getInt();
+    checkArgument(
+        valueSize == Float.BYTES || valueSize == Double.BYTES,
+        "Invalid value size [%s]", valueSize);
+    int imlCount = buffer.getInt();
+    checkArgument(headerSize == IMLS_OFFSET + imlCount * Double.BYTES, "Invalid header size");
+    int rows = buffer.getInt();
+    int columns = buffer.getInt();
+    double minLon = buffer.getDouble();
+    double maxLat = buffer.getDouble();
+    double spacing = buffer.getDouble();
+    double vs30 = buffer.getDouble();
+    byte[] imtName = new byte[IMT_NAME_SIZE];
+    buffer.get(imtName);
+    Imt imt = Imt.valueOf(new String(imtName, US_ASCII).trim());
+    double[] imls = new double[imlCount];
+    for (int i = 0; i < imlCount; i++) {
+      imls[i] = buffer.getDouble();
+    }
+    return new CurveStore(imt, imls, minLon, maxLat, spacing, vs30, rows, columns, valueSize);
+  }
+
+  /**
+   * Create a new store, replacing any existing file at {@code path}, and
+   * return a writer for it.
+   *
+   * @param path of the store file
+   * @param imt of the curves to store
+   * @param imls intensity measure levels (x-values) of the curves to store
+   * @param bounds of the map region
+   * @param spacing of the sites in the map region
+   * @param vs30 of the sites in the map region
+   * @param doubles {@code true} to store curve values as {@code double}s,
+   *        {@code false} to store {@code float}s
+   * @throws IOException if there is a problem creating the store
+   */
+  public static Writer create(
+      Path path,
+      Imt imt,
+      List<Double> imls,
+      Bounds bounds,
+      double spacing,
+      double vs30,
+      boolean doubles) throws IOException {
+
+    checkArgument(spacing > 0.0, "Spacing [%s] must be > 0", spacing);
+    int rows = (int) Math.rint((bounds.max().lat() - bounds.min().lat()) / spacing) + 1;
+    int columns = (int) Math.rint((bounds.max().lon() - bounds.min().lon()) / spacing) + 1;
+    CurveStore store = new CurveStore(
+        imt,
+        Doubles.toArray(imls),
+        bounds.min().lon(),
+        bounds.max().lat(),
+        spacing,
+        vs30,
+        rows,
+        columns,
+        doubles ? Double.BYTES : Float.BYTES);
+    return new Writer(path, store);
+  }
+
+  /**
+   * Open an existing store for reading.
+   *
+   * @param path of the store file
+   * @throws IOException if there is a problem opening the store
+   * @throws IllegalArgumentException if {@code path} is not a curve store
+   */
+  public static Reader open(Path path) throws IOException {
+    return new Reader(path);
+  }
+
+  /**
+   * Writes curves to a {@code CurveStore}. Curves for different sites may be
+   * put concurrently.
+   */
+  public static final class Writer implements AutoCloseable {
+
+    private final CurveStore store;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private Writer(Path path, CurveStore store) throws IOException {
+      long size = store.size();
+      checkArgument(size <= Integer.MAX_VALUE, "Curve store too large [%s bytes]", size);
+      this.store = store;
+      this.channel = FileChannel.open(
+          path,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      this.buffer = channel.map(MapMode.READ_WRITE, 0, size);
+      buffer.order(LITTLE_ENDIAN);
+      store.writeHeader(buffer);
+    }
+
+    /**
+     * Put the curve for the site at {@code location}.
+     *
+     * @param location of site
+     * @param curve to store; only y-values are stored
+     * @throws IndexOutOfBoundsException if {@code location} is outside the
+     *         store bounds
+     * @throws IllegalArgumentException if the size of {@code curve} does not
+     *         match the number of IMLs in the store
+     */
+    public void put(Location location, XySequence curve) {
+      checkArgument(curve.size() == store.imls.length,
+          "Curve size [%s] != IML count [%s]", curve.size(), store.imls.length);
+      int position = store.position(location);
+      if (store.valueSize == Double.BYTES) {
+        for (double y : curve.yValues()) {
+          buffer.putDouble(position, y);
+          position += Double.BYTES;
+        }
+      } else {
+        for (double y : curve.yValues()) {
+          buffer.putFloat(position, (float) y);
+          position += Float.BYTES;
+        }
+      }
+    }
+
+    /**
+     * Flush all curves to the underlying file and close this writer.
+     */
+    @Override
+    public void close() throws IOException {
+      buffer.force();
+      channel.close();
+    }
+  }
+
+  /**
+   * Provides random access to the curves in a {@code CurveStore}.
+   */
+  public static final class Reader implements AutoCloseable {
+
+    private final CurveStore store;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private Reader(Path path) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      this.buffer = channel.map(MapMode.READ_ONLY, 0, channel.size()).order(LITTLE_ENDIAN);
+      this.store = readHeader(buffer.duplicate().order(LITTLE_ENDIAN));
+      checkState(channel.size() == store.size(), "Curve store is truncated");
+    }
+
+    /** The {@code Imt} of the stored curves. */
+    public Imt imt() {
+      return store.imt;
+    }
+
+    /** The intensity measure levels (x-values) of the stored curves. */
+    public List<Double> imls() {
+      return Doubles.asList(store.imls.clone());
+    }
+
+    /** The vs30 of the stored sites. */
+    public double vs30() {
+      return store.vs30;
+    }
+
+    /**
+     * Return the curve for the site at {@code location}. Curves for sites that
+     * were never written are zero-valued.
+     *
+     * @param location of site
+     * @throws IndexOutOfBoundsException if {@code location} is outside the
+     *         store bounds
+     */
+    public XySequence curve(Location location) {
+      int position = store.position(location);
+      double[] ys = new double[store.imls.length];
+      for (int i = 0; i < ys.length; i++) {
+        ys[i] = (store.valueSize == Double.BYTES)
+            ? buffer.getDouble(position + i * Double.BYTES)
+            : buffer.getFloat(position + i * Float.BYTES);
+      }
+      return XySequence.create(store.imls, ys);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+}
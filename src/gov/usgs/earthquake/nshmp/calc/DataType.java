@@ -34,5 +34,15 @@ public enum DataType {
    * has certain restrictions, for instance, the maximum number of intensity
    * measure levels that can be accomodated is 20. Buyer beware.
    */
-  BINARY;
+  BINARY,
+
+  /**
+   * Memory-mapped binary hazard curves. As with {@link #BINARY}, mapped curves
+   * may only be saved for map calculations for which a map 'extents' region
+   * has been defined. Each curve is written directly to a fixed position in
+   * the output file, and individual curves may be read back without loading
+   * the entire file. There is no limit on the number of intensity measure
+   * levels. See {@link CurveStore} for details of the format.
+   */
+  MAPPED;
 }
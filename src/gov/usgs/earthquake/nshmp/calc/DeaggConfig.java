@@ -1,5 +1,6 @@
 package gov.usgs.earthquake.nshmp.calc;
 
+import static com.google.common.base.Preconditions.checkState;
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.LOG_INDENT;
 
 import com.google.common.collect.ImmutableList;
@@ -78,14 +79,28 @@ final class DeaggConfig {
         .toString();
   }
 
+  /*
+   * Builder for deaggregations that revisit the ground motions retained in
+   * the supplied hazard.
+   */
   static Builder builder(Hazard hazard) {
+    checkState(
+        !GridCurveTable.enabled(hazard.config),
+        "Deaggregation is not supported when grid curve tables are enabled");
+    checkState(
+        !hazard.config.performance.hazardOnly,
+        "Deaggregation is not supported for hazard-only calculations");
+    return builder(hazard.config);
+  }
+
+  static Builder builder(CalcConfig config) {
     return new Builder()
         .dataModel(
-            DeaggDataset.builder(hazard.config).build())
+            DeaggDataset.builder(config).build())
         .probabilityModel(
-            hazard.config.hazard.exceedanceModel,
-            hazard.config.hazard.truncationLevel)
-        .settings(hazard.config.deagg);
+            config.hazard.exceedanceModel,
+            config.hazard.truncationLevel)
+        .settings(config.deagg);
   }
 
   /* Reusable builder */
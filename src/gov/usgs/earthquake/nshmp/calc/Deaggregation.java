@@ -1,13 +1,21 @@
 package gov.usgs.earthquake.nshmp.calc;
 
+import static com.google.common.util.concurrent.Futures.allAsList;
+import static com.google.common.util.concurrent.Futures.getUnchecked;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transform;
 import static gov.usgs.earthquake.nshmp.calc.DeaggDataset.SOURCE_CONSOLIDATOR;
 import static gov.usgs.earthquake.nshmp.calc.DeaggDataset.SOURCE_SET_CONSOLIDATOR;
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.NEWLINE;
 
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.Multimaps;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -16,6 +24,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import gov.usgs.earthquake.nshmp.data.Interpolator;
 import gov.usgs.earthquake.nshmp.data.XySequence;
@@ -28,6 +37,17 @@ import gov.usgs.earthquake.nshmp.gmm.Imt;
  * deaggregate the results at all spectral periods supplied in the result at an
  * intensity measure level or return period of interest.
  *
+ * <p>Deaggregation generally revisits the ground motions retained in a
+ * {@code Hazard} result. If an {@code Executor} is supplied, each
+ * {@code SourceSet} is deaggregated at each {@code Imt} as a separate task;
+ * otherwise, deaggregation runs on the current thread.
+ *
+ * <p>Optionally, deaggregation at an intensity measure level set up front via
+ * {@link CalcConfig.Deagg#iml} is performed while hazard curves are computed.
+ * Each {@code SourceSet} is deaggregated as its curves are consolidated and
+ * the results are then only combined here; this also works for hazard-only
+ * calculations, which do not retain ground motions.
+ *
  * @author Peter Powers
  */
 public final class Deaggregation {
@@ -104,7 +124,26 @@ public final class Deaggregation {
       double returnPeriod,
       Optional<Imt> deaggImt) {
 
-    Map<Imt, ImtDeagg> imtDeaggMap = Maps.newEnumMap(Imt.class);
+    return atReturnPeriod(hazard, returnPeriod, deaggImt, Optional.empty());
+  }
+
+  /**
+   * Deaggregate {@code hazard} at the intensity measure level corresponding to
+   * the supplied {@code returnPeriod}, possibly using an {@link Optional}
+   * {@link Executor}. Only a single {@code Imt} will be processed if supplied.
+   *
+   * @param hazard to deaggregate.
+   * @param returnPeriod at which to deaggregate {@code hazard}
+   * @param deaggImt to deaggregate; deaggregate all if {@code empty()}
+   * @param ex optional {@code Executor} to use in calculation
+   */
+  public static Deaggregation atReturnPeriod(
+      Hazard hazard,
+      double returnPeriod,
+      Optional<Imt> deaggImt,
+      Optional<Executor> ex) {
+
+    Map<Imt, DeaggConfig> configs = Maps.newEnumMap(Imt.class);
     DeaggConfig.Builder cb = DeaggConfig.builder(hazard);
     double rate = 1.0 / returnPeriod;
 
@@ -114,41 +153,139 @@ public final class Deaggregation {
 
     for (Imt imt : imtsToDeagg) {
       double iml = IML_INTERPOLATER.findX(hazard.totalCurves.get(imt), rate);
-      DeaggConfig config = cb.imt(imt).iml(iml, rate, returnPeriod).build();
-      ImtDeagg imtDeagg = new ImtDeagg(hazard, config);
-      imtDeaggMap.put(imt, imtDeagg);
+      configs.put(imt, cb.imt(imt).iml(iml, rate, returnPeriod).build());
     }
-
-    return new Deaggregation(
-        Maps.immutableEnumMap(imtDeaggMap),
-        hazard.site);
+    return deaggregate(hazard, configs, ex);
   }
 
   /**
    * Deaggregate {@code hazard} at the supplied intensity measure level. Only a
    * single {@code Imt} will be processed if supplied.
    *
+   * <p>Note that {@code iml} is in linear units (e.g. g); it was previously
+   * expected in natural log units. See
+   * {@link #atIml(Hazard, double, Optional, Optional)} for requirements.
+   *
    * @param hazard to deaggregate.
    * @param iml intensity measure level at which to deaggregate {@code hazard}
+   *        in linear units
    * @param deaggImt to deaggregate; deaggregate all if {@code empty()}
    */
   public static Deaggregation atIml(
-      Hazard hazard, 
+      Hazard hazard,
       double iml,
       Optional<Imt> deaggImt) {
 
-    Map<Imt, ImtDeagg> imtDeaggMap = Maps.newEnumMap(Imt.class);
-    DeaggConfig.Builder cb = DeaggConfig.builder(hazard);
+    return atIml(hazard, iml, deaggImt, Optional.empty());
+  }
+
+  /**
+   * Deaggregate {@code hazard} at the supplied intensity measure level,
+   * possibly using an {@link Optional} {@link Executor}. Only a single
+   * {@code Imt} will be processed if supplied.
+   *
+   * <p>If {@code hazard} was computed with {@link CalcConfig.Deagg#iml} equal
+   * to {@code iml}, each {@code SourceSet} will have been deaggregated while
+   * its hazard curves were built and those results are used; this works for
+   * hazard-only calculations and no {@code Executor} is required. Otherwise,
+   * the ground motions retained in {@code hazard} are deaggregated, which is
+   * not possible for hazard-only results.
+   *
+   * <p>Note that {@code iml} is in linear units (e.g. g); it was previously
+   * expected in natural log units.
+   *
+   * @param hazard to deaggregate.
+   * @param iml intensity measure level at which to deaggregate {@code hazard}
+   *        in linear units
+   * @param deaggImt to deaggregate; deaggregate all if {@code empty()}
+   * @param ex optional {@code Executor} to use in calculation
+   * @throws IllegalStateException if {@code hazard} was not deaggregated at
+   *         {@code iml} while it was computed and did not retain ground
+   *         motions
+   */
+  public static Deaggregation atIml(
+      Hazard hazard,
+      double iml,
+      Optional<Imt> deaggImt,
+      Optional<Executor> ex) {
+
+    /* A NaN deagg.iml never matches */
+    boolean fused = iml == hazard.config.deagg.iml;
+    DeaggConfig.Builder cb = fused
+        ? DeaggConfig.builder(hazard.config)
+        : DeaggConfig.builder(hazard);
+    double logIml = Math.log(iml);
 
+    Map<Imt, DeaggConfig> configs = Maps.newEnumMap(Imt.class);
     Set<Imt> imtsToDeagg = deaggImt.isPresent()
         ? EnumSet.of(deaggImt.get())
         : hazard.totalCurves.keySet();
-        
+
     for (Imt imt : imtsToDeagg) {
-      double rate = RATE_INTERPOLATER.findY(hazard.totalCurves.get(imt), iml);
+      double rate = RATE_INTERPOLATER.findY(hazard.totalCurves.get(imt), logIml);
       double returnPeriod = 1.0 / rate;
-      DeaggConfig config = cb.imt(imt).iml(iml, rate, returnPeriod).build();
-      ImtDeagg imtDeagg = new ImtDeagg(hazard, config);
+      configs.put(imt, cb.imt(imt).iml(logIml, rate, returnPeriod).build());
+    }
+    return fused
+        ? combine(hazard, configs)
+        : deaggregate(hazard, configs, ex);
+  }
+
+  /*
+   * Combine the datasets of each SourceSet deaggregated while hazard curves
+   * were computed.
+   */
+  private static Deaggregation combine(Hazard hazard, Map<Imt, DeaggConfig> configs) {
+    List<HazardCurveSet> curveSets = ImmutableList.copyOf(hazard.sourceSetCurves.values());
+    Map<Imt, ImtDeagg> imtDeaggMap = Maps.newEnumMap(Imt.class);
+    for (Entry<Imt, DeaggConfig> entry : configs.entrySet()) {
+      Imt imt = entry.getKey();
+      DeaggConfig config = entry.getValue();
+      List<Map<Gmm, DeaggDataset>> datasets = new ArrayList<>(curveSets.size());
+      for (HazardCurveSet curveSet : curveSets) {
+        datasets.add(contributes(curveSet, config)
+            ? curveSet.deaggDatasets.get(imt)
+            : ImmutableMap.<Gmm, DeaggDataset> of());
+      }
+      imtDeaggMap.put(imt, new ImtDeagg(config, curveSets, datasets));
+    }
+
+    return new Deaggregation(
+        Maps.immutableEnumMap(imtDeaggMap),
+        hazard.site);
+  }
+
+  /*
+   * Deaggregate each SourceSet at each Imt. When an executor is supplied, all
+   * tasks are submitted before any results are collected so that work is
+   * spread across both Imts and SourceSets.
+   */
+  private static Deaggregation deaggregate(
+      Hazard hazard,
+      Map<Imt, DeaggConfig> configs,
+      Optional<Executor> ex) {
+
+    List<HazardCurveSet> curveSets = ImmutableList.copyOf(hazard.sourceSetCurves.values());
+    Map<Imt, ListenableFuture<List<Map<Gmm, DeaggDataset>>>> futures =
+        Maps.newEnumMap(Imt.class);
+    for (Entry<Imt, DeaggConfig> entry : configs.entrySet()) {
+      SourceSetToDatasets function = new SourceSetToDatasets(entry.getValue(), hazard.site);
+      List<ListenableFuture<Map<Gmm, DeaggDataset>>> datasets = new ArrayList<>();
+      for (HazardCurveSet curveSet : curveSets) {
+        datasets.add(ex.isPresent()
+            ? transform(immediateFuture(curveSet), function, ex.get())
+            : immediateFuture(function.apply(curveSet)));
+      }
+      futures.put(entry.getKey(), allAsList(datasets));
+    }
+
+    Map<Imt, ImtDeagg> imtDeaggMap = Maps.newEnumMap(Imt.class);
+    for (Entry<Imt, DeaggConfig> entry : configs.entrySet()) {
+      Imt imt = entry.getKey();
+      ImtDeagg imtDeagg = new ImtDeagg(
+          entry.getValue(),
+          curveSets,
+          getUnchecked(futures.get(imt)));
       imtDeaggMap.put(imt, imtDeagg);
     }
 
@@ -157,6 +294,39 @@ public final class Deaggregation {
         hazard.site);
   }
 
+  /*
+   * HazardCurveSet --> Map<Gmm, DeaggDataset>
+   *
+   * Deaggregate a single SourceSet. An empty map is returned if the SourceSet
+   * does not contribute to hazard at the target iml.
+   */
+  private static final class SourceSetToDatasets implements
+      Function<HazardCurveSet, Map<Gmm, DeaggDataset>> {
+
+    private final DeaggConfig config;
+    private final Site site;
+
+    SourceSetToDatasets(DeaggConfig config, Site site) {
+      this.config = config;
+      this.site = site;
+    }
+
+    @Override
+    public Map<Gmm, DeaggDataset> apply(HazardCurveSet curveSet) {
+      if (!contributes(curveSet, config)) {
+        return ImmutableMap.of();
+      }
+      return Deaggregator.deaggregate(curveSet, config, site);
+    }
+  }
+
+  /* Whether a SourceSet contributes to hazard at the target iml. */
+  private static boolean contributes(HazardCurveSet curveSet, DeaggConfig config) {
+    XySequence sourceSetCurve = curveSet.totalCurves.get(config.imt);
+    double sourceSetRate = RATE_INTERPOLATER.findY(sourceSetCurve, config.iml);
+    return !Double.isNaN(sourceSetRate) && sourceSetRate != 0.0;
+  }
+
   /* Hazard curves are already in log-x space. */
   static final Interpolator IML_INTERPOLATER = Interpolator.builder()
       .logy()
@@ -204,7 +374,11 @@ public final class Deaggregation {
     final Map<Gmm, DeaggDataset> gmmDatasets;
     final Map<SourceType, DeaggDataset> typeDatasets;
 
-    ImtDeagg(Hazard hazard, DeaggConfig config) {
+    ImtDeagg(
+        DeaggConfig config,
+        List<HazardCurveSet> curveSets,
+        List<Map<Gmm, DeaggDataset>> sourceSetDatasetsList) {
+
       this.config = config;
 
       /*
@@ -221,7 +395,7 @@ public final class Deaggregation {
        * DeaggDataset.
        */
 
-      int sourceSetCount = hazard.sourceSetCurves.size();
+      int sourceSetCount = curveSets.size();
       ListMultimap<Gmm, DeaggDataset> gmmDatasetLists = MultimapBuilder
           .enumKeys(Gmm.class)
           .arrayListValues(sourceSetCount)
@@ -231,18 +405,12 @@ public final class Deaggregation {
           .arrayListValues(sourceSetCount)
           .build();
 
-      for (HazardCurveSet curveSet : hazard.sourceSetCurves.values()) {
-        XySequence sourceSetCurve = curveSet.totalCurves.get(config.imt);
-        double sourceSetRate = RATE_INTERPOLATER.findY(sourceSetCurve, config.iml);
-        if (Double.isNaN(sourceSetRate) || sourceSetRate == 0.0) {
-          // TODO log me instead FINER??
-          // System.out.println("Skipping: " + curveSet.sourceSet.name());
+      for (int i = 0; i < sourceSetCount; i++) {
+        HazardCurveSet curveSet = curveSets.get(i);
+        Map<Gmm, DeaggDataset> sourceSetDatasets = sourceSetDatasetsList.get(i);
+        if (sourceSetDatasets.isEmpty()) {
           continue;
         }
-        Map<Gmm, DeaggDataset> sourceSetDatasets = Deaggregator.deaggregate(
-            curveSet,
-            config,
-            hazard.site);
         gmmDatasetLists.putAll(Multimaps.forMap(sourceSetDatasets));
         DeaggDataset sourceSetTotal = SOURCE_CONSOLIDATOR.apply(sourceSetDatasets.values());
         typeDatasetLists.put(curveSet.sourceSet.type(), sourceSetTotal);
@@ -11,7 +11,7 @@ import com.google.common.collect.Multimaps;
 import com.google.common.primitives.Ints;
 
 import java.math.RoundingMode;
-import java.util.BitSet;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Iterator;
@@ -32,171 +32,224 @@ import gov.usgs.earthquake.nshmp.eq.model.ClusterSource;
 import gov.usgs.earthquake.nshmp.eq.model.GmmSet;
 import gov.usgs.earthquake.nshmp.eq.model.Source;
 import gov.usgs.earthquake.nshmp.eq.model.SourceSet;
+import gov.usgs.earthquake.nshmp.eq.model.SourceType;
 import gov.usgs.earthquake.nshmp.eq.model.SystemSourceSet;
 import gov.usgs.earthquake.nshmp.geo.Location;
 import gov.usgs.earthquake.nshmp.geo.Locations;
 import gov.usgs.earthquake.nshmp.gmm.Gmm;
 import gov.usgs.earthquake.nshmp.gmm.Imt;
-import gov.usgs.earthquake.nshmp.gmm.ScalarGroundMotion;
 import gov.usgs.earthquake.nshmp.util.Maths;
 
 import java.util.Set;
 
 /**
- * Factory class that deaggregates the hazard for a single {@code SourceSet}
- * across all relevant {@code Gmm}s.
+ * Deaggregates the hazard for a single {@code SourceSet} across all relevant
+ * {@code Gmm}s. A {@code Deaggregator} accumulates the contributions of each
+ * source in a {@code SourceSet} as they are added, either while hazard curves
+ * are built for a fixed intensity measure level, or after the fact from the
+ * {@code GroundMotions} retained in a {@code HazardCurveSet}.
  * 
  * @author Peter Powers
  */
 final class Deaggregator {
 
-  private final HazardCurveSet curves;
   private final SourceSet<? extends Source> sources;
   private final GmmSet gmmSet;
 
   private final Imt imt;
   private final DeaggDataset model;
   private final double iml;
-  private final ExceedanceModel probModel;
-  private final double trunc;
 
   private final Site site;
 
-  private Deaggregator(HazardCurveSet curves, DeaggConfig config, Site site) {
-    this.curves = curves;
-    this.sources = curves.sourceSet;
+  /* SourceSet level builders; null for cluster source sets. */
+  private final Map<Gmm, DeaggDataset.Builder> builders;
+
+  /* ClusterSource level datasets; null for all other source sets. */
+  private final ListMultimap<Gmm, DeaggDataset> clusterDatasets;
+
+  /*
+   * Create a deaggregator for the supplied SourceSet, Imt, and (natural log)
+   * iml; model supplies the r-m-ε binning.
+   */
+  Deaggregator(
+      SourceSet<? extends Source> sources,
+      Imt imt,
+      DeaggDataset model,
+      double iml,
+      Site site) {
+
+    this.sources = sources;
     this.gmmSet = sources.groundMotionModels();
 
-    this.imt = config.imt;
-    this.model = config.model;
-    this.iml = config.iml;
-    this.probModel = config.probabilityModel;
-    this.trunc = config.truncation;
+    this.imt = imt;
+    this.model = model;
+    this.iml = iml;
 
     this.site = site;
+
+    if (sources.type() == SourceType.CLUSTER) {
+      this.builders = null;
+      this.clusterDatasets = MultimapBuilder
+          .enumKeys(Gmm.class)
+          .arrayListValues()
+          .build();
+    } else {
+      this.builders = createBuilders(gmmSet.gmms(), model);
+      for (DeaggDataset.Builder builder : builders.values()) {
+        SourceSetContributor.Builder parent = new SourceSetContributor.Builder();
+        builder.setParentContributor(parent.sourceSet(sources));
+      }
+      this.clusterDatasets = null;
+    }
   }
 
+  /*
+   * Deaggregate a HazardCurveSet for which GroundMotions (and cluster curves)
+   * were retained.
+   */
   static Map<Gmm, DeaggDataset> deaggregate(
       HazardCurveSet curves,
       DeaggConfig config,
       Site site) {
 
-    Deaggregator deaggregator = new Deaggregator(curves, config, site);
-    return Maps.immutableEnumMap(deaggregator.run());
-  }
-
-  private Map<Gmm, DeaggDataset> run() {
-    switch (sources.type()) {
-      case CLUSTER:
-        return processClusterSources();
-      case SYSTEM:
-        return processSystemSources();
-      default:
-        return processSources();
+    Deaggregator deaggregator = new Deaggregator(
+        curves.sourceSet,
+        config.imt,
+        config.model,
+        config.iml,
+        site);
+
+    if (curves.sourceSet.type() == SourceType.CLUSTER) {
+      List<Map<Gmm, XySequence>> clusterCurveList = curves.clusterCurveLists.get(config.imt);
+      for (int i = 0; i < curves.clusterGroundMotionsList.size(); i++) {
+        ClusterGroundMotions cgms = curves.clusterGroundMotionsList.get(i);
+        List<ImlExceedances> exceedancesList = new ArrayList<>(cgms.size());
+        for (GroundMotions gms : cgms) {
+          exceedancesList.add(exceedances(gms, config));
+        }
+        deaggregator.addCluster(cgms.parent, exceedancesList, clusterCurveList.get(i));
+      }
+    } else {
+      for (GroundMotions gms : curves.hazardGroundMotionsList) {
+        deaggregator.add(exceedances(gms, config));
+      }
     }
+    return deaggregator.build();
   }
 
-  private static Map<Gmm, DeaggDataset.Builder> createBuilders(Set<Gmm> gmms, DeaggDataset model) {
-    Map<Gmm, DeaggDataset.Builder> map = Maps.newEnumMap(Gmm.class);
-    for (Gmm gmm : gmms) {
-      map.put(gmm, DeaggDataset.builder(model));
-    }
-    return map;
+  private static ImlExceedances exceedances(GroundMotions gms, DeaggConfig config) {
+    return ImlExceedances.create(
+        gms,
+        EnumSet.of(config.imt),
+        config.iml,
+        config.probabilityModel,
+        config.truncation);
   }
 
-  private Map<Gmm, DeaggDataset> processSources() {
-    Map<Gmm, DeaggDataset.Builder> builders = createBuilders(gmmSet.gmms(), model);
-    for (DeaggDataset.Builder builder : builders.values()) {
-      SourceSetContributor.Builder parent = new SourceSetContributor.Builder();
-      builder.setParentContributor(parent.sourceSet(sources));
-    }
-    for (GroundMotions gms : curves.hazardGroundMotionsList) {
-      processSource(gms, builders);
+  /*
+   * Add the exceedances for a Source, or for all sources in a SystemSourceSet.
+   * Not for use with cluster source sets.
+   */
+  void add(ImlExceedances exceedances) {
+    if (sources.type() == SourceType.SYSTEM) {
+      processSystemSources(exceedances);
+    } else {
+      processSource(exceedances, builders);
     }
-    return buildDatasets(builders);
   }
 
-  private Map<Gmm, DeaggDataset> processClusterSources() {
-
-    List<Map<Gmm, XySequence>> clusterCurveList = curves.clusterCurveLists.get(imt);
-
-    ListMultimap<Gmm, DeaggDataset> datasets = MultimapBuilder
-        .enumKeys(Gmm.class)
-        .arrayListValues(clusterCurveList.size())
-        .build();
+  /*
+   * Add the exceedances for each Source in a ClusterSource, in order, along
+   * with the total (weighted) curve for the cluster.
+   */
+  void addCluster(
+      ClusterSource cluster,
+      List<ImlExceedances> exceedancesList,
+      Map<Gmm, XySequence> clusterCurves) {
 
-    for (int i = 0; i < curves.clusterGroundMotionsList.size(); i++) {
-      ClusterGroundMotions cgms = curves.clusterGroundMotionsList.get(i);
+    /* ClusterSource level builders. */
+    Map<Gmm, DeaggDataset.Builder> datasetBuilders = createBuilders(gmmSet.gmms(), model);
+    for (DeaggDataset.Builder datasetBuilder : datasetBuilders.values()) {
 
-      /* ClusterSource level builders. */
-      Map<Gmm, DeaggDataset.Builder> datasetBuilders = createBuilders(gmmSet.gmms(), model);
-      for (DeaggDataset.Builder datasetBuilder : datasetBuilders.values()) {
+      /*
+       * Fetch site-specific source attributes so that they don't need to be
+       * recalculated multiple times downstream.
+       */
+      Location location = cluster.location(site.location);
+      double azimuth = Locations.azimuth(site.location, location);
 
-        /*
-         * Fetch site-specific source attributes so that they don't need to be
-         * recalculated multiple times downstream.
-         */
-        ClusterSource cluster = cgms.parent;
-        Location location = cluster.location(site.location);
-        double azimuth = Locations.azimuth(site.location, location);
+      ClusterContributor.Builder clusterContributor = new ClusterContributor.Builder()
+          .cluster(cluster, location, azimuth);
+      datasetBuilder.setParentContributor(clusterContributor);
+    }
 
-        ClusterContributor.Builder clusterContributor = new ClusterContributor.Builder()
-            .cluster(cluster, location, azimuth);
-        datasetBuilder.setParentContributor(clusterContributor);
-      }
+    /* Process the individual sources in a cluster. */
+    for (ImlExceedances exceedances : exceedancesList) {
+      processSource(exceedances, datasetBuilders);
+    }
 
-      /* Process the individual sources in a cluster. */
-      for (GroundMotions gms : cgms) {
-        processSource(gms, datasetBuilders);
-      }
+    /*
+     * Scale builders to the rate/contribution of the cluster and attach
+     * ClusterContributors to parent SourceSetContributors and swap.
+     */
+    for (Entry<Gmm, DeaggDataset.Builder> entry : datasetBuilders.entrySet()) {
 
       /*
-       * Scale builders to the rate/contribution of the cluster and attach
-       * ClusterContributors to parent SourceSetContributors and swap.
+       * Due to Gmm variations with distance, cluster curves for some GMMs may
+       * not have been calculated. Skip non-participating clusters (curve will
+       * be absent). Scale to total cluster rate. Builder rate > 0.0 check
+       * assures no 0/0 --> NaN and is necessary for curves that are present
+       * but that end below the target deagg iml.
        */
-      Map<Gmm, XySequence> clusterCurves = clusterCurveList.get(i);
-      for (Entry<Gmm, DeaggDataset.Builder> entry : datasetBuilders.entrySet()) {
-
-        /*
-         * Due to Gmm variations with distance, cluster curves for some GMMs may
-         * not have been calculated. Skip non-participating clusters (curve will
-         * be absent). Scale to total cluster rate. Builder rate > 0.0 check
-         * assures no 0/0 --> NaN and is necessary for curves that are present
-         * but that end below the target deagg iml.
-         */
-        Gmm gmm = entry.getKey();
-        DeaggDataset.Builder clusterBuilder = entry.getValue();
-        if (clusterCurves.containsKey(gmm)) {
-          XySequence clusterCurve = clusterCurves.get(gmm);
-          double clusterRate = Deaggregation.RATE_INTERPOLATER.findY(clusterCurve, iml);
-          if (clusterBuilder.rate() > 0.0) {
-            clusterBuilder.multiply(clusterRate / clusterBuilder.rate());
-          }
+      Gmm gmm = entry.getKey();
+      DeaggDataset.Builder clusterBuilder = entry.getValue();
+      if (clusterCurves.containsKey(gmm)) {
+        XySequence clusterCurve = clusterCurves.get(gmm);
+        double clusterRate = Deaggregation.RATE_INTERPOLATER.findY(clusterCurve, iml);
+        if (clusterBuilder.rate() > 0.0) {
+          clusterBuilder.multiply(clusterRate / clusterBuilder.rate());
         }
-
-        /* Swap parents. */
-        DeaggContributor.Builder sourceSetContributor = new SourceSetContributor.Builder()
-            .sourceSet(curves.sourceSet)
-            .addChild(clusterBuilder.parent);
-        clusterBuilder.setParentContributor(sourceSetContributor);
       }
 
-      /* Combine cluster datasets. */
-      Map<Gmm, DeaggDataset> clusterDatasets = buildDatasets(datasetBuilders);
-      datasets.putAll(Multimaps.forMap(clusterDatasets));
+      /* Swap parents. */
+      DeaggContributor.Builder sourceSetContributor = new SourceSetContributor.Builder()
+          .sourceSet(sources)
+          .addChild(clusterBuilder.parent);
+      clusterBuilder.setParentContributor(sourceSetContributor);
+    }
+
+    /* Combine cluster datasets. */
+    clusterDatasets.putAll(Multimaps.forMap(buildDatasets(datasetBuilders)));
+  }
+
+  /* Build the datasets for each Gmm once all sources have been added. */
+  Map<Gmm, DeaggDataset> build() {
+    if (clusterDatasets != null) {
+      return Maps.immutableEnumMap(Maps.transformValues(
+          Multimaps.asMap(clusterDatasets),
+          SOURCE_CONSOLIDATOR));
     }
+    return Maps.immutableEnumMap(buildDatasets(builders));
+  }
 
-    return ImmutableMap.copyOf(Maps.transformValues(
-        Multimaps.asMap(datasets),
-        SOURCE_CONSOLIDATOR));
+  private static Map<Gmm, DeaggDataset.Builder> createBuilders(Set<Gmm> gmms, DeaggDataset model) {
+    Map<Gmm, DeaggDataset.Builder> map = Maps.newEnumMap(Gmm.class);
+    for (Gmm gmm : gmms) {
+      map.put(gmm, DeaggDataset.builder(model));
+    }
+    return map;
   }
 
-  private void processSource(GroundMotions gms, Map<Gmm, DeaggDataset.Builder> builders) {
+  private void processSource(
+      ImlExceedances exceedances,
+      Map<Gmm, DeaggDataset.Builder> builders) {
 
     /* Local references from argument. */
-    InputList inputs = gms.inputs;
-    Map<Gmm, Double> gmms = gmmSet.gmmWeightMap(gms.inputs.minDistance);
-    Map<Gmm, List<ScalarGroundMotion>> gmLists = gms.gmMap.get(imt);
+    InputList inputs = exceedances.inputs;
+    Map<Gmm, Double> gmms = gmmSet.gmmWeightMap(inputs.minDistance);
+    Map<Gmm, double[]> probabilities = exceedances.probabilities.get(imt);
+    Map<Gmm, double[]> epsilons = exceedances.epsilons.get(imt);
 
     /* Local EnumSet based keys; gmms.keySet() is not an EnumSet. */
     final Set<Gmm> gmmKeys = EnumSet.copyOf(gmms.keySet());
@@ -210,9 +263,8 @@ final class Deaggregator {
     /* Add rupture data to builders */
     for (int i = 0; i < inputs.size(); i++) {
 
-      HazardInput in = inputs.get(i);
-      double rRup = in.rRup;
-      double Mw = in.Mw;
+      double rRup = inputs.rRup(i);
+      double Mw = inputs.Mw(i);
 
       int rIndex = model.distanceIndex(rRup);
       int mIndex = model.magnitudeIndex(Mw);
@@ -222,13 +274,9 @@ final class Deaggregator {
 
         double gmmWeight = gmms.get(gmm);
 
-        ScalarGroundMotion sgm = gmLists.get(gmm).get(i);
-        double μ = sgm.mean();
-        double σ = sgm.sigma();
-        double ε = Maths.epsilon(μ, σ, iml);
-
-        double probAtIml = probModel.exceedance(μ, σ, trunc, imt, iml);
-        double rate = probAtIml * in.rate * sources.weight() * gmmWeight;
+        double ε = epsilons.get(gmm)[i];
+        double probAtIml = probabilities.get(gmm)[i];
+        double rate = probAtIml * inputs.rate(i) * sources.weight() * gmmWeight;
 
         double rScaled = rRup * rate;
         double mScaled = Mw * rate;
@@ -298,27 +346,20 @@ final class Deaggregator {
     return rateMap;
   }
 
-  private Map<Gmm, DeaggDataset> processSystemSources() {
+  private void processSystemSources(ImlExceedances exceedances) {
 
     /* Safe covariant cast assuming switch handles variants. */
     SystemSourceSet systemSources = (SystemSourceSet) sources;
 
-    Map<Gmm, DeaggDataset.Builder> builders = createBuilders(gmmSet.gmms(), model);
-    for (DeaggDataset.Builder builder : builders.values()) {
-      SourceSetContributor.Builder parent = new SourceSetContributor.Builder();
-      builder.setParentContributor(parent.sourceSet(sources));
-    }
-
     /*
      * Subsequent to deaggregation we no longer need references to the source
-     * bitsets so we drain it in place rather than making a copy.
+     * indices so we drain them in place rather than making a copy.
      */
 
-    GroundMotions gms = curves.hazardGroundMotionsList.get(0);
-    SystemInputList inputs = (SystemInputList) gms.inputs;
-    List<BitSet> bitsets = inputs.bitsets;
-    Map<Gmm, Double> gmms = gmmSet.gmmWeightMap(gms.inputs.minDistance);
-    Map<Gmm, List<ScalarGroundMotion>> gmLists = gms.gmMap.get(imt);
+    SystemInputList inputs = (SystemInputList) exceedances.inputs;
+    Map<Gmm, Double> gmms = gmmSet.gmmWeightMap(inputs.minDistance);
+    Map<Gmm, double[]> probabilities = exceedances.probabilities.get(imt);
+    Map<Gmm, double[]> epsilons = exceedances.epsilons.get(imt);
 
     /* Local EnumSet based keys; gmms.keySet() is not an EnumSet. */
     final Set<Gmm> gmmKeys = EnumSet.copyOf(gmms.keySet());
@@ -334,7 +375,7 @@ final class Deaggregator {
         0.1).build();
     IntervalArray.Builder mfdIndexer = IntervalArray.Builder.fromModel(mfdModel);
 
-    List<Integer> sourceIndices = new LinkedList<>(Ints.asList(Indexing.indices(bitsets.size())));
+    List<Integer> sourceIndices = new LinkedList<>(Ints.asList(Indexing.indices(inputs.size())));
 
     for (int sectionIndex : inputs.sectionIndices) {
 
@@ -369,11 +410,10 @@ final class Deaggregator {
         int sourceIndex = iter.next();
 
         /* Source includes section. */
-        if (bitsets.get(sourceIndex).get(sectionIndex)) {
+        if (inputs.hasSection(sourceIndex, sectionIndex)) {
 
-          HazardInput in = inputs.get(sourceIndex);
-          double rRup = in.rRup;
-          double Mw = in.Mw;
+          double rRup = inputs.rRup(sourceIndex);
+          double Mw = inputs.Mw(sourceIndex);
 
           int rIndex = model.distanceIndex(rRup);
           int mIndex = model.magnitudeIndex(Mw);
@@ -390,13 +430,9 @@ final class Deaggregator {
 
             double gmmWeight = gmms.get(gmm);
 
-            ScalarGroundMotion sgm = gmLists.get(gmm).get(sourceIndex);
-            double μ = sgm.mean();
-            double σ = sgm.sigma();
-            double ε = Maths.epsilon(μ, σ, iml);
-
-            double probAtIml = probModel.exceedance(μ, σ, trunc, imt, iml);
-            double rate = probAtIml * in.rate * sources.weight() * gmmWeight;
+            double ε = epsilons.get(gmm)[sourceIndex];
+            double probAtIml = probabilities.get(gmm)[sourceIndex];
+            double rate = probAtIml * inputs.rate(sourceIndex) * sources.weight() * gmmWeight;
 
             SystemContributor.Builder contributor = contributors.get(gmm);
 
@@ -423,7 +459,6 @@ final class Deaggregator {
         }
       }
     }
-    return buildDatasets(builders);
   }
 
 }
@@ -71,7 +71,7 @@ public final class EqRateExport {
     this.exportSource = config.output.dataTypes.contains(DataType.SOURCE);
     this.rates = new ArrayList<>();
 
-    Site demoSite = sites.iterator().next();
+    Site demoSite = sites.first();
     this.namedSites = demoSite.name() != Site.NO_NAME;
 
     this.batchWatch = Stopwatch.createStarted();
@@ -8,7 +8,6 @@ import static java.lang.Double.isNaN;
 
 import java.util.List;
 
-import gov.usgs.earthquake.nshmp.data.XyPoint;
 import gov.usgs.earthquake.nshmp.data.XySequence;
 import gov.usgs.earthquake.nshmp.gmm.Imt;
 import gov.usgs.earthquake.nshmp.gmm.MultiScalarGroundMotion;
@@ -22,7 +21,7 @@ import gov.usgs.earthquake.nshmp.util.Maths;
  * arguments.
  *
  * <p>Each model implements methods that compute the probability of exceeding a
- * single value or a {@link XySequence} of values. Some arguments are only used
+ * single value or an array of values. Some arguments are only used
  * by some models; for example, {@link #NONE} ignores {@code σ}, but it must be
  * supplied for consistency. See individual models for details.
  *
@@ -52,11 +51,10 @@ public enum ExceedanceModel {
     }
 
     @Override
-    XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence) {
-      for (XyPoint p : sequence) {
-        p.set(Maths.stepFunction(μ, p.x()));
+    void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys) {
+      for (int i = 0; i < xs.length; i++) {
+        ys[i] = Maths.stepFunction(μ, xs[i]);
       }
-      return sequence;
     }
   },
 
@@ -72,8 +70,8 @@ public enum ExceedanceModel {
     }
 
     @Override
-    XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence) {
-      return boundedCcdFn(μ, σ, sequence, 0.0, 1.0);
+    void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys) {
+      boundedCcdFn(μ, σ, xs, ys, 0.0, 1.0);
     }
   },
 
@@ -89,8 +87,8 @@ public enum ExceedanceModel {
     }
 
     @Override
-    XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence) {
-      return boundedCcdFn(μ, σ, sequence, prob(μ, σ, n), 1.0);
+    void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys) {
+      boundedCcdFn(μ, σ, xs, ys, prob(μ, σ, n), 1.0);
     }
   },
 
@@ -107,9 +105,9 @@ public enum ExceedanceModel {
     }
 
     @Override
-    XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence) {
+    void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys) {
       double pHi = prob(μ, σ, n);
-      return boundedCcdFn(μ, σ, sequence, pHi, 1.0 - pHi);
+      boundedCcdFn(μ, σ, xs, ys, pHi, 1.0 - pHi);
     }
   },
 
@@ -125,8 +123,8 @@ public enum ExceedanceModel {
     }
 
     @Override
-    XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence) {
-      return Ccdfs.UPPER_3SIGMA.get(μ, σ, sequence);
+    void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys) {
+      Ccdfs.UPPER_3SIGMA.get(μ, σ, xs, ys);
     }
   },
 
@@ -142,8 +140,8 @@ public enum ExceedanceModel {
     }
 
     @Override
-    XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence) {
-      return boundedCcdFn(μ, 0.65, sequence, 0.0, 1.0);
+    void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys) {
+      boundedCcdFn(μ, 0.65, xs, ys, 0.0, 1.0);
     }
   },
 
@@ -165,11 +163,10 @@ public enum ExceedanceModel {
     }
 
     @Override
-    XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence) {
-      for (XyPoint p : sequence) {
-        p.set(exceedance(μ, σ, n, imt, p.x()));
+    void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys) {
+      for (int i = 0; i < xs.length; i++) {
+        ys[i] = exceedance(μ, σ, n, imt, xs[i]);
       }
-      return sequence;
     }
   },
 
@@ -188,31 +185,39 @@ public enum ExceedanceModel {
     }
 
     @Override
-    XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence) {
+    void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys) {
       double pHi = prob(μ, σ, n, Math.log(maxValue(imt)));
-      return boundedCcdFn(μ, σ, sequence, pHi, 1.0);
+      boundedCcdFn(μ, σ, xs, ys, pHi, 1.0);
     }
 
+    /*
+     * Weighted exceedances of each μ-σ pair are added to the existing values
+     * in ys.
+     */
     @Override
-    XySequence exceedance(ScalarGroundMotion sgm, double n, Imt imt, XySequence sequence) {
+    void exceedance(ScalarGroundMotion sgm, double n, Imt imt, double[] xs, double[] ys) {
       if (sgm instanceof MultiScalarGroundMotion) {
         MultiScalarGroundMotion msgm = (MultiScalarGroundMotion) sgm;
         double[] means = msgm.means();
         double[] meanWts = msgm.meanWeights();
         double[] sigmas = msgm.sigmas();
         double[] sigmaWts = msgm.sigmaWeights();
-        XySequence model = XySequence.copyOf(sequence);
+        double max = Math.log(maxValue(imt));
         for (int i = 0; i < sigmas.length; i++) {
           double σ = sigmas[i];
           double σWt = sigmaWts[i];
           for (int j = 0; j < means.length; j++) {
+            double μ = means[j];
             double wt = σWt * meanWts[j];
-            sequence.add(exceedance(means[j], σ, n, imt, model).multiply(wt));
+            double pHi = prob(μ, σ, n, max);
+            for (int k = 0; k < xs.length; k++) {
+              ys[k] += boundedCcdFn(μ, σ, xs[k], pHi, 1.0) * wt;
+            }
           }
         }
-        return sequence;
+        return;
       }
-      return super.exceedance(sgm, n, imt, sequence);
+      super.exceedance(sgm, n, imt, xs, ys);
     }
 
     private double maxValue(Imt imt) {
@@ -249,34 +254,39 @@ public enum ExceedanceModel {
   abstract double exceedance(double μ, double σ, double n, Imt imt, double value);
 
   /**
-   * Compute the probability of exceeding a sequence of x-values.
+   * Compute the probability of exceeding a sequence of x-values. Method
+   * operates directly on primitive arrays and creates no intermediate objects.
    *
    * @param μ mean
    * @param σ standard deviation
    * @param n truncation level in units of {@code σ} (truncation = n * σ)
    * @param imt intenisty measure type (only used by
    *        {@link #NSHM_CEUS_MAX_INTENSITY}
-   * @param sequence the x-values of which to compute exceedance for
-   * @return the supplied {@code sequence}
+   * @param xs the x-values of which to compute exceedance for
+   * @param ys the array to populate with exceedance values; must be the same
+   *        size as {@code xs}
    */
-  abstract XySequence exceedance(double μ, double σ, double n, Imt imt, XySequence sequence);
+  abstract void exceedance(double μ, double σ, double n, Imt imt, double[] xs, double[] ys);
 
   /**
    * Compute the probability of exceeding a sequence of x-values. Experimental
    * for NGA-East. Default implementation assumes singular
    * {@code ScalarGroundMotion} and passes through to
-   * {@link #exceedance(double, double, double, Imt, XySequence)}. Only
-   * {@link #NSHM_CEUS_MAX_INTENSITY} overrides.
+   * {@link #exceedance(double, double, double, Imt, double[], double[])}. Only
+   * {@link #NSHM_CEUS_MAX_INTENSITY} overrides, and in the case of a
+   * {@code MultiScalarGroundMotion}, adds the weighted exceedance values to
+   * those already in {@code ys}.
    *
    * @param sgm ScalarGroundMotion that wraps one or more μ and σ
    * @param n truncation level in units of {@code σ} (truncation = n * σ)
    * @param imt intenisty measure type (only used by
    *        {@link #NSHM_CEUS_MAX_INTENSITY}
-   * @param sequence the x-values of which to compute exceedance for
-   * @return the supplied {@code sequence}
+   * @param xs the x-values of which to compute exceedance for
+   * @param ys the array to populate with exceedance values; must be the same
+   *        size as {@code xs}
    */
-  XySequence exceedance(ScalarGroundMotion sgm, double n, Imt imt, XySequence sequence) {
-    return exceedance(sgm.mean(), sgm.sigma(), n, imt, sequence);
+  void exceedance(ScalarGroundMotion sgm, double n, Imt imt, double[] xs, double[] ys) {
+    exceedance(sgm.mean(), sgm.sigma(), n, imt, xs, ys);
   }
 
   /*
@@ -296,21 +306,21 @@ public enum ExceedanceModel {
 
   /*
    * Bounded complementary cumulative distribution. Compute the probabilities
-   * that the x-values in {@code values} will be exceeded, subject to upper and
-   * lower probability limits. Return the supplied {@code XySequence} populated
-   * with probabilities.
+   * that the x-values in {@code xs} will be exceeded, subject to upper and
+   * lower probability limits. Populates the supplied {@code ys} with
+   * probabilities.
    */
-  private static XySequence boundedCcdFn(
+  private static void boundedCcdFn(
       double μ,
       double σ,
-      XySequence sequence,
+      double[] xs,
+      double[] ys,
       double pHi,
       double pLo) {
 
-    for (XyPoint p : sequence) {
-      p.set(boundedCcdFn(μ, σ, p.x(), pHi, pLo));
+    for (int i = 0; i < xs.length; i++) {
+      ys[i] = boundedCcdFn(μ, σ, xs[i], pHi, pLo);
     }
-    return sequence;
   }
 
   /*
@@ -352,38 +362,46 @@ public enum ExceedanceModel {
     return combined.complement();
   }
 
-  /* Wrapper class avoids unnecessary initialization of array(s). */
+  /* Wrapper class avoids unnecessary initialization of table(s). */
   private static final class Ccdfs {
-    static final CcdfArray UPPER_3SIGMA = new CcdfArray(Double.NaN, 3.0);
+    static final CcdfTable UPPER_3SIGMA = new CcdfTable(Double.NaN, 3.0);
   }
 
-  /* Ensures a clean Δ. */
-  private static final int PRECISION = 8;
-  private static final int CCND_ARRAY_SIZE = 10000001;
-  private static final double EMAX = 4.0;
+  /* Target table spacing in units of σ and discretization limits. */
+  private static final double CCDF_TABLE_Δε = 0.001;
+  private static final double EMAX = 8.0;
 
   /*
-   * Complementary cumulative standard normal distribution. Array may be
+   * Complementary cumulative standard normal distribution. Table may be
    * initialized with truncated values (lower and/or upper) supplied in units of
    * σ. Any truncations must fall with in the discretization limits of the
-   * table, which are currently set at EMAX = ±4.0. For no lower or upper
+   * table, which are currently set at EMAX = ±8.0. For no lower or upper
    * truncation, supply a value of Double.NaN for εMin or εMax.
-   * 
-   * Probabilities below -EMAX are set to 1, and probabilities above EMAX are
-   * set to 0.
-   * 
+   *
+   * Probabilities below the lower limit are set to 1, and probabilities above
+   * the upper limit are set to 0.
+   *
+   * Values are linearly interpolated between nodes spaced at no more than
+   * CCDF_TABLE_Δε. Interpolation error is bounded by Δε²/8 · max|f''|, where
+   * max|f''| = φ(1) / (pLo - pHi) ≈ 0.242 / (pLo - pHi), or ~3.0e-8 for the
+   * 3σ upper truncation. Measured against Maths.normalCcdf, the maximum
+   * absolute error of the 3σ table is 3.03e-8. This is less than the error of
+   * the erf approximation itself (~7.5e-8) and of the nearest-neighbor lookup
+   * into the 10⁷ element array this table replaced (~1.4e-7, and 3.2e-5 at its
+   * -4σ cutoff). A 3σ upper truncation table holds 11001 values (~86 KB).
+   *
    * The use of 'Lo' or 'Hi' in variable names refers to the lower
    * (probabilities closer to 1) and upper (probabilities closer to 0) ends of
    * the ccdn, respectively.
    */
-  private static final class CcdfArray {
+  private static final class CcdfTable {
 
     private final double[] p;
-    private final double Δε;
     private final double εMin;
     private final double εMax;
+    private final double Δε;
 
-    CcdfArray(double εMin, double εMax) {
+    CcdfTable(double εMin, double εMax) {
 
       checkArgument(isNaN(εMin) || εMin >= -EMAX, "εMin [%s] < [%s]", εMin, -EMAX);
       checkArgument(isNaN(εMax) || εMax <= EMAX, "εMax [%s] > [%s]", εMax, EMAX);
@@ -393,39 +411,36 @@ public enum ExceedanceModel {
 
       checkArgument(this.εMin < this.εMax, "εMin [%s] ≥ εMax [%s]", this.εMin, this.εMax);
 
-      p = new double[CCND_ARRAY_SIZE];
-
       double pLo = isNaN(εMin) ? 1.0 : Maths.normalCcdf(0.0, 1.0, this.εMin);
       double pHi = isNaN(εMax) ? 0.0 : Maths.normalCcdf(0.0, 1.0, this.εMax);
 
-      double Δ = Maths.round(1.0 / (CCND_ARRAY_SIZE - 1), PRECISION);
-      Δε = Δ * (this.εMax - this.εMin);
+      int size = (int) Math.ceil((this.εMax - this.εMin) / CCDF_TABLE_Δε) + 1;
+      Δε = (this.εMax - this.εMin) / (size - 1);
+      p = new double[size];
 
-      p[0] = 1.0;
-      for (int i = 1; i < p.length - 1; i++) {
+      for (int i = 0; i < size; i++) {
         double pi = Maths.normalCcdf(0.0, 1.0, this.εMin + Δε * i);
-        p[i] = (pi - pHi) / (pLo - pHi);
+        p[i] = probBoundsCheck((pi - pHi) / (pLo - pHi));
       }
-      p[CCND_ARRAY_SIZE - 1] = 0.0;
     }
 
     double get(double μ, double σ, double x) {
       double ε = Maths.epsilon(μ, σ, x);
-      if (ε < this.εMin) {
+      if (ε < εMin) {
         return 1.0;
       }
-      if (ε <= this.εMax) {
-        int i = (int) Math.round((ε - this.εMin) / Δε);
-        return p[i];
+      if (ε < εMax) {
+        double t = (ε - εMin) / Δε;
+        int i = Math.min((int) t, p.length - 2);
+        return p[i] + (t - i) * (p[i + 1] - p[i]);
       }
       return 0.0;
     }
 
-    XySequence get(double μ, double σ, XySequence sequence) {
-      for (XyPoint p : sequence) {
-        p.set(get(μ, σ, p.x()));
+    void get(double μ, double σ, double[] xs, double[] ys) {
+      for (int i = 0; i < xs.length; i++) {
+        ys[i] = get(μ, σ, xs[i]);
       }
-      return sequence;
     }
   }
 
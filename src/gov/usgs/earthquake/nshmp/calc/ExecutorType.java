@@ -0,0 +1,50 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The type of {@link ExecutorService} to use when distributing calculations.
+ * Regardless of type, calculation tasks derived from large source sets are
+ * grouped into chunks that scale with the number of threads available so as
+ * to limit per-task overhead.
+ *
+ * @author Peter Powers
+ * @see ThreadCount
+ */
+public enum ExecutorType {
+
+  /**
+   * A fixed thread pool backed by a single shared task queue. This is the
+   * default and is a good choice when individual tasks are large relative to
+   * the overhead of queueing them.
+   */
+  FIXED {
+    @Override
+    public ExecutorService create(int threads) {
+      return Executors.newFixedThreadPool(threads);
+    }
+  },
+
+  /**
+   * A work-stealing {@link ForkJoinPool} in which each thread maintains its own
+   * task queue and idle threads steal work from busy ones. This reduces
+   * contention on a shared queue and is usually preferable for models with
+   * many small tasks, such as large grid source sets.
+   */
+  WORK_STEALING {
+    @Override
+    public ExecutorService create(int threads) {
+      return Executors.newWorkStealingPool(threads);
+    }
+  };
+
+  /**
+   * Create a new {@code ExecutorService} of this type.
+   *
+   * @param threads the target level of parallelism
+   */
+  public abstract ExecutorService create(int threads);
+
+}
@@ -0,0 +1,160 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Arrays;
+
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.SourceSetMetrics;
+import gov.usgs.earthquake.nshmp.gmm.Gmm;
+import gov.usgs.earthquake.nshmp.gmm.GmmInput;
+import gov.usgs.earthquake.nshmp.gmm.GroundMotionModel;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+import gov.usgs.earthquake.nshmp.gmm.ScalarGroundMotion;
+
+/**
+ * Bounded cache of scalar ground motions shared by all calculations that use
+ * the same {@link CalcConfig} (see {@link CalcConfig#gmmCache()}), for example
+ * all sites of a map calculation. The cache is released along with its
+ * configuration. Ground motion model instances are shared singletons (see
+ * {@link Gmm#instance(Imt)}) and are deterministic, so a result may be reused
+ * for any {@code GmmInput} with the same {@code Gmm}, {@code Imt}, and field
+ * values. The underlying cache is segmented for concurrent access and evicts
+ * the least recently used entries once its maximum size is reached.
+ *
+ * <p>Magnitudes, depths, and other rupture and site properties are discrete
+ * in practice and are keyed by exact value. Distances vary continuously from
+ * site to site and may be snapped to a coarser spacing, in which case ground
+ * motions are computed at the snapped distances and shared by all inputs that
+ * snap to them, trading accuracy for reuse. With a snap of zero, cached
+ * results are identical to uncached results.
+ *
+ * @author Peter Powers
+ */
+final class GmmCache {
+
+  final int size;
+  final double snap;
+  private final Cache<Key, ScalarGroundMotion> cache;
+
+  private GmmCache(int size, double snap) {
+    this.size = size;
+    this.snap = snap;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(size)
+        .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+        .build();
+  }
+
+  static GmmCache create(int size, double snap) {
+    checkArgument(size > 0, "Cache size [%s] must be > 0", size);
+    checkArgument(snap >= 0.0, "Cache snap [%s] must be >= 0", snap);
+    return new GmmCache(size, snap);
+  }
+
+  /*
+   * Return the cached ground motion for an input, computing and caching it if
+   * absent. Only misses are counted as ground motion model evaluations in the
+   * supplied metrics. Concurrent misses on the same key may compute the same value more
+   * than once; this is harmless as models are deterministic and avoids
+   * blocking other threads on a model calculation.
+   */
+  ScalarGroundMotion get(
+      GroundMotionModel model,
+      GmmInput in,
+      Imt imt,
+      Gmm gmm,
+      SourceSetMetrics metrics) {
+
+    Key key = new Key(gmm, imt, in, snap);
+    ScalarGroundMotion sgm = cache.getIfPresent(key);
+    if (sgm != null) {
+      metrics.addGmmCacheHits(1);
+      return sgm;
+    }
+    metrics.addGmmCacheMisses(1);
+    metrics.addGmmCalcs(gmm, 1);
+    sgm = model.calc((snap == 0.0) ? in : key.input());
+    cache.put(key, sgm);
+    return sgm;
+  }
+
+  private static double snap(double value, double snap) {
+    return (snap == 0.0) ? value : Math.rint(value / snap) * snap;
+  }
+
+  /*
+   * Cache key. Values are compared by their bit patterns (as in
+   * Arrays.equals(double[], double[])) so that NaN site terms (e.g. z1p0)
+   * match and -0.0 and 0.0 are distinct.
+   */
+  private static final class Key {
+
+    final Gmm gmm;
+    final Imt imt;
+    final double[] values;
+    final boolean vsInf;
+    final int hash;
+
+    Key(Gmm gmm, Imt imt, GmmInput in, double snap) {
+      this.gmm = gmm;
+      this.imt = imt;
+      this.values = new double[] {
+          in.Mw,
+          snap(in.rJB, snap),
+          snap(in.rRup, snap),
+          snap(in.rX, snap),
+          in.dip,
+          in.width,
+          in.zTop,
+          in.zHyp,
+          in.rake,
+          in.vs30,
+          in.z1p0,
+          in.z2p5 };
+      this.vsInf = in.vsInf;
+      this.hash = ((31 * gmm.hashCode() + imt.hashCode()) * 31 +
+          Arrays.hashCode(values)) * 31 + (vsInf ? 1 : 0);
+    }
+
+    /* The input at snapped distances. */
+    GmmInput input() {
+      return GmmInput.builder()
+          .mag(values[0])
+          .distances(values[1], values[2], values[3])
+          .dip(values[4])
+          .width(values[5])
+          .zTop(values[6])
+          .zHyp(values[7])
+          .rake(values[8])
+          .vs30(values[9], vsInf)
+          .z1p0(values[10])
+          .z2p5(values[11])
+          .build();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) obj;
+      return this.hash == that.hash &&
+          this.gmm == that.gmm &&
+          this.imt == that.imt &&
+          this.vsInf == that.vsInf &&
+          Arrays.equals(this.values, that.values);
+    }
+  }
+
+}
@@ -5,6 +5,7 @@ import com.google.common.annotations.Beta;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.SourceSetMetrics;
 import gov.usgs.earthquake.nshmp.gmm.Gmm;
 import gov.usgs.earthquake.nshmp.gmm.GmmInput;
 import gov.usgs.earthquake.nshmp.gmm.GmmPostProcessor;
@@ -18,23 +19,57 @@ import gov.usgs.earthquake.nshmp.gmm.ScalarGroundMotion;
  * any post processors are specified in the calculation configuration, they are
  * applied in the order listed to the computed scalar ground motions.
  *
+ * <p>If a ground motion cache is enabled in the calculation configuration,
+ * scalar ground motions are retrieved from, or computed and added to, the
+ * {@link GmmCache} of the configuration, which is shared by all processors of
+ * a calculation; post processors, if any, are applied to cached ground
+ * motions.
+ *
  * @author Peter Powers
  */
 @Beta
 abstract class GmmProcessor {
 
+  private final GmmCache cache; // null if disabled
+  private final SourceSetMetrics metrics;
+
+  GmmProcessor(CalcConfig config, SourceSetMetrics metrics) {
+    this.cache = config.gmmCache();
+    this.metrics = metrics;
+  }
+
   abstract ScalarGroundMotion apply(GroundMotionModel model, GmmInput in, Imt imt, Gmm gmm);
 
-  static GmmProcessor instance(CalcConfig config) {
+  /*
+   * Whether ground motions may be computed for an entire InputList at once
+   * using a BatchGroundMotionModel. Post processors operate on individual
+   * inputs and results, and cached ground motions are looked up by individual
+   * input, so only the default, uncached instance supports batching.
+   */
+  abstract boolean batchable();
+
+  static GmmProcessor instance(CalcConfig config, SourceSetMetrics metrics) {
     boolean defaultOnly = config.hazard.gmmPostProcessors.isEmpty();
-    return defaultOnly ? new DefaultInstance() : new Instance(config);
+    return defaultOnly
+        ? new DefaultInstance(config, metrics)
+        : new Instance(config, metrics);
+  }
+
+  /* Compute, or retrieve from the cache, a scalar ground motion. */
+  ScalarGroundMotion calc(GroundMotionModel model, GmmInput in, Imt imt, Gmm gmm) {
+    return (cache == null) ? model.calc(in) : cache.get(model, in, imt, gmm, metrics);
+  }
+
+  boolean cached() {
+    return cache != null;
   }
 
   private static final class Instance extends GmmProcessor {
 
     final List<GmmPostProcessor> postProcessors;
 
-    Instance(CalcConfig config) {
+    Instance(CalcConfig config, SourceSetMetrics metrics) {
+      super(config, metrics);
       this.postProcessors = config.hazard.gmmPostProcessors.stream()
           .map(model -> model.instance(config))
           .collect(Collectors.toList());
@@ -42,19 +77,33 @@ abstract class GmmProcessor {
 
     @Override
     public ScalarGroundMotion apply(GroundMotionModel model, GmmInput in, Imt imt, Gmm gmm) {
-      ScalarGroundMotion sgm = model.calc(in);
+      ScalarGroundMotion sgm = calc(model, in, imt, gmm);
       for (GmmPostProcessor processor : postProcessors) {
         sgm = processor.apply(sgm, in, imt, gmm);
       }
       return sgm;
     }
 
+    @Override
+    boolean batchable() {
+      return false;
+    }
   }
 
   private static final class DefaultInstance extends GmmProcessor {
+
+    DefaultInstance(CalcConfig config, SourceSetMetrics metrics) {
+      super(config, metrics);
+    }
+
     @Override
     public ScalarGroundMotion apply(GroundMotionModel model, GmmInput in, Imt imt, Gmm gmm) {
-      return model.calc(in);
+      return calc(model, in, imt, gmm);
+    }
+
+    @Override
+    boolean batchable() {
+      return !cached();
     }
   }
 
@@ -0,0 +1,355 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static gov.usgs.earthquake.nshmp.gmm.Gmm.instances;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Doubles;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.SourceSetMetrics;
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.Stage;
+import gov.usgs.earthquake.nshmp.calc.Transforms.InputsToGroundMotions;
+import gov.usgs.earthquake.nshmp.calc.Transforms.SourceToInputs;
+import gov.usgs.earthquake.nshmp.data.Data;
+import gov.usgs.earthquake.nshmp.data.XySequence;
+import gov.usgs.earthquake.nshmp.eq.model.GmmSet;
+import gov.usgs.earthquake.nshmp.eq.model.GridSourceSet;
+import gov.usgs.earthquake.nshmp.eq.model.Source;
+import gov.usgs.earthquake.nshmp.eq.model.SourceSet;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.Locations;
+import gov.usgs.earthquake.nshmp.gmm.Gmm;
+import gov.usgs.earthquake.nshmp.gmm.GroundMotionModel;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+import gov.usgs.earthquake.nshmp.gmm.ScalarGroundMotion;
+
+/**
+ * Precomputed hazard curves for the magnitude-distance bins of an optimized
+ * {@code GridSourceSet}. Each curve is the hazard, for a single
+ * {@code GroundMotionModel} and {@code Imt}, arising from a unit-rate
+ * magnitude bin of a point source at a bin distance from a site. The sources
+ * of an optimized table are all located due north of a site so the curves for
+ * a bin do not depend on site location and grid source hazard at a site may be
+ * computed as the rate-weighted sum of table curves.
+ *
+ * <p>Tables are built on demand and cached for the lifetime of both a
+ * {@code GridSourceSet} and the {@code CalcConfig} of a calculation; only a
+ * few configs are retained per source set. Because ground motions depend on
+ * site terms, tables only apply when sites share {@code vs30}, {@code vsInf},
+ * {@code z1p0}, and {@code z2p5}, as is typical of map calculations. A table
+ * is built for the site terms of the first site processed with a config, and
+ * hazard at sites with different terms is computed without tables.
+ *
+ * @author Peter Powers
+ * @see CalcConfig.Performance#gridCurveTables
+ */
+final class GridCurveTable {
+
+  /* Maximum number of configs for which tables are retained per source set. */
+  private static final int MAX_CONFIGS = 4;
+
+  /*
+   * Configs are weak keys, and therefore compared by identity, as they are
+   * immutable and shared across all sites in a calculation; tables are
+   * released once a calculation completes.
+   */
+  private static final LoadingCache<GridSourceSet, ConcurrentMap<CalcConfig, GridCurveTable>>
+      CACHE = CacheBuilder.newBuilder()
+          .weakKeys()
+          .build(new CacheLoader<GridSourceSet, ConcurrentMap<CalcConfig, GridCurveTable>>() {
+            @Override
+            public ConcurrentMap<CalcConfig, GridCurveTable> load(GridSourceSet sourceSet) {
+              return CacheBuilder.newBuilder()
+                  .weakKeys()
+                  .maximumSize(MAX_CONFIGS)
+                  .<CalcConfig, GridCurveTable> build()
+                  .asMap();
+            }
+          });
+
+  private final SiteTerms siteTerms;
+  private final GmmSet gmmSet;
+  private final int magCount;
+
+  /* Distance of each table row (ascending) and its closest rupture distance. */
+  private final double[] distances;
+  private final double[] minDistances;
+
+  /* Unit-rate curves, indexed [row][magnitude][iml] within flat arrays. */
+  private final Map<Imt, Map<Gmm, double[]>> curves;
+
+  private GridCurveTable(
+      GridSourceSet sourceSet,
+      CalcConfig config,
+      Site site,
+      SourceSetMetrics metrics) {
+
+    this.siteTerms = new SiteTerms(site);
+    this.gmmSet = sourceSet.groundMotionModels();
+    SourceSet<? extends Source> unitTable = GridSourceSet.unitOptimizer(site.location)
+        .apply(sourceSet);
+    List<Source> sources = ImmutableList.copyOf(
+        unitTable.iterableForLocation(site.location));
+    int rowCount = sources.size();
+
+    Map<Imt, XySequence> modelCurves = config.hazard.logModelCurves();
+    Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable = instances(
+        config.hazard.imts,
+        gmmSet.gmms());
+    SourceToInputs sourceToInputs = new SourceToInputs(site, metrics);
+    InputsToGroundMotions inputsToGms = new InputsToGroundMotions(config, gmmTable, metrics);
+    UnitCurves unitCurves = new UnitCurves(gmmSet, config);
+
+    double[] mags = Doubles.toArray(sources.get(0).mfds().get(0).xValues());
+    this.magCount = mags.length;
+    this.distances = new double[rowCount];
+    this.minDistances = new double[rowCount];
+    this.curves = Maps.newEnumMap(Imt.class);
+    for (Imt imt : gmmTable.keySet()) {
+      int imlCount = modelCurves.get(imt).size();
+      Map<Gmm, double[]> gmmCurves = Maps.newEnumMap(Gmm.class);
+      for (Gmm gmm : gmmSet.gmms()) {
+        gmmCurves.put(gmm, new double[rowCount * magCount * imlCount]);
+      }
+      curves.put(imt, gmmCurves);
+    }
+
+    for (int row = 0; row < rowCount; row++) {
+      Source source = sources.get(row);
+      distances[row] = distance(site.location, source);
+
+      long start = System.nanoTime();
+      InputList inputs = sourceToInputs.apply(source);
+      metrics.addTime(Stage.SOURCE_TO_INPUTS, start);
+      minDistances[row] = inputs.minDistance;
+
+      start = System.nanoTime();
+      GroundMotions gms = inputsToGms.apply(inputs);
+      metrics.addTime(Stage.INPUTS_TO_GROUND_MOTIONS, start);
+
+      start = System.nanoTime();
+      int[] magIndices = new int[inputs.size()];
+      for (int i = 0; i < inputs.size(); i++) {
+        magIndices[i] = Arrays.binarySearch(mags, inputs.Mw(i));
+      }
+      for (Entry<Imt, Map<Gmm, List<ScalarGroundMotion>>> imtEntry : gms.gmMap.entrySet()) {
+        Imt imt = imtEntry.getKey();
+        for (Entry<Gmm, List<ScalarGroundMotion>> gmmEntry : imtEntry.getValue().entrySet()) {
+          double[] table = curves.get(imt).get(gmmEntry.getKey());
+          unitCurves.add(imt, inputs, gmmEntry.getValue(), magIndices, table, row * magCount);
+        }
+      }
+      metrics.addTime(Stage.GROUND_MOTIONS_TO_CURVES, start);
+    }
+  }
+
+  /*
+   * Return whether hazard from optimized grids should be computed using curve
+   * tables. Tables yield no ground motions from which GMM curves or
+   * deaggregation bins could be derived.
+   */
+  static boolean enabled(CalcConfig config) {
+    return config.performance.optimizeGrids &&
+        config.performance.gridCurveTables &&
+        !config.output.dataTypes.contains(DataType.GMM) &&
+        Double.isNaN(config.deagg.iml);
+  }
+
+  /*
+   * Return the curve table for a GridSourceSet and config, creating it for the
+   * terms of the supplied site if necessary. Returns an empty Optional if the
+   * table was created for a site with different site terms.
+   */
+  static Optional<GridCurveTable> get(
+      GridSourceSet sourceSet,
+      CalcConfig config,
+      Site site,
+      SourceSetMetrics metrics) {
+
+    GridCurveTable table = CACHE.getUnchecked(sourceSet).computeIfAbsent(
+        config,
+        key -> new GridCurveTable(sourceSet, config, site, metrics));
+    return table.siteTerms.equals(new SiteTerms(site))
+        ? Optional.of(table)
+        : Optional.empty();
+  }
+
+  /*
+   * Compute hazard curves for the sources of a site-specific optimized table
+   * using the rate of each magnitude-distance bin to scale table curves.
+   */
+  HazardCurveSet toCurves(
+      SourceSet<? extends Source> table,
+      CalcConfig config,
+      Site site,
+      SourceSetMetrics metrics) {
+
+    Map<Imt, XySequence> modelCurves = config.hazard.logModelCurves();
+    HazardCurveSet.Builder curveSetBuilder = null;
+    int sourceCount = 0;
+
+    for (Source source : table.iterableForLocation(site.location)) {
+      if (curveSetBuilder == null) {
+        curveSetBuilder = HazardCurveSet.builder(table, config, site);
+      }
+      int row = rowIndex(distance(site.location, source));
+      double[] rates = Doubles.toArray(source.mfds().get(0).yValues());
+      Map<Gmm, Double> gmmWeightMap = gmmSet.gmmWeightMap(minDistances[row]);
+
+      Map<Imt, Map<Gmm, XySequence>> curveMap = Maps.newEnumMap(Imt.class);
+      for (Entry<Imt, Map<Gmm, double[]>> imtEntry : curves.entrySet()) {
+        Imt imt = imtEntry.getKey();
+        int imlCount = modelCurves.get(imt).size();
+        double[] rowYs = new double[imlCount];
+        Map<Gmm, XySequence> gmmCurves = Maps.newEnumMap(Gmm.class);
+        for (Gmm gmm : gmmWeightMap.keySet()) {
+          double[] unitYs = imtEntry.getValue().get(gmm);
+          Arrays.fill(rowYs, 0.0);
+          for (int j = 0; j < magCount; j++) {
+            double rate = rates[j];
+            if (rate == 0.0) {
+              continue;
+            }
+            int offset = (row * magCount + j) * imlCount;
+            for (int k = 0; k < imlCount; k++) {
+              rowYs[k] += rate * unitYs[k + offset];
+            }
+          }
+          gmmCurves.put(gmm, XySequence.copyOf(modelCurves.get(imt)).clear().add(rowYs));
+        }
+        curveMap.put(imt, gmmCurves);
+      }
+      curveSetBuilder.addCurves(curveMap, minDistances[row]);
+      sourceCount++;
+    }
+    metrics.addSources(sourceCount);
+
+    return (curveSetBuilder == null)
+        ? HazardCurveSet.empty(table)
+        : curveSetBuilder.build();
+  }
+
+  private static double distance(Location site, Source source) {
+    return Locations.horzDistanceFast(site, source.location(site));
+  }
+
+  /* Index of the table row closest to the supplied distance. */
+  private int rowIndex(double distance) {
+    int index = Arrays.binarySearch(distances, distance);
+    if (index >= 0) {
+      return index;
+    }
+    int upper = -index - 1;
+    if (upper == 0) {
+      return 0;
+    }
+    if (upper == distances.length) {
+      return upper - 1;
+    }
+    return (distance - distances[upper - 1] < distances[upper] - distance) ? upper - 1 : upper;
+  }
+
+  /*
+   * Accumulates the rate-scaled exceedance curves of individual ruptures into
+   * magnitude bins. Rupture rates of a unit-rate source reflect depth and focal
+   * mechanism weights only.
+   */
+  private static final class UnitCurves {
+
+    private final GmmSet gmmSet;
+    private final boolean uncertainty;
+    private final Map<Imt, double[]> modelXs;
+    private final ExceedanceModel exceedanceModel;
+    private final double truncationLevel;
+
+    UnitCurves(GmmSet gmmSet, CalcConfig config) {
+      this.gmmSet = gmmSet;
+      this.uncertainty = config.hazard.gmmUncertainty && gmmSet.epiUncertainty();
+      this.modelXs = Maps.newEnumMap(Imt.class);
+      for (Entry<Imt, XySequence> entry : config.hazard.logModelCurves().entrySet()) {
+        modelXs.put(entry.getKey(), Doubles.toArray(entry.getValue().xValues()));
+      }
+      this.exceedanceModel = config.hazard.exceedanceModel;
+      this.truncationLevel = config.hazard.truncationLevel;
+    }
+
+    void add(
+        Imt imt,
+        InputList inputs,
+        List<ScalarGroundMotion> gms,
+        int[] magIndices,
+        double[] table,
+        int rowOffset) {
+
+      double[] xs = modelXs.get(imt);
+      double[] utilYs = new double[xs.length];
+      double[] epiYs = new double[xs.length];
+      for (int i = 0; i < gms.size(); i++) {
+        ScalarGroundMotion sgm = gms.get(i);
+        if (uncertainty) {
+          double epi = gmmSet.epiValue(inputs.Mw(i), inputs.rJB(i));
+          double[] weights = gmmSet.epiWeights();
+          double[] means = { sgm.mean() - epi, sgm.mean(), sgm.mean() + epi };
+          Arrays.fill(utilYs, 0.0);
+          for (int j = 0; j < means.length; j++) {
+            exceedanceModel.exceedance(means[j], sgm.sigma(), truncationLevel, imt, xs, epiYs);
+            Data.multiply(weights[j], epiYs);
+            Data.add(utilYs, epiYs);
+          }
+        } else {
+          exceedanceModel.exceedance(sgm, truncationLevel, imt, xs, utilYs);
+        }
+        double rate = inputs.rate(i);
+        int offset = (rowOffset + magIndices[i]) * xs.length;
+        for (int k = 0; k < xs.length; k++) {
+          table[offset + k] += rate * utilYs[k];
+        }
+      }
+    }
+  }
+
+  /* The site terms a table was built for. */
+  private static final class SiteTerms {
+
+    private final double vs30;
+    private final boolean vsInferred;
+    private final double z1p0;
+    private final double z2p5;
+
+    SiteTerms(Site site) {
+      this.vs30 = site.vs30;
+      this.vsInferred = site.vsInferred;
+      this.z1p0 = site.z1p0;
+      this.z2p5 = site.z2p5;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof SiteTerms)) {
+        return false;
+      }
+      SiteTerms that = (SiteTerms) obj;
+      return Double.compare(this.vs30, that.vs30) == 0 &&
+          this.vsInferred == that.vsInferred &&
+          Double.compare(this.z1p0, that.z1p0) == 0 &&
+          Double.compare(this.z2p5, that.z2p5) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(vs30, vsInferred, z1p0, z2p5);
+    }
+  }
+
+}
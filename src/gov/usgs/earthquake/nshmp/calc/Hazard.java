@@ -38,19 +38,22 @@ public final class Hazard {
   final HazardModel model;
   final Site site;
   final CalcConfig config;
+  final CalcMetrics metrics;
 
   private Hazard(
       SetMultimap<SourceType, HazardCurveSet> sourceSetCurves,
       Map<Imt, XySequence> totalCurves,
       HazardModel model,
       Site site,
-      CalcConfig config) {
+      CalcConfig config,
+      CalcMetrics metrics) {
 
     this.sourceSetCurves = sourceSetCurves;
     this.totalCurves = totalCurves;
     this.model = model;
     this.site = site;
     this.config = config;
+    this.metrics = metrics;
   }
 
   @Override
@@ -69,19 +72,16 @@ public final class Hazard {
         sb.append("  ").append(ss);
         sb.append("Used: ");
         switch (type) {
-          case CLUSTER:
-            sb.append(curveSet.clusterGroundMotionsList.size());
-            break;
           case SYSTEM:
-            sb.append(curveSet.hazardGroundMotionsList.get(0).inputs.size());
+            sb.append(curveSet.inputCount);
             break;
           case GRID:
             sb.append(GridSourceSet.sizeString(
                 curveSet.sourceSet,
-                curveSet.hazardGroundMotionsList.size()));
+                curveSet.sourceCount));
             break;
           default:
-            sb.append(curveSet.hazardGroundMotionsList.size());
+            sb.append(curveSet.sourceCount);
         }
         sb.append(LF);
       }
@@ -103,6 +103,13 @@ public final class Hazard {
     return config;
   }
 
+  /**
+   * The counters and timings recorded while generating this result.
+   */
+  public CalcMetrics metrics() {
+    return metrics;
+  }
+
   /**
    * Combine hazard from multiple independent models. The hazard object returned
    * by this method will only specify a parent 'model' if varargs only included
@@ -129,8 +136,10 @@ public final class Hazard {
     for (Entry<Imt, XySequence> entry : hazards[0].config.hazard.logModelCurves().entrySet()) {
       totalCurves.put(entry.getKey(), emptyCopyOf(entry.getValue()));
     }
+    CalcMetrics metrics = CalcMetrics.create();
     for (Hazard hazard : hazards) {
       curveMapBuilder.putAll(hazard.sourceSetCurves);
+      metrics.add(hazard.metrics);
       for (Entry<Imt, XySequence> entry : hazard.totalCurves.entrySet()) {
         totalCurves.get(entry.getKey()).add(entry.getValue());
       }
@@ -140,7 +149,8 @@ public final class Hazard {
         totalCurves,
         null,
         hazards[0].site,
-        hazards[0].config);
+        hazards[0].config,
+        metrics);
   }
 
   static Builder builder(CalcConfig config) {
@@ -155,6 +165,7 @@ public final class Hazard {
     private HazardModel model;
     private Site site;
     private CalcConfig config;
+    private CalcMetrics metrics;
 
     private ImmutableSetMultimap.Builder<SourceType, HazardCurveSet> curveMapBuilder;
     private Map<Imt, XySequence> totalCurves;
@@ -180,6 +191,12 @@ public final class Hazard {
       return this;
     }
 
+    Builder metrics(CalcMetrics metrics) {
+      checkState(this.metrics == null, "%s metrics already set", ID);
+      this.metrics = checkNotNull(metrics);
+      return this;
+    }
+
     Builder addCurveSet(HazardCurveSet curveSet) {
       curveMapBuilder.put(curveSet.sourceSet.type(), curveSet);
       for (Entry<Imt, XySequence> entry : curveSet.totalCurves.entrySet()) {
@@ -192,6 +209,7 @@ public final class Hazard {
       checkState(!built, "This %s instance has already been used", mssgID);
       checkState(site != null, "%s site not set", mssgID);
       checkState(model != null, "%s model not set", mssgID);
+      checkState(metrics != null, "%s metrics not set", mssgID);
     }
 
     Hazard build() {
@@ -201,7 +219,8 @@ public final class Hazard {
           Maps.immutableEnumMap(totalCurves),
           model,
           site,
-          config);
+          config,
+          metrics);
     }
   }
 
@@ -5,6 +5,7 @@ import static com.google.common.util.concurrent.Futures.allAsList;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.Futures.transform;
 import static gov.usgs.earthquake.nshmp.calc.CalcFactory.clustersToCurves;
+import static gov.usgs.earthquake.nshmp.calc.CalcFactory.gridTableToCurves;
 import static gov.usgs.earthquake.nshmp.calc.CalcFactory.sourcesToCurves;
 import static gov.usgs.earthquake.nshmp.calc.CalcFactory.systemToCurves;
 import static gov.usgs.earthquake.nshmp.calc.CalcFactory.toHazardResult;
@@ -23,6 +24,7 @@ import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.SourceSetMetrics;
 import gov.usgs.earthquake.nshmp.calc.Transforms.SourceToInputs;
 import gov.usgs.earthquake.nshmp.eq.model.ClusterSourceSet;
 import gov.usgs.earthquake.nshmp.eq.model.GridSourceSet;
@@ -54,7 +56,8 @@ public class HazardCalcs {
    * debugging.
    * -------------------------------------------------------------------------
    * Single threaded calcs monitor and log calculation duration of each
-   * SourceSet.
+   * SourceSet. Both single threaded and asynchronous calcs record CalcMetrics
+   * for each SourceSet that are returned with the Hazard result.
    * -------------------------------------------------------------------------
    * Although NPEs will be thrown once any method argument in this class is
    * used, because multiple arguments may be passed on the same line thereby
@@ -101,10 +104,30 @@ public class HazardCalcs {
       double returnPeriod,
       Optional<Imt> imt) {
 
+    return deaggregation(hazard, returnPeriod, imt, Optional.empty());
+  }
+
+  /**
+   * Perform a deaggregation of probabilisitic seismic hazard, possibly using an
+   * {@link Optional} {@link Executor}. If no executor is supplied, the
+   * deaggregation will run on the current thread.
+   *
+   * @param hazard to deaggregate
+   * @param returnPeriod at which to deaggregate
+   * @param imt to deaggregate; deaggregate all if {@code empty()}
+   * @param ex optional {@code Executor} to use in deaggregation
+   */
+  public static Deaggregation deaggregation(
+      Hazard hazard,
+      double returnPeriod,
+      Optional<Imt> imt,
+      Optional<Executor> ex) {
+
     checkNotNull(hazard);
     checkInRange(rpRange, "Return period", returnPeriod);
+    checkNotNull(ex);
 
-    return Deaggregation.atReturnPeriod(hazard, returnPeriod, imt);
+    return Deaggregation.atReturnPeriod(hazard, returnPeriod, imt, ex);
   }
 
   /**
@@ -151,9 +174,14 @@ public class HazardCalcs {
 
     AsyncList<HazardCurveSet> curveSets = AsyncList.createWithCapacity(model.size());
     AsyncList<SourceSet<? extends Source>> gridTables = AsyncList.create();
+    List<GridSourceSet> gridSets = new ArrayList<>();
+    List<SourceSetMetrics> gridMetrics = new ArrayList<>();
+    CalcMetrics metrics = CalcMetrics.create();
 
     for (SourceSet<? extends Source> sourceSet : model) {
 
+      SourceSetMetrics ssm = metrics.sourceSet(sourceSet);
+
       switch (sourceSet.type()) {
 
         case GRID:
@@ -161,22 +189,27 @@ public class HazardCalcs {
           if (config.performance.optimizeGrids && gss.sourceType() != FIXED_STRIKE &&
               gss.optimizable()) {
             gridTables.add(transform(immediateFuture(gss),
-                GridSourceSet.optimizer(site.location), ex));
+                GridSourceSet.optimizer(
+                    site.location,
+                    config.performance.gridCacheSize,
+                    config.performance.gridCacheSnap), ex));
+            gridSets.add(gss);
+            gridMetrics.add(ssm);
             break;
           }
-          curveSets.add(sourcesToCurves(sourceSet, config, site, ex));
+          curveSets.add(sourcesToCurves(sourceSet, config, site, ssm, ex));
           break;
 
         case CLUSTER:
-          curveSets.add(clustersToCurves((ClusterSourceSet) sourceSet, config, site, ex));
+          curveSets.add(clustersToCurves((ClusterSourceSet) sourceSet, config, site, ssm, ex));
           break;
 
         case SYSTEM:
-          curveSets.add(systemToCurves((SystemSourceSet) sourceSet, config, site, ex));
+          curveSets.add(systemToCurves((SystemSourceSet) sourceSet, config, site, ssm, ex));
           break;
 
         default:
-          curveSets.add(sourcesToCurves(sourceSet, config, site, ex));
+          curveSets.add(sourcesToCurves(sourceSet, config, site, ssm, ex));
           break;
       }
     }
@@ -184,13 +217,25 @@ public class HazardCalcs {
     /*
      * If grid optimization is enabled, grid calculations were deferred (above)
      * while table based source sets were initialized. Submit once all other
-     * source types have been submitted.
+     * source types have been submitted. Metrics for table based source sets
+     * are recorded against the original source set. Grid curve tables, if
+     * enabled, are built on this thread the first time they are needed and
+     * are not used at sites whose terms differ from those they were built for.
      */
-    for (SourceSet<? extends Source> sourceSet : allAsList(gridTables).get()) {
-      curveSets.add(sourcesToCurves(sourceSet, config, site, ex));
+    List<SourceSet<? extends Source>> gridTableList = allAsList(gridTables).get();
+    boolean curveTables = GridCurveTable.enabled(config);
+    for (int i = 0; i < gridTableList.size(); i++) {
+      SourceSet<? extends Source> table = gridTableList.get(i);
+      SourceSetMetrics ssm = gridMetrics.get(i);
+      Optional<GridCurveTable> curveTable = curveTables
+          ? GridCurveTable.get(gridSets.get(i), config, site, ssm)
+          : Optional.empty();
+      curveSets.add(curveTable.isPresent()
+          ? gridTableToCurves(table, curveTable.get(), config, site, ssm, ex)
+          : sourcesToCurves(table, config, site, ssm, ex));
     }
 
-    return toHazardResult(model, config, site, curveSets, ex);
+    return toHazardResult(model, config, site, metrics, curveSets, ex);
   }
 
   /*
@@ -203,6 +248,7 @@ public class HazardCalcs {
       Logger log) {
 
     List<HazardCurveSet> curveSets = new ArrayList<>(model.size());
+    CalcMetrics metrics = CalcMetrics.create();
 
     log.info("HazardCurve: (single-threaded)");
     Stopwatch swTotal = Stopwatch.createStarted();
@@ -210,29 +256,42 @@ public class HazardCalcs {
 
     for (SourceSet<? extends Source> sourceSet : model) {
 
+      SourceSetMetrics ssm = metrics.sourceSet(sourceSet);
+
       switch (sourceSet.type()) {
         case GRID:
           GridSourceSet gss = (GridSourceSet) sourceSet;
           if (config.performance.optimizeGrids && gss.sourceType() != FIXED_STRIKE) {
-            sourceSet = GridSourceSet.optimizer(site.location).apply(gss);
+            sourceSet = GridSourceSet.optimizer(
+                site.location,
+                config.performance.gridCacheSize,
+                config.performance.gridCacheSnap).apply(gss);
             log(log, MSSG_GRID_INIT, sourceSet.name(), duration(swSource));
+            Optional<GridCurveTable> curveTable = GridCurveTable.enabled(config)
+                ? GridCurveTable.get(gss, config, site, ssm)
+                : Optional.empty();
+            if (curveTable.isPresent()) {
+              curveSets.add(gridTableToCurves(sourceSet, curveTable.get(), config, site, ssm));
+              log(log, MSSG_COMPLETED, sourceSet.name(), duration(swSource));
+              break;
+            }
           }
-          curveSets.add(sourcesToCurves(sourceSet, config, site));
+          curveSets.add(sourcesToCurves(sourceSet, config, site, ssm));
           log(log, MSSG_COMPLETED, sourceSet.name(), duration(swSource));
           break;
 
         case CLUSTER:
-          curveSets.add(clustersToCurves((ClusterSourceSet) sourceSet, config, site));
+          curveSets.add(clustersToCurves((ClusterSourceSet) sourceSet, config, site, ssm));
           log(log, MSSG_COMPLETED, sourceSet.name(), duration(swSource));
           break;
 
         case SYSTEM:
-          curveSets.add(systemToCurves((SystemSourceSet) sourceSet, config, site));
+          curveSets.add(systemToCurves((SystemSourceSet) sourceSet, config, site, ssm));
           log(log, MSSG_COMPLETED, sourceSet.name(), duration(swSource));
           break;
 
         default:
-          curveSets.add(sourcesToCurves(sourceSet, config, site));
+          curveSets.add(sourcesToCurves(sourceSet, config, site, ssm));
           log(log, MSSG_COMPLETED, sourceSet.name(), duration(swSource));
           break;
       }
@@ -241,7 +300,7 @@ public class HazardCalcs {
     log.log(Level.INFO, String.format(" %s: %s", MSSG_DURATION, duration(swTotal)));
     swTotal.stop();
     swSource.stop();
-    return toHazardResult(model, config, site, curveSets);
+    return toHazardResult(model, config, site, metrics, curveSets);
   }
 
   /*
@@ -1,6 +1,5 @@
 package gov.usgs.earthquake.nshmp.calc;
 
-import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static gov.usgs.earthquake.nshmp.data.XySequence.copyOf;
 import static gov.usgs.earthquake.nshmp.data.XySequence.emptyCopyOf;
@@ -49,6 +48,15 @@ import java.util.Set;
  * and infrequent use of {@code ClusterSource}s, this incurs little additional
  * overhead.
  *
+ * <p>When {@link CalcConfig.Performance#hazardOnly} is set, no
+ * {@code GroundMotions} or cluster curves are retained and the resulting
+ * HazardCurveSet may not be deaggregated at a return period; only the number
+ * of sources and inputs used is recorded.
+ *
+ * <p>When {@link CalcConfig.Deagg#iml} is set, the {@code Builder} also
+ * deaggregates each {@code Source} at that intensity measure level as its
+ * curves are added, regardless of whether {@code GroundMotions} are retained.
+ *
  * @author Peter Powers
  */
 final class HazardCurveSet {
@@ -59,6 +67,9 @@ final class HazardCurveSet {
   final Map<Imt, List<Map<Gmm, XySequence>>> clusterCurveLists;
   final Map<Imt, Map<Gmm, XySequence>> curveMap;
   final Map<Imt, XySequence> totalCurves;
+  final Map<Imt, Map<Gmm, DeaggDataset>> deaggDatasets;
+  final int sourceCount;
+  final int inputCount;
 
   // TODO separate references by what is needed for hazard vs deagg
   // deagg of cluster and system types requires us to hold onto some
@@ -70,7 +81,10 @@ final class HazardCurveSet {
       List<ClusterGroundMotions> clusterGroundMotionsList,
       Map<Imt, List<Map<Gmm, XySequence>>> clusterCurveLists,
       Map<Imt, Map<Gmm, XySequence>> curveMap,
-      Map<Imt, XySequence> totalCurves) {
+      Map<Imt, XySequence> totalCurves,
+      Map<Imt, Map<Gmm, DeaggDataset>> deaggDatasets,
+      int sourceCount,
+      int inputCount) {
 
     this.sourceSet = sourceSet;
     this.hazardGroundMotionsList = hazardGroundMotionsList;
@@ -78,11 +92,42 @@ final class HazardCurveSet {
     this.clusterCurveLists = clusterCurveLists;
     this.curveMap = curveMap;
     this.totalCurves = totalCurves;
+    this.deaggDatasets = deaggDatasets;
+    this.sourceCount = sourceCount;
+    this.inputCount = inputCount;
+  }
+
+  static Builder builder(
+      SourceSet<? extends Source> sourceSet,
+      CalcConfig config,
+      Site site) {
+
+    return new Builder(
+        sourceSet,
+        config.hazard.logModelCurves(),
+        !config.performance.hazardOnly,
+        deaggregators(sourceSet, config, site));
   }
 
-  static Builder builder(SourceSet<? extends Source> sourceSet,
-      Map<Imt, XySequence> modelCurves) {
-    return new Builder(sourceSet, modelCurves);
+  /*
+   * Create a Deaggregator for each Imt if deaggregating at a fixed iml,
+   * otherwise return null.
+   */
+  private static Map<Imt, Deaggregator> deaggregators(
+      SourceSet<? extends Source> sourceSet,
+      CalcConfig config,
+      Site site) {
+
+    if (Double.isNaN(config.deagg.iml)) {
+      return null;
+    }
+    DeaggDataset model = DeaggDataset.builder(config).build();
+    double iml = Math.log(config.deagg.iml);
+    Map<Imt, Deaggregator> deaggregators = new EnumMap<>(Imt.class);
+    for (Imt imt : config.hazard.imts) {
+      deaggregators.put(imt, new Deaggregator(sourceSet, imt, model, iml, site));
+    }
+    return deaggregators;
   }
 
   /*
@@ -93,7 +138,7 @@ final class HazardCurveSet {
    * source set.
    */
   static HazardCurveSet empty(SourceSet<? extends Source> sourceSet) {
-    return new HazardCurveSet(sourceSet, null, null, null, null, null);
+    return new HazardCurveSet(sourceSet, null, null, null, null, null, null, 0, 0);
   }
 
   boolean isEmpty() {
@@ -113,27 +158,28 @@ final class HazardCurveSet {
     private final Map<Imt, List<Map<Gmm, XySequence>>> clusterCurveLists;
     private final Map<Imt, Map<Gmm, XySequence>> curveMap;
     private final Map<Imt, XySequence> totalCurves;
+    private final Map<Imt, Deaggregator> deaggregators;
+    private final boolean cluster;
+    private final boolean retain;
+    private int sourceCount = 0;
+    private int inputCount = 0;
 
     private Builder(
         SourceSet<? extends Source> sourceSet,
-        Map<Imt, XySequence> modelCurves) {
+        Map<Imt, XySequence> modelCurves,
+        boolean retain,
+        Map<Imt, Deaggregator> deaggregators) {
 
       this.sourceSet = sourceSet;
       this.modelCurves = modelCurves;
+      this.cluster = sourceSet.type() == SourceType.CLUSTER;
+      this.retain = retain;
+      this.deaggregators = deaggregators;
 
-      boolean cluster = sourceSet.type() == SourceType.CLUSTER;
-
-      if (cluster) {
-        hazardGroundMotionsList = null;
-        clusterGroundMotionsList = new ArrayList<>();
-        clusterCurveLists = new EnumMap<>(Imt.class);
-        curveMap = new EnumMap<>(Imt.class);
-      } else {
-        hazardGroundMotionsList = new ArrayList<>();
-        clusterGroundMotionsList = null;
-        clusterCurveLists = null;
-        curveMap = new EnumMap<>(Imt.class);
-      }
+      hazardGroundMotionsList = (retain && !cluster) ? new ArrayList<>() : null;
+      clusterGroundMotionsList = (retain && cluster) ? new ArrayList<>() : null;
+      clusterCurveLists = (retain && cluster) ? new EnumMap<>(Imt.class) : null;
+      curveMap = new EnumMap<>(Imt.class);
 
       Set<Gmm> gmms = sourceSet.groundMotionModels().gmms();
       Set<Imt> imts = modelCurves.keySet();
@@ -147,36 +193,67 @@ final class HazardCurveSet {
         }
         curveMap.put(imt, gmmMap);
 
-        if (cluster) {
+        if (clusterCurveLists != null) {
           List<Map<Gmm, XySequence>> clusterCurveList = new ArrayList<>();
           clusterCurveLists.put(imt, clusterCurveList);
-
         }
       }
       totalCurves = new EnumMap<>(Imt.class);
     }
 
     Builder addCurves(HazardCurves curvesIn) {
-      checkNotNull(hazardGroundMotionsList, "%s only supports ClusterCurves", ID);
-      hazardGroundMotionsList.add(curvesIn.groundMotions);
-      double distance = curvesIn.groundMotions.inputs.minDistance;
+      checkState(!cluster, "%s only supports ClusterCurves", ID);
+      if (retain) {
+        hazardGroundMotionsList.add(curvesIn.groundMotions);
+      }
+      if (deaggregators != null) {
+        for (Deaggregator deaggregator : deaggregators.values()) {
+          deaggregator.add(curvesIn.exceedances);
+        }
+      }
+      inputCount += curvesIn.groundMotions.inputs.size();
+      return addWeightedCurves(curvesIn.curveMap, curvesIn.groundMotions.inputs.minDistance);
+    }
+
+    /*
+     * Add curves for a source for which ground motions are not retained, such
+     * as those derived from a GridCurveTable. Deaggregation of the resulting
+     * HazardCurveSet is not possible.
+     */
+    Builder addCurves(Map<Imt, Map<Gmm, XySequence>> curveMapIn, double distance) {
+      checkState(!cluster, "%s only supports ClusterCurves", ID);
+      checkState(deaggregators == null, "%s requires HazardCurves to deaggregate", ID);
+      return addWeightedCurves(curveMapIn, distance);
+    }
+
+    private Builder addWeightedCurves(
+        Map<Imt, Map<Gmm, XySequence>> curveMapIn,
+        double distance) {
+
+      sourceCount++;
       Map<Gmm, Double> gmmWeightMap = sourceSet.groundMotionModels().gmmWeightMap(distance);
       // loop Imts based on what's been calculated
-      for (Imt imt : curvesIn.curveMap.keySet()) {
-        Map<Gmm, XySequence> curveMapIn = curvesIn.curveMap.get(imt);
+      for (Imt imt : curveMapIn.keySet()) {
+        Map<Gmm, XySequence> curveMapImt = curveMapIn.get(imt);
         Map<Gmm, XySequence> curveMapBuild = curveMap.get(imt);
         // loop Gmms based on what's supported at this distance
         for (Gmm gmm : gmmWeightMap.keySet()) {
           double weight = gmmWeightMap.get(gmm) * sourceSet.weight();
-          curveMapBuild.get(gmm).add(copyOf(curveMapIn.get(gmm)).multiply(weight));
+          curveMapBuild.get(gmm).add(copyOf(curveMapImt.get(gmm)).multiply(weight));
         }
       }
       return this;
     }
 
     Builder addCurves(ClusterCurves curvesIn) {
-      checkNotNull(clusterGroundMotionsList, "%s only supports HazardCurves", ID);
-      clusterGroundMotionsList.add(curvesIn.clusterGroundMotions);
+      checkState(cluster, "%s only supports HazardCurves", ID);
+      if (retain) {
+        clusterGroundMotionsList.add(curvesIn.clusterGroundMotions);
+      }
+      sourceCount++;
+      for (GroundMotions gms : curvesIn.clusterGroundMotions) {
+        inputCount += gms.inputs.size();
+      }
       double clusterWeight = curvesIn.clusterGroundMotions.parent.weight();
       double distance = curvesIn.clusterGroundMotions.minDistance;
       Map<Gmm, Double> gmmWeightMap = sourceSet.groundMotionModels().gmmWeightMap(distance);
@@ -202,7 +279,15 @@ final class HazardCurveSet {
           curveMapBuild.get(gmm).add(clusterCurve);
           clusterCurves.put(gmm, clusterCurve);
         }
-        clusterCurveLists.get(imt).add(clusterCurves);
+        if (retain) {
+          clusterCurveLists.get(imt).add(clusterCurves);
+        }
+        if (deaggregators != null) {
+          deaggregators.get(imt).addCluster(
+              curvesIn.clusterGroundMotions.parent,
+              curvesIn.exceedances,
+              clusterCurves);
+        }
       }
       return this;
     }
@@ -211,13 +296,23 @@ final class HazardCurveSet {
       checkState(!built, "This %s instance has already been used", ID);
       built = true;
       computeFinal();
+      Map<Imt, Map<Gmm, DeaggDataset>> deaggDatasets = null;
+      if (deaggregators != null) {
+        deaggDatasets = new EnumMap<>(Imt.class);
+        for (Entry<Imt, Deaggregator> entry : deaggregators.entrySet()) {
+          deaggDatasets.put(entry.getKey(), entry.getValue().build());
+        }
+      }
       return new HazardCurveSet(
           sourceSet,
           hazardGroundMotionsList,
           clusterGroundMotionsList,
           clusterCurveLists,
           curveMap,
-          totalCurves);
+          totalCurves,
+          deaggDatasets,
+          sourceCount,
+          inputCount);
     }
 
     /*
@@ -24,18 +24,24 @@ import gov.usgs.earthquake.nshmp.gmm.Imt;
  * been scaled by the associated Mfd or rupture weights, but not by
  * {@code GroundMotionModel} weights.
  *
+ * <p>When deaggregating at a fixed intensity measure level, the exceedances
+ * of that level derived from the same ground motions are also carried along.
+ *
  * @author Peter Powers
  */
 final class HazardCurves {
 
   final GroundMotions groundMotions;
   final Map<Imt, Map<Gmm, XySequence>> curveMap;
+  final ImlExceedances exceedances;
 
   private HazardCurves(
       GroundMotions groundMotions,
-      Map<Imt, Map<Gmm, XySequence>> curveMap) {
+      Map<Imt, Map<Gmm, XySequence>> curveMap,
+      ImlExceedances exceedances) {
     this.groundMotions = groundMotions;
     this.curveMap = curveMap;
+    this.exceedances = exceedances;
   }
 
   static Builder builder(GroundMotions groundMotions) {
@@ -56,9 +62,19 @@ final class HazardCurves {
         })
         .toList();
     GroundMotions groundMotions = GroundMotions.combine(inputs, groundMotionsList);
-    return builder(groundMotions)
-        .combine(curvesList)
-        .build();
+    Builder builder = builder(groundMotions).combine(curvesList);
+    if (curvesList.get(0).exceedances != null) {
+      List<ImlExceedances> exceedancesList = FluentIterable.from(curvesList)
+          .transform(new Function<HazardCurves, ImlExceedances>() {
+            @Override
+            public ImlExceedances apply(HazardCurves curves) {
+              return curves.exceedances;
+            }
+          })
+          .toList();
+      builder.exceedances(ImlExceedances.combine(inputs, exceedancesList));
+    }
+    return builder.build();
   }
 
   static class Builder {
@@ -68,6 +84,7 @@ final class HazardCurves {
 
     private final GroundMotions groundMotions;
     private final Map<Imt, Map<Gmm, XySequence>> curveMap;
+    private ImlExceedances exceedances;
 
     private Builder(GroundMotions groundMotions) {
       this.groundMotions = groundMotions;
@@ -84,12 +101,17 @@ final class HazardCurves {
       return this;
     }
 
+    Builder exceedances(ImlExceedances exceedances) {
+      this.exceedances = exceedances;
+      return this;
+    }
+
     HazardCurves build() {
       checkState(!built, "This %s instance has already been used", ID);
       // TODO check that all gmms have been set? it'll be difficult to
       // track whether all curves for all inputs have been added
       built = true;
-      return new HazardCurves(groundMotions, curveMap);
+      return new HazardCurves(groundMotions, curveMap, exceedances);
     }
 
     /*
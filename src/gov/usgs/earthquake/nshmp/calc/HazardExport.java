@@ -1,21 +1,23 @@
 package gov.usgs.earthquake.nshmp.calc;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static gov.usgs.earthquake.nshmp.data.XySequence.emptyCopyOf;
 import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 
 import com.google.common.base.Function;
-import com.google.common.base.Functions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.primitives.Doubles;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -33,6 +35,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import gov.usgs.earthquake.nshmp.calc.Deaggregation.ImtDeagg;
@@ -47,11 +59,23 @@ import gov.usgs.earthquake.nshmp.gmm.Gmm;
 import gov.usgs.earthquake.nshmp.gmm.Imt;
 import gov.usgs.earthquake.nshmp.internal.Parsing;
 import gov.usgs.earthquake.nshmp.internal.Parsing.Delimiter;
+import gov.usgs.earthquake.nshmp.internal.ScientificFormat;
 import gov.usgs.earthquake.nshmp.mfd.Mfds;
 
 /**
  * Hazard calculation result exporter.
  *
+ * <p>Formatting and writing of results occurs on a dedicated writer thread.
+ * Results passed to {@code add()} are placed on a queue that holds at most
+ * {@code output.flushLimit} results; callers block when the queue is full so
+ * that a slow disk cannot cause unbounded buffering. Each result carries the
+ * index of its site, and results may be added out of order and from multiple
+ * threads. The writer thread holds out-of-order results until all preceding
+ * results have arrived, so results are always written in site order. Callers
+ * adding a result more than {@code output.flushLimit} sites ahead of the next
+ * site to be written block until the writer catches up, which bounds the
+ * number of held results when an early site is slow to complete.
+ *
  * @author Peter Powers
  */
 public final class HazardExport {
@@ -61,7 +85,8 @@ public final class HazardExport {
   static final String TYPE_DIR = "source";
   static final String CURVE_FILE_ASCII = "curves.csv";
   static final String CURVE_FILE_BINARY = "curves.bin";
-  static final String RATE_FMT = "%.8e";
+  static final String CURVE_FILE_MAPPED = "curves.store";
+  static final ScientificFormat RATE_FORMAT = ScientificFormat.create(8);
 
   static final OpenOption[] WRITE = new OpenOption[] {
       StandardOpenOption.CREATE,
@@ -77,22 +102,45 @@ public final class HazardExport {
   private final boolean exportGmm;
   private final boolean exportSource;
   private final boolean exportBinary;
+  private final boolean exportMapped;
 
   private final Stopwatch batchWatch;
   private final Stopwatch totalWatch;
   private int batchCount = 0;
-  private int resultCount = 0;
+  private final AtomicInteger resultCount = new AtomicInteger();
+  private final AtomicInteger bufferCount = new AtomicInteger();
 
   private final boolean namedSites;
   private boolean firstBatch = true;
-  private boolean used = false;
+  private volatile boolean used = false;
+
+  /* Writer thread state. */
+  private final BlockingQueue<Result> queue;
+  private final ExecutorService writerSvc;
+  private final Future<Void> writerTask;
+
+  /* Index of the next result to be written; guarded by window. */
+  private final Object window = new Object();
+  private int nextIndex = 0;
+
+  /* Failure that stopped result processing; guarded by window. */
+  private Throwable abortCause;
 
+  /* Only accessed on writer thread. */
   private final List<Hazard> hazards;
   private final List<Deaggregation> deaggs;
 
   /* Only used for binary file export. */
   private final Map<Imt, Metadata> metaMap;
 
+  /* Only used for mapped file export; initialized with first batch. */
+  private final Bounds mapBounds;
+  private final double mapSpacing;
+  private final double mapVs30;
+  private final Map<Imt, CurveStore.Writer> totalStores;
+  private final Map<Imt, Map<SourceType, CurveStore.Writer>> typeStores;
+  private final Map<Imt, Map<Gmm, CurveStore.Writer>> gmmStores;
+
   private HazardExport(CalcConfig config, Sites sites, Logger log) throws IOException {
     this.log = log;
     this.dir = createOutputDir(config.output.directory);
@@ -100,10 +148,11 @@ public final class HazardExport {
     this.exportGmm = config.output.dataTypes.contains(DataType.GMM);
     this.exportSource = config.output.dataTypes.contains(DataType.SOURCE);
     this.exportBinary = config.output.dataTypes.contains(DataType.BINARY);
+    this.exportMapped = config.output.dataTypes.contains(DataType.MAPPED);
     this.hazards = new ArrayList<>();
     this.deaggs = new ArrayList<>();
 
-    Site demoSite = sites.iterator().next();
+    Site demoSite = sites.first();
     this.namedSites = demoSite.name() != Site.NO_NAME;
 
     this.batchWatch = Stopwatch.createStarted();
@@ -129,6 +178,33 @@ public final class HazardExport {
     } else {
       this.metaMap = null;
     }
+
+    if (exportMapped) {
+      checkState(sites.mapBounds().isPresent(), BINARY_EXTENTS_REQUIRED_MSSG);
+      this.mapBounds = sites.mapBounds().get();
+      this.mapSpacing = sites.mapSpacing().get();
+      this.mapVs30 = demoSite.vs30;
+    } else {
+      this.mapBounds = null;
+      this.mapSpacing = Double.NaN;
+      this.mapVs30 = Double.NaN;
+    }
+    this.totalStores = Maps.newEnumMap(Imt.class);
+    this.typeStores = Maps.newEnumMap(Imt.class);
+    this.gmmStores = Maps.newEnumMap(Imt.class);
+
+    this.queue = new ArrayBlockingQueue<>(config.output.flushLimit);
+    this.writerSvc = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("hazard-export")
+        .setDaemon(true)
+        .build());
+    this.writerTask = writerSvc.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException, InterruptedException {
+        processQueue();
+        return null;
+      }
+    });
   }
 
   /**
@@ -137,9 +213,9 @@ public final class HazardExport {
    * @param config that specifies output options and formats
    * @param sites reference to the sites to be processed (not retained)
    * @param log shared logging instance from calling class
-   * @throws IllegalStateException if binary output has been specified in the
-   *         {@code config} but the {@code sites} container does not specify map
-   *         extents.
+   * @throws IllegalStateException if binary or mapped output has been
+   *         specified in the {@code config} but the {@code sites} container
+   *         does not specify map extents.
    */
   public static HazardExport create(
       CalcConfig config,
@@ -162,32 +238,217 @@ public final class HazardExport {
   }
 
   /**
-   * Add a Hazard and optional Deaggregation result to this handler.
+   * Add a Hazard and optional Deaggregation result to this handler. The result
+   * is assigned the next site index. Do not mix calls to this method and
+   * {@link #add(int, Hazard, Optional)}.
    * 
    * @param hazard to add
    * @param deagg to add
    */
   public void add(Hazard hazard, Optional<Deaggregation> deagg) throws IOException {
+    add(resultCount.get(), hazard, deagg);
+  }
+
+  /**
+   * Add a Hazard and optional Deaggregation result for the site at
+   * {@code index} to this handler. Results may be added in any order and from
+   * multiple threads, but every index from zero up to the largest index added
+   * must be supplied exactly once before this handler is expired. Because
+   * results are written in index order, this method blocks while
+   * {@code index} is {@code output.flushLimit} or more sites ahead of the next
+   * result to be written, and also if the writer thread has fallen behind.
+   * 
+   * @param index of the site in the {@code Sites} being processed
+   * @param hazard to add
+   * @param deagg to add
+   * @throws IOException if a problem occurred while writing earlier results
+   */
+  public void add(int index, Hazard hazard, Optional<Deaggregation> deagg) throws IOException {
     checkState(!used, "This result handler is expired");
-    resultCount++;
-    hazards.add(hazard);
-    if (deagg.isPresent()) {
-      deaggs.add(deagg.get());
-    }
-    if (hazards.size() == config.output.flushLimit) {
-      flush();
-      batchCount++;
-      log.info(String.format(
-          "     batch: %s in %s – %s sites in %s",
-          batchCount, batchWatch, resultCount, totalWatch));
-      batchWatch.reset().start();
-    }
+    checkArgument(index >= 0, "Index [%s] must be >= 0", index);
+    awaitWindow(index);
+    resultCount.incrementAndGet();
+    bufferCount.incrementAndGet();
+    enqueue(new Result(index, hazard, deagg.orElse(null)));
   }
 
   /**
-   * Flush any stored Hazard and Deaggregation results to file, clearing
+   * Flush any stored Hazard and Deaggregation results to file. Method blocks
+   * until all results that can be written in site order have been written.
    */
   public void flush() throws IOException {
+    Result flush = Result.flush();
+    enqueue(flush);
+    await(flush.done);
+  }
+
+  /**
+   * Stop processing results following a failure elsewhere in a calculation,
+   * most commonly at a site whose result will now never be added. Callers
+   * blocked in {@link #add(int, Hazard, Optional)} waiting on that result are
+   * released and, like any subsequent callers, receive an
+   * {@code IllegalStateException} whose cause is {@code cause}. The writer
+   * thread is stopped and any results not yet written are discarded.
+   *
+   * @param cause of the failure
+   */
+  public void abort(Throwable cause) {
+    synchronized (window) {
+      if (abortCause == null) {
+        abortCause = checkNotNull(cause);
+      }
+      window.notifyAll();
+    }
+    writerSvc.shutdownNow();
+  }
+
+  /**
+   * Calls {@link #flush()} a final time, stops all timers and sets the state of
+   * this {@code Results} instance to 'used'; no more results may be added.
+   *
+   * @throws IllegalStateException if results for some site indices were not
+   *         added
+   */
+  public void expire() throws IOException {
+    checkState(!used, "This result handler is expired");
+    used = true;
+    enqueue(Result.END);
+    try {
+      await(writerTask);
+    } finally {
+      writerSvc.shutdownNow();
+    }
+    batchWatch.stop();
+    totalWatch.stop();
+  }
+
+  /*
+   * Place an item on the queue, periodically checking that the writer thread
+   * is still running so that callers are not blocked forever after a failure.
+   */
+  private void enqueue(Result result) throws IOException {
+    try {
+      while (!queue.offer(result, 100, TimeUnit.MILLISECONDS)) {
+        if (writerTask.isDone()) {
+          await(writerTask);
+          throw new IllegalStateException("Writer thread has stopped");
+        }
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ie);
+    }
+  }
+
+  /*
+   * Block until index is within output.flushLimit results of the next result
+   * to be written, periodically checking that the writer thread is still
+   * running. Blocked callers are released if this handler is aborted.
+   */
+  private void awaitWindow(int index) throws IOException {
+    int limit = config.output.flushLimit;
+    synchronized (window) {
+      try {
+        checkAborted();
+        while (index - nextIndex >= limit) {
+          checkAborted();
+          if (writerTask.isDone()) {
+            await(writerTask);
+            throw new IllegalStateException("Writer thread has stopped");
+          }
+          window.wait(100);
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(ie);
+      }
+    }
+  }
+
+  /* Must be called while holding window. */
+  private void checkAborted() {
+    if (abortCause != null) {
+      throw new IllegalStateException("Result processing aborted", abortCause);
+    }
+  }
+
+  /* Wait for a writer thread task, rethrowing any failure. */
+  private void await(Future<Void> future) throws IOException {
+    try {
+      while (true) {
+        try {
+          future.get(100, TimeUnit.MILLISECONDS);
+          return;
+        } catch (TimeoutException te) {
+          if (future != writerTask && writerTask.isDone()) {
+            await(writerTask);
+            throw new IllegalStateException("Writer thread has stopped");
+          }
+        }
+      }
+    } catch (ExecutionException ee) {
+      Throwables.throwIfInstanceOf(ee.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(ee.getCause());
+      throw new RuntimeException(ee.getCause());
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ie);
+    }
+  }
+
+  /*
+   * Writer thread loop. Results are held until all results with lower indices
+   * have arrived and are then batched for writing.
+   */
+  private void processQueue() throws IOException, InterruptedException {
+    Map<Integer, Result> pending = new HashMap<>();
+    int next = 0;
+    while (true) {
+      Result result = queue.take();
+      if (result == Result.END) {
+        checkState(pending.isEmpty(),
+            "Missing results for site index %s; %s later results not written",
+            next, pending.size());
+        writeBatch();
+        closeStores();
+        return;
+      }
+      if (result.done != null) {
+        writeBatch();
+        result.done.set(null);
+        continue;
+      }
+      checkState(result.index >= next && !pending.containsKey(result.index),
+          "Duplicate result for site index %s", result.index);
+      pending.put(result.index, result);
+      int first = next;
+      while (pending.containsKey(next)) {
+        Result ready = pending.remove(next++);
+        hazards.add(ready.hazard);
+        if (ready.deagg != null) {
+          deaggs.add(ready.deagg);
+        }
+        if (hazards.size() == config.output.flushLimit) {
+          writeBatch();
+          batchCount++;
+          log.info(String.format(
+              "     batch: %s in %s – %s sites in %s",
+              batchCount, batchWatch, next, totalWatch));
+          batchWatch.reset().start();
+        }
+      }
+      if (next > first) {
+        synchronized (window) {
+          nextIndex = next;
+          window.notifyAll();
+        }
+      }
+    }
+  }
+
+  /* Write any batched results; only called on writer thread. */
+  private void writeBatch() throws IOException {
+    int count = hazards.size();
     if (!hazards.isEmpty()) {
       writeHazards();
       hazards.clear();
@@ -197,31 +458,51 @@ public final class HazardExport {
       writeDeaggs();
       deaggs.clear();
     }
+    bufferCount.addAndGet(-count);
   }
 
-  /**
-   * Calls {@link #flush()} a final time, stops all timers and sets the state of
-   * this {@code Results} instance to 'used'; no more results may be added.
+  /*
+   * Item passed to the writer thread: either a result to write, or a command
+   * to flush (with non-null 'done') or finish (END).
    */
-  public void expire() throws IOException {
-    flush();
-    batchWatch.stop();
-    totalWatch.stop();
-    used = true;
+  private static final class Result {
+
+    static final Result END = new Result(-1, null, null);
+
+    final int index;
+    final Hazard hazard;
+    final Deaggregation deagg;
+    final SettableFuture<Void> done;
+
+    Result(int index, Hazard hazard, Deaggregation deagg) {
+      this(index, hazard, deagg, null);
+    }
+
+    private Result(int index, Hazard hazard, Deaggregation deagg, SettableFuture<Void> done) {
+      this.index = index;
+      this.hazard = hazard;
+      this.deagg = deagg;
+      this.done = done;
+    }
+
+    static Result flush() {
+      return new Result(-1, null, null, SettableFuture.<Void> create());
+    }
   }
 
   /**
    * The number of hazard [and deagg] results passed to this handler thus far.
    */
   public int resultsProcessed() {
-    return resultCount;
+    return resultCount.get();
   }
 
   /**
-   * The number of {@code Hazard} results this handler is currently storing.
+   * The number of {@code Hazard} results this handler is currently storing,
+   * including those not yet processed by the writer thread.
    */
   public int size() {
-    return hazards.size();
+    return bufferCount.get();
   }
 
   /**
@@ -250,12 +531,8 @@ public final class HazardExport {
 
     OpenOption[] options = firstBatch ? WRITE : APPEND;
 
-    Function<Double, String> formatter = Parsing.formatDoubleFunction(RATE_FMT);
-    if (demo.config.hazard.valueFormat == ValueFormat.POISSON_PROBABILITY) {
-      formatter = Functions.compose(
-          formatter,
-          Mfds.annualRateToProbabilityConverter());
-    }
+    boolean poisson = demo.config.hazard.valueFormat == ValueFormat.POISSON_PROBABILITY;
+    StringBuilder sb = new StringBuilder();
 
     /* Line maps for ascii output; may or may not be used */
     Map<Imt, List<String>> totalLines = Maps.newEnumMap(Imt.class);
@@ -320,16 +597,23 @@ public final class HazardExport {
       }
     }
 
+    /* Initialize mapped output files. */
+    if (exportMapped && totalStores.isEmpty()) {
+      initStores(demo, gmms);
+    }
+
     /* Process batch */
     for (Hazard hazard : hazards) {
 
       String name = namedSites ? hazard.site.name : null;
       Location location = hazard.site.location;
 
-      List<String> locData = Lists.newArrayList(
-          name,
-          String.format("%.5f", location.lon()),
-          String.format("%.5f", location.lat()));
+      String locData = Parsing.join(
+          Lists.newArrayList(
+              name,
+              String.format("%.5f", location.lon()),
+              String.format("%.5f", location.lat())),
+          Delimiter.COMMA);
 
       Map<Imt, Map<SourceType, XySequence>> curvesBySource =
           exportSource ? curvesBySource(hazard) : null;
@@ -341,13 +625,9 @@ public final class HazardExport {
         Imt imt = imtEntry.getKey();
 
         XySequence totalCurve = imtEntry.getValue();
-        Iterable<Double> emptyValues = Doubles.asList(new double[totalCurve.size()]);
-        String emptyLine = toLine(locData, emptyValues, formatter);
+        String emptyLine = toLine(sb, locData, emptyCopyOf(totalCurve), poisson);
 
-        totalLines.get(imt).add(toLine(
-            locData,
-            imtEntry.getValue().yValues(),
-            formatter));
+        totalLines.get(imt).add(toLine(sb, locData, totalCurve, poisson));
 
         Metadata meta = null;
         int binIndex = -1;
@@ -356,6 +636,9 @@ public final class HazardExport {
           binIndex = curveIndex(meta.bounds, meta.spacing, location);
           totalCurves.get(imt).put(binIndex, totalCurve);
         }
+        if (exportMapped) {
+          totalStores.get(imt).put(location, totalCurve);
+        }
 
         if (exportSource) {
           Map<SourceType, XySequence> sourceCurveMap = curvesBySource.get(imt);
@@ -364,10 +647,13 @@ public final class HazardExport {
             String typeLine = emptyLine;
             if (sourceCurveMap.containsKey(type)) {
               XySequence typeCurve = sourceCurveMap.get(type);
-              typeLine = toLine(locData, typeCurve.yValues(), formatter);
+              typeLine = toLine(sb, locData, typeCurve, poisson);
               if (exportBinary) {
                 typeCurves.get(imt).get(type).put(binIndex, typeCurve);
               }
+              if (exportMapped) {
+                typeStores.get(imt).get(type).put(location, typeCurve);
+              }
             }
             typeEntry.getValue().add(typeLine);
           }
@@ -380,10 +666,13 @@ public final class HazardExport {
             String gmmLine = emptyLine;
             if (gmmCurveMap.containsKey(gmm)) {
               XySequence gmmCurve = gmmCurveMap.get(gmm);
-              gmmLine = toLine(locData, gmmCurveMap.get(gmm).yValues(), formatter);
+              gmmLine = toLine(sb, locData, gmmCurve, poisson);
               if (exportBinary) {
                 gmmCurves.get(imt).get(gmm).put(binIndex, gmmCurve);
               }
+              if (exportMapped) {
+                gmmStores.get(imt).get(gmm).put(location, gmmCurve);
+              }
             }
             gmmEntry.getValue().add(gmmLine);
           }
@@ -440,6 +729,66 @@ public final class HazardExport {
     }
   }
 
+  /*
+   * Create mapped output files for all Imts, and SourceTypes and Gmms, if
+   * requested. Directory structure matches that of ascii output.
+   */
+  private void initStores(Hazard demo, Set<Gmm> gmms) throws IOException {
+    for (Entry<Imt, XySequence> entry : demo.config.hazard.modelCurves().entrySet()) {
+      Imt imt = entry.getKey();
+      List<Double> imls = entry.getValue().xValues();
+      Path imtDir = dir.resolve(imt.name());
+      totalStores.put(imt, createStore(imtDir, imt, imls));
+
+      if (exportSource) {
+        Map<SourceType, CurveStore.Writer> typeMap = new EnumMap<>(SourceType.class);
+        typeStores.put(imt, typeMap);
+        for (SourceType type : demo.model.types()) {
+          Path typeDir = imtDir.resolve(TYPE_DIR).resolve(type.name());
+          typeMap.put(type, createStore(typeDir, imt, imls));
+        }
+      }
+
+      if (exportGmm) {
+        Map<Gmm, CurveStore.Writer> gmmMap = new EnumMap<>(Gmm.class);
+        gmmStores.put(imt, gmmMap);
+        for (Gmm gmm : gmms) {
+          Path gmmDir = imtDir.resolve(GMM_DIR).resolve(gmm.name());
+          gmmMap.put(gmm, createStore(gmmDir, imt, imls));
+        }
+      }
+    }
+  }
+
+  private CurveStore.Writer createStore(Path dir, Imt imt, List<Double> imls)
+      throws IOException {
+    Files.createDirectories(dir);
+    return CurveStore.create(
+        dir.resolve(CURVE_FILE_MAPPED),
+        imt,
+        imls,
+        mapBounds,
+        mapSpacing,
+        mapVs30,
+        true);
+  }
+
+  private void closeStores() throws IOException {
+    for (CurveStore.Writer store : totalStores.values()) {
+      store.close();
+    }
+    for (Map<SourceType, CurveStore.Writer> typeMap : typeStores.values()) {
+      for (CurveStore.Writer store : typeMap.values()) {
+        store.close();
+      }
+    }
+    for (Map<Gmm, CurveStore.Writer> gmmMap : gmmStores.values()) {
+      for (CurveStore.Writer store : gmmMap.values()) {
+        store.close();
+      }
+    }
+  }
+
   /*
    * Write the current list of {@code Deaggregation}s to file.
    */
@@ -490,14 +839,25 @@ public final class HazardExport {
     }
   }
 
+  /*
+   * Build a line of curve output in a reusable buffer. Values are annual rates
+   * unless 'poisson' is true, in which case they are converted to Poisson
+   * probabilities.
+   */
   private static String toLine(
-      Iterable<String> location,
-      Iterable<Double> values,
-      Function<Double, String> formatter) {
-
-    return Parsing.join(
-        FluentIterable.from(location).append(Iterables.transform(values, formatter)),
-        Delimiter.COMMA);
+      StringBuilder sb,
+      String location,
+      XySequence curve,
+      boolean poisson) {
+
+    sb.setLength(0);
+    sb.append(location);
+    for (int i = 0; i < curve.size(); i++) {
+      double y = curve.y(i);
+      sb.append(',');
+      RATE_FORMAT.append(sb, poisson ? Mfds.rateToProb(y, 1.0) : y);
+    }
+    return sb.toString();
   }
 
   private static String lonLatStr(Location loc) {
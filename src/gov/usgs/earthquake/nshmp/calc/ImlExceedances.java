@@ -0,0 +1,114 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import gov.usgs.earthquake.nshmp.gmm.Gmm;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+import gov.usgs.earthquake.nshmp.gmm.ScalarGroundMotion;
+import gov.usgs.earthquake.nshmp.util.Maths;
+
+/**
+ * Container class for the probabilities of exceeding a single deaggregation
+ * intensity measure level, and the corresponding epsilons, for each input in
+ * an {@code InputList}, one array for each {@code GroundMotionModel} and
+ * {@code Imt} of interest. This is all that deaggregation requires of the
+ * ground motions for a source, so these may be computed while hazard curves
+ * are built and the ground motions themselves discarded.
+ *
+ * @author Peter Powers
+ */
+final class ImlExceedances {
+
+  final InputList inputs;
+  final Map<Imt, Map<Gmm, double[]>> probabilities;
+  final Map<Imt, Map<Gmm, double[]>> epsilons;
+
+  private ImlExceedances(
+      InputList inputs,
+      Map<Imt, Map<Gmm, double[]>> probabilities,
+      Map<Imt, Map<Gmm, double[]>> epsilons) {
+
+    this.inputs = inputs;
+    this.probabilities = probabilities;
+    this.epsilons = epsilons;
+  }
+
+  /*
+   * Compute the probabilities of exceeding the supplied (natural log) iml
+   * for each of the supplied Imts.
+   */
+  static ImlExceedances create(
+      GroundMotions gms,
+      Set<Imt> imts,
+      double iml,
+      ExceedanceModel exceedanceModel,
+      double truncationLevel) {
+
+    int size = gms.inputs.size();
+    Map<Imt, Map<Gmm, double[]>> probabilities = Maps.newEnumMap(Imt.class);
+    Map<Imt, Map<Gmm, double[]>> epsilons = Maps.newEnumMap(Imt.class);
+    for (Imt imt : imts) {
+      Map<Gmm, double[]> imtProbabilities = Maps.newEnumMap(Gmm.class);
+      Map<Gmm, double[]> imtEpsilons = Maps.newEnumMap(Gmm.class);
+      for (Entry<Gmm, List<ScalarGroundMotion>> entry : gms.gmMap.get(imt).entrySet()) {
+        double[] gmmProbabilities = new double[size];
+        double[] gmmEpsilons = new double[size];
+        int i = 0;
+        for (ScalarGroundMotion sgm : entry.getValue()) {
+          double μ = sgm.mean();
+          double σ = sgm.sigma();
+          gmmProbabilities[i] = exceedanceModel.exceedance(μ, σ, truncationLevel, imt, iml);
+          gmmEpsilons[i++] = Maths.epsilon(μ, σ, iml);
+        }
+        imtProbabilities.put(entry.getKey(), gmmProbabilities);
+        imtEpsilons.put(entry.getKey(), gmmEpsilons);
+      }
+      probabilities.put(imt, imtProbabilities);
+      epsilons.put(imt, imtEpsilons);
+    }
+    return new ImlExceedances(gms.inputs, probabilities, epsilons);
+  }
+
+  /*
+   * Combine ImlExceedances resulting from InputList partitioning. The
+   * original InputList is required as the supplied ImlExceedances contain
+   * values for sublists of this list.
+   */
+  static ImlExceedances combine(InputList inputs, List<ImlExceedances> exceedancesList) {
+    int size = inputs.size();
+    Map<Imt, Map<Gmm, double[]>> model = exceedancesList.get(0).probabilities;
+    Map<Imt, Map<Gmm, double[]>> probabilities = Maps.newEnumMap(Imt.class);
+    Map<Imt, Map<Gmm, double[]>> epsilons = Maps.newEnumMap(Imt.class);
+    for (Entry<Imt, Map<Gmm, double[]>> imtEntry : model.entrySet()) {
+      Imt imt = imtEntry.getKey();
+      Map<Gmm, double[]> imtProbabilities = Maps.newEnumMap(Gmm.class);
+      Map<Gmm, double[]> imtEpsilons = Maps.newEnumMap(Gmm.class);
+      for (Gmm gmm : imtEntry.getValue().keySet()) {
+        double[] gmmProbabilities = new double[size];
+        double[] gmmEpsilons = new double[size];
+        int offset = 0;
+        for (ImlExceedances exceedances : exceedancesList) {
+          int length = exceedances.inputs.size();
+          System.arraycopy(
+              exceedances.probabilities.get(imt).get(gmm), 0,
+              gmmProbabilities, offset, length);
+          System.arraycopy(
+              exceedances.epsilons.get(imt).get(gmm), 0,
+              gmmEpsilons, offset, length);
+          offset += length;
+        }
+        imtProbabilities.put(gmm, gmmProbabilities);
+        imtEpsilons.put(gmm, gmmEpsilons);
+      }
+      probabilities.put(imt, imtProbabilities);
+      epsilons.put(imt, imtEpsilons);
+    }
+    return new ImlExceedances(inputs, probabilities, epsilons);
+  }
+
+}
@@ -1,24 +1,58 @@
 package gov.usgs.earthquake.nshmp.calc;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.NEWLINE;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 
 import java.util.AbstractList;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import gov.usgs.earthquake.nshmp.gmm.BatchGroundMotionModel;
+
 /**
- * Lightweight {@code List} wrapper of {@code HazardInput}s. The {@code List}
- * may only be added to; all other optional operations of {@code AbstractList}
- * throw an {@code UnsupportedOperationException}.
+ * Lightweight {@code List} of {@code HazardInput}s. The {@code List} may only
+ * be added to; all other optional operations of {@code AbstractList} throw an
+ * {@code UnsupportedOperationException}.
+ *
+ * <p>Internally, rupture properties are stored in parallel primitive arrays
+ * (columns) and site properties, which are common to all inputs in a list, are
+ * stored once. Calls to {@link #get(int)} create a new {@code HazardInput} for
+ * the requested row; performance sensitive code should favor the indexed
+ * accessors (e.g. {@link #rate(int)}, {@link #Mw(int)}) that read directly
+ * from the underlying columns. An {@code InputList} may also be supplied
+ * directly to a {@link BatchGroundMotionModel}.
  *
  * @author Peter Powers
  */
-public abstract class InputList extends AbstractList<HazardInput> {
+public abstract class InputList extends AbstractList<HazardInput>
+    implements BatchGroundMotionModel.Inputs {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /* Rupture columns. */
+  private double[] rate;
+  private double[] Mw;
+  private double[] rJB;
+  private double[] rRup;
+  private double[] rX;
+  private double[] dip;
+  private double[] width;
+  private double[] zTop;
+  private double[] zHyp;
+  private double[] rake;
 
-  private final List<HazardInput> delegate;
+  /* Site properties shared by all inputs. */
+  final double vs30;
+  final boolean vsInf;
+  final double z1p0;
+  final double z2p5;
+
+  /* Partition offset into columns. */
+  private final int offset;
+  private int size;
 
   /*
    * minDistance is used to track the closest distance of any Rupture in a
@@ -27,29 +61,215 @@ public abstract class InputList extends AbstractList<HazardInput> {
    */
   double minDistance = Double.MAX_VALUE;
 
-  InputList() {
-    delegate = new ArrayList<>();
+  /*
+   * The site may only be null for lists that will remain empty.
+   */
+  InputList(Site site) {
+    this.vs30 = (site == null) ? Double.NaN : site.vs30;
+    this.vsInf = (site == null) ? false : site.vsInferred;
+    this.z1p0 = (site == null) ? Double.NaN : site.z1p0;
+    this.z2p5 = (site == null) ? Double.NaN : site.z2p5;
+    this.offset = 0;
+    this.size = 0;
+    initColumns(DEFAULT_CAPACITY);
   }
 
   /* Internal use only for Partitions. */
-  private InputList(List<HazardInput> sublist) {
-    delegate = sublist;
+  private InputList(InputList parent, int offset, int size) {
+    this.vs30 = parent.vs30;
+    this.vsInf = parent.vsInf;
+    this.z1p0 = parent.z1p0;
+    this.z2p5 = parent.z2p5;
+    this.rate = parent.rate;
+    this.Mw = parent.Mw;
+    this.rJB = parent.rJB;
+    this.rRup = parent.rRup;
+    this.rX = parent.rX;
+    this.dip = parent.dip;
+    this.width = parent.width;
+    this.zTop = parent.zTop;
+    this.zHyp = parent.zHyp;
+    this.rake = parent.rake;
+    this.offset = parent.offset + offset;
+    this.size = size;
+    for (int i = 0; i < size; i++) {
+      minDistance = Math.min(minDistance, rJB[this.offset + i]);
+    }
+  }
+
+  private void initColumns(int capacity) {
+    rate = new double[capacity];
+    Mw = new double[capacity];
+    rJB = new double[capacity];
+    rRup = new double[capacity];
+    rX = new double[capacity];
+    dip = new double[capacity];
+    width = new double[capacity];
+    zTop = new double[capacity];
+    zHyp = new double[capacity];
+    rake = new double[capacity];
+  }
+
+  private void ensureCapacity() {
+    if (size < rate.length) {
+      return;
+    }
+    int capacity = rate.length + (rate.length >> 1) + 1;
+    rate = Arrays.copyOf(rate, capacity);
+    Mw = Arrays.copyOf(Mw, capacity);
+    rJB = Arrays.copyOf(rJB, capacity);
+    rRup = Arrays.copyOf(rRup, capacity);
+    rX = Arrays.copyOf(rX, capacity);
+    dip = Arrays.copyOf(dip, capacity);
+    width = Arrays.copyOf(width, capacity);
+    zTop = Arrays.copyOf(zTop, capacity);
+    zHyp = Arrays.copyOf(zHyp, capacity);
+    rake = Arrays.copyOf(rake, capacity);
+  }
+
+  /**
+   * Add a row of rupture properties to this list. Site properties are those
+   * supplied when this list was created.
+   */
+  public void add(
+      double rate,
+      double Mw, double rJB, double rRup, double rX,
+      double dip, double width, double zTop, double zHyp, double rake) {
+
+    ensureCapacity();
+    int i = size++;
+    this.rate[i] = rate;
+    this.Mw[i] = Mw;
+    this.rJB[i] = rJB;
+    this.rRup[i] = rRup;
+    this.rX[i] = rX;
+    this.dip[i] = dip;
+    this.width[i] = width;
+    this.zTop[i] = zTop;
+    this.zHyp[i] = zHyp;
+    this.rake[i] = rake;
+    minDistance = Math.min(minDistance, rJB);
   }
 
+  /**
+   * Add a {@code HazardInput} to this list.
+   *
+   * @throws IllegalArgumentException if the site properties of the supplied
+   *         {@code input} differ from those of this list
+   */
   @Override
   public boolean add(HazardInput input) {
-    minDistance = Math.min(minDistance, input.rJB);
-    return delegate.add(input);
+    checkArgument(
+        sameValue(input.vs30, vs30) &&
+            input.vsInf == vsInf &&
+            sameValue(input.z1p0, z1p0) &&
+            sameValue(input.z2p5, z2p5),
+        "Input site properties differ from those of list");
+    add(
+        input.rate,
+        input.Mw, input.rJB, input.rRup, input.rX,
+        input.dip, input.width, input.zTop, input.zHyp, input.rake);
+    return true;
+  }
+
+  /* NaN safe equality for basin terms. */
+  private static boolean sameValue(double v1, double v2) {
+    return Double.compare(v1, v2) == 0;
   }
 
   @Override
   public HazardInput get(int index) {
-    return delegate.get(index);
+    checkElementIndex(index, size);
+    int i = offset + index;
+    return new HazardInput(
+        rate[i],
+        Mw[i], rJB[i], rRup[i], rX[i],
+        dip[i], width[i], zTop[i], zHyp[i], rake[i],
+        vs30, vsInf, z1p0, z2p5);
   }
 
   @Override
   public int size() {
-    return delegate.size();
+    return size;
+  }
+
+  @Override
+  public double vs30() {
+    return vs30;
+  }
+
+  @Override
+  public boolean vsInf() {
+    return vsInf;
+  }
+
+  @Override
+  public double z1p0() {
+    return z1p0;
+  }
+
+  @Override
+  public double z2p5() {
+    return z2p5;
+  }
+
+  /** The rate of the input at {@code index}. */
+  public double rate(int index) {
+    return rate[offset + index];
+  }
+
+  /** The moment magnitude of the input at {@code index}. */
+  @Override
+  public double Mw(int index) {
+    return Mw[offset + index];
+  }
+
+  /** The Joyner-Boore distance of the input at {@code index}. */
+  @Override
+  public double rJB(int index) {
+    return rJB[offset + index];
+  }
+
+  /** The rupture distance of the input at {@code index}. */
+  @Override
+  public double rRup(int index) {
+    return rRup[offset + index];
+  }
+
+  /** The distance X of the input at {@code index}. */
+  @Override
+  public double rX(int index) {
+    return rX[offset + index];
+  }
+
+  /** The rupture dip of the input at {@code index}. */
+  @Override
+  public double dip(int index) {
+    return dip[offset + index];
+  }
+
+  /** The rupture width of the input at {@code index}. */
+  @Override
+  public double width(int index) {
+    return width[offset + index];
+  }
+
+  /** The depth to top of rupture of the input at {@code index}. */
+  @Override
+  public double zTop(int index) {
+    return zTop[offset + index];
+  }
+
+  /** The hypocentral depth of the input at {@code index}. */
+  @Override
+  public double zHyp(int index) {
+    return zHyp[offset + index];
+  }
+
+  /** The rupture rake of the input at {@code index}. */
+  @Override
+  public double rake(int index) {
+    return rake[offset + index];
   }
 
   @Override
@@ -66,20 +286,31 @@ public abstract class InputList extends AbstractList<HazardInput> {
 
   /*
    * Returns consecutive sub-{@code InputList}s of this list, each of the same
-   * size, although the final list may be smaller.
+   * size, although the final list may be smaller. Partitions are views that
+   * share the columns of this list and should only be created once this list
+   * has been fully populated.
    */
   List<InputList> partition(int size) {
+    checkArgument(size > 0);
     ImmutableList.Builder<InputList> builder = ImmutableList.builder();
-    for (List<HazardInput> subList : Lists.partition(this, size)) {
-      builder.add(new Partition(subList));
+    for (int start = 0; start < this.size; start += size) {
+      builder.add(new Partition(start, Math.min(size, this.size - start)));
     }
     return builder.build();
   }
 
   private class Partition extends InputList {
 
-    Partition(List<HazardInput> sublist) {
-      super(sublist);
+    Partition(int offset, int size) {
+      super(InputList.this, offset, size);
+    }
+
+    @Override
+    public void add(
+        double rate,
+        double Mw, double rJB, double rRup, double rX,
+        double dip, double width, double zTop, double zHyp, double rake) {
+      throw new UnsupportedOperationException();
     }
 
     @Override
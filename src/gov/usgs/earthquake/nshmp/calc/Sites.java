@@ -1,6 +1,7 @@
 package gov.usgs.earthquake.nshmp.calc;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndex;
 import static com.google.common.base.Preconditions.checkState;
 import static gov.usgs.earthquake.nshmp.geo.BorderType.MERCATOR_LINEAR;
 import static gov.usgs.earthquake.nshmp.internal.GeoJson.validateProperty;
@@ -11,9 +12,11 @@ import static gov.usgs.earthquake.nshmp.internal.TextUtils.NULL;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.reflect.TypeToken;
+import com.google.common.collect.Iterators;
+import com.google.common.primitives.Longs;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
@@ -21,14 +24,21 @@ import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -53,90 +63,23 @@ public abstract class Sites implements Iterable<Site> {
 
   /**
    * Create an unmodifiable {@code Iterable<Site>} from the comma-delimted site
-   * file designated by {@code path}.
+   * file designated by {@code path}. The file is read once up front to count
+   * and validate its sites, but sites are only retained in memory while being
+   * iterated; each iterator parses rows on demand.
    *
    * @param path to comma-delimited site data file
    * @throws IOException if a problem is encountered
    */
   public static Sites fromCsv(Path path, CalcConfig defaults) throws IOException {
-    return readCsv(path, defaults);
-  }
-
-  private static Sites readCsv(Path path, CalcConfig defaults) throws IOException {
-
     checkArgument(Files.exists(path), "Site file [%s] does not exist", path);
-
-    ImmutableList.Builder<Site> listBuilder = ImmutableList.builder();
-    Builder siteBuilder = Site.builder(defaults);
-
-    List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
-    boolean firstline = true;
-    List<String> keyList = new ArrayList<>();
-    for (String line : lines) {
-
-      /* Skip comments */
-      if (line.startsWith("#")) {
-        continue;
-      }
-      if (line.trim().isEmpty()) {
-        continue;
-      }
-
-      List<String> values = Parsing.splitToList(line, Delimiter.COMMA);
-
-      /* Set up key/column ordering */
-      if (firstline) {
-        for (String key : values) {
-          checkState(Site.KEYS.contains(key), "Illegal site property key [%s]", key);
-          keyList.add(key);
-        }
-        checkState(keyList.contains(Site.Key.LAT), "Site latitudes must be defined");
-        checkState(keyList.contains(Site.Key.LON), "Site longitudes must be defined");
-        firstline = false;
-        continue;
-      }
-
-      int index = 0;
-      double lat = 0.0;
-      double lon = 0.0;
-      for (String key : keyList) {
-        String value = values.get(index);
-        switch (key) {
-          case Site.Key.LAT:
-            lat = Double.parseDouble(value);
-            break;
-          case Site.Key.LON:
-            lon = Double.parseDouble(value);
-            break;
-          case Site.Key.NAME:
-            siteBuilder.name(value);
-            break;
-          case Site.Key.VS30:
-            siteBuilder.vs30(Double.parseDouble(value));
-            break;
-          case Site.Key.VS_INF:
-            siteBuilder.vsInferred(Boolean.parseBoolean(value));
-            break;
-          case Site.Key.Z1P0:
-            siteBuilder.z1p0(value.equals(NULL) ? Double.NaN : Double.parseDouble(value));
-            break;
-          case Site.Key.Z2P5:
-            siteBuilder.z2p5(value.equals(NULL) ? Double.NaN : Double.parseDouble(value));
-            break;
-          default:
-            throw new IllegalStateException("Unsupported site key: " + key);
-        }
-        index++;
-      }
-      siteBuilder.location(lat, lon);
-      listBuilder.add(siteBuilder.build());
-    }
-    return new ListIterable(listBuilder.build());
+    return new CsvIterable(path, defaults);
   }
 
   /**
    * Create an unmodifiable {@code Iterable<Site>} from the GeoJSON site file
-   * designated by {@code path}.
+   * designated by {@code path}. Files of point features are read once up front
+   * to count and validate their sites, but sites are only retained in memory
+   * while being iterated; each iterator parses features on demand.
    *
    * @param path to GeoJson site data file
    * @throws IOException if a problem is encountered
@@ -147,6 +90,20 @@ public abstract class Sites implements Iterable<Site> {
         .registerTypeAdapter(Site.class, new Site.Deserializer(defaults))
         .registerTypeAdapter(Sites.class, new Deserializer(defaults))
         .create();
+
+    /* Stream site lists */
+    try (JsonReader reader = openFeatures(path)) {
+      checkState(reader.hasNext(), "Feature array is empty");
+      JsonObject feature = gson.fromJson(reader, JsonObject.class);
+      String featureType = feature
+          .getAsJsonObject(GeoJson.Key.GEOMETRY)
+          .get(GeoJson.Key.TYPE).getAsString();
+      if (featureType.equals(GeoJson.Value.POINT)) {
+        return new JsonIterable(path, gson);
+      }
+    }
+
+    /* Regions are small and are deserialized in full */
     Reader reader = Files.newBufferedReader(path, UTF_8);
     Sites iterable = gson.fromJson(reader, Sites.class);
     reader.close();
@@ -216,7 +173,7 @@ public abstract class Sites implements Iterable<Site> {
           .append(size())
           .append("]");
 
-      for (Site site : Iterables.limit(this, TO_STRING_LIMIT)) {
+      for (Site site : preview()) {
         sb.append(SITE_INDENT).append(site);
       }
       if (size() > TO_STRING_LIMIT) {
@@ -227,11 +184,43 @@ public abstract class Sites implements Iterable<Site> {
     return sb.toString();
   }
 
+  /* The first few sites, for display. */
+  Iterable<Site> preview() {
+    return Iterables.limit(this, TO_STRING_LIMIT);
+  }
+
   /**
    * The number of {@code Site}s {@code this} contains.
    */
   public abstract int size();
 
+  /**
+   * Returns the first {@code Site} in this container. Unlike
+   * {@code iterator().next()}, this method does not leave file-backed site
+   * iterators open.
+   *
+   * @throws java.util.NoSuchElementException if this container is empty
+   */
+  public Site first() {
+    return iterator().next();
+  }
+
+  /**
+   * Returns an iterator over the {@code Site}s in this container, starting at
+   * the specified index. This may be used to resume a calculation that was
+   * interrupted after some number of sites had been processed.
+   *
+   * @param index of the first {@code Site} to be returned
+   * @throws IndexOutOfBoundsException if {@code index} is negative or greater
+   *         than {@link #size()}
+   */
+  public Iterator<Site> iterator(int index) {
+    checkPositionIndex(index, size());
+    Iterator<Site> iterator = iterator();
+    Iterators.advance(iterator, index);
+    return iterator;
+  }
+
   /**
    * An optional {@code Bounds} that is used to specify rectangular map extents,
    * which may differ from the range spanned by the sites in this. Presently
@@ -259,6 +248,11 @@ public abstract class Sites implements Iterable<Site> {
       return delegate.iterator();
     }
 
+    @Override
+    public Iterator<Site> iterator(int index) {
+      return delegate.listIterator(index);
+    }
+
     @Override
     public int size() {
       return delegate.size();
@@ -275,6 +269,326 @@ public abstract class Sites implements Iterable<Site> {
     }
   }
 
+  /*
+   * Base class for site files that are parsed on demand. Subclasses count and
+   * validate all sites on construction, keeping only the first few for display.
+   */
+  private static abstract class FileIterable extends Sites {
+
+    final Path path;
+    int size;
+    final List<Site> preview = new ArrayList<>();
+
+    FileIterable(Path path) {
+      this.path = path;
+    }
+
+    /* Record a site encountered while validating. */
+    void validated(Site site) {
+      if (size < TO_STRING_LIMIT) {
+        preview.add(site);
+      }
+      size++;
+    }
+
+    @Override
+    Iterable<Site> preview() {
+      return preview;
+    }
+
+    @Override
+    public Site first() {
+      return preview.iterator().next();
+    }
+
+    @Override
+    public Iterator<Site> iterator() {
+      return iterator(0);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public Optional<Bounds> mapBounds() {
+      return Optional.absent();
+    }
+
+    @Override
+    public Optional<Double> mapSpacing() {
+      return Optional.absent();
+    }
+  }
+
+  /*
+   * Comma-delimited site file. The byte offset of every CHECKPOINT_INTERVAL-th
+   * site row is recorded when validating so that iteration can resume from any
+   * index without re-reading the start of the file.
+   */
+  private static final class CsvIterable extends FileIterable {
+
+    static final int CHECKPOINT_INTERVAL = 4096;
+
+    final CalcConfig defaults;
+    List<String> keys;
+    final long[] checkpoints;
+
+    CsvIterable(Path path, CalcConfig defaults) throws IOException {
+      super(path);
+      this.defaults = defaults;
+      Builder siteBuilder = Site.builder(defaults);
+      List<Long> offsets = new ArrayList<>();
+      try (LineReader reader = new LineReader(path, 0L)) {
+        long offset = reader.position();
+        String line = null;
+        while ((line = reader.readLine()) != null) {
+          List<String> values = splitRow(line);
+          if (values != null) {
+            if (keys == null) {
+              keys = readKeys(values);
+            } else {
+              if (size % CHECKPOINT_INTERVAL == 0) {
+                offsets.add(offset);
+              }
+              validated(readSite(keys, values, siteBuilder));
+            }
+          }
+          offset = reader.position();
+        }
+      }
+      this.checkpoints = Longs.toArray(offsets);
+    }
+
+    @Override
+    public Iterator<Site> iterator(int index) {
+      checkPositionIndex(index, size);
+      if (index == size) {
+        return Collections.emptyIterator();
+      }
+      final Builder siteBuilder = Site.builder(defaults);
+      final LineReader reader = openAt(index);
+      return new AbstractIterator<Site>() {
+        @Override
+        protected Site computeNext() {
+          try {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+              List<String> values = splitRow(line);
+              if (values != null) {
+                return readSite(keys, values, siteBuilder);
+              }
+            }
+            reader.close();
+            return endOfData();
+          } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+          }
+        }
+      };
+    }
+
+    /* Open a reader positioned at the start of the site row at index. */
+    private LineReader openAt(int index) {
+      try {
+        LineReader reader = new LineReader(path, checkpoints[index / CHECKPOINT_INTERVAL]);
+        for (int skip = index % CHECKPOINT_INTERVAL; skip > 0;) {
+          if (splitRow(reader.readLine()) != null) {
+            skip--;
+          }
+        }
+        return reader;
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+
+    /* Split a row into values, returning null for comments and blank lines. */
+    private static List<String> splitRow(String line) {
+      if (line.startsWith("#") || line.trim().isEmpty()) {
+        return null;
+      }
+      return Parsing.splitToList(line, Delimiter.COMMA);
+    }
+
+    private static List<String> readKeys(List<String> values) {
+      List<String> keyList = new ArrayList<>();
+      for (String key : values) {
+        checkState(Site.KEYS.contains(key), "Illegal site property key [%s]", key);
+        keyList.add(key);
+      }
+      checkState(keyList.contains(Site.Key.LAT), "Site latitudes must be defined");
+      checkState(keyList.contains(Site.Key.LON), "Site longitudes must be defined");
+      return keyList;
+    }
+
+    private static Site readSite(List<String> keys, List<String> values, Builder siteBuilder) {
+      int index = 0;
+      double lat = 0.0;
+      double lon = 0.0;
+      for (String key : keys) {
+        String value = values.get(index);
+        switch (key) {
+          case Site.Key.LAT:
+            lat = Double.parseDouble(value);
+            break;
+          case Site.Key.LON:
+            lon = Double.parseDouble(value);
+            break;
+          case Site.Key.NAME:
+            siteBuilder.name(value);
+            break;
+          case Site.Key.VS30:
+            siteBuilder.vs30(Double.parseDouble(value));
+            break;
+          case Site.Key.VS_INF:
+            siteBuilder.vsInferred(Boolean.parseBoolean(value));
+            break;
+          case Site.Key.Z1P0:
+            siteBuilder.z1p0(value.equals(NULL) ? Double.NaN : Double.parseDouble(value));
+            break;
+          case Site.Key.Z2P5:
+            siteBuilder.z2p5(value.equals(NULL) ? Double.NaN : Double.parseDouble(value));
+            break;
+          default:
+            throw new IllegalStateException("Unsupported site key: " + key);
+        }
+        index++;
+      }
+      siteBuilder.location(lat, lon);
+      return siteBuilder.build();
+    }
+  }
+
+  /*
+   * Reads UTF-8 lines from a file, tracking the byte offset of the next line.
+   * Lines may be terminated by '\n' or "\r\n".
+   */
+  private static final class LineReader implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private byte[] line = new byte[256];
+    private long position;
+
+    LineReader(Path path, long position) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      this.channel.position(position);
+      this.position = position;
+      buffer.flip();
+    }
+
+    long position() {
+      return position;
+    }
+
+    String readLine() throws IOException {
+      int count = 0;
+      boolean read = false;
+      while (true) {
+        if (!buffer.hasRemaining()) {
+          buffer.clear();
+          int n = channel.read(buffer);
+          buffer.flip();
+          if (n <= 0) {
+            break;
+          }
+        }
+        read = true;
+        byte b = buffer.get();
+        position++;
+        if (b == '\n') {
+          break;
+        }
+        if (count == line.length) {
+          line = Arrays.copyOf(line, count * 2);
+        }
+        line[count++] = b;
+      }
+      if (!read) {
+        return null;
+      }
+      if (count > 0 && line[count - 1] == '\r') {
+        count--;
+      }
+      return new String(line, 0, count, UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /*
+   * GeoJSON file of point features.
+   */
+  private static final class JsonIterable extends FileIterable {
+
+    final Gson gson;
+
+    JsonIterable(Path path, Gson gson) throws IOException {
+      super(path);
+      this.gson = gson;
+      try (JsonReader reader = openFeatures(path)) {
+        while (reader.hasNext()) {
+          Site site = gson.fromJson(reader, Site.class);
+          validated(site);
+        }
+      }
+    }
+
+    @Override
+    public Iterator<Site> iterator(int index) {
+      checkPositionIndex(index, size);
+      try {
+        final JsonReader reader = openFeatures(path);
+        for (int i = 0; i < index; i++) {
+          reader.skipValue();
+        }
+        return new AbstractIterator<Site>() {
+          @Override
+          protected Site computeNext() {
+            try {
+              if (reader.hasNext()) {
+                return gson.fromJson(reader, Site.class);
+              }
+              reader.close();
+              return endOfData();
+            } catch (IOException ioe) {
+              throw new UncheckedIOException(ioe);
+            }
+          }
+        };
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+  }
+
+  /*
+   * Open a GeoJSON file and position the returned reader at the first element
+   * of the feature array.
+   */
+  private static JsonReader openFeatures(Path path) throws IOException {
+    JsonReader reader = new JsonReader(Files.newBufferedReader(path, UTF_8));
+    try {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (reader.nextName().equals(GeoJson.Key.FEATURES)) {
+          reader.beginArray();
+          return reader;
+        }
+        reader.skipValue();
+      }
+      throw new IllegalStateException("Feature array is missing");
+    } catch (IOException | RuntimeException e) {
+      reader.close();
+      throw e;
+    }
+  }
+
   private static final class RegionIterable extends Sites {
 
     final GriddedRegion region;
@@ -364,11 +678,10 @@ public abstract class Sites implements Iterable<Site> {
       String featureType = features.get(0).getAsJsonObject()
           .get(GeoJson.Key.GEOMETRY).getAsJsonObject()
           .get(GeoJson.Key.TYPE).getAsString();
-      if (featureType.equals(GeoJson.Value.POINT)) {
-        Type siteType = new TypeToken<List<Site>>() {}.getType();
-        List<Site> sites = context.deserialize(features, siteType);
-        return new ListIterable(ImmutableList.copyOf(sites));
-      }
+      // site lists are streamed by JsonIterable
+      checkState(
+          !featureType.equals(GeoJson.Value.POINT),
+          "Point features must be read with Sites.fromJson()");
 
       // or a region
       checkState(features.size() <= 2, "Only 2 polygon features may be defined");
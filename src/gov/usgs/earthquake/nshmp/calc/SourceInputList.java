@@ -15,7 +15,8 @@ final class SourceInputList extends InputList {
 
   final Source parent;
 
-  SourceInputList(Source parent) {
+  SourceInputList(Source parent, Site site) {
+    super(checkNotNull(site));
     this.parent = checkNotNull(parent);
   }
 
@@ -2,9 +2,7 @@ package gov.usgs.earthquake.nshmp.calc;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.ArrayList;
-import java.util.BitSet;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Set;
 
 import gov.usgs.earthquake.nshmp.eq.model.SystemSourceSet;
@@ -39,23 +37,37 @@ public final class SystemInputList extends InputList {
 
   final SystemSourceSet parent;
   final Set<Integer> sectionIndices; // ascending in rRup
-  final List<BitSet> bitsets; // source/rupture bisets
+  private int[] sources; // source/rupture indices
+  private int sourceCount;
 
   public SystemInputList(
       SystemSourceSet parent,
+      Site site,
       Set<Integer> sectionIndices) {
 
+    super(site); // may be null for empty only
     this.parent = checkNotNull(parent);
     this.sectionIndices = sectionIndices; // may be null for empty only
-    this.bitsets = new ArrayList<>();
+    this.sources = new int[16];
   }
 
   public static SystemInputList empty(SystemSourceSet parent) {
-    return new SystemInputList(parent, null);
+    return new SystemInputList(parent, null, null);
   }
 
-  public void addBitset(BitSet bitset) {
-    bitsets.add(bitset);
+  public void addSource(int index) {
+    if (sourceCount == sources.length) {
+      sources = Arrays.copyOf(sources, sourceCount + (sourceCount >> 1) + 1);
+    }
+    sources[sourceCount++] = index;
+  }
+
+  /*
+   * Whether the fault section at sectionIndex participates in the source of
+   * the input at inputIndex.
+   */
+  boolean hasSection(int inputIndex, int sectionIndex) {
+    return parent.sourceHasSection(sources[inputIndex], sectionIndex);
   }
 
   @Override
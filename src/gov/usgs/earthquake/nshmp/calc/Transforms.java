@@ -8,16 +8,24 @@ import static gov.usgs.earthquake.nshmp.gmm.Gmm.instances;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.MultimapBuilder;
+import com.google.common.primitives.Doubles;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Executor;
 
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.SourceSetMetrics;
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.Stage;
 import gov.usgs.earthquake.nshmp.calc.ClusterCurves.Builder;
+import gov.usgs.earthquake.nshmp.data.Data;
 import gov.usgs.earthquake.nshmp.data.XySequence;
 import gov.usgs.earthquake.nshmp.eq.fault.Faults;
 import gov.usgs.earthquake.nshmp.eq.fault.surface.RuptureSurface;
@@ -31,11 +39,14 @@ import gov.usgs.earthquake.nshmp.eq.model.Rupture;
 import gov.usgs.earthquake.nshmp.eq.model.Source;
 import gov.usgs.earthquake.nshmp.eq.model.SourceSet;
 import gov.usgs.earthquake.nshmp.eq.model.SystemSourceSet;
+import gov.usgs.earthquake.nshmp.gmm.BatchGroundMotionModel;
+import gov.usgs.earthquake.nshmp.gmm.DefaultScalarGroundMotion;
 import gov.usgs.earthquake.nshmp.gmm.Gmm;
 import gov.usgs.earthquake.nshmp.gmm.GmmInput;
 import gov.usgs.earthquake.nshmp.gmm.GroundMotionModel;
 import gov.usgs.earthquake.nshmp.gmm.Imt;
 import gov.usgs.earthquake.nshmp.gmm.ScalarGroundMotion;
+import gov.usgs.earthquake.nshmp.gmm.SpectralGroundMotionModel;
 
 /**
  * Data transform {@link Function}s. These are called exclusively from
@@ -64,14 +75,20 @@ final class Transforms {
   static final class SourceToInputs implements Function<Source, InputList> {
 
     private final Site site;
+    private final SourceSetMetrics metrics;
 
     SourceToInputs(Site site) {
+      this(site, new SourceSetMetrics(null));
+    }
+
+    SourceToInputs(Site site, SourceSetMetrics metrics) {
       this.site = site;
+      this.metrics = metrics;
     }
 
     @Override
     public SourceInputList apply(Source source) {
-      SourceInputList hazardInputs = new SourceInputList(source);
+      SourceInputList hazardInputs = new SourceInputList(source, site);
 
       for (Rupture rup : source) {
 
@@ -83,7 +100,7 @@ final class Transforms {
         double zTop = surface.depth();
         double zHyp = Faults.hypocentralDepth(dip, width, zTop);
 
-        HazardInput input = new HazardInput(
+        hazardInputs.add(
             rup.rate(),
             rup.mag(),
             distances.rJB,
@@ -93,14 +110,12 @@ final class Transforms {
             width,
             zTop,
             zHyp,
-            rup.rake(),
-            site.vs30,
-            site.vsInferred,
-            site.z1p0,
-            site.z2p5);
-        hazardInputs.add(input);
+            rup.rake());
       }
 
+      metrics.addSources(1);
+      metrics.addRuptures(hazardInputs.size());
+      metrics.addInputs(hazardInputs.size());
       return hazardInputs;
     }
   }
@@ -114,12 +129,58 @@ final class Transforms {
 
     private final GmmProcessor gmmProcessor;
     private final Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable;
+    private final Map<Gmm, SpectralGroundMotionModel> spectralModels;
+    private final SourceSetMetrics metrics;
 
     InputsToGroundMotions(
         CalcConfig config,
-        Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable) {
-      this.gmmProcessor = GmmProcessor.instance(config);
+        Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable,
+        SourceSetMetrics metrics) {
+      this.gmmProcessor = GmmProcessor.instance(config, metrics);
       this.gmmTable = gmmTable;
+      this.spectralModels = spectralModels(gmmTable, gmmProcessor);
+      this.metrics = metrics;
+    }
+
+    /*
+     * The minimum number of Imts at which spectral evaluation of a batchable
+     * Gmm was measured to be faster than batch evaluation of each Imt (see
+     * SpectralBenchmark). ASK14 and BSSA14 are faster in batch for any number
+     * of Imts; CY14 is faster spectrally for two or more. The margins are
+     * 4-30%, with ground motions computed for 200 ruptures and one site.
+     */
+    private static final Map<Gmm, Integer> SPECTRAL_MIN_IMTS = Maps.immutableEnumMap(
+        ImmutableMap.of(
+            Gmm.CB_14, 4,
+            Gmm.CY_14, 2,
+            Gmm.IDRISS_14, 4));
+
+    /*
+     * Spectral models for those Gmms that do not support batch calculation,
+     * or that were measured to be faster spectrally for the number of Imts
+     * required, when ground motions are required for more than one Imt. As
+     * with batch calculations, only the default processor supports spectral
+     * models.
+     */
+    private static Map<Gmm, SpectralGroundMotionModel> spectralModels(
+        Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable,
+        GmmProcessor gmmProcessor) {
+
+      Map<Gmm, SpectralGroundMotionModel> spectralModels = Maps.newEnumMap(Gmm.class);
+      Set<Imt> imtKeys = gmmTable.keySet();
+      if (imtKeys.size() < 2 || !gmmProcessor.batchable()) {
+        return spectralModels;
+      }
+      Map<Gmm, GroundMotionModel> models = gmmTable.get(imtKeys.iterator().next());
+      for (Entry<Gmm, GroundMotionModel> entry : models.entrySet()) {
+        Gmm gmm = entry.getKey();
+        Integer minImts = SPECTRAL_MIN_IMTS.get(gmm);
+        if (!(entry.getValue() instanceof BatchGroundMotionModel) ||
+            (minImts != null && imtKeys.size() >= minImts)) {
+          spectralModels.put(gmm, gmm.spectralInstance(imtKeys));
+        }
+      }
+      return spectralModels;
     }
 
     @Override
@@ -132,14 +193,61 @@ final class Transforms {
           imtKeys,
           gmmKeys);
 
+      /*
+       * Models that support batch calculation read directly from the
+       * underlying InputList columns. For all other models, inputs are
+       * materialized once per row, as needed, and reused across all Imt-Gmm
+       * combinations. Spectral models compute ground motions for all Imts
+       * of each input in one call. Ground motions are appended to each
+       * Imt-Gmm list in input order.
+       */
+      boolean batchable = gmmProcessor.batchable();
+      int size = inputs.size();
+      double[] μ = batchable ? new double[size] : null;
+      double[] σ = batchable ? new double[size] : null;
+      GmmInput[] gmmInputs = null;
+
+      for (Entry<Gmm, SpectralGroundMotionModel> entry : spectralModels.entrySet()) {
+        Gmm gmm = entry.getKey();
+        SpectralGroundMotionModel model = entry.getValue();
+        List<Imt> imts = model.imts();
+        metrics.addGmmCalcs(gmm, size * imts.size());
+        if (gmmInputs == null) {
+          gmmInputs = inputs.toArray(new GmmInput[size]);
+        }
+        ScalarGroundMotion[] sgms = new ScalarGroundMotion[imts.size()];
+        for (GmmInput gmmInput : gmmInputs) {
+          model.calc(gmmInput, sgms);
+          for (int i = 0; i < sgms.length; i++) {
+            builder.add(imts.get(i), gmm, sgms[i]);
+          }
+        }
+      }
+
       for (Imt imt : imtKeys) {
+        Map<Gmm, GroundMotionModel> models = gmmTable.get(imt);
         for (Gmm gmm : gmmKeys) {
-          GroundMotionModel model = gmmTable.get(imt).get(gmm);
-          for (GmmInput gmmInput : inputs) {
-            builder.add(
-                imt,
-                gmm,
-                gmmProcessor.apply(model, gmmInput, imt, gmm));
+          if (spectralModels.containsKey(gmm)) {
+            continue;
+          }
+          GroundMotionModel model = models.get(gmm);
+          if (batchable && model instanceof BatchGroundMotionModel) {
+            metrics.addGmmCalcs(gmm, size);
+            ((BatchGroundMotionModel) model).calc(inputs, μ, σ);
+            for (int i = 0; i < size; i++) {
+              builder.add(imt, gmm, DefaultScalarGroundMotion.create(μ[i], σ[i]));
+            }
+            continue;
+          }
+          if (!gmmProcessor.cached()) {
+            // cached evaluations are counted on cache misses
+            metrics.addGmmCalcs(gmm, size);
+          }
+          if (gmmInputs == null) {
+            gmmInputs = inputs.toArray(new GmmInput[size]);
+          }
+          for (GmmInput gmmInput : gmmInputs) {
+            builder.add(imt, gmm, gmmProcessor.apply(model, gmmInput, imt, gmm));
           }
         }
       }
@@ -150,51 +258,92 @@ final class Transforms {
   /*
    * GroundMotions --> HazardCurves
    *
-   * Derive hazard curves for a set of ground motions.
+   * Derive hazard curves for a set of ground motions. If a deaggregation iml
+   * is set, also derive the exceedances of that iml needed to deaggregate the
+   * source.
    */
   static final class GroundMotionsToCurves implements Function<GroundMotions, HazardCurves> {
 
     private final Map<Imt, XySequence> modelCurves;
+    private final Map<Imt, double[]> modelXs;
     private final ExceedanceModel exceedanceModel;
     private final double truncationLevel;
+    private final double deaggIml;
+    private final SourceSetMetrics metrics;
 
-    GroundMotionsToCurves(CalcConfig config) {
+    GroundMotionsToCurves(CalcConfig config, SourceSetMetrics metrics) {
       this.modelCurves = config.hazard.logModelCurves();
+      this.modelXs = xValues(modelCurves);
       this.exceedanceModel = config.hazard.exceedanceModel;
       this.truncationLevel = config.hazard.truncationLevel;
+      this.deaggIml = deaggIml(config);
+      this.metrics = metrics;
     }
 
     @Override
     public HazardCurves apply(GroundMotions gms) {
 
       HazardCurves.Builder curveBuilder = HazardCurves.builder(gms);
+      int exceedances = 0;
 
       for (Entry<Imt, Map<Gmm, List<ScalarGroundMotion>>> imtEntry : gms.gmMap.entrySet()) {
 
         Imt imt = imtEntry.getKey();
-        XySequence modelCurve = modelCurves.get(imt);
-        XySequence utilCurve = XySequence.copyOf(modelCurve);
-        XySequence gmmCurve = XySequence.copyOf(modelCurve);
+        XySequence gmmCurve = XySequence.copyOf(modelCurves.get(imt));
+        double[] xs = modelXs.get(imt);
+        double[] utilYs = new double[xs.length];
+        double[] gmmYs = new double[xs.length];
 
         for (Entry<Gmm, List<ScalarGroundMotion>> gmmEntry : imtEntry.getValue().entrySet()) {
-          gmmCurve.clear();
+          Arrays.fill(gmmYs, 0.0);
           int i = 0;
           for (ScalarGroundMotion sgm : gmmEntry.getValue()) {
             exceedanceModel.exceedance(
                 sgm,
                 truncationLevel,
                 imt,
-                utilCurve);
-            utilCurve.multiply(gms.inputs.get(i++).rate);
-            gmmCurve.add(utilCurve);
+                xs,
+                utilYs);
+            Data.multiply(gms.inputs.rate(i++), utilYs);
+            Data.add(gmmYs, utilYs);
           }
-          curveBuilder.addCurve(imt, gmmEntry.getKey(), gmmCurve);
+          exceedances += i;
+          curveBuilder.addCurve(imt, gmmEntry.getKey(), gmmCurve.clear().add(gmmYs));
         }
       }
+      metrics.addExceedances(exceedances);
+      if (!Double.isNaN(deaggIml)) {
+        curveBuilder.exceedances(ImlExceedances.create(
+            gms,
+            gms.gmMap.keySet(),
+            deaggIml,
+            exceedanceModel,
+            truncationLevel));
+      }
       return curveBuilder.build();
     }
   }
 
+  /*
+   * Model curve x-values for use with the primitive exceedance methods of
+   * ExceedanceModel.
+   */
+  private static Map<Imt, double[]> xValues(Map<Imt, XySequence> modelCurves) {
+    Map<Imt, double[]> xValues = Maps.newEnumMap(Imt.class);
+    for (Entry<Imt, XySequence> entry : modelCurves.entrySet()) {
+      xValues.put(entry.getKey(), Doubles.toArray(entry.getValue().xValues()));
+    }
+    return xValues;
+  }
+
+  /*
+   * The natural log of the deaggregation iml, or NaN if hazard is not being
+   * deaggregated at a fixed iml.
+   */
+  private static double deaggIml(CalcConfig config) {
+    return Math.log(config.deagg.iml);
+  }
+
   /*
    * GroundMotions --> HazardCurves
    *
@@ -206,56 +355,85 @@ final class Transforms {
 
     private final GmmSet gmmSet;
     private final Map<Imt, XySequence> modelCurves;
+    private final Map<Imt, double[]> modelXs;
     private final ExceedanceModel exceedanceModel;
     private final double truncationLevel;
+    private final double deaggIml;
+    private final SourceSetMetrics metrics;
+
+    GroundMotionsToCurvesWithUncertainty(
+        GmmSet gmmSet,
+        CalcConfig config,
+        SourceSetMetrics metrics) {
 
-    GroundMotionsToCurvesWithUncertainty(GmmSet gmmSet, CalcConfig config) {
       this.gmmSet = gmmSet;
       this.modelCurves = config.hazard.logModelCurves();
+      this.modelXs = xValues(modelCurves);
       this.exceedanceModel = config.hazard.exceedanceModel;
       this.truncationLevel = config.hazard.truncationLevel;
+      this.deaggIml = deaggIml(config);
+      this.metrics = metrics;
     }
 
     @Override
     public HazardCurves apply(GroundMotions gms) {
 
       HazardCurves.Builder curveBuilder = HazardCurves.builder(gms);
+      int exceedances = 0;
 
       // initialize uncertainty for each input
       InputList inputs = gms.inputs;
       double[] uncertainties = new double[inputs.size()];
       double[] rates = new double[inputs.size()];
       for (int i = 0; i < inputs.size(); i++) {
-        HazardInput input = inputs.get(i);
-        rates[i] = input.rate;
-        uncertainties[i] = gmmSet.epiValue(input.Mw, input.rJB);
+        rates[i] = inputs.rate(i);
+        uncertainties[i] = gmmSet.epiValue(inputs.Mw(i), inputs.rJB(i));
       }
 
       for (Entry<Imt, Map<Gmm, List<ScalarGroundMotion>>> imtEntry : gms.gmMap.entrySet()) {
 
         Imt imt = imtEntry.getKey();
-        XySequence modelCurve = modelCurves.get(imt);
-        XySequence utilCurve = XySequence.copyOf(modelCurve);
-        XySequence gmmCurve = XySequence.copyOf(modelCurve);
+        XySequence gmmCurve = XySequence.copyOf(modelCurves.get(imt));
+        double[] xs = modelXs.get(imt);
+        double[] epiYs = new double[xs.length];
+        double[] utilYs = new double[xs.length];
+        double[] gmmYs = new double[xs.length];
+        double[] epiMeans = new double[3];
 
         for (Entry<Gmm, List<ScalarGroundMotion>> gmmEntry : imtEntry.getValue().entrySet()) {
-          gmmCurve.clear();
+          Arrays.fill(gmmYs, 0.0);
           int i = 0;
           for (ScalarGroundMotion gm : gmmEntry.getValue()) {
             double mean = gm.mean();
             double epi = uncertainties[i];
-            double[] epiMeans = new double[] { mean - epi, mean, mean + epi };
+            epiMeans[0] = mean - epi;
+            epiMeans[1] = mean;
+            epiMeans[2] = mean + epi;
+            Arrays.fill(utilYs, 0.0);
             exceedanceCurve(
                 epiMeans,
                 gm.sigma(),
                 imt,
-                utilCurve.clear());
-            utilCurve.multiply(inputs.get(i++).rate);
-            gmmCurve.add(utilCurve);
+                xs,
+                epiYs,
+                utilYs);
+            Data.multiply(inputs.rate(i++), utilYs);
+            Data.add(gmmYs, utilYs);
           }
-          curveBuilder.addCurve(imt, gmmEntry.getKey(), gmmCurve);
+          exceedances += i * epiMeans.length;
+          curveBuilder.addCurve(imt, gmmEntry.getKey(), gmmCurve.clear().add(gmmYs));
         }
       }
+      metrics.addExceedances(exceedances);
+      /* Deaggregation does not consider epistemic uncertainty. */
+      if (!Double.isNaN(deaggIml)) {
+        curveBuilder.exceedances(ImlExceedances.create(
+            gms,
+            gms.gmMap.keySet(),
+            deaggIml,
+            exceedanceModel,
+            truncationLevel));
+      }
       return curveBuilder.build();
     }
 
@@ -266,13 +444,14 @@ final class Transforms {
      * object as we know this is only used in WUS whereas sgm refactoring was
      * done (experimentally) to handle NGA-East in the CEUS.
      */
-    private XySequence exceedanceCurve(
+    private double[] exceedanceCurve(
         final double[] means,
         final double sigma,
         final Imt imt,
-        final XySequence curve) {
+        final double[] xs,
+        final double[] utilYs,
+        final double[] ys) {
 
-      XySequence utilCurve = XySequence.emptyCopyOf(curve);
       double[] weights = gmmSet.epiWeights();
       for (int i = 0; i < means.length; i++) {
         exceedanceModel.exceedance(
@@ -280,11 +459,12 @@ final class Transforms {
             sigma,
             truncationLevel,
             imt,
-            utilCurve);
-        utilCurve.multiply(weights[i]);
-        curve.add(utilCurve);
+            xs,
+            utilYs);
+        Data.multiply(weights[i], utilYs);
+        Data.add(ys, utilYs);
       }
-      return curve;
+      return ys;
     }
   }
 
@@ -299,32 +479,90 @@ final class Transforms {
     private final Function<Source, InputList> sourceToInputs;
     private final Function<InputList, GroundMotions> inputsToGroundMotions;
     private final Function<GroundMotions, HazardCurves> groundMotionsToCurves;
+    private final SourceSetMetrics metrics;
 
     SourceToCurves(
         SourceSet<? extends Source> sources,
         CalcConfig config,
-        Site site) {
+        Site site,
+        SourceSetMetrics metrics) {
 
       GmmSet gmmSet = sources.groundMotionModels();
       Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable = instances(
           config.hazard.imts,
           gmmSet.gmms());
 
-      this.sourceToInputs = new SourceToInputs(site);
-      this.inputsToGroundMotions = new InputsToGroundMotions(config, gmmTable);
-      this.groundMotionsToCurves = config.hazard.gmmUncertainty && gmmSet.epiUncertainty()
-          ? new GroundMotionsToCurvesWithUncertainty(gmmSet, config)
-          : new GroundMotionsToCurves(config);
+      this.sourceToInputs = new SourceToInputs(site, metrics);
+      this.inputsToGroundMotions = new InputsToGroundMotions(config, gmmTable, metrics);
+      this.groundMotionsToCurves = groundMotionsToCurves(gmmSet, config, metrics);
+      this.metrics = metrics;
     }
 
     @Override
     public HazardCurves apply(Source source) {
 
-      // return
-      // sourceToInputs.andThen(inputsToGroundMotions).andThen(groundMotionsToCurves).apply(source);
-      return groundMotionsToCurves.apply(
-          inputsToGroundMotions.apply(
-              sourceToInputs.apply(source)));
+      long start = System.nanoTime();
+      InputList inputs = sourceToInputs.apply(source);
+      metrics.addTime(Stage.SOURCE_TO_INPUTS, start);
+
+      start = System.nanoTime();
+      GroundMotions gms = inputsToGroundMotions.apply(inputs);
+      metrics.addTime(Stage.INPUTS_TO_GROUND_MOTIONS, start);
+
+      start = System.nanoTime();
+      HazardCurves curves = groundMotionsToCurves.apply(gms);
+      metrics.addTime(Stage.GROUND_MOTIONS_TO_CURVES, start);
+      return curves;
+    }
+  }
+
+  /*
+   * Select the ground motion to hazard curve function appropriate for a
+   * GmmSet.
+   */
+  private static Function<GroundMotions, HazardCurves> groundMotionsToCurves(
+      GmmSet gmmSet,
+      CalcConfig config,
+      SourceSetMetrics metrics) {
+
+    return config.hazard.gmmUncertainty && gmmSet.epiUncertainty()
+        ? new GroundMotionsToCurvesWithUncertainty(gmmSet, config, metrics)
+        : new GroundMotionsToCurves(config, metrics);
+  }
+
+  /*
+   * GRID: SourceSet --> HazardCurveSet
+   *
+   * Compute hazard curves for an optimized grid source table by scaling the
+   * precomputed curves of a GridCurveTable by the rates in each
+   * magnitude-distance bin.
+   */
+  static final class GridTableToCurves implements
+      Function<SourceSet<? extends Source>, HazardCurveSet> {
+
+    private final GridCurveTable curveTable;
+    private final CalcConfig config;
+    private final Site site;
+    private final SourceSetMetrics metrics;
+
+    GridTableToCurves(
+        GridCurveTable curveTable,
+        CalcConfig config,
+        Site site,
+        SourceSetMetrics metrics) {
+
+      this.curveTable = curveTable;
+      this.config = config;
+      this.site = site;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public HazardCurveSet apply(SourceSet<? extends Source> table) {
+      long start = System.nanoTime();
+      HazardCurveSet curveSet = curveTable.toCurves(table, config, site, metrics);
+      metrics.addTime(Stage.GROUND_MOTIONS_TO_CURVES, start);
+      return curveSet;
     }
   }
 
@@ -336,14 +574,17 @@ final class Transforms {
   static final class CurveConsolidator implements Function<List<HazardCurves>, HazardCurveSet> {
 
     private final SourceSet<? extends Source> sources;
-    private final Map<Imt, XySequence> modelCurves;
+    private final CalcConfig config;
+    private final Site site;
 
     CurveConsolidator(
         SourceSet<? extends Source> sources,
-        CalcConfig config) {
+        CalcConfig config,
+        Site site) {
 
       this.sources = sources;
-      this.modelCurves = config.hazard.logModelCurves();
+      this.config = config;
+      this.site = site;
     }
 
     @Override
@@ -355,7 +596,8 @@ final class Transforms {
 
       HazardCurveSet.Builder curveSetBuilder = HazardCurveSet.builder(
           sources,
-          modelCurves);
+          config,
+          site);
 
       for (HazardCurves curves : curvesList) {
         curveSetBuilder.addCurves(curves);
@@ -386,16 +628,18 @@ final class Transforms {
 
     private final Site site;
     private final CalcConfig config;
+    private final SourceSetMetrics metrics;
 
-    SystemToCurves(CalcConfig config, Site site) {
+    SystemToCurves(CalcConfig config, Site site, SourceSetMetrics metrics) {
       this.site = site;
       this.config = config;
+      this.metrics = metrics;
     }
 
     @Override
     public HazardCurveSet apply(SystemSourceSet sources) {
 
-      InputList inputs = SystemSourceSet.toInputsFunction(site).apply(sources);
+      InputList inputs = systemToInputs(sources, site, metrics);
       if (inputs.isEmpty()) {
         return HazardCurveSet.empty(sources);
       }
@@ -405,16 +649,18 @@ final class Transforms {
           config.hazard.imts,
           gmmSet.gmms());
 
-      InputsToGroundMotions inputsToGm = new InputsToGroundMotions(config, gmmTable);
+      long start = System.nanoTime();
+      InputsToGroundMotions inputsToGm = new InputsToGroundMotions(config, gmmTable, metrics);
       GroundMotions gms = inputsToGm.apply(inputs);
+      metrics.addTime(Stage.INPUTS_TO_GROUND_MOTIONS, start);
 
+      start = System.nanoTime();
       Function<GroundMotions, HazardCurves> gmToCurves =
-          config.hazard.gmmUncertainty && gmmSet.epiUncertainty()
-              ? new GroundMotionsToCurvesWithUncertainty(gmmSet, config)
-              : new GroundMotionsToCurves(config);
+          groundMotionsToCurves(gmmSet, config, metrics);
       HazardCurves curves = gmToCurves.apply(gms);
+      metrics.addTime(Stage.GROUND_MOTIONS_TO_CURVES, start);
 
-      CurveConsolidator consolidator = new CurveConsolidator(sources, config);
+      CurveConsolidator consolidator = new CurveConsolidator(sources, config, site);
       return consolidator.apply(ImmutableList.of(curves));
     }
   }
@@ -431,30 +677,36 @@ final class Transforms {
     private final Site site;
     private final Executor ex;
     private final CalcConfig config;
+    private final SourceSetMetrics metrics;
 
     ParallelSystemToCurves(
         Site site,
         CalcConfig config,
+        SourceSetMetrics metrics,
         Executor ex) {
 
       this.site = site;
       this.ex = ex;
       this.config = config;
+      this.metrics = metrics;
     }
 
     @Override
     public HazardCurveSet apply(SystemSourceSet sources) {
 
       // create input list
-      InputList master = SystemSourceSet.toInputsFunction(site).apply(sources);
+      InputList master = systemToInputs(sources, site, metrics);
       if (master.isEmpty()) {
         return HazardCurveSet.empty(sources);
       }
 
       // calculate curves from list in parallel
-      InputsToCurves inputsToCurves = new InputsToCurves(sources, config);
+      InputsToCurves inputsToCurves = new InputsToCurves(sources, config, metrics);
       AsyncList<HazardCurves> asyncCurvesList = AsyncList.create();
-      int size = config.performance.systemPartition;
+      int size = CalcFactory.chunkSize(
+          master.size(),
+          config.performance.systemPartition,
+          config);
       for (InputList partition : master.partition(size)) {
         asyncCurvesList.add(transform(
             immediateFuture(partition),
@@ -465,12 +717,33 @@ final class Transforms {
 
       // combine and consolidate
       HazardCurves hazardCurves = HazardCurves.combine(master, curvesList);
-      CurveConsolidator consolidator = new CurveConsolidator(sources, config);
+      CurveConsolidator consolidator = new CurveConsolidator(sources, config, site);
 
       return consolidator.apply(ImmutableList.of(hazardCurves));
     }
   }
 
+  /*
+   * SYSTEM: SystemSourceSet --> InputList
+   *
+   * Create the input list for a system source set, recording source and input
+   * counts and timing. All ruptures in a system source set are visited when
+   * building an input list.
+   */
+  private static InputList systemToInputs(
+      SystemSourceSet sources,
+      Site site,
+      SourceSetMetrics metrics) {
+
+    long start = System.nanoTime();
+    InputList inputs = SystemSourceSet.toInputsFunction(site).apply(sources);
+    metrics.addTime(Stage.SOURCE_TO_INPUTS, start);
+    metrics.addSources(sources.size());
+    metrics.addRuptures(inputs.size());
+    metrics.addInputs(inputs.size());
+    return inputs;
+  }
+
   /*
    * SYSTEM: InputList --> HazardCurves
    *
@@ -482,25 +755,33 @@ final class Transforms {
 
     private final Function<InputList, GroundMotions> inputsToGroundMotions;
     private final Function<GroundMotions, HazardCurves> groundMotionsToCurves;
+    private final SourceSetMetrics metrics;
 
     InputsToCurves(
         SourceSet<? extends Source> sources,
-        CalcConfig config) {
+        CalcConfig config,
+        SourceSetMetrics metrics) {
 
       GmmSet gmmSet = sources.groundMotionModels();
       Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable = instances(
           config.hazard.imts,
           gmmSet.gmms());
 
-      this.inputsToGroundMotions = new InputsToGroundMotions(config, gmmTable);
-      this.groundMotionsToCurves = config.hazard.gmmUncertainty && gmmSet.epiUncertainty()
-          ? new GroundMotionsToCurvesWithUncertainty(gmmSet, config)
-          : new GroundMotionsToCurves(config);
+      this.inputsToGroundMotions = new InputsToGroundMotions(config, gmmTable, metrics);
+      this.groundMotionsToCurves = groundMotionsToCurves(gmmSet, config, metrics);
+      this.metrics = metrics;
     }
 
     @Override
     public HazardCurves apply(InputList inputs) {
-      return groundMotionsToCurves.apply(inputsToGroundMotions.apply(inputs));
+      long start = System.nanoTime();
+      GroundMotions gms = inputsToGroundMotions.apply(inputs);
+      metrics.addTime(Stage.INPUTS_TO_GROUND_MOTIONS, start);
+
+      start = System.nanoTime();
+      HazardCurves curves = groundMotionsToCurves.apply(gms);
+      metrics.addTime(Stage.GROUND_MOTIONS_TO_CURVES, start);
+      return curves;
     }
   }
 
@@ -513,8 +794,8 @@ final class Transforms {
 
     private final SourceToInputs transform;
 
-    ClusterSourceToInputs(Site site) {
-      transform = new SourceToInputs(site);
+    ClusterSourceToInputs(Site site, SourceSetMetrics metrics) {
+      transform = new SourceToInputs(site, metrics);
     }
 
     @Override
@@ -539,8 +820,9 @@ final class Transforms {
 
     ClusterInputsToGroundMotions(
         CalcConfig config,
-        Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable) {
-      transform = new InputsToGroundMotions(config, gmmTable);
+        Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable,
+        SourceSetMetrics metrics) {
+      transform = new InputsToGroundMotions(config, gmmTable, metrics);
     }
 
     @Override
@@ -559,25 +841,32 @@ final class Transforms {
    * Collapse magnitude variants and compute the joint probability of exceedence
    * for sources in a cluster. Note that this is only to be used with cluster
    * sources as the weight of each magnitude variant is stored in the
-   * HazardInput.rate field, which is kinda KLUDGY, but works.
+   * InputList rate column, which is kinda KLUDGY, but works.
    */
   static final class ClusterGroundMotionsToCurves implements
       Function<ClusterGroundMotions, ClusterCurves> {
 
     private final Map<Imt, XySequence> logModelCurves;
+    private final Map<Imt, double[]> modelXs;
     private final ExceedanceModel exceedanceModel;
     private final double truncationLevel;
+    private final double deaggIml;
+    private final SourceSetMetrics metrics;
 
-    ClusterGroundMotionsToCurves(CalcConfig config) {
+    ClusterGroundMotionsToCurves(CalcConfig config, SourceSetMetrics metrics) {
       this.logModelCurves = config.hazard.logModelCurves();
+      this.modelXs = xValues(logModelCurves);
       this.exceedanceModel = config.hazard.exceedanceModel;
       this.truncationLevel = config.hazard.truncationLevel;
+      this.deaggIml = deaggIml(config);
+      this.metrics = metrics;
     }
 
     @Override
     public ClusterCurves apply(ClusterGroundMotions clusterGroundMotions) {
 
       Builder builder = ClusterCurves.builder(clusterGroundMotions);
+      int exceedances = 0;
 
       for (Entry<Imt, XySequence> entry : logModelCurves.entrySet()) {
 
@@ -589,14 +878,16 @@ final class Transforms {
             .enumKeys(Gmm.class)
             .arrayListValues(clusterGroundMotions.size())
             .build();
-        XySequence utilCurve = XySequence.copyOf(modelCurve);
+        double[] xs = modelXs.get(imt);
+        double[] utilYs = new double[xs.length];
+        double[] magVarYs = new double[xs.length];
 
         for (GroundMotions groundMotions : clusterGroundMotions) {
 
           Map<Gmm, List<ScalarGroundMotion>> gmmGmMap = groundMotions.gmMap.get(imt);
 
           for (Gmm gmm : gmmGmMap.keySet()) {
-            XySequence magVarCurve = XySequence.copyOf(modelCurve);
+            Arrays.fill(magVarYs, 0.0);
             List<ScalarGroundMotion> sgms = gmmGmMap.get(gmm);
             int i = 0;
             for (ScalarGroundMotion sgm : sgms) {
@@ -604,11 +895,13 @@ final class Transforms {
                   sgm,
                   truncationLevel,
                   imt,
-                  utilCurve);
-              utilCurve.multiply(groundMotions.inputs.get(i++).rate);
-              magVarCurve.add(utilCurve);
+                  xs,
+                  utilYs);
+              Data.multiply(groundMotions.inputs.rate(i++), utilYs);
+              Data.add(magVarYs, utilYs);
             }
-            faultCurves.put(gmm, magVarCurve);
+            exceedances += i;
+            faultCurves.put(gmm, XySequence.copyOf(modelCurve).add(magVarYs));
           }
         }
 
@@ -619,6 +912,19 @@ final class Transforms {
         }
       }
 
+      metrics.addExceedances(exceedances);
+      if (!Double.isNaN(deaggIml)) {
+        List<ImlExceedances> exceedancesList = new ArrayList<>(clusterGroundMotions.size());
+        for (GroundMotions groundMotions : clusterGroundMotions) {
+          exceedancesList.add(ImlExceedances.create(
+              groundMotions,
+              groundMotions.gmMap.keySet(),
+              deaggIml,
+              exceedanceModel,
+              truncationLevel));
+        }
+        builder.exceedances(exceedancesList);
+      }
       return builder.build();
     }
   }
@@ -634,25 +940,38 @@ final class Transforms {
     private final Function<ClusterSource, ClusterInputs> sourceToInputs;
     private final Function<ClusterInputs, ClusterGroundMotions> inputsToGroundMotions;
     private final Function<ClusterGroundMotions, ClusterCurves> groundMotionsToCurves;
+    private final SourceSetMetrics metrics;
 
     ClusterToCurves(
         ClusterSourceSet sources,
         CalcConfig config,
-        Site site) {
+        Site site,
+        SourceSetMetrics metrics) {
 
       Set<Gmm> gmms = sources.groundMotionModels().gmms();
       Map<Imt, Map<Gmm, GroundMotionModel>> gmmTable = instances(config.hazard.imts, gmms);
 
-      this.sourceToInputs = new ClusterSourceToInputs(site);
-      this.inputsToGroundMotions = new ClusterInputsToGroundMotions(config, gmmTable);
-      this.groundMotionsToCurves = new ClusterGroundMotionsToCurves(config);
+      this.sourceToInputs = new ClusterSourceToInputs(site, metrics);
+      this.inputsToGroundMotions = new ClusterInputsToGroundMotions(config, gmmTable, metrics);
+      this.groundMotionsToCurves = new ClusterGroundMotionsToCurves(config, metrics);
+      this.metrics = metrics;
     }
 
     @Override
     public ClusterCurves apply(ClusterSource source) {
-      return groundMotionsToCurves.apply(
-          inputsToGroundMotions.apply(
-              sourceToInputs.apply(source)));
+
+      long start = System.nanoTime();
+      ClusterInputs inputs = sourceToInputs.apply(source);
+      metrics.addTime(Stage.SOURCE_TO_INPUTS, start);
+
+      start = System.nanoTime();
+      ClusterGroundMotions gms = inputsToGroundMotions.apply(inputs);
+      metrics.addTime(Stage.INPUTS_TO_GROUND_MOTIONS, start);
+
+      start = System.nanoTime();
+      ClusterCurves curves = groundMotionsToCurves.apply(gms);
+      metrics.addTime(Stage.GROUND_MOTIONS_TO_CURVES, start);
+      return curves;
     }
   }
 
@@ -665,14 +984,17 @@ final class Transforms {
       Function<List<ClusterCurves>, HazardCurveSet> {
 
     private final ClusterSourceSet sources;
-    private final Map<Imt, XySequence> modelCurves;
+    private final CalcConfig config;
+    private final Site site;
 
     ClusterCurveConsolidator(
         ClusterSourceSet sources,
-        CalcConfig config) {
+        CalcConfig config,
+        Site site) {
 
       this.sources = sources;
-      this.modelCurves = config.hazard.logModelCurves();
+      this.config = config;
+      this.site = site;
     }
 
     @Override
@@ -684,7 +1006,8 @@ final class Transforms {
 
       HazardCurveSet.Builder curveSetBuilder = HazardCurveSet.builder(
           sources,
-          modelCurves);
+          config,
+          site);
 
       for (ClusterCurves curves : curvesList) {
         curveSetBuilder.addCurves(curves);
@@ -693,6 +1016,55 @@ final class Transforms {
     }
   }
 
+  /*
+   * ALL: List<S> --> List<T>
+   *
+   * Apply a function to each element of a chunk of elements. This function is
+   * used to process groups of sources on a single task, reducing the number of
+   * tasks and futures created for source sets with many small sources.
+   */
+  static final class ChunkTransform<S, T> implements Function<List<S>, List<T>> {
+
+    private final Function<S, T> transform;
+
+    ChunkTransform(Function<S, T> transform) {
+      this.transform = transform;
+    }
+
+    @Override
+    public List<T> apply(List<S> chunk) {
+      List<T> results = new ArrayList<>(chunk.size());
+      for (S element : chunk) {
+        results.add(transform.apply(element));
+      }
+      return results;
+    }
+  }
+
+  /*
+   * ALL: List<List<T>> --> R
+   *
+   * Flatten the results of chunked tasks, preserving order, before passing them
+   * to a consolidating function.
+   */
+  static final class ChunkConsolidator<T, R> implements Function<List<List<T>>, R> {
+
+    private final Function<List<T>, R> consolidator;
+
+    ChunkConsolidator(Function<List<T>, R> consolidator) {
+      this.consolidator = consolidator;
+    }
+
+    @Override
+    public R apply(List<List<T>> chunks) {
+      List<T> results = new ArrayList<>();
+      for (List<T> chunk : chunks) {
+        results.addAll(chunk);
+      }
+      return consolidator.apply(results);
+    }
+  }
+
   /*
    * ALL: List<HazardCurveSet> --> HazardResult
    *
@@ -703,15 +1075,18 @@ final class Transforms {
     private final HazardModel model;
     private final CalcConfig config;
     private final Site site;
+    private final CalcMetrics metrics;
 
     CurveSetConsolidator(
         HazardModel model,
         CalcConfig config,
-        Site site) {
+        Site site,
+        CalcMetrics metrics) {
 
       this.model = model;
       this.config = config;
       this.site = site;
+      this.metrics = metrics;
     }
 
     @Override
@@ -719,7 +1094,8 @@ final class Transforms {
 
       Hazard.Builder resultBuilder = Hazard.builder(config)
           .model(model)
-          .site(site);
+          .site(site)
+          .metrics(metrics);
 
       for (HazardCurveSet curveSet : curveSetList) {
         if (curveSet.isEmpty()) {
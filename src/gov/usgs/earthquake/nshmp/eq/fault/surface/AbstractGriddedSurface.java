@@ -26,6 +26,9 @@ abstract class AbstractGriddedSurface extends Container2DImpl<Location> implemen
 
   double strikeSpacing;
   double dipSpacing;
+
+  /* Grid point storage; replaces the Object[] of Container2DImpl. */
+  private GridCoordinates coordinates;
   // protected Boolean sameGridSpacing;
 
   // for distance measures
@@ -76,6 +79,34 @@ abstract class AbstractGriddedSurface extends Container2DImpl<Location> implemen
   // }
   //
 
+  @Override
+  void allocate(int size) {
+    // grid points are stored in coordinates
+  }
+
+  @Override
+  protected void setNumRowsAndNumCols(int numRows, int numCols) {
+    super.setNumRowsAndNumCols(numRows, numCols);
+    coordinates = new GridCoordinates(numRows, numCols);
+  }
+
+  @Override
+  public void set(int row, int column, Location loc) {
+    checkBounds(row, column);
+    coordinates.set(row, column, loc);
+  }
+
+  @Override
+  public Location get(int row, int column) {
+    checkBounds(row, column);
+    return coordinates.location(row * getNumCols() + column);
+  }
+
+  @Override
+  public GridCoordinates coordinates() {
+    return coordinates;
+  }
+
   @Override
   public LocationList getEvenlyDiscritizedListOfLocsOnSurface() {
     return LocationList.create(this);
@@ -148,7 +179,7 @@ abstract class AbstractGriddedSurface extends Container2DImpl<Location> implemen
 
   @Override
   public Distance distanceTo(Location loc) {
-    return Distance.compute(this, loc);
+    return Distance.compute(this, coordinates, loc);
   }
 
   // @Deprecated
@@ -73,7 +73,19 @@ class Container2DImpl<T> implements Container2D<T> {
     this.numRows = numRows;
     this.numCols = numCols;
     size = (long) numRows * (long) numCols;
-    data = new Object[numRows * numCols];
+    allocate(numRows * numCols);
+  }
+
+  /**
+   * Allocates storage for the specified number of elements. Subclasses that
+   * store elements elsewhere may override this method to skip allocation, in
+   * which case they must also override {@link #get(int, int)} and
+   * {@link #set(int, int, Object)}.
+   *
+   * @param size the number of elements
+   */
+  void allocate(int size) {
+    data = new Object[size];
   }
 
   /** Sets the name of this container */
@@ -113,8 +125,7 @@ class Container2DImpl<T> implements Container2D<T> {
     this.numCols = numCols;
     this.numRows = numRows;
     size = (long) numRows * (long) numCols;
-    data = new Object[numRows * numCols];
-
+    allocate(numRows * numCols);
   }
 
   /**
@@ -600,7 +611,7 @@ class Container2DImpl<T> implements Container2D<T> {
     @SuppressWarnings("unchecked")
     public T next() throws NoSuchElementException {
       try {
-        T object = (T) data[pinnedRow * numCols + cursor];
+        T object = get(pinnedRow, cursor);
         lastRet = cursor++;
         return object;
       } catch (IndexOutOfBoundsException e) {
@@ -0,0 +1,91 @@
+package gov.usgs.earthquake.nshmp.eq.fault.surface;
+
+import gov.usgs.earthquake.nshmp.geo.Location;
+
+/**
+ * The coordinates of the grid points of a gridded surface, stored in
+ * contiguous, row-major arrays. Latitude and longitude are stored in radians,
+ * as they are in {@link Location}, so that distances computed from grid point
+ * coordinates are identical to those computed from grid point
+ * {@code Location}s. Coordinates are indexed by {@code row * cols() + col}.
+ *
+ * <p>Coordinates are populated as a surface is built and may not be modified
+ * thereafter. They are the only storage of grid points; {@code Location}s are
+ * created on demand. Windows into a surface, such as floating ruptures, share
+ * the coordinates of their parent surface.
+ *
+ * @author Peter Powers
+ */
+public final class GridCoordinates {
+
+  private final int rows;
+  private final int cols;
+  private final double[] lats;
+  private final double[] lons;
+  private final double[] depths;
+
+  GridCoordinates(int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+    int size = rows * cols;
+    lats = new double[size];
+    lons = new double[size];
+    depths = new double[size];
+  }
+
+  void set(int row, int col, Location loc) {
+    int index = row * cols + col;
+    lats[index] = loc.latRad();
+    lons[index] = loc.lonRad();
+    depths[index] = loc.depth();
+  }
+
+  /** The number of rows. */
+  public int rows() {
+    return rows;
+  }
+
+  /** The number of columns. */
+  public int cols() {
+    return cols;
+  }
+
+  /** The number of grid points. */
+  public int size() {
+    return lats.length;
+  }
+
+  /**
+   * The {@code Location} of a grid point. A new instance, equal to the
+   * {@code Location} the grid point was set from, is returned on each call.
+   * @param index of grid point
+   */
+  public Location location(int index) {
+    return Location.fromRadians(lats[index], lons[index], depths[index]);
+  }
+
+  /**
+   * The latitude, in radians, of a grid point.
+   * @param index of grid point
+   */
+  public double latRad(int index) {
+    return lats[index];
+  }
+
+  /**
+   * The longitude, in radians, of a grid point.
+   * @param index of grid point
+   */
+  public double lonRad(int index) {
+    return lons[index];
+  }
+
+  /**
+   * The depth, in km, of a grid point.
+   * @param index of grid point
+   */
+  public double depth(int index) {
+    return depths[index];
+  }
+
+}
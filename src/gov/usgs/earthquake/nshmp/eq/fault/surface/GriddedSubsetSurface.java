@@ -96,12 +96,12 @@ class GriddedSubsetSurface extends ContainerSubset2D<Location> implements Gridde
    */
   @Override
   public double dip() {
-    return ((AbstractGriddedSurface) data).dip();
+    return parentSurface.dip();
   }
 
   @Override
   public double dipRad() {
-    return ((AbstractGriddedSurface) data).dipRad();
+    return parentSurface.dipRad();
   }
 
   /** Debug string to represent a tab. Used by toString(). */
@@ -128,7 +128,7 @@ class GriddedSubsetSurface extends ContainerSubset2D<Location> implements Gridde
    */
   @Override
   public double getGridSpacingAlongStrike() {
-    return ((AbstractGriddedSurface) data).getGridSpacingAlongStrike();
+    return parentSurface.getGridSpacingAlongStrike();
   }
 
   /**
@@ -136,7 +136,7 @@ class GriddedSubsetSurface extends ContainerSubset2D<Location> implements Gridde
    */
   @Override
   public double getGridSpacingDownDip() {
-    return ((AbstractGriddedSurface) data).getGridSpacingDownDip();
+    return parentSurface.getGridSpacingDownDip();
   }
 
   // /**
@@ -167,7 +167,7 @@ class GriddedSubsetSurface extends ContainerSubset2D<Location> implements Gridde
 
   @Override
   public double dipDirection() {
-    return ((AbstractGriddedSurface) data).dipDirection();
+    return parentSurface.dipDirection();
   }
 
   @Override
@@ -215,8 +215,27 @@ class GriddedSubsetSurface extends ContainerSubset2D<Location> implements Gridde
     return getEvenlyDiscritizedUpperEdge();
   }
 
+  @Override
+  public GridCoordinates coordinates() {
+    return parentSurface.coordinates();
+  }
+
+  /*
+   * Whether the coordinates of the parent surface are indexed by its own rows
+   * and columns, which is not the case for a window into another window.
+   */
+  private boolean parentIndexed() {
+    GridCoordinates coordinates = parentSurface.coordinates();
+    return coordinates.rows() == parentSurface.getNumRows() &&
+        coordinates.cols() == parentSurface.getNumCols();
+  }
+
   @Override
   public Distance distanceTo(Location loc) {
+    if (parentIndexed()) {
+      return Distance.compute(this, parentSurface.coordinates(),
+          getStartRow(), getStartCol(), loc);
+    }
     return Distance.compute(this, loc);
   }
 
@@ -311,6 +330,14 @@ class GriddedSubsetSurface extends ContainerSubset2D<Location> implements Gridde
     // return getLocation(0, 0).depth();
     // }
     double depth = 0;
+    if (parentIndexed()) {
+      GridCoordinates coordinates = parentSurface.coordinates();
+      int start = getStartRow() * coordinates.cols() + getStartCol();
+      for (int i = start; i < start + getNumCols(); i++) {
+        depth += coordinates.depth(i);
+      }
+      return depth / getNumCols();
+    }
     LocationList topTrace = getRow(0);
     for (Location loc : topTrace) {
       depth += loc.depth();
@@ -21,6 +21,13 @@ public interface GriddedSurface extends Container2D<Location>, RuptureSurface {
   // */
   // public Boolean isGridSpacingSame();
 
+  /**
+   * The grid point coordinates of this surface. Windows into a surface, such
+   * as floating ruptures, return the coordinates of the surface they are a
+   * window into, indexed by the rows and columns of that surface.
+   */
+  public GridCoordinates coordinates();
+
   /**
    * gets the location from the 2D container
    * @param row index
@@ -8,7 +8,11 @@ import static gov.usgs.earthquake.nshmp.internal.TextUtils.validateName;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.google.common.primitives.Ints;
+
+import java.util.List;
 
 import gov.usgs.earthquake.nshmp.geo.Location;
 
@@ -77,6 +81,14 @@ abstract class AbstractSourceSet<T extends Source> implements SourceSet<T> {
     return FluentIterable.from(this).filter(filter);
   }
 
+  /*
+   * Return a view of the sources at the supplied indices. Used by source sets
+   * that locate nearby sources with a LocationIndex rather than by filtering.
+   */
+  static <T> List<T> sourcesAt(List<T> sources, int[] indices) {
+    return Lists.transform(Ints.asList(indices), sources::get);
+  }
+
   static abstract class Builder {
 
     boolean built = false;
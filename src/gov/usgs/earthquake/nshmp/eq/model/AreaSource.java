@@ -60,14 +60,19 @@ public class AreaSource implements Source {
 
   private final String name;
   private final int id;
-  private final IncrementalMfd mfd;
-  private final GridScaling gridScaling;
   private final List<GriddedRegion> sourceGrids;
-  private final Map<FocalMech, Double> mechMap;
   final DepthModel depthModel; // package exposure for parser logging
-  private final double strike;
-  private final RuptureScaling rupScaling;
-  private final PointSourceType sourceType;
+
+  /* Builder inputs; package visible for ModelSnapshot. */
+  final LocationList sourceBorder;
+  final IncrementalMfd mfd;
+  final GridScaling gridScaling;
+  final Map<FocalMech, Double> mechMap;
+  final NavigableMap<Double, Map<Double, Double>> magDepthMap;
+  final double maxDepth;
+  final double strike;
+  final RuptureScaling rupScaling;
+  final PointSourceType sourceType;
 
   private final Location centroid;
 
@@ -79,10 +84,13 @@ public class AreaSource implements Source {
   AreaSource(
       String name,
       int id,
+      LocationList sourceBorder,
       IncrementalMfd mfd,
       GridScaling gridScaling,
       List<GriddedRegion> sourceGrids,
       Map<FocalMech, Double> mechMap,
+      NavigableMap<Double, Map<Double, Double>> magDepthMap,
+      double maxDepth,
       DepthModel depthModel,
       double strike,
       RuptureScaling rupScaling,
@@ -90,10 +98,13 @@ public class AreaSource implements Source {
 
     this.name = name;
     this.id = id;
+    this.sourceBorder = sourceBorder;
     this.mfd = mfd;
     this.gridScaling = gridScaling;
     this.sourceGrids = sourceGrids;
     this.mechMap = mechMap;
+    this.magDepthMap = magDepthMap;
+    this.maxDepth = maxDepth;
     this.depthModel = depthModel;
     this.strike = strike;
     this.rupScaling = rupScaling;
@@ -390,8 +401,8 @@ public class AreaSource implements Source {
       validateState(ID);
       List<GriddedRegion> sourceGrids = buildSourceGrids(border, gridScaling);
       DepthModel depthModel = DepthModel.create(magDepthMap, mfd.xValues(), maxDepth);
-      return new AreaSource(name, id, mfd, gridScaling, sourceGrids, mechMap,
-          depthModel, strike, rupScaling, sourceType);
+      return new AreaSource(name, id, border, mfd, gridScaling, sourceGrids, mechMap,
+          magDepthMap, maxDepth, depthModel, strike, rupScaling, sourceType);
     }
 
     private static List<GriddedRegion> buildSourceGrids(
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationIndex;
 import gov.usgs.earthquake.nshmp.geo.Locations;
 
 /**
@@ -29,6 +30,7 @@ public class AreaSourceSet extends AbstractSourceSet<AreaSource> {
    */
   private final List<AreaSource> sources;
   private final Map<Integer, AreaSource> sourceMap;
+  private final LocationIndex index;
 
   private AreaSourceSet(
       String name,
@@ -46,6 +48,13 @@ public class AreaSourceSet extends AbstractSourceSet<AreaSource> {
       b.put(source.id(), source);
     }
     sourceMap = b.build();
+
+    /* Border vertices, consistent with distanceFilter */
+    LocationIndex.Builder indexBuilder = LocationIndex.builder();
+    for (int i = 0; i < sources.size(); i++) {
+      indexBuilder.add(i, sources.get(i).border());
+    }
+    index = indexBuilder.build();
   }
 
   @Override
@@ -63,6 +72,11 @@ public class AreaSourceSet extends AbstractSourceSet<AreaSource> {
     return AREA;
   }
 
+  @Override
+  public Iterable<AreaSource> iterableForLocation(Location loc, double distance) {
+    return sourcesAt(sources, index.keysWithin(loc, distance));
+  }
+
   @Override
   public Predicate<AreaSource> distanceFilter(final Location loc, final double distance) {
     return new Predicate<AreaSource>() {
@@ -66,6 +66,7 @@ class ClusterParser extends DefaultHandler {
   private GmmSet gmmSet;
 
   private ModelConfig config;
+  private boolean lazyRuptures;
 
   private ClusterSourceSet sourceSet;
   private ClusterSourceSet.Builder clusterSetBuilder;
@@ -95,11 +96,13 @@ class ClusterParser extends DefaultHandler {
   ClusterSourceSet parse(
       InputStream in,
       GmmSet gmmSet,
-      ModelConfig config) throws SAXException, IOException {
+      ModelConfig config,
+      boolean lazyRuptures) throws SAXException, IOException {
 
     checkState(!used, "This parser has expired");
     this.gmmSet = gmmSet;
     this.config = config;
+    this.lazyRuptures = lazyRuptures;
     sax.parse(in, this);
     checkState(sourceSet.size() > 0, "ClusterSourceSet is empty");
     used = true;
@@ -188,7 +191,8 @@ class ClusterParser extends DefaultHandler {
               .ruptureScaling(rupScaling)
               .ruptureFloating(config.ruptureFloating)
               .ruptureVariability(config.ruptureVariability)
-              .surfaceSpacing(config.surfaceSpacing);
+              .surfaceSpacing(config.surfaceSpacing)
+              .lazyRuptures(lazyRuptures);
           log.finer("      Fault: " + srcName);
           break;
 
@@ -14,6 +14,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationIndex;
 
 /**
  * Container class for related {@link ClusterSource}s.
@@ -28,6 +29,7 @@ public class ClusterSourceSet extends AbstractSourceSet<ClusterSource> {
    */
   private final List<ClusterSource> sources;
   private final ListMultimap<Integer, ClusterSource> sourceMap;
+  private final LocationIndex index;
 
   ClusterSourceSet(
       String name,
@@ -45,6 +47,15 @@ public class ClusterSourceSet extends AbstractSourceSet<ClusterSource> {
       b.put(source.id(), source);
     }
     sourceMap = b.build();
+
+    /* Trace endpoints of each fault, consistent with distanceFilter */
+    LocationIndex.Builder indexBuilder = LocationIndex.builder();
+    for (int i = 0; i < sources.size(); i++) {
+      for (FaultSource fault : sources.get(i).faults) {
+        indexBuilder.add(i, fault.trace.first()).add(i, fault.trace.last());
+      }
+    }
+    index = indexBuilder.build();
   }
 
   /**
@@ -70,6 +81,11 @@ public class ClusterSourceSet extends AbstractSourceSet<ClusterSource> {
     return CLUSTER;
   }
 
+  @Override
+  public Iterable<ClusterSource> iterableForLocation(Location loc, double distance) {
+    return sourcesAt(sources, index.keysWithin(loc, distance));
+  }
+
   @Override
   public Predicate<ClusterSource> distanceFilter(final Location loc,
       final double distance) {
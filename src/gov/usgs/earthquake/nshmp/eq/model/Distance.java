@@ -1,15 +1,22 @@
 package gov.usgs.earthquake.nshmp.eq.model;
 
 import static com.google.common.base.Preconditions.checkState;
+import static gov.usgs.earthquake.nshmp.geo.Coordinates.EARTH_RADIUS_MEAN;
 import static gov.usgs.earthquake.nshmp.geo.Locations.distanceToLineFast;
 import static gov.usgs.earthquake.nshmp.geo.Locations.distanceToSegmentFast;
 import static gov.usgs.earthquake.nshmp.geo.Locations.horzDistanceFast;
+import static java.lang.Math.cos;
+import static java.lang.Math.sqrt;
 
 import java.awt.geom.Area;
 import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.eq.fault.Faults;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.GridCoordinates;
 import gov.usgs.earthquake.nshmp.eq.fault.surface.GriddedSurface;
 import gov.usgs.earthquake.nshmp.geo.BorderType;
 import gov.usgs.earthquake.nshmp.geo.Location;
@@ -167,6 +174,236 @@ public final class Distance {
 
   }
 
+  /**
+   * Compute distance metrics: rJB, rRup, and rX, for a surface with flat grid
+   * point coordinates. Results are identical to
+   * {@link #compute(GriddedSurface, Location)}, but grid point coordinates are
+   * scanned directly rather than through an {@code Iterator} of
+   * {@code Location}s.
+   *
+   * @param surface of interest
+   * @param coordinates of the grid points of {@code surface}
+   * @param loc site location
+   */
+  public static Distance compute(
+      GriddedSurface surface,
+      GridCoordinates coordinates,
+      Location loc) {
+
+    /* Same iteration extent as compute(surface, loc). */
+    int size = (surface.dip() > 89) ? coordinates.cols() : coordinates.size();
+    double lat = loc.latRad();
+    double lon = loc.lonRad();
+    double depth = loc.depth();
+
+    double distJB = Double.MAX_VALUE;
+    double distRup = Double.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      double vertDist = coordinates.depth(i) - depth;
+      double horzDist = gridDistance(lat, lon, coordinates, i);
+      if (horzDist < distJB) {
+        distJB = horzDist;
+      }
+      double rupDist = horzDist * horzDist + vertDist * vertDist;
+      if (rupDist < distRup) {
+        distRup = rupDist;
+      }
+    }
+    distRup = Math.pow(distRup, 0.5);
+
+    if (distJB < surface.getAveGridSpacing() && isDjbZero(surface.getPerimeter(), loc)) {
+      distJB = 0;
+    }
+    double rX = getDistanceX(surface.getEvenlyDiscritizedUpperEdge(), loc);
+
+    return Distance.create(distJB, distRup, rX);
+  }
+
+  /*
+   * Identical to Locations.horzDistanceFast(Location, Location) with a site as
+   * the first Location and a grid point as the second.
+   */
+  private static double gridDistance(
+      double lat,
+      double lon,
+      GridCoordinates coordinates,
+      int index) {
+
+    double gridLat = coordinates.latRad(index);
+    double dLat = lat - gridLat;
+    double dLon = (lon - coordinates.lonRad(index)) * cos((lat + gridLat) * 0.5);
+    return EARTH_RADIUS_MEAN * sqrt(dLat * dLat + dLon * dLon);
+  }
+
+  /*
+   * Floating ruptures are windows into a parent surface, and many windows
+   * overlap. Rather than repeat the distance calculation for the same parent
+   * grid points for each window, the horizontal and vertical distances from a
+   * site to every grid point of a parent are computed once, a row at a time as
+   * windows spanning each row are encountered, and retained until a different
+   * parent or site is seen.
+   *
+   * rX and the rJB = 0 test are not grid point minima; they depend only on the
+   * horizontal positions of the upper and lower edges of a window and are
+   * memoized accordingly. Rows with the same horizontal positions as the top
+   * row of a parent (e.g. on vertical faults) share memoized values.
+   *
+   * Source calculations iterate all ruptures of one source for one site on a
+   * single thread, so a single cache per thread suffices.
+   */
+  private static final ThreadLocal<ParentCache> PARENT_CACHE = new ThreadLocal<ParentCache>() {
+    @Override
+    protected ParentCache initialValue() {
+      return new ParentCache();
+    }
+  };
+
+  private static final class ParentCache {
+
+    GridCoordinates parent;
+    Location loc;
+    int rows;
+    int cols;
+    boolean[] filled = new boolean[0];
+    int[] traces = new int[0];
+    double[] horzDist = new double[0];
+    double[] vertDist = new double[0];
+    final Map<Long, Double> rX = new HashMap<>();
+    final Map<Long, Boolean> djbZero = new HashMap<>();
+
+    void init(GridCoordinates parent, Location loc) {
+      this.rows = parent.rows();
+      this.cols = parent.cols();
+      if (filled.length < rows) {
+        filled = new boolean[rows];
+        traces = new int[rows];
+      }
+      Arrays.fill(filled, false);
+      Arrays.fill(traces, -1);
+      int size = rows * cols;
+      if (horzDist.length < size) {
+        horzDist = new double[size];
+        vertDist = new double[size];
+      }
+      rX.clear();
+      djbZero.clear();
+      this.parent = parent;
+      this.loc = loc;
+    }
+
+    /* Returns the offset of the start of a row, filling it if necessary. */
+    int row(int row) {
+      int offset = row * cols;
+      if (!filled[row]) {
+        double lat = loc.latRad();
+        double lon = loc.lonRad();
+        double depth = loc.depth();
+        for (int i = offset; i < offset + cols; i++) {
+          vertDist[i] = parent.depth(i) - depth;
+          horzDist[i] = gridDistance(lat, lon, parent, i);
+        }
+        filled[row] = true;
+      }
+      return offset;
+    }
+
+    /*
+     * Returns 0 if a row has the same horizontal positions as the top row,
+     * otherwise the row.
+     */
+    int trace(int row) {
+      if (traces[row] < 0) {
+        traces[row] = 0;
+        for (int col = 0, i = row * cols; col < cols; col++, i++) {
+          if (parent.latRad(col) != parent.latRad(i) ||
+              parent.lonRad(col) != parent.lonRad(i)) {
+            traces[row] = row;
+            break;
+          }
+        }
+      }
+      return traces[row];
+    }
+
+    /* Key for a window edge (or edges) and column span. */
+    long key(int row, int startCol, int numCols) {
+      return ((long) row * cols + startCol) * (cols + 1) + numCols;
+    }
+  }
+
+  /**
+   * Compute distance metrics: rJB, rRup, and rX, for a surface that is a
+   * window into a larger parent surface, such as a floating rupture. Results
+   * are identical to {@link #compute(GriddedSurface, Location)}, but distances
+   * to parent grid points are reused across consecutive calls on the same
+   * thread with the same parent and location.
+   *
+   * @param surface window into {@code parent}
+   * @param parent grid point coordinates of parent surface
+   * @param startRow of window in parent
+   * @param startCol of window in parent
+   * @param loc site location
+   */
+  public static Distance compute(
+      GriddedSurface surface,
+      GridCoordinates parent,
+      int startRow,
+      int startCol,
+      Location loc) {
+
+    ParentCache cache = PARENT_CACHE.get();
+    if (cache.parent != parent || !cache.loc.equals(loc)) {
+      cache.init(parent, loc);
+    }
+
+    /* Same iteration extent as compute(surface, loc). */
+    int numRows = surface.getNumRows();
+    int numCols = surface.getNumCols();
+    int endRow = startRow + ((surface.dip() > 89) ? 1 : numRows);
+
+    double distJB = Double.MAX_VALUE;
+    double distRup = Double.MAX_VALUE;
+    for (int row = startRow; row < endRow; row++) {
+      int offset = cache.row(row);
+      for (int i = offset + startCol; i < offset + startCol + numCols; i++) {
+        double horzDist = cache.horzDist[i];
+        double vertDist = cache.vertDist[i];
+        if (horzDist < distJB) {
+          distJB = horzDist;
+        }
+        double rupDist = horzDist * horzDist + vertDist * vertDist;
+        if (rupDist < distRup) {
+          distRup = rupDist;
+        }
+      }
+    }
+    distRup = Math.pow(distRup, 0.5);
+
+    /* Perimeter is derived from upper and lower edges. */
+    int upper = cache.trace(startRow);
+    if (distJB < surface.getAveGridSpacing()) {
+      int lower = cache.trace(startRow + numRows - 1);
+      long key = cache.key(upper * cache.rows + lower, startCol, numCols);
+      Boolean zero = cache.djbZero.get(key);
+      if (zero == null) {
+        zero = isDjbZero(surface.getPerimeter(), loc);
+        cache.djbZero.put(key, zero);
+      }
+      if (zero) {
+        distJB = 0;
+      }
+    }
+
+    long key = cache.key(upper, startCol, numCols);
+    Double rX = cache.rX.get(key);
+    if (rX == null) {
+      rX = getDistanceX(surface.getEvenlyDiscritizedUpperEdge(), loc);
+      cache.rX.put(key, rX);
+    }
+
+    return Distance.create(distJB, distRup, rX);
+  }
+
   /**
    * This computes distanceX
    *
@@ -66,6 +66,7 @@ class FaultParser extends DefaultHandler {
   private GmmSet gmmSet;
 
   private ModelConfig config;
+  private boolean lazyRuptures;
 
   private FaultSourceSet sourceSet;
   private FaultSourceSet.Builder sourceSetBuilder;
@@ -98,11 +99,13 @@ class FaultParser extends DefaultHandler {
   FaultSourceSet parse(
       InputStream in,
       GmmSet gmmSet,
-      ModelConfig config) throws SAXException, IOException {
+      ModelConfig config,
+      boolean lazyRuptures) throws SAXException, IOException {
 
     checkState(!used, "This parser has expired");
     this.gmmSet = gmmSet;
     this.config = config;
+    this.lazyRuptures = lazyRuptures;
     sax.parse(in, this);
     checkState(sourceSet.size() > 0, "FaultSourceSet is empty");
     used = true;
@@ -172,7 +175,8 @@ class FaultParser extends DefaultHandler {
               .ruptureScaling(rupScaling)
               .ruptureFloating(config.ruptureFloating)
               .ruptureVariability(config.ruptureVariability)
-              .surfaceSpacing(config.surfaceSpacing);
+              .surfaceSpacing(config.surfaceSpacing)
+              .lazyRuptures(lazyRuptures);
           log.fine("     Source: " + srcName + " [" + srcId + "]");
           if (srcId < 0) {
             log.warning("  Invalid Id [" + srcId + ", " + srcName + "]");
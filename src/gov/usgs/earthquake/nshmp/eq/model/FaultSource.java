@@ -17,9 +17,11 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Range;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import gov.usgs.earthquake.nshmp.data.XySequence;
 import gov.usgs.earthquake.nshmp.eq.fault.surface.DefaultGriddedSurface;
@@ -39,6 +41,13 @@ import gov.usgs.earthquake.nshmp.mfd.IncrementalMfd;
  * ruptures; they occur in multiple locations on the fault surface with
  * appropriately scaled rates.
  *
+ * <p>Ruptures are either created when a source is initialized and retained,
+ * or, if a source is created with lazy rupture generation enabled, created on
+ * demand each time the source is iterated. In the latter case, only the parent
+ * surface, MFDs, and floating rules are retained, and non-floating
+ * {@code Rupture}s returned by {@link Source#iterator()} are mutable and reused
+ * (as they are for a {@link PointSource}).
+ *
  * <p>A {@code FaultSource} cannot be created directly; it may only be created
  * by a private parser.
  *
@@ -59,7 +68,10 @@ public class FaultSource implements Source {
   final boolean rupVariability;
   final GriddedSurface surface;
 
-  private final List<List<Rupture>> ruptureLists; // 1:1 with Mfds
+  /* Ruptures with rates below this value are skipped. */
+  private static final double RATE_CUTOFF = 1e-14;
+
+  private final List<List<Rupture>> ruptureLists; // 1:1 with Mfds; null if lazy
 
   // package privacy for subduction subclass
   FaultSource(
@@ -74,7 +86,8 @@ public class FaultSource implements Source {
       double spacing,
       RuptureScaling rupScaling,
       RuptureFloating rupFloating,
-      boolean rupVariability) {
+      boolean rupVariability,
+      boolean lazyRuptures) {
 
     this.name = name;
     this.id = id;
@@ -89,9 +102,16 @@ public class FaultSource implements Source {
     this.rupFloating = rupFloating;
     this.rupVariability = rupVariability;
 
-    ruptureLists = initRuptureLists();
-    checkState(Iterables.size(Iterables.concat(ruptureLists)) > 0,
-        "FaultSource has no ruptures");
+    if (lazyRuptures) {
+      ruptureLists = null;
+      for (IncrementalMfd mfd : mfds) {
+        checkState(firstRuptureIndex(mfd, 0) < mfd.getNum(), "Rupture list is empty");
+      }
+    } else {
+      ruptureLists = initRuptureLists();
+      checkState(Iterables.size(Iterables.concat(ruptureLists)) > 0,
+          "FaultSource has no ruptures");
+    }
   }
 
   @Override
@@ -138,7 +158,77 @@ public class FaultSource implements Source {
 
   @Override
   public Iterator<Rupture> iterator() {
-    return Iterables.concat(ruptureLists).iterator();
+    return (ruptureLists == null) ? new RuptureIterator()
+        : Iterables.concat(ruptureLists).iterator();
+  }
+
+  /*
+   * Lazy rupture iterator. Ruptures are supplied in the same order, and with
+   * the same rates, as those of an initialized source. Floating ruptures are
+   * created one magnitude at a time and discarded once consumed; any distance
+   * calculations on them share the parent surface cache in Distance.
+   */
+  private final class RuptureIterator implements Iterator<Rupture> {
+
+    private final Rupture rupture = new Rupture();
+    private Iterator<Rupture> floaters = Collections.emptyIterator();
+    private int mfdIndex = 0;
+    private int magIndex;
+
+    RuptureIterator() {
+      rupture.rake = rake;
+      rupture.surface = surface;
+      magIndex = firstRuptureIndex(mfds.get(0), 0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return floaters.hasNext() || mfdIndex < mfds.size();
+    }
+
+    @Override
+    public Rupture next() {
+      if (floaters.hasNext()) {
+        return floaters.next();
+      }
+      if (mfdIndex == mfds.size()) {
+        throw new NoSuchElementException();
+      }
+      IncrementalMfd mfd = mfds.get(mfdIndex);
+      double mag = mfd.getX(magIndex);
+      double rate = mfd.getY(magIndex);
+
+      /* advance to the next magnitude with a non-negligible rate */
+      magIndex = firstRuptureIndex(mfd, magIndex + 1);
+      while (magIndex == mfds.get(mfdIndex).getNum() && ++mfdIndex < mfds.size()) {
+        magIndex = firstRuptureIndex(mfds.get(mfdIndex), 0);
+      }
+
+      if (mfd.floats()) {
+        floaters = rupFloating.createFloatingRuptures(
+            surface, rupScaling, mag, rate, rake, rupVariability).iterator();
+        return floaters.next();
+      }
+      rupture.mag = mag;
+      rupture.rate = rate;
+      return rupture;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /*
+   * The index of the first magnitude, at or above the supplied index, that
+   * yields ruptures, or the number of magnitudes in the MFD if there is none.
+   */
+  private static int firstRuptureIndex(IncrementalMfd mfd, int index) {
+    while (index < mfd.getNum() && mfd.getY(index) < RATE_CUTOFF) {
+      index++;
+    }
+    return index;
   }
 
   @Override
@@ -174,7 +264,7 @@ public class FaultSource implements Source {
       // TODO do we really want to do this??
       // TODO low rate shortcut should be derived from config
       // and applied when building input lists
-      if (rate < 1e-14) {
+      if (rate < RATE_CUTOFF) {
         continue; // shortcut low rates
       }
 
@@ -221,6 +311,9 @@ public class FaultSource implements Source {
     RuptureFloating rupFloating;
     Boolean rupVariability;
 
+    // optional
+    boolean lazyRuptures = false;
+
     Builder name(String name) {
       this.name = validateName(name);
       return this;
@@ -288,6 +381,11 @@ public class FaultSource implements Source {
       return this;
     }
 
+    Builder lazyRuptures(boolean lazyRuptures) {
+      this.lazyRuptures = lazyRuptures;
+      return this;
+    }
+
     void validateState(String buildId) {
       checkState(!built, "This %s instance as already been used", buildId);
       checkState(name != null, "%s name not set", buildId);
@@ -316,7 +414,8 @@ public class FaultSource implements Source {
           .depth(depth).dip(dip).width(width).spacing(spacing).build();
 
       return new FaultSource(name, id, trace, dip, width, surface, rake,
-          ImmutableList.copyOf(mfds), spacing, rupScaling, rupFloating, rupVariability);
+          ImmutableList.copyOf(mfds), spacing, rupScaling, rupFloating, rupVariability,
+          lazyRuptures);
     }
   }
 
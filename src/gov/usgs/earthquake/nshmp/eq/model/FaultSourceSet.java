@@ -13,6 +13,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationIndex;
 import gov.usgs.earthquake.nshmp.geo.Locations;
 
 /**
@@ -28,6 +29,7 @@ public class FaultSourceSet extends AbstractSourceSet<FaultSource> {
    */
   private final List<FaultSource> sources;
   private final ListMultimap<Integer, FaultSource> sourceMap;
+  private final LocationIndex index;
 
   private FaultSourceSet(
       String name,
@@ -47,6 +49,14 @@ public class FaultSourceSet extends AbstractSourceSet<FaultSource> {
       b.put(source.id, source);
     }
     sourceMap = b.build();
+
+    /* Trace endpoints, consistent with DistanceFilter */
+    LocationIndex.Builder indexBuilder = LocationIndex.builder();
+    for (int i = 0; i < sources.size(); i++) {
+      FaultSource source = sources.get(i);
+      indexBuilder.add(i, source.trace.first()).add(i, source.trace.last());
+    }
+    index = indexBuilder.build();
   }
 
   /**
@@ -77,6 +87,11 @@ public class FaultSourceSet extends AbstractSourceSet<FaultSource> {
     return new DistanceFilter(loc, distance);
   }
 
+  @Override
+  public Iterable<FaultSource> iterableForLocation(Location loc, double distance) {
+    return sourcesAt(sources, index.keysWithin(loc, distance));
+  }
+
   /* Not inlined for use by cluster sources */
   static class DistanceFilter implements Predicate<FaultSource> {
     private final Predicate<Location> filter;
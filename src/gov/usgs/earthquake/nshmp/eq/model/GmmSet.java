@@ -38,17 +38,18 @@ public final class GmmSet {
    * be better served by Optional
    */
 
-  private final Map<Gmm, Double> weightMapLo;
-  private final double maxDistLo;
-  private final Map<Gmm, Double> weightMapHi; // may be null
-  private final double maxDistHi; // used by distance filters
+  /* Package visible for ModelSnapshot. */
+  final Map<Gmm, Double> weightMapLo;
+  final double maxDistLo;
+  final Map<Gmm, Double> weightMapHi; // may be null
+  final double maxDistHi; // used by distance filters
   private final boolean singular;
   private final int hashCode;
 
-  private final UncertType uncertainty;
-  private final double epiValue;
-  private final double[][] epiValues;
-  private final double[] epiWeights; // TODO DataArray (vs. Table, Volume)
+  final UncertType uncertainty;
+  final double epiValue;
+  final double[][] epiValues;
+  final double[] epiWeights; // TODO DataArray (vs. Table, Volume)
 
   GmmSet(
       Map<Gmm, Double> weightMapLo,
@@ -170,7 +171,7 @@ public final class GmmSet {
     return epiWeights;
   }
 
-  private static enum UncertType {
+  static enum UncertType {
     NONE,
     SINGLE,
     MULTI;
@@ -15,15 +15,25 @@ import static gov.usgs.earthquake.nshmp.eq.model.SourceType.GRID;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
 import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Objects;
 
 import gov.usgs.earthquake.nshmp.data.Data;
 import gov.usgs.earthquake.nshmp.data.IntervalTable;
@@ -33,6 +43,7 @@ import gov.usgs.earthquake.nshmp.eq.fault.FocalMech;
 import gov.usgs.earthquake.nshmp.eq.fault.surface.RuptureScaling;
 import gov.usgs.earthquake.nshmp.eq.model.PointSource.DepthModel;
 import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationIndex;
 import gov.usgs.earthquake.nshmp.geo.Locations;
 import gov.usgs.earthquake.nshmp.mfd.IncrementalMfd;
 
@@ -45,14 +56,24 @@ import gov.usgs.earthquake.nshmp.mfd.IncrementalMfd;
  */
 public class GridSourceSet extends AbstractSourceSet<PointSource> {
 
-  private final List<Location> locs;
-  private final List<XySequence> mfds;
+  /* Node data and builder inputs; package visible for ModelSnapshot. */
+  final List<Location> locs;
+  final List<XySequence> mfds;
   final RuptureScaling rupScaling;
-  private final List<Map<FocalMech, Double>> mechMaps;
-  private final boolean singularMechs;
+  final List<Map<FocalMech, Double>> mechMaps;
+  final boolean singularMechs;
+  final NavigableMap<Double, Map<Double, Double>> magDepthMap;
+  final double maxDepth;
+  final double strike;
+  final PointSourceType sourceType;
+  final double mMin;
+  final double mMax;
+
   final DepthModel depthModel; // package exposure for parser logging
-  private final double strike;
-  private final PointSourceType sourceType;
+  private final Nodes nodes;
+
+  /* Lazily created cache of optimizer rate tables shared across sites. */
+  private volatile TableCache tableCache;
 
   final boolean optimizable;
   final double[] magMaster;
@@ -78,17 +99,24 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
       double strike,
       RuptureScaling rupScaling,
       PointSourceType sourceType,
+      double mMin,
+      double mMax,
       double[] magMaster,
       double Δm) {
 
     super(name, id, weight, gmmSet);
-    this.locs = locs;
+    this.nodes = NODES.intern(new Nodes(locs));
+    this.locs = nodes.locs;
     this.mfds = mfds;
     this.mechMaps = mechMaps;
     this.singularMechs = singularMechs;
+    this.magDepthMap = magDepthMap;
+    this.maxDepth = maxDepth;
     this.strike = strike;
     this.rupScaling = rupScaling;
     this.sourceType = sourceType;
+    this.mMin = mMin;
+    this.mMax = mMax;
 
     this.magMaster = magMaster;
     this.Δm = Δm;
@@ -97,6 +125,82 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
     depthModel = DepthModel.create(magDepthMap, Doubles.asList(magMaster), maxDepth);
   }
 
+  private static final Interner<Nodes> NODES = Interners.newWeakInterner();
+
+  /*
+   * Grid node locations and their spatial index. Source sets with identical
+   * nodes, such as the maximum magnitude or smoothing branches of a logic
+   * tree, share a single instance, and with it the node distances computed
+   * for optimizer rate tables.
+   */
+  private static final class Nodes {
+
+    final List<Location> locs;
+    final Supplier<LocationIndex> index;
+    private final int hash;
+
+    /* Lazily created cache of node distances shared across source sets. */
+    private volatile DistanceCache distanceCache;
+
+    Nodes(final List<Location> locs) {
+      this.locs = locs;
+      this.hash = locs.hashCode();
+      this.index = Suppliers.memoize(new Supplier<LocationIndex>() {
+        @Override
+        public LocationIndex get() {
+          LocationIndex.Builder indexBuilder = LocationIndex.builder();
+          for (int i = 0; i < locs.size(); i++) {
+            indexBuilder.add(i, locs.get(i));
+          }
+          return indexBuilder.build();
+        }
+      });
+    }
+
+    int[] within(Location loc, double distance) {
+      Predicate<Location> rectFilter = Locations.rectangleFilter(loc, distance);
+      int[] indices = index.get().keysWithin(loc, distance);
+      int count = 0;
+      for (int i : indices) {
+        if (rectFilter.apply(locs.get(i))) {
+          indices[count++] = i;
+        }
+      }
+      return Arrays.copyOf(indices, count);
+    }
+
+    DistanceCache distanceCache(int size) {
+      DistanceCache cache = distanceCache;
+      if (cache == null || cache.size != size) {
+        synchronized (this) {
+          cache = distanceCache;
+          if (cache == null || cache.size != size) {
+            cache = new DistanceCache(this, size);
+            distanceCache = cache;
+          }
+        }
+      }
+      return cache;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Nodes)) {
+        return false;
+      }
+      Nodes that = (Nodes) obj;
+      return this.hash == that.hash && this.locs.equals(that.locs);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
   @Override
   public SourceType type() {
     return GRID;
@@ -138,6 +242,24 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
     return new DistanceFilter(loc, distance);
   }
 
+  /*
+   * Sources are only created for those grid nodes that pass the distance
+   * filter; nodes are located using a spatial index rather than by testing
+   * every node in this source set.
+   */
+  @Override
+  public Iterable<PointSource> iterableForLocation(Location loc, double distance) {
+    return Lists.transform(Ints.asList(nodesWithin(loc, distance)), this::getSource);
+  }
+
+  /*
+   * The indices, in ascending order, of those nodes that pass the
+   * DistanceFilter for a location.
+   */
+  private int[] nodesWithin(Location loc, double distance) {
+    return nodes.within(loc, distance);
+  }
+
   /* Not inlined for use by area sources */
   static final class DistanceFilter implements Predicate<PointSource> {
     private final Predicate<Location> filter;
@@ -430,6 +552,7 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
           mechMaps, singularMechs,
           magDepthMap, maxDepth,
           strike, rupScaling, sourceType,
+          mMin, mMax,
           magMaster, Δm);
     }
 
@@ -536,19 +659,291 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
    * @param loc reference point for table
    */
   public static Function<GridSourceSet, SourceSet<? extends Source>> optimizer(Location loc) {
-    return new Optimizer(loc);
+    return new Optimizer(loc, 0, 0.0);
+  }
+
+  /**
+   * Create a {@code Function} for a location the condenses a
+   * {@code GridSourceSet} into tabular form, reusing the magnitude-distance
+   * rate tables built for previous locations where possible. Tables are
+   * cached per {@code GridSourceSet} and keyed by location, optionally
+   * snapped to a grid of {@code cacheSnap} degrees. When snapping, a table is
+   * built at (and its sources are placed relative to) the snapped location;
+   * results are therefore approximate, with an error bounded by the snap
+   * spacing. A {@code cacheSnap} of zero keys tables by exact location.
+   *
+   * @param loc reference point for table
+   * @param cacheSize maximum number of rate tables to retain per source set;
+   *        {@code 0} disables caching
+   * @param cacheSnap spacing (in decimal degrees) to which locations are
+   *        snapped when keying cached tables
+   */
+  public static Function<GridSourceSet, SourceSet<? extends Source>> optimizer(
+      Location loc,
+      int cacheSize,
+      double cacheSnap) {
+    checkArgument(cacheSize >= 0, "Cache size [%s] must be >= 0", cacheSize);
+    checkArgument(cacheSnap >= 0.0, "Cache snap [%s] must be >= 0", cacheSnap);
+    return new Optimizer(loc, cacheSize, cacheSnap);
+  }
+
+  /**
+   * Create a {@code Function} for a location that condenses a
+   * {@code GridSourceSet} into tabular form in which every magnitude-distance
+   * bin has unit rate. The sources of the resulting {@code SourceSet} are
+   * identical to those of an {@link #optimizer(Location) optimized} table,
+   * with one source per distance bin, and may be used to precompute hazard
+   * for each bin that is later scaled by the rates in a site-specific table.
+   *
+   * @param loc reference point for table
+   */
+  public static Function<GridSourceSet, SourceSet<? extends Source>> unitOptimizer(
+      final Location loc) {
+    return new Function<GridSourceSet, SourceSet<? extends Source>>() {
+      @Override
+      public Table apply(GridSourceSet sources) {
+        return new Table(sources, loc, RateTables.unit(sources));
+      }
+    };
   }
 
   private static class Optimizer implements Function<GridSourceSet, SourceSet<? extends Source>> {
     private final Location loc;
+    private final int cacheSize;
+    private final double cacheSnap;
 
-    Optimizer(Location loc) {
+    Optimizer(Location loc, int cacheSize, double cacheSnap) {
       this.loc = loc;
+      this.cacheSize = cacheSize;
+      this.cacheSnap = cacheSnap;
     }
 
     @Override
     public Table apply(GridSourceSet sources) {
-      return new Table(sources, loc);
+      if (cacheSize == 0) {
+        return new Table(sources, loc, new RateTables(sources, new NodeDistances(sources, loc)));
+      }
+      TableCache cache = sources.tableCache(cacheSize, cacheSnap);
+      Location origin = cache.key(loc);
+      return new Table(sources, origin, cache.get(origin));
+    }
+  }
+
+  private TableCache tableCache(int size, double snap) {
+    TableCache cache = tableCache;
+    if (cache == null || cache.size != size || cache.snap != snap) {
+      synchronized (this) {
+        cache = tableCache;
+        if (cache == null || cache.size != size || cache.snap != snap) {
+          cache = new TableCache(this, size, snap);
+          tableCache = cache;
+        }
+      }
+    }
+    return cache;
+  }
+
+  /*
+   * Rate tables are not transferable between arbitrary sites: node MFDs vary
+   * spatially and the distances used to bin them depend on absolute position.
+   * Reuse is therefore limited to sites that share a key, either an exact
+   * location or a location snapped to a coarser grid. When a table is built,
+   * node distances are shared with other source sets on the same nodes.
+   */
+  private static final class TableCache {
+
+    final int size;
+    final double snap;
+    final LoadingCache<Location, RateTables> cache;
+
+    TableCache(final GridSourceSet parent, int size, double snap) {
+      this.size = size;
+      this.snap = snap;
+      this.cache = CacheBuilder.newBuilder()
+          .maximumSize(size)
+          .build(new CacheLoader<Location, RateTables>() {
+            @Override
+            public RateTables load(Location origin) {
+              double rMax = parent.groundMotionModels().maxDistance();
+              NodeDistances distances = parent.nodes.distanceCache(size).get(origin, rMax);
+              return new RateTables(parent, distances);
+            }
+          });
+    }
+
+    Location key(Location loc) {
+      if (snap == 0.0) {
+        return loc;
+      }
+      return Location.create(
+          Math.round(loc.lat() / snap) * snap,
+          Math.round(loc.lon() / snap) * snap,
+          loc.depth());
+    }
+
+    RateTables get(Location origin) {
+      return cache.getUnchecked(origin);
+    }
+  }
+
+  /*
+   * Indices, in ascending order, of the grid nodes within the maximum distance
+   * of an origin, and their distances from it.
+   */
+  private static final class NodeDistances {
+
+    final int[] indices;
+    final double[] distances;
+
+    NodeDistances(GridSourceSet parent, Location origin) {
+      this(parent.nodes, origin, parent.groundMotionModels().maxDistance());
+    }
+
+    NodeDistances(Nodes nodes, Location origin, double rMax) {
+      indices = nodes.within(origin, rMax);
+      distances = new double[indices.length];
+      for (int j = 0; j < indices.length; j++) {
+        distances[j] = Locations.horzDistanceFast(origin, nodes.locs.get(indices[j]));
+      }
+    }
+  }
+
+  /*
+   * Node distances keyed by exact origin and maximum distance. Because nodes
+   * are shared, distances computed for one source set are reused, unchanged,
+   * by every other source set on the same nodes at the same origin.
+   */
+  private static final class DistanceCache {
+
+    final int size;
+    final LoadingCache<DistanceKey, NodeDistances> cache;
+
+    DistanceCache(final Nodes nodes, int size) {
+      this.size = size;
+      this.cache = CacheBuilder.newBuilder()
+          .maximumSize(size)
+          .build(new CacheLoader<DistanceKey, NodeDistances>() {
+            @Override
+            public NodeDistances load(DistanceKey key) {
+              return new NodeDistances(nodes, key.origin, key.rMax);
+            }
+          });
+    }
+
+    NodeDistances get(Location origin, double rMax) {
+      return cache.getUnchecked(new DistanceKey(origin, rMax));
+    }
+  }
+
+  private static final class DistanceKey {
+
+    final Location origin;
+    final double rMax;
+
+    DistanceKey(Location origin, double rMax) {
+      this.origin = origin;
+      this.rMax = rMax;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof DistanceKey)) {
+        return false;
+      }
+      DistanceKey that = (DistanceKey) obj;
+      return this.origin.equals(that.origin) &&
+          Double.compare(this.rMax, that.rMax) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(origin, rMax);
+    }
+  }
+
+  /*
+   * Immutable magnitude-distance rate tables for the grid nodes within range
+   * of an origin. A single table is used when focal mechanisms are uniform
+   * across a source set; otherwise rates are partitioned into strike-slip,
+   * reverse, and normal tables.
+   */
+  private static final class RateTables {
+
+    final IntervalTable[] tables;
+    final int parentCount;
+
+    private RateTables(IntervalTable[] tables, int parentCount) {
+      this.tables = tables;
+      this.parentCount = parentCount;
+    }
+
+    /*
+     * Tables with unit rate in every bin. Multi-mechanism source sets only
+     * require the first table to be populated as the sources derived from each
+     * table share the same geometry.
+     */
+    static RateTables unit(GridSourceSet parent) {
+      IntervalTable.Builder builder = tableBuilder(parent);
+      IntervalTable unitTable = builder.build((r, m) -> 1.0);
+      if (parent.singularMechs) {
+        return new RateTables(new IntervalTable[] { unitTable }, 0);
+      }
+      IntervalTable emptyTable = tableBuilder(parent).build();
+      return new RateTables(new IntervalTable[] { unitTable, emptyTable, emptyTable }, 0);
+    }
+
+    RateTables(GridSourceSet parent, NodeDistances distances) {
+
+      int tableCount = parent.singularMechs ? 1 : 3;
+      IntervalTable.Builder[] builders = new IntervalTable.Builder[tableCount];
+      for (int i = 0; i < tableCount; i++) {
+        builders[i] = tableBuilder(parent);
+      }
+
+      int count = 0;
+      for (int j = 0; j < distances.indices.length; j++) {
+        int i = distances.indices[j];
+        XySequence mfd = parent.mfds.get(i);
+        double r = distances.distances[j];
+        if (parent.singularMechs) {
+          builders[0].add(r, mfd);
+        } else {
+          Map<FocalMech, Double> mechWtMap = parent.mechMaps.get(i);
+          builders[0].add(r, XySequence.copyOf(mfd)
+              .multiply(mechWtMap.get(STRIKE_SLIP)));
+          builders[1].add(r, XySequence.copyOf(mfd)
+              .multiply(mechWtMap.get(REVERSE)));
+          builders[2].add(r, XySequence.copyOf(mfd)
+              .multiply(mechWtMap.get(NORMAL)));
+        }
+        count++;
+      }
+
+      tables = new IntervalTable[tableCount];
+      for (int i = 0; i < tableCount; i++) {
+        tables[i] = builders[i].build();
+      }
+      parentCount = count;
+    }
+
+    private static IntervalTable.Builder tableBuilder(GridSourceSet parent) {
+      // table keys are specified as lowermost and uppermost bin edges
+      double Δm = parent.Δm;
+      double ΔmBy2 = Δm / 2.0;
+      double mMin = parent.magMaster[0] - ΔmBy2;
+      double mMax = parent.magMaster[parent.magMaster.length - 1] + ΔmBy2;
+      double rMax = parent.groundMotionModels().maxDistance();
+      return new IntervalTable.Builder()
+          .rows(0.0, rMax, distanceDiscretization(rMax))
+          .columns(mMin, mMax, Δm);
+    }
+
+    /*
+     * Return a distance dependent discretization. Currently this is fixed at
+     * 1km for r<400km and 5km for r>= 400km
+     */
+    private static double distanceDiscretization(double r) {
+      return r < 400.0 ? 1.0 : 5.0;
     }
   }
 
@@ -595,13 +990,19 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
      */
     private int rowCount;
     private int maximumSize;
-    private int parentCount;
+    private final int parentCount;
 
-    private Table(GridSourceSet parent, Location origin) {
+    private Table(GridSourceSet parent, Location origin, RateTables rateTables) {
       super(parent.name(), parent.id(), parent.weight(), parent.groundMotionModels());
       this.parent = parent;
       this.origin = origin;
-      this.sources = parent.singularMechs ? initSources() : initMultiMechSources();
+      this.parentCount = rateTables.parentCount;
+      this.sources = parent.singularMechs
+          ? initSources(rateTables.tables[0])
+          : initMultiMechSources(
+              rateTables.tables[0],
+              rateTables.tables[1],
+              rateTables.tables[2]);
     }
 
     /**
@@ -649,26 +1050,7 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
     private static final double SRC_TO_SITE_AZIMUTH = 0.0;
 
     /* creates the type of point source specified in the parent */
-    private List<PointSource> initSources() {
-
-      // table keys are specified as lowermost and uppermost bin edges
-      double Δm = parent.Δm;
-      double ΔmBy2 = Δm / 2.0;
-      double mMin = parent.magMaster[0] - ΔmBy2;
-      double mMax = parent.magMaster[parent.magMaster.length - 1] + ΔmBy2;
-      double rMax = parent.groundMotionModels().maxDistance();
-
-      IntervalTable.Builder tableBuilder = new IntervalTable.Builder()
-          .rows(0.0, rMax, distanceDiscretization(rMax))
-          .columns(mMin, mMax, Δm);
-
-      for (PointSource source : parent.iterableForLocation(origin)) {
-        double r = Locations.horzDistanceFast(origin, source.loc);
-        tableBuilder.add(r, source.mfd);
-        parentCount++;
-      }
-
-      IntervalTable mfdTable = tableBuilder.build();
+    private List<PointSource> initSources(IntervalTable mfdTable) {
 
       // System.out.println(parent.name());
       // System.out.println(mfdTable);
@@ -697,49 +1079,10 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
     }
 
     /* always creates finite point sources */
-    private List<PointSource> initMultiMechSources() {
-      double Δm = parent.Δm;
-      double ΔmBy2 = Δm / 2.0;
-      double mMin = parent.magMaster[0] - ΔmBy2;
-      double mMax = parent.magMaster[parent.magMaster.length - 1] + ΔmBy2;
-      double rMax = parent.groundMotionModels().maxDistance();
-
-      IntervalTable.Builder ssTableBuilder = new IntervalTable.Builder()
-          .rows(0.0, rMax, distanceDiscretization(rMax))
-          .columns(mMin, mMax, Δm);
-
-      IntervalTable.Builder rTableBuilder = new IntervalTable.Builder()
-          .rows(0.0, rMax, distanceDiscretization(rMax))
-          .columns(mMin, mMax, Δm);
-
-      IntervalTable.Builder nTableBuilder = new IntervalTable.Builder()
-          .rows(0.0, rMax, distanceDiscretization(rMax))
-          .columns(mMin, mMax, Δm);
-
-      // XySequence srcMfdSum = null;
-
-      for (PointSource source : parent.iterableForLocation(origin)) {
-        // if (srcMfdSum == null) {
-        // srcMfdSum = XySequence.emptyCopyOf(source.mfd);
-        // }
-        // srcMfdSum.add(source.mfd);
-
-        double r = Locations.horzDistanceFast(origin, source.loc);
-        ssTableBuilder.add(r, XySequence.copyOf(source.mfd)
-            .multiply(source.mechWtMap.get(STRIKE_SLIP)));
-        rTableBuilder.add(r, XySequence.copyOf(source.mfd)
-            .multiply(source.mechWtMap.get(REVERSE)));
-        nTableBuilder.add(r, XySequence.copyOf(source.mfd)
-            .multiply(source.mechWtMap.get(NORMAL)));
-        parentCount++;
-      }
-
-      IntervalTable ssTable = ssTableBuilder.build();
-      // System.out.println("SS Table:" + TextUtils.NEWLINE + ssTable);
-      IntervalTable rTable = rTableBuilder.build();
-      // System.out.println("R Table:" + TextUtils.NEWLINE + rTable);
-      IntervalTable nTable = nTableBuilder.build();
-      // System.out.println("N Table:" + TextUtils.NEWLINE + nTable);
+    private List<PointSource> initMultiMechSources(
+        IntervalTable ssTable,
+        IntervalTable rTable,
+        IntervalTable nTable) {
 
       // DataTable tableSum = DataTable.Builder.fromModel(ssTable)
       // .add(ssTable)
@@ -814,13 +1157,6 @@ public class GridSourceSet extends AbstractSourceSet<PointSource> {
       return b.build();
     }
 
-    /*
-     * Return a distance dependent discretization. Currently this is fixed at
-     * 1km for r<400km and 5km for r>= 400km
-     */
-    private static double distanceDiscretization(double r) {
-      return r < 400.0 ? 1.0 : 5.0;
-    }
   }
 
 }
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.NEWLINE;
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.validateName;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import org.xml.sax.SAXException;
 
@@ -14,6 +15,7 @@ import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.Set;
@@ -85,6 +87,10 @@ public final class HazardModel implements Iterable<SourceSet<? extends Source>>,
    * Exceptions are generally logged and propagated back to calling application
    * to handle termination.
    *
+   * <p>Source files are parsed concurrently using the number of threads set by
+   * the {@code performance.threadCount} in the model's {@code config.json};
+   * source set order does not depend on the number of threads used.
+   *
    * @param path to {@code HazardModel} directory or Zip file
    * @return a newly instantiated {@code HazardModel}
    */
@@ -92,6 +98,75 @@ public final class HazardModel implements Iterable<SourceSet<? extends Source>>,
     return Loader.load(path);
   }
 
+  /**
+   * Load a {@code HazardModel} from a binary snapshot, if the snapshot is
+   * current, otherwise from the directory or Zip file specified by the
+   * supplied {@code path}, in which case the snapshot is (re)written. A
+   * snapshot is current if it was written by this version of the library from
+   * a model whose contents are identical to those at {@code path}. Reading a
+   * snapshot is considerably faster than parsing source XML, particularly for
+   * large fault system models.
+   *
+   * <p>The snapshot path may be in any file system, including a Zip file
+   * system; nothing is written to the directory or Zip file the model is
+   * loaded from. Snapshots are written to a temporary file that is then moved
+   * into place so that concurrent readers never see a partial snapshot.
+   *
+   * @param path to {@code HazardModel} directory or Zip file
+   * @param snapshot path to read snapshot from or write snapshot to
+   * @return a newly instantiated {@code HazardModel}
+   */
+  public static HazardModel load(Path path, Path snapshot) throws SAXException, IOException {
+    String hash = ModelSnapshot.hash(path);
+    if (ModelSnapshot.isCurrent(snapshot, hash)) {
+      return ModelSnapshot.read(snapshot, hash);
+    }
+    HazardModel model = Loader.load(path);
+    Path dir = snapshot.toAbsolutePath().getParent();
+    Path tmp = Files.createTempFile(dir, snapshot.getFileName().toString(), ".tmp");
+    try {
+      ModelSnapshot.write(model, hash, tmp);
+      Files.move(tmp, snapshot, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+    return model;
+  }
+
+  /**
+   * Write a binary snapshot of this {@code HazardModel}, including its default
+   * calculation configuration, to the supplied path. The snapshot records a
+   * content hash of the directory or Zip file at {@code path}, which should be
+   * the one this model was loaded from, and is rejected on read once those
+   * contents change. The snapshot path may be in any file system, including a
+   * Zip file system.
+   *
+   * @param snapshot path to write snapshot to
+   * @param path to the {@code HazardModel} directory or Zip file this model
+   *        was loaded from
+   * @see #load(Path, Path)
+   */
+  public void writeSnapshot(Path snapshot, Path path) throws IOException {
+    ModelSnapshot.write(this, ModelSnapshot.hash(path), snapshot);
+  }
+
+  /**
+   * Read a {@code HazardModel} from a snapshot previously written with
+   * {@link #writeSnapshot(Path, Path)} or {@link #load(Path, Path)}.
+   * Snapshots written by a different version of this library, or from a model
+   * whose contents differ from those at {@code path}, are rejected and should
+   * be recreated from source XML.
+   *
+   * @param snapshot path to read
+   * @param path to the {@code HazardModel} directory or Zip file the snapshot
+   *        was written from
+   * @return a newly instantiated {@code HazardModel}
+   * @throws IOException if the snapshot is unreadable or stale
+   */
+  public static HazardModel readSnapshot(Path snapshot, Path path) throws IOException {
+    return ModelSnapshot.read(snapshot, ModelSnapshot.hash(path));
+  }
+
   /**
    * The number of {@code SourceSet}s in this {@code HazardModel}.
    */
@@ -58,6 +58,7 @@ class InterfaceParser extends DefaultHandler {
   private GmmSet gmmSet;
 
   private ModelConfig config;
+  private boolean lazyRuptures;
 
   private InterfaceSourceSet sourceSet;
   private InterfaceSourceSet.Builder sourceSetBuilder;
@@ -85,11 +86,13 @@ class InterfaceParser extends DefaultHandler {
   InterfaceSourceSet parse(
       InputStream in, 
       GmmSet gmmSet, 
-      ModelConfig config) throws SAXException, IOException {
+      ModelConfig config,
+      boolean lazyRuptures) throws SAXException, IOException {
     
     checkState(!used, "This parser has expired");
     this.gmmSet = gmmSet;
     this.config = config;
+    this.lazyRuptures = lazyRuptures;
     sax.parse(in, this);
     checkState(sourceSet.size() > 0, "InterfaceSourceSet is empty");
     used = true;
@@ -152,6 +155,7 @@ class InterfaceParser extends DefaultHandler {
           sourceBuilder.ruptureFloating(config.ruptureFloating);
           sourceBuilder.ruptureVariability(config.ruptureVariability);
           sourceBuilder.surfaceSpacing(config.surfaceSpacing);
+          sourceBuilder.lazyRuptures(lazyRuptures);
           log.fine("     Source: " + srcName);
           break;
 
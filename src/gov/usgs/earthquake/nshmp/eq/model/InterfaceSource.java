@@ -51,11 +51,13 @@ public class InterfaceSource extends FaultSource {
       double spacing,
       RuptureScaling rupScaling,
       RuptureFloating rupFloating,
-      boolean rupVariability) {
+      boolean rupVariability,
+      boolean lazyRuptures) {
 
     super(name, id, upperTrace, dip, width, surface, rake, mfds, spacing, rupScaling,
         rupFloating,
-        rupVariability);
+        rupVariability,
+        lazyRuptures);
 
     this.lowerTrace = (lowerTrace == null) ? surface.getEvenlyDiscritizedLowerEdge()
         : lowerTrace;
@@ -174,7 +176,8 @@ public class InterfaceSource extends FaultSource {
       }
 
       return new InterfaceSource(name, id, trace, lowerTrace, dip, width, surface, rake,
-          ImmutableList.copyOf(mfds), spacing, rupScaling, rupFloating, rupVariability);
+          ImmutableList.copyOf(mfds), spacing, rupScaling, rupFloating, rupVariability,
+          lazyRuptures);
     }
 
   }
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationIndex;
 import gov.usgs.earthquake.nshmp.geo.Locations;
 
 /**
@@ -28,6 +29,7 @@ public class InterfaceSourceSet extends AbstractSourceSet<InterfaceSource> {
    */
   private final List<InterfaceSource> sources;
   private final Map<Integer, FaultSource> sourceMap;
+  private final LocationIndex index;
 
   private InterfaceSourceSet(String name, int id, double weight, GmmSet gmmSet,
       List<InterfaceSource> sources) {
@@ -40,6 +42,18 @@ public class InterfaceSourceSet extends AbstractSourceSet<InterfaceSource> {
       b.put(source.id, source);
     }
     sourceMap = b.build();
+
+    /* Upper and lower trace endpoints, consistent with distanceFilter */
+    LocationIndex.Builder indexBuilder = LocationIndex.builder();
+    for (int i = 0; i < sources.size(); i++) {
+      InterfaceSource source = sources.get(i);
+      indexBuilder
+          .add(i, source.trace.first())
+          .add(i, source.trace.last())
+          .add(i, source.lowerTrace.first())
+          .add(i, source.lowerTrace.last());
+    }
+    index = indexBuilder.build();
   }
 
   /**
@@ -65,6 +79,11 @@ public class InterfaceSourceSet extends AbstractSourceSet<InterfaceSource> {
     return INTERFACE;
   }
 
+  @Override
+  public Iterable<InterfaceSource> iterableForLocation(Location loc, double distance) {
+    return sourcesAt(sources, index.keysWithin(loc, distance));
+  }
+
   @Override
   public Predicate<InterfaceSource> distanceFilter(final Location loc,
       final double distance) {
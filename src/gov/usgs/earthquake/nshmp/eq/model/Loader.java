@@ -7,15 +7,21 @@ import static gov.usgs.earthquake.nshmp.eq.model.SystemParser.RUPTURES_FILENAME;
 import static gov.usgs.earthquake.nshmp.eq.model.SystemParser.SECTIONS_FILENAME;
 import static gov.usgs.earthquake.nshmp.internal.TextUtils.NEWLINE;
 import static java.nio.file.Files.newDirectoryStream;
+import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.SEVERE;
 
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
@@ -30,8 +36,14 @@ import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -39,6 +51,7 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import gov.usgs.earthquake.nshmp.calc.CalcConfig;
+import gov.usgs.earthquake.nshmp.calc.ThreadCount;
 import gov.usgs.earthquake.nshmp.eq.model.HazardModel.Builder;
 
 /**
@@ -46,6 +59,16 @@ import gov.usgs.earthquake.nshmp.eq.model.HazardModel.Builder;
  * various exceptions, both checked and unchecked, that may be thrown when
  * initializing a {@code HazardModel}.
  *
+ * <p>Source files are parsed concurrently using the number of threads specified
+ * by the model's {@code performance.threadCount} configuration. Each thread
+ * uses its own {@code SAXParser}, as neither it nor the source parsers are
+ * thread safe. Source sets are added to a model in the order in which their
+ * files are encountered, regardless of the number of threads used. Parsing is
+ * always performed on the calling thread when detailed (FINE) logging is
+ * enabled so that parser output is not interleaved. Fault, cluster, and
+ * interface source ruptures are generated on demand if the model's
+ * {@code performance.lazyRuptures} configuration is enabled.
+ *
  * @author Peter Powers
  */
 class Loader {
@@ -57,6 +80,18 @@ class Loader {
     log = Logger.getLogger(Loader.class.getName());
   }
 
+  /* SAXParsers are not thread safe; each parsing thread gets its own. */
+  private static final ThreadLocal<SAXParser> SAX = new ThreadLocal<SAXParser>() {
+    @Override
+    protected SAXParser initialValue() {
+      try {
+        return SAXParserFactory.newInstance().newSAXParser();
+      } catch (ParserConfigurationException | SAXException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  };
+
   /**
    * Load a {@code HazardModel}. Supplied path should be an absolute path to a
    * directory containing sub-directories by {@code SourceType}s, or the
@@ -65,15 +100,17 @@ class Loader {
    * <p>This method is not thread safe. This method wraps all {@code Runtime}
    * and other exceptions in {@code IO} and {@code SAXException}s.
    *
+   * <p>Source files are parsed concurrently, but the order of source sets in
+   * the returned model is independent of the number of threads used.
+   *
    * @param path to model directory or Zip file (absolute)
    * @return a newly created {@code HazardModel}
    */
   static HazardModel load(Path path) throws IOException, SAXException {
 
+    ParseQueue queue = null;
     try {
 
-      SAXParser sax = SAXParserFactory.newInstance().newSAXParser();
-
       if (!Files.exists(path)) {
         String mssg = String.format("Specified model does not exist: %s", path);
         throw new FileNotFoundException(mssg);
@@ -95,24 +132,30 @@ class Loader {
       checkState(typePaths.size() > 0, "Empty model: %s", path.getFileName());
       builder.name(modelConfig.name);
 
+      queue = new ParseQueue(calcConfig.performance.threadCount);
       for (Path typePath : typePaths) {
         String typeName = cleanZipName(typePath.getFileName().toString());
         log.info("");
         log.info("=======  " + typeName + " Sources  =======");
-        processTypeDir(typePath, builder, modelConfig, sax);
+        processTypeDir(typePath, queue, modelConfig, calcConfig.performance.lazyRuptures);
         log.info("==========================" + Strings.repeat("=", typeName.length()));
       }
+      queue.drainTo(builder);
 
       log.info("");
       HazardModel model = builder.build();
       return model;
 
-    } catch (URISyntaxException | ParserConfigurationException oe) {
+    } catch (URISyntaxException oe) {
       log.severe(NEWLINE + "** Error loading model **");
       throw new IOException(oe);
     } catch (Exception e) {
       log.severe(NEWLINE + "** Error loading model **");
       throw e;
+    } finally {
+      if (queue != null) {
+        queue.shutdown();
+      }
     }
   }
 
@@ -171,9 +214,9 @@ class Loader {
 
   private static void processTypeDir(
       Path typeDir,
-      Builder builder,
+      ParseQueue queue,
       ModelConfig modelConfig,
-      SAXParser sax) throws IOException, SAXException {
+      boolean lazyRuptures) throws IOException, SAXException {
 
     String typeName = cleanZipName(typeDir.getFileName().toString());
     SourceType type = SourceType.fromString(typeName);
@@ -214,13 +257,13 @@ class Loader {
     // we may have gmm.xml but no source files
     if (Files.exists(gmmPath)) {
       log.info("Parsing: " + typeDir.getParent().relativize(gmmPath));
-      gmmSet = parseGMM(gmmPath, sax);
+      gmmSet = parseGMM(gmmPath);
     }
 
     for (Path sourcePath : typePaths) {
-      log.info("Parsing: " + typeDir.getParent().relativize(sourcePath));
-      SourceSet<? extends Source> sourceSet = parseSource(type, sourcePath, gmmSet, config, sax);
-      builder.sourceSet(sourceSet);
+      Path name = typeDir.getParent().relativize(sourcePath);
+      log.info("Parsing: " + name);
+      queue.submit(name, sourceTask(type, sourcePath, gmmSet, config, lazyRuptures));
     }
 
     try (DirectoryStream<Path> ds =
@@ -232,7 +275,7 @@ class Loader {
           log.info("========  Nested " + typeName + " Sources  ========");
           firstDir = false;
         }
-        processNestedDir(nestedSourceDir, type, gmmSet, builder, config, sax);
+        processNestedDir(nestedSourceDir, type, gmmSet, queue, config, lazyRuptures);
       }
     }
   }
@@ -241,9 +284,9 @@ class Loader {
       Path sourceDir,
       SourceType type,
       GmmSet gmmSet,
-      Builder builder,
+      ParseQueue queue,
       ModelConfig parentConfig,
-      SAXParser sax) throws IOException, SAXException {
+      boolean lazyRuptures) throws IOException, SAXException {
 
     /*
      * gmm.xml -- this MUST exist if there is at least one source file and there
@@ -280,7 +323,7 @@ class Loader {
 
       if (Files.exists(nestedGmmPath)) {
         log.info("Parsing: " + typeDir.relativize(nestedGmmPath));
-        nestedGmmSet = parseGMM(nestedGmmPath, sax);
+        nestedGmmSet = parseGMM(nestedGmmPath);
       } else {
         log.info("(using parent gmm.xml)");
         nestedGmmSet = gmmSet;
@@ -289,37 +332,71 @@ class Loader {
     }
 
     if (type == SourceType.SYSTEM) {
-      log.info("Parsing: " + typeDir.relativize(sourceDir));
-      parseSystemSource(sourceDir, nestedGmmSet, builder, nestedConfig, sax);
+      Path name = typeDir.relativize(sourceDir);
+      log.info("Parsing: " + name);
+      queue.submit(name, systemTask(sourceDir, nestedGmmSet, nestedConfig));
     } else {
       for (Path sourcePath : nestedSourcePaths) {
-        log.info("Parsing: " + typeDir.relativize(sourcePath));
-        SourceSet<? extends Source> sourceSet = parseSource(type, sourcePath, nestedGmmSet,
-            nestedConfig, sax);
-        builder.sourceSet(sourceSet);
+        Path name = typeDir.relativize(sourcePath);
+        log.info("Parsing: " + name);
+        queue.submit(name,
+            sourceTask(type, sourcePath, nestedGmmSet, nestedConfig, lazyRuptures));
       }
     }
   }
 
+  private static Callable<List<SourceSet<? extends Source>>> sourceTask(
+      final SourceType type,
+      final Path path,
+      final GmmSet gmmSet,
+      final ModelConfig config,
+      final boolean lazyRuptures) {
+
+    return new Callable<List<SourceSet<? extends Source>>>() {
+      @Override
+      public List<SourceSet<? extends Source>> call() throws IOException, SAXException {
+        List<SourceSet<? extends Source>> sourceSets = new ArrayList<>();
+        sourceSets.add(parseSource(type, path, gmmSet, config, lazyRuptures));
+        return sourceSets;
+      }
+    };
+  }
+
+  private static Callable<List<SourceSet<? extends Source>>> systemTask(
+      final Path dir,
+      final GmmSet gmmSet,
+      final ModelConfig config) {
+
+    return new Callable<List<SourceSet<? extends Source>>>() {
+      @Override
+      public List<SourceSet<? extends Source>> call() throws IOException, SAXException {
+        List<SourceSet<? extends Source>> sourceSets = new ArrayList<>();
+        parseSystemSource(dir, gmmSet, sourceSets, config);
+        return sourceSets;
+      }
+    };
+  }
+
   private static SourceSet<? extends Source> parseSource(
       SourceType type,
       Path path,
       GmmSet gmmSet,
       ModelConfig config,
-      SAXParser sax) throws IOException, SAXException {
+      boolean lazyRuptures) throws IOException, SAXException {
 
+    SAXParser sax = SAX.get();
     try (InputStream in = Files.newInputStream(path)) {
       switch (type) {
         case AREA:
           return AreaParser.create(sax).parse(in, gmmSet, config);
         case CLUSTER:
-          return ClusterParser.create(sax).parse(in, gmmSet, config);
+          return ClusterParser.create(sax).parse(in, gmmSet, config, lazyRuptures);
         case FAULT:
-          return FaultParser.create(sax).parse(in, gmmSet, config);
+          return FaultParser.create(sax).parse(in, gmmSet, config, lazyRuptures);
         case GRID:
           return GridParser.create(sax).parse(in, gmmSet, config);
         case INTERFACE:
-          return InterfaceParser.create(sax).parse(in, gmmSet, config);
+          return InterfaceParser.create(sax).parse(in, gmmSet, config, lazyRuptures);
         case SLAB:
           return SlabParser.create(sax).parse(in, gmmSet, config);
         case SYSTEM:
@@ -337,10 +414,10 @@ class Loader {
   private static void parseSystemSource(
       Path dir,
       GmmSet gmmSet,
-      Builder builder,
-      ModelConfig config,
-      SAXParser sax) throws IOException, SAXException {
+      List<SourceSet<? extends Source>> sourceSets,
+      ModelConfig config) throws IOException, SAXException {
 
+    SAXParser sax = SAX.get();
     log.info("");
     try {
       Path sectionsPath = dir.resolve(SECTIONS_FILENAME);
@@ -350,7 +427,7 @@ class Loader {
         InputStream rupturesIn = Files.newInputStream(rupturesPath);
 
         SystemParser systemParser = SystemParser.create(sax);
-        builder.sourceSet(systemParser.parse(sectionsIn, rupturesIn, gmmSet));
+        sourceSets.add(systemParser.parse(sectionsIn, rupturesIn, gmmSet));
       } else {
         log.info("Fault model: (no fault sources supplied with system)");
       }
@@ -360,7 +437,7 @@ class Loader {
       if (Files.exists(gridSourcePath)) {
         InputStream gridIn = Files.newInputStream(gridSourcePath);
         GridSourceSet gridSet = GridParser.create(sax).parse(gridIn, gmmSet, config);
-        builder.sourceSet(gridSet);
+        sourceSets.add(gridSet);
         log.info(" Grid model: " + dir.getFileName() + "/" + GRIDSOURCE_FILENAME);
         log.info("     Weight: " + gridSet.weight());
         log.info("    Sources: " + gridSet.size());
@@ -372,11 +449,10 @@ class Loader {
     }
   }
 
-  private static GmmSet parseGMM(Path path, SAXParser sax)
-      throws IOException, SAXException {
+  private static GmmSet parseGMM(Path path) throws IOException, SAXException {
     try {
       InputStream in = Files.newInputStream(path);
-      return GmmParser.create(sax).parse(in);
+      return GmmParser.create(SAX.get()).parse(in);
     } catch (Exception e) {
       handleParseException(e, path);
       return null;
@@ -415,6 +491,74 @@ class Loader {
     }
   }
 
+  /*
+   * Source file parse tasks. Tasks are run as they are submitted, and their
+   * source sets are added to a model builder in submission order once all
+   * tasks have completed. With a single thread, tasks run on the calling
+   * thread.
+   */
+  private static final class ParseQueue {
+
+    final ExecutorService executor;
+    final List<Path> names = new ArrayList<>();
+    final List<Future<List<SourceSet<? extends Source>>>> results = new ArrayList<>();
+    final List<Stopwatch> watches = new ArrayList<>();
+
+    ParseQueue(ThreadCount threadCount) {
+      int threads = log.isLoggable(FINE) ? 1 : threadCount.value();
+      this.executor = (threads == 1)
+          ? MoreExecutors.newDirectExecutorService()
+          : Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+              .setNameFormat("model-loader-%d")
+              .setDaemon(true)
+              .build());
+    }
+
+    void submit(Path name, final Callable<List<SourceSet<? extends Source>>> task) {
+      final Stopwatch watch = Stopwatch.createUnstarted();
+      names.add(name);
+      watches.add(watch);
+      results.add(executor.submit(new Callable<List<SourceSet<? extends Source>>>() {
+        @Override
+        public List<SourceSet<? extends Source>> call() throws Exception {
+          watch.start();
+          try {
+            return task.call();
+          } finally {
+            watch.stop();
+          }
+        }
+      }));
+    }
+
+    /* Wait for all tasks, adding source sets to the builder in order. */
+    void drainTo(Builder builder) throws IOException, SAXException {
+      log.info("");
+      log.info("=======  Parse Times  =======");
+      for (int i = 0; i < results.size(); i++) {
+        List<SourceSet<? extends Source>> sourceSets = null;
+        try {
+          sourceSets = Uninterruptibles.getUninterruptibly(results.get(i));
+        } catch (ExecutionException ee) {
+          Throwable cause = ee.getCause();
+          Throwables.throwIfInstanceOf(cause, IOException.class);
+          Throwables.throwIfInstanceOf(cause, SAXException.class);
+          Throwables.throwIfUnchecked(cause);
+          throw new SAXException((Exception) cause);
+        }
+        for (SourceSet<? extends Source> sourceSet : sourceSets) {
+          builder.sourceSet(sourceSet);
+        }
+        log.info(String.format("%12s  %s", watches.get(i), names.get(i)));
+      }
+      log.info("=============================");
+    }
+
+    void shutdown() {
+      executor.shutdownNow();
+    }
+  }
+
   /* Prune trailing slash if such exists. */
   private static String cleanZipName(String name) {
     return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
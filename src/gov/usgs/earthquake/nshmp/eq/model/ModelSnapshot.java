@@ -0,0 +1,797 @@
+package gov.usgs.earthquake.nshmp.eq.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static gov.usgs.earthquake.nshmp.eq.model.SourceType.AREA;
+import static gov.usgs.earthquake.nshmp.eq.model.SourceType.GRID;
+import static gov.usgs.earthquake.nshmp.eq.model.SourceType.SLAB;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Ints;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.stream.Stream;
+
+import gov.usgs.earthquake.nshmp.calc.CalcConfig;
+import gov.usgs.earthquake.nshmp.data.XySequence;
+import gov.usgs.earthquake.nshmp.eq.fault.FocalMech;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.ApproxGriddedSurface;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.GriddedSurface;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.RuptureFloating;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.RuptureScaling;
+import gov.usgs.earthquake.nshmp.eq.model.AreaSource.GridScaling;
+import gov.usgs.earthquake.nshmp.eq.model.GmmSet.UncertType;
+import gov.usgs.earthquake.nshmp.eq.model.SystemSourceSet.SectionGeometry;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationList;
+import gov.usgs.earthquake.nshmp.gmm.Gmm;
+import gov.usgs.earthquake.nshmp.mfd.IncrementalMfd;
+
+/*
+ * Binary snapshot of a HazardModel. Parsing source XML dominates the load time
+ * of large models (e.g. UCERF3 fault systems with 250K+ ruptures), so a loaded
+ * model may be written to a snapshot at a path of the caller's choosing and
+ * bulk-read on subsequent runs. Because a snapshot is written from a model in
+ * memory, models loaded from directories and Zip files are handled alike, and
+ * snapshots may themselves be written to or read from any file system that
+ * supports streams, including Zip file systems.
+ *
+ * A snapshot stores the model name, its calculation config (as JSON), and the
+ * builder inputs of each source set and source. On read, these inputs are
+ * passed back through the same builders used by the XML parsers, so gridded
+ * surfaces, point source depth models and the like are reconstructed by the
+ * code that created them rather than serialized. Ground motion model sets are
+ * written once and shared by reference, as they are when parsed. Locations are
+ * stored in radians, their internal representation, and magnitude-frequency
+ * distributions as their domain and rates, so that a model read from a
+ * snapshot yields results identical to those of the model that was written.
+ *
+ * Snapshots are big-endian, per DataOutputStream, and start with a magic
+ * string ("NSHMPMOD"), a format version, and a SHA-256 content hash of the
+ * model directory or Zip file the snapshot was written from. Snapshots of
+ * other versions, or whose hash does not match the current contents of the
+ * model, are rejected rather than migrated as they are cheap to recreate from
+ * XML. A directory is hashed file by file in path order, including file names
+ * and the model's config.json, so editing, adding or removing any file
+ * invalidates a snapshot; a Zip file is hashed as a whole.
+ *
+ * @author Peter Powers
+ */
+final class ModelSnapshot {
+
+  private static final byte[] MAGIC = "NSHMPMOD".getBytes(US_ASCII);
+  private static final int VERSION = 2;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private ModelSnapshot() {}
+
+  /* Content hash of a model directory or Zip file. */
+  static String hash(Path model) throws IOException {
+    checkArgument(Files.exists(model), "Model [%s] does not exist", model);
+    Hasher hasher = Hashing.sha256().newHasher();
+    if (!Files.isDirectory(model)) {
+      hashFile(model, hasher);
+      return hasher.hash().toString();
+    }
+    List<String> names = new ArrayList<>();
+    try (Stream<Path> paths = Files.walk(model)) {
+      for (Path file : (Iterable<Path>) paths::iterator) {
+        if (Files.isRegularFile(file)) {
+          names.add(model.relativize(file).toString().replace('\\', '/'));
+        }
+      }
+    }
+    Collections.sort(names);
+    for (String name : names) {
+      Path file = model.resolve(name);
+      hasher.putString(name, UTF_8).putLong(Files.size(file));
+      hashFile(file, hasher);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void hashFile(Path file, Hasher hasher) throws IOException {
+    try (OutputStream out = Funnels.asOutputStream(hasher)) {
+      Files.copy(file, out);
+    }
+  }
+
+  static void write(HazardModel model, String hash, Path path) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+      new Writer(out).write(model, hash);
+    }
+  }
+
+  static HazardModel read(Path path, String hash) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+      return new Reader(in, path).read(hash);
+    }
+  }
+
+  /*
+   * Whether the snapshot at path is of the current version and was written
+   * from a model with the supplied hash. Only the snapshot header is read.
+   */
+  static boolean isCurrent(Path path, String hash) {
+    if (!Files.isRegularFile(path)) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(path)))) {
+      new Reader(in, path).checkHeader(hash);
+      return true;
+    } catch (IOException ioe) {
+      return false;
+    }
+  }
+
+  private static final class Writer {
+
+    private final DataOutputStream out;
+    private final Map<GmmSet, Integer> gmmSets = new IdentityHashMap<>();
+    private double[] lastMags = new double[0];
+
+    Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    void write(HazardModel model, String hash) throws IOException {
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+      writeString(hash);
+      writeString(model.name());
+      writeString(model.config().toJson());
+      out.writeInt(model.size());
+      for (SourceSet<? extends Source> sourceSet : model) {
+        writeSourceSet(sourceSet);
+      }
+    }
+
+    private void writeSourceSet(SourceSet<? extends Source> sourceSet) throws IOException {
+      SourceType type = sourceSet.type();
+      writeString(type.name());
+      switch (type) {
+        case AREA:
+          writeHeader(sourceSet);
+          writeAreaSet((AreaSourceSet) sourceSet);
+          break;
+        case CLUSTER:
+          writeHeader(sourceSet);
+          writeClusterSet((ClusterSourceSet) sourceSet);
+          break;
+        case FAULT:
+          writeFaultSet((FaultSourceSet) sourceSet);
+          break;
+        case GRID:
+          writeGridSet((GridSourceSet) sourceSet);
+          break;
+        case INTERFACE:
+          writeInterfaceSet((InterfaceSourceSet) sourceSet);
+          break;
+        case SLAB:
+          writeGridSet(((SlabSourceSet) sourceSet).delegate);
+          break;
+        case SYSTEM:
+          writeHeader(sourceSet);
+          writeSystemSet((SystemSourceSet) sourceSet);
+          break;
+        default:
+          throw new IllegalStateException("Unsupported source type: " + type);
+      }
+    }
+
+    private void writeHeader(SourceSet<? extends Source> sourceSet) throws IOException {
+      writeString(sourceSet.name());
+      out.writeInt(sourceSet.id());
+      out.writeDouble(sourceSet.weight());
+      writeGmmSet(sourceSet.groundMotionModels());
+    }
+
+    private void writeAreaSet(AreaSourceSet sourceSet) throws IOException {
+      out.writeInt(sourceSet.size());
+      for (AreaSource source : sourceSet) {
+        writeString(source.name());
+        out.writeInt(source.id());
+        writeLocations(source.sourceBorder);
+        writeMfd(source.mfd);
+        writeString(source.gridScaling.name());
+        writeMechMap(source.mechMap);
+        writeDepthMap(source.magDepthMap);
+        out.writeDouble(source.maxDepth);
+        out.writeDouble(source.strike);
+        writeString(source.rupScaling.name());
+        writeString(source.sourceType.name());
+      }
+    }
+
+    private void writeClusterSet(ClusterSourceSet sourceSet) throws IOException {
+      out.writeInt(sourceSet.size());
+      for (ClusterSource source : sourceSet) {
+        out.writeDouble(source.rate);
+        writeFaultSet(source.faults);
+      }
+    }
+
+    private void writeFaultSet(FaultSourceSet sourceSet) throws IOException {
+      writeHeader(sourceSet);
+      out.writeInt(sourceSet.size());
+      for (FaultSource source : sourceSet) {
+        writeFault(source);
+        out.writeDouble(source.surface.depth());
+      }
+    }
+
+    private void writeInterfaceSet(InterfaceSourceSet sourceSet) throws IOException {
+      writeHeader(sourceSet);
+      out.writeInt(sourceSet.size());
+      for (InterfaceSource source : sourceSet) {
+        writeFault(source);
+        /*
+         * An interface defined by upper and lower traces has an approximate
+         * surface; otherwise lowerTrace is derived from the surface and the
+         * source is rebuilt from its upper trace, depth, dip and width.
+         */
+        boolean dualTrace = source.surface instanceof ApproxGriddedSurface;
+        out.writeBoolean(dualTrace);
+        if (dualTrace) {
+          writeLocations(source.lowerTrace);
+        } else {
+          out.writeDouble(source.surface.depth());
+        }
+      }
+    }
+
+    private void writeFault(FaultSource source) throws IOException {
+      writeString(source.name);
+      out.writeInt(source.id);
+      writeLocations(source.trace);
+      out.writeDouble(source.dip);
+      out.writeDouble(source.width);
+      out.writeDouble(source.rake);
+      out.writeInt(source.mfds.size());
+      for (IncrementalMfd mfd : source.mfds) {
+        writeMfd(mfd);
+      }
+      out.writeDouble(source.spacing);
+      writeString(source.rupScaling.name());
+      writeString(source.rupFloating.name());
+      out.writeBoolean(source.rupVariability);
+    }
+
+    private void writeGridSet(GridSourceSet sourceSet) throws IOException {
+      writeHeader(sourceSet);
+      out.writeDouble(sourceSet.strike);
+      writeString(sourceSet.sourceType.name());
+      writeString(sourceSet.rupScaling.name());
+      writeDepthMap(sourceSet.magDepthMap);
+      out.writeDouble(sourceSet.maxDepth);
+      writeMechMap(sourceSet.mechMaps.get(0));
+      out.writeDouble(sourceSet.mMin);
+      out.writeDouble(sourceSet.mMax);
+      out.writeDouble(sourceSet.Δm);
+      out.writeBoolean(sourceSet.singularMechs);
+      out.writeInt(sourceSet.size());
+      for (int i = 0; i < sourceSet.size(); i++) {
+        writeLocation(sourceSet.locs.get(i));
+        writeNodeMfd(sourceSet.mfds.get(i));
+        if (!sourceSet.singularMechs) {
+          writeMechMap(sourceSet.mechMaps.get(i));
+        }
+      }
+    }
+
+    private void writeSystemSet(SystemSourceSet sourceSet) throws IOException {
+      out.writeInt(sourceSet.sectionGeometry.length);
+      for (int i = 0; i < sourceSet.sectionGeometry.length; i++) {
+        SectionGeometry geometry = sourceSet.sectionGeometry[i];
+        writeString(sourceSet.sectionName(i));
+        writeLocations(geometry.trace);
+        out.writeDouble(geometry.depth);
+        out.writeDouble(geometry.lowerDepth);
+        out.writeDouble(geometry.aseis);
+        out.writeDouble(geometry.dip);
+        out.writeDouble(geometry.dipDir);
+      }
+      int[] offsets = sourceSet.sectionOffsets;
+      out.writeInt(sourceSet.size());
+      for (int i = 0; i < sourceSet.size(); i++) {
+        out.writeDouble(sourceSet.mags[i]);
+        out.writeDouble(sourceSet.rates[i]);
+        out.writeDouble(sourceSet.depths[i]);
+        out.writeDouble(sourceSet.dips[i]);
+        out.writeDouble(sourceSet.widths[i]);
+        out.writeDouble(sourceSet.rakes[i]);
+        out.writeInt(offsets[i + 1] - offsets[i]);
+        for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+          out.writeInt(sourceSet.sectionIndices[j]);
+        }
+      }
+    }
+
+    /* Each set is written once; later references are by index. */
+    private void writeGmmSet(GmmSet gmmSet) throws IOException {
+      Integer index = gmmSets.get(gmmSet);
+      if (index != null) {
+        out.writeInt(index);
+        return;
+      }
+      out.writeInt(gmmSets.size());
+      gmmSets.put(gmmSet, gmmSets.size());
+      writeGmmMap(gmmSet.weightMapLo);
+      out.writeDouble(gmmSet.maxDistLo);
+      boolean singular = gmmSet.weightMapHi == null;
+      out.writeBoolean(singular);
+      if (!singular) {
+        writeGmmMap(gmmSet.weightMapHi);
+        out.writeDouble(gmmSet.maxDistHi);
+      }
+      UncertType uncertainty = gmmSet.uncertainty;
+      writeString(uncertainty.name());
+      if (uncertainty == UncertType.SINGLE) {
+        out.writeDouble(gmmSet.epiValue);
+      } else if (uncertainty == UncertType.MULTI) {
+        for (double[] values : gmmSet.epiValues) {
+          writeDoubles(values);
+        }
+      }
+      if (uncertainty != UncertType.NONE) {
+        writeDoubles(gmmSet.epiWeights);
+      }
+    }
+
+    private void writeGmmMap(Map<Gmm, Double> gmmMap) throws IOException {
+      out.writeInt(gmmMap.size());
+      for (Entry<Gmm, Double> entry : gmmMap.entrySet()) {
+        writeString(entry.getKey().name());
+        out.writeDouble(entry.getValue());
+      }
+    }
+
+    private void writeMechMap(Map<FocalMech, Double> mechMap) throws IOException {
+      out.writeInt(mechMap.size());
+      for (Entry<FocalMech, Double> entry : mechMap.entrySet()) {
+        writeString(entry.getKey().name());
+        out.writeDouble(entry.getValue());
+      }
+    }
+
+    private void writeDepthMap(NavigableMap<Double, Map<Double, Double>> magDepthMap)
+        throws IOException {
+      out.writeInt(magDepthMap.size());
+      for (Entry<Double, Map<Double, Double>> magEntry : magDepthMap.entrySet()) {
+        out.writeDouble(magEntry.getKey());
+        out.writeInt(magEntry.getValue().size());
+        for (Entry<Double, Double> depthEntry : magEntry.getValue().entrySet()) {
+          out.writeDouble(depthEntry.getKey());
+          out.writeDouble(depthEntry.getValue());
+        }
+      }
+    }
+
+    /*
+     * Incremental MFDs are stored by domain and rates; the domain is
+     * recreated from its end points, as it is by the MFD constructors.
+     */
+    private void writeMfd(IncrementalMfd mfd) throws IOException {
+      out.writeDouble(mfd.getMinX());
+      out.writeDouble(mfd.getMaxX());
+      out.writeInt(mfd.getNum());
+      out.writeBoolean(mfd.floats());
+      for (int i = 0; i < mfd.getNum(); i++) {
+        out.writeDouble(mfd.getY(i));
+      }
+    }
+
+    /* Grid node MFDs commonly share magnitudes, which are written once. */
+    private void writeNodeMfd(XySequence mfd) throws IOException {
+      double[] mags = new double[mfd.size()];
+      for (int i = 0; i < mags.length; i++) {
+        mags[i] = mfd.x(i);
+      }
+      boolean sameMags = Arrays.equals(mags, lastMags);
+      out.writeBoolean(sameMags);
+      if (!sameMags) {
+        writeDoubles(mags);
+        lastMags = mags;
+      }
+      for (int i = 0; i < mags.length; i++) {
+        out.writeDouble(mfd.y(i));
+      }
+    }
+
+    private void writeLocations(LocationList locs) throws IOException {
+      out.writeInt(locs.size());
+      for (Location loc : locs) {
+        writeLocation(loc);
+      }
+    }
+
+    private void writeLocation(Location loc) throws IOException {
+      out.writeDouble(loc.latRad());
+      out.writeDouble(loc.lonRad());
+      out.writeDouble(loc.depth());
+    }
+
+    private void writeDoubles(double[] values) throws IOException {
+      out.writeInt(values.length);
+      for (double value : values) {
+        out.writeDouble(value);
+      }
+    }
+
+    private void writeString(String s) throws IOException {
+      byte[] bytes = s.getBytes(UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static final class Reader {
+
+    private final DataInputStream in;
+    private final Path path;
+    private final List<GmmSet> gmmSets = new ArrayList<>();
+    private double[] lastMags = new double[0];
+    private boolean lazyRuptures;
+
+    Reader(DataInputStream in, Path path) {
+      this.in = in;
+      this.path = path;
+    }
+
+    HazardModel read(String hash) throws IOException {
+      checkHeader(hash);
+      HazardModel.Builder builder = HazardModel.builder();
+      builder.name(readString());
+      CalcConfig config = CalcConfig.Builder.withDefaults()
+          .extend(CalcConfig.Builder.fromJson(readString()))
+          .build();
+      builder.config(config);
+      lazyRuptures = config.performance.lazyRuptures;
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        builder.sourceSet(readSourceSet());
+      }
+      return builder.build();
+    }
+
+    void checkHeader(String hash) throws IOException {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IOException("Not a hazard model snapshot: " + path);
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException(
+            "Unsupported snapshot version [" + version + "], expected [" + VERSION + "]: " +
+                path);
+      }
+      String snapshotHash = readString();
+      if (!snapshotHash.equals(hash)) {
+        throw new IOException("Snapshot is stale, model has changed since it was written: " +
+            path);
+      }
+    }
+
+    private SourceSet<? extends Source> readSourceSet() throws IOException {
+      SourceType type = SourceType.valueOf(readString());
+      switch (type) {
+        case AREA:
+          return readAreaSet();
+        case CLUSTER:
+          return readClusterSet();
+        case FAULT:
+          return readFaultSet();
+        case GRID:
+          return readGridSet(GRID);
+        case INTERFACE:
+          return readInterfaceSet();
+        case SLAB:
+          return new SlabSourceSet(readGridSet(SLAB));
+        case SYSTEM:
+          return readSystemSet();
+        default:
+          throw new IllegalStateException("Unsupported source type: " + type);
+      }
+    }
+
+    private <T extends AbstractSourceSet.Builder> T readHeader(T builder) throws IOException {
+      builder.name(readString())
+          .id(in.readInt())
+          .weight(in.readDouble())
+          .gmms(readGmmSet());
+      return builder;
+    }
+
+    private AreaSourceSet readAreaSet() throws IOException {
+      AreaSourceSet.Builder builder = new AreaSourceSet.Builder();
+      builder.name(readString())
+          .id(in.readInt())
+          .weight(in.readDouble())
+          .gmms(readGmmSet());
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        AreaSource.Builder sourceBuilder = new AreaSource.Builder()
+            .name(readString())
+            .id(in.readInt())
+            .border(readLocations())
+            .mfd(readMfd())
+            .gridScaling(GridScaling.valueOf(readString()))
+            .mechs(readMechMap())
+            .depthMap(readDepthMap(), AREA)
+            .maxDepth(in.readDouble(), AREA)
+            .strike(in.readDouble())
+            .ruptureScaling(RuptureScaling.valueOf(readString()))
+            .sourceType(PointSourceType.valueOf(readString()));
+        builder.source(sourceBuilder.build());
+      }
+      return builder.build();
+    }
+
+    private ClusterSourceSet readClusterSet() throws IOException {
+      ClusterSourceSet.Builder builder = readHeader(new ClusterSourceSet.Builder());
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        ClusterSource.Builder sourceBuilder = new ClusterSource.Builder();
+        sourceBuilder.rate(in.readDouble());
+        sourceBuilder.faults(readFaultSet());
+        builder.source(sourceBuilder.buildClusterSource());
+      }
+      return builder.buildClusterSet();
+    }
+
+    private FaultSourceSet readFaultSet() throws IOException {
+      FaultSourceSet.Builder builder = readHeader(new FaultSourceSet.Builder());
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        FaultSource.Builder sourceBuilder = readFault(new FaultSource.Builder());
+        sourceBuilder.depth(in.readDouble());
+        builder.source(sourceBuilder.buildFaultSource());
+      }
+      return builder.buildFaultSet();
+    }
+
+    private InterfaceSourceSet readInterfaceSet() throws IOException {
+      InterfaceSourceSet.Builder builder = readHeader(new InterfaceSourceSet.Builder());
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        InterfaceSource.Builder sourceBuilder = readFault(new InterfaceSource.Builder());
+        if (in.readBoolean()) {
+          sourceBuilder.lowerTrace(readLocations());
+        } else {
+          sourceBuilder.depth(in.readDouble());
+        }
+        builder.source(sourceBuilder.buildSubductionSource());
+      }
+      return builder.buildSubductionSet();
+    }
+
+    private <T extends FaultSource.Builder> T readFault(T builder) throws IOException {
+      builder.name(readString())
+          .id(in.readInt())
+          .trace(readLocations());
+      double dip = in.readDouble();
+      double width = in.readDouble();
+      /* NaN for interfaces defined by upper and lower traces */
+      if (!Double.isNaN(dip)) {
+        builder.dip(dip).width(width);
+      }
+      builder.rake(in.readDouble());
+      int mfdCount = in.readInt();
+      for (int i = 0; i < mfdCount; i++) {
+        builder.mfd(readMfd());
+      }
+      builder.surfaceSpacing(in.readDouble())
+          .ruptureScaling(RuptureScaling.valueOf(readString()))
+          .ruptureFloating(RuptureFloating.valueOf(readString()))
+          .ruptureVariability(in.readBoolean())
+          .lazyRuptures(lazyRuptures);
+      return builder;
+    }
+
+    private GridSourceSet readGridSet(SourceType type) throws IOException {
+      GridSourceSet.Builder builder = readHeader(new GridSourceSet.Builder());
+      builder.strike(in.readDouble())
+          .sourceType(PointSourceType.valueOf(readString()))
+          .ruptureScaling(RuptureScaling.valueOf(readString()))
+          .depthMap(readDepthMap(), type)
+          .maxDepth(in.readDouble(), type)
+          .mechs(readMechMap())
+          .mfdData(in.readDouble(), in.readDouble(), in.readDouble());
+      boolean singularMechs = in.readBoolean();
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        Location loc = readLocation();
+        XySequence mfd = readNodeMfd();
+        if (singularMechs) {
+          builder.location(loc, mfd);
+        } else {
+          builder.location(loc, mfd, readMechMap());
+        }
+      }
+      return builder.build();
+    }
+
+    private SystemSourceSet readSystemSet() throws IOException {
+      SystemSourceSet.Builder builder = readHeader(new SystemSourceSet.Builder());
+      int sectionCount = in.readInt();
+      List<GriddedSurface> sections = new ArrayList<>(sectionCount);
+      List<String> sectionNames = new ArrayList<>(sectionCount);
+      List<SectionGeometry> sectionGeometry = new ArrayList<>(sectionCount);
+      for (int i = 0; i < sectionCount; i++) {
+        sectionNames.add(readString());
+        SectionGeometry geometry = new SectionGeometry(
+            readLocations(),
+            in.readDouble(),
+            in.readDouble(),
+            in.readDouble(),
+            in.readDouble(),
+            in.readDouble());
+        sections.add(geometry.surface());
+        sectionGeometry.add(geometry);
+      }
+      builder.sections(sections);
+      builder.sectionNames(sectionNames);
+      builder.sectionGeometry(sectionGeometry);
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        builder.mag(in.readDouble())
+            .rate(in.readDouble())
+            .depth(in.readDouble())
+            .dip(in.readDouble())
+            .width(in.readDouble())
+            .rake(in.readDouble());
+        int[] indices = new int[in.readInt()];
+        for (int j = 0; j < indices.length; j++) {
+          indices[j] = in.readInt();
+        }
+        builder.indices(Ints.asList(indices));
+      }
+      return builder.build();
+    }
+
+    private GmmSet readGmmSet() throws IOException {
+      int index = in.readInt();
+      if (index < gmmSets.size()) {
+        return gmmSets.get(index);
+      }
+      Map<Gmm, Double> weightMapLo = readGmmMap();
+      double maxDistLo = in.readDouble();
+      Map<Gmm, Double> weightMapHi = null;
+      double maxDistHi = maxDistLo;
+      if (!in.readBoolean()) {
+        weightMapHi = readGmmMap();
+        maxDistHi = in.readDouble();
+      }
+      UncertType uncertainty = UncertType.valueOf(readString());
+      double[] epiValues = null;
+      double[] epiWeights = null;
+      if (uncertainty == UncertType.SINGLE) {
+        epiValues = new double[] { in.readDouble() };
+      } else if (uncertainty == UncertType.MULTI) {
+        epiValues = new double[9];
+        for (int i = 0; i < 3; i++) {
+          System.arraycopy(readDoubles(), 0, epiValues, i * 3, 3);
+        }
+      }
+      if (uncertainty != UncertType.NONE) {
+        epiWeights = readDoubles();
+      }
+      GmmSet gmmSet = new GmmSet(
+          weightMapLo, maxDistLo,
+          weightMapHi, maxDistHi,
+          epiValues, epiWeights);
+      gmmSets.add(gmmSet);
+      return gmmSet;
+    }
+
+    private Map<Gmm, Double> readGmmMap() throws IOException {
+      Map<Gmm, Double> gmmMap = Maps.newEnumMap(Gmm.class);
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        gmmMap.put(Gmm.valueOf(readString()), in.readDouble());
+      }
+      return Maps.immutableEnumMap(gmmMap);
+    }
+
+    private Map<FocalMech, Double> readMechMap() throws IOException {
+      Map<FocalMech, Double> mechMap = Maps.newEnumMap(FocalMech.class);
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        mechMap.put(FocalMech.valueOf(readString()), in.readDouble());
+      }
+      return mechMap;
+    }
+
+    private NavigableMap<Double, Map<Double, Double>> readDepthMap() throws IOException {
+      ImmutableSortedMap.Builder<Double, Map<Double, Double>> magDepthMap =
+          ImmutableSortedMap.naturalOrder();
+      int magCount = in.readInt();
+      for (int i = 0; i < magCount; i++) {
+        double mag = in.readDouble();
+        ImmutableMap.Builder<Double, Double> depthMap = ImmutableMap.builder();
+        int depthCount = in.readInt();
+        for (int j = 0; j < depthCount; j++) {
+          depthMap.put(in.readDouble(), in.readDouble());
+        }
+        magDepthMap.put(mag, depthMap.build());
+      }
+      return magDepthMap.build();
+    }
+
+    private IncrementalMfd readMfd() throws IOException {
+      IncrementalMfd mfd = new IncrementalMfd(
+          in.readDouble(),
+          in.readDouble(),
+          in.readInt(),
+          in.readBoolean());
+      for (int i = 0; i < mfd.getNum(); i++) {
+        mfd.set(i, in.readDouble());
+      }
+      return mfd;
+    }
+
+    private XySequence readNodeMfd() throws IOException {
+      if (!in.readBoolean()) {
+        lastMags = readDoubles();
+      }
+      double[] rates = new double[lastMags.length];
+      for (int i = 0; i < rates.length; i++) {
+        rates[i] = in.readDouble();
+      }
+      return XySequence.createImmutable(lastMags, rates);
+    }
+
+    private LocationList readLocations() throws IOException {
+      int size = in.readInt();
+      List<Location> locs = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        locs.add(readLocation());
+      }
+      return LocationList.create(locs);
+    }
+
+    private Location readLocation() throws IOException {
+      return Location.fromRadians(in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    private double[] readDoubles() throws IOException {
+      double[] values = new double[in.readInt()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = in.readDouble();
+      }
+      return values;
+    }
+
+    private String readString() throws IOException {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return new String(bytes, UTF_8);
+    }
+  }
+
+}
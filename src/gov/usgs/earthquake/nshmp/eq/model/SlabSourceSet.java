@@ -17,7 +17,7 @@ import gov.usgs.earthquake.nshmp.geo.Location;
  */
 public final class SlabSourceSet implements SourceSet<PointSource> {
 
-  private final GridSourceSet delegate;
+  final GridSourceSet delegate; // package visible for ModelSnapshot
 
   SlabSourceSet(GridSourceSet delegate) {
     this.delegate = delegate;
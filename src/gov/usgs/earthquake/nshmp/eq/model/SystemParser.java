@@ -38,6 +38,7 @@ import javax.xml.parsers.SAXParser;
 
 import gov.usgs.earthquake.nshmp.eq.fault.surface.GriddedSurface;
 import gov.usgs.earthquake.nshmp.eq.model.MfdHelper.SingleData;
+import gov.usgs.earthquake.nshmp.eq.model.SystemSourceSet.SectionGeometry;
 import gov.usgs.earthquake.nshmp.internal.SourceElement;
 import gov.usgs.earthquake.nshmp.mfd.IncrementalMfd;
 import gov.usgs.earthquake.nshmp.mfd.MfdType;
@@ -66,6 +67,7 @@ class SystemParser extends DefaultHandler {
   // TODO can these be RuptureSurfaces??
   private List<GriddedSurface> sections;
   private List<String> sectionNames;
+  private List<SectionGeometry> sectionGeometry;
   private SystemSourceSet sourceSet;
   private SystemSourceSet.Builder sourceSetBuilder;
 
@@ -117,6 +119,7 @@ class SystemParser extends DefaultHandler {
     parser.parse(in);
     sections = parser.sections();
     sectionNames = parser.sectionNames();
+    sectionGeometry = parser.sectionGeometry();
   }
 
   @Override
@@ -148,6 +151,7 @@ class SystemParser extends DefaultHandler {
               .gmms(gmmSet);
           sourceSetBuilder.sections(sections);
           sourceSetBuilder.sectionNames(sectionNames);
+          sourceSetBuilder.sectionGeometry(sectionGeometry);
           log.info("     Weight: " + weight);
           log.info("   Sections: " + sections.size());
           log.info("   Ruptures: " + name + "/" + RUPTURES_FILENAME);
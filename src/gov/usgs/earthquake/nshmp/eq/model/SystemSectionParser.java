@@ -28,8 +28,8 @@ import java.util.logging.Logger;
 
 import javax.xml.parsers.SAXParser;
 
-import gov.usgs.earthquake.nshmp.eq.fault.surface.DefaultGriddedSurface;
 import gov.usgs.earthquake.nshmp.eq.fault.surface.GriddedSurface;
+import gov.usgs.earthquake.nshmp.eq.model.SystemSourceSet.SectionGeometry;
 import gov.usgs.earthquake.nshmp.geo.LocationList;
 import gov.usgs.earthquake.nshmp.internal.SourceElement;
 
@@ -52,7 +52,15 @@ class SystemSectionParser extends DefaultHandler {
 
   private List<GriddedSurface> sections;
   private List<String> sectionNames;
-  private DefaultGriddedSurface.Builder surfaceBuilder;
+  private List<SectionGeometry> sectionGeometry;
+
+  // geometry of the current section
+  private LocationList trace;
+  private double depth;
+  private double lowerDepth;
+  private double aseis;
+  private double dip;
+  private double dipDir;
 
   // Traces are the only text content in source files
   private boolean readingTrace = false;
@@ -87,6 +95,12 @@ class SystemSectionParser extends DefaultHandler {
     return sectionNames;
   }
 
+  /* Can't call before parse(). */
+  List<SectionGeometry> sectionGeometry() {
+    checkState(used == true);
+    return sectionGeometry;
+  }
+
   @Override
   public void startElement(
       String uri,
@@ -107,6 +121,7 @@ class SystemSectionParser extends DefaultHandler {
         case SYSTEM_FAULT_SECTIONS:
           sections = Lists.newArrayList();
           sectionNames = Lists.newArrayList();
+          sectionGeometry = Lists.newArrayList();
           String setName = readString(NAME, atts);
           log.info("Fault model: " + setName + "/" + SECTIONS_FILENAME);
           break;
@@ -117,7 +132,6 @@ class SystemSectionParser extends DefaultHandler {
          */
 
         case SECTION:
-          surfaceBuilder = DefaultGriddedSurface.builder();
           String sectionName = readString(NAME, atts);
           sectionNames.add(cleanName(sectionName));
           String sectionIndex = readString(INDEX, atts);
@@ -125,14 +139,11 @@ class SystemSectionParser extends DefaultHandler {
           break;
 
         case GEOMETRY:
-          double aseis = readDouble(ASEIS, atts);
-          double depth = readDouble(DEPTH, atts);
-          double lowerDepth = readDouble(LOWER_DEPTH, atts);
-          surfaceBuilder.depth(depth)
-              .lowerDepth(lowerDepth)
-              .aseis(aseis)
-              .dip(readDouble(DIP, atts))
-              .dipDir(readDouble(DIP_DIR, atts));
+          aseis = readDouble(ASEIS, atts);
+          depth = readDouble(DEPTH, atts);
+          lowerDepth = readDouble(LOWER_DEPTH, atts);
+          dip = readDouble(DIP, atts);
+          dipDir = readDouble(DIP_DIR, atts);
           break;
 
         case TRACE:
@@ -164,11 +175,14 @@ class SystemSectionParser extends DefaultHandler {
 
         case TRACE:
           readingTrace = false;
-          surfaceBuilder.trace(LocationList.fromString(traceBuilder.toString()));
+          trace = LocationList.fromString(traceBuilder.toString());
           break;
 
         case SECTION:
-          sections.add(surfaceBuilder.build());
+          SectionGeometry geometry = new SectionGeometry(
+              trace, depth, lowerDepth, aseis, dip, dipDir);
+          sections.add(geometry.surface());
+          sectionGeometry.add(geometry);
           break;
 
       }
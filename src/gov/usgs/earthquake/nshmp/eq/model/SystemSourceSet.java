@@ -1,6 +1,7 @@
 package gov.usgs.earthquake.nshmp.eq.model;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static gov.usgs.earthquake.nshmp.eq.Earthquakes.checkCrustalDepth;
@@ -9,7 +10,6 @@ import static gov.usgs.earthquake.nshmp.eq.Earthquakes.checkMagnitude;
 import static gov.usgs.earthquake.nshmp.eq.fault.Faults.checkDip;
 import static gov.usgs.earthquake.nshmp.eq.fault.Faults.checkRake;
 import static gov.usgs.earthquake.nshmp.eq.model.SourceType.SYSTEM;
-import static gov.usgs.earthquake.nshmp.geo.Locations.horzDistanceFast;
 import static java.lang.Math.min;
 
 import com.google.common.base.Function;
@@ -18,14 +18,14 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import gov.usgs.earthquake.nshmp.calc.HazardInput;
 import gov.usgs.earthquake.nshmp.calc.InputList;
 import gov.usgs.earthquake.nshmp.calc.Site;
 import gov.usgs.earthquake.nshmp.calc.SystemInputList;
@@ -33,8 +33,11 @@ import gov.usgs.earthquake.nshmp.data.Indexing;
 import gov.usgs.earthquake.nshmp.data.IntervalArray;
 import gov.usgs.earthquake.nshmp.data.XySequence;
 import gov.usgs.earthquake.nshmp.eq.fault.Faults;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.DefaultGriddedSurface;
 import gov.usgs.earthquake.nshmp.eq.fault.surface.GriddedSurface;
 import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationIndex;
+import gov.usgs.earthquake.nshmp.geo.LocationList;
 
 /**
  * Wrapper class for related {@link SystemSource}s.
@@ -45,30 +48,34 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
 
   private final GriddedSurface[] sections;
   private final String[] sectionNames;
-  private final BitSet[] bitsets;
-  private final double[] mags;
-  private final double[] rates;
-  private final double[] depths;
-  private final double[] dips;
-  private final double[] widths;
-  private final double[] rakes;
-
-  public final Statistics stats;
+  final SectionGeometry[] sectionGeometry; // package visible for ModelSnapshot
 
   /*
-   * TODO revisit the fact that BitSets are mutable and could potentially be
-   * altered via a SystemSource.
-   * 
-   * TODO don't like the fact that original trace data for sections is lost;
-   * same for other attributes
+   * Rupture data; package visible for ModelSnapshot. The fault sections that
+   * participate in each rupture are stored in compressed sparse row form: the
+   * ascending section indices of rupture i are the elements of sectionIndices
+   * from sectionOffsets[i] (inclusive) to sectionOffsets[i + 1] (exclusive).
    */
+  final int[] sectionOffsets;
+  final int[] sectionIndices;
+  final double[] mags;
+  final double[] rates;
+  final double[] depths;
+  final double[] dips;
+  final double[] widths;
+  final double[] rakes;
+  private final LocationIndex index;
+
+  public final Statistics stats;
 
   private SystemSourceSet(
       String name, int id, double weight,
       GmmSet gmmSet,
       GriddedSurface[] sections,
       String[] sectionNames,
-      BitSet[] bitsets,
+      SectionGeometry[] sectionGeometry,
+      int[] sectionOffsets,
+      int[] sectionIndices,
       double[] mags,
       double[] rates,
       double[] depths,
@@ -81,7 +88,9 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
 
     this.sections = sections;
     this.sectionNames = sectionNames;
-    this.bitsets = bitsets;
+    this.sectionGeometry = sectionGeometry;
+    this.sectionOffsets = sectionOffsets;
+    this.sectionIndices = sectionIndices;
     this.mags = mags;
     this.rates = rates;
     this.depths = depths;
@@ -90,6 +99,12 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
     this.rakes = rakes;
 
     this.stats = stats;
+
+    LocationIndex.Builder indexBuilder = LocationIndex.builder();
+    for (int i = 0; i < sections.length; i++) {
+      indexBuilder.add(i, sections[i].centroid());
+    }
+    this.index = indexBuilder.build();
   }
 
   @Override
@@ -99,7 +114,7 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
 
   @Override
   public int size() {
-    return bitsets.length;
+    return mags.length;
   }
 
   @Override
@@ -153,6 +168,21 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
     return sectionNames[index];
   }
 
+  /**
+   * Return whether the fault section at {@code sectionIndex} participates in
+   * the source at {@code sourceIndex}.
+   *
+   * @param sourceIndex of source to query
+   * @param sectionIndex of fault section to look for
+   */
+  public boolean sourceHasSection(int sourceIndex, int sectionIndex) {
+    return Arrays.binarySearch(
+        sectionIndices,
+        sectionOffsets[sourceIndex],
+        sectionOffsets[sourceIndex + 1],
+        sectionIndex) >= 0;
+  }
+
   /**
    * A single source in a fault system. These sources do not currently support
    * rupture iteration.
@@ -214,8 +244,18 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
       throw new UnsupportedOperationException();
     }
 
-    private final BitSet bitset() {
-      return bitsets[index];
+    private final int[] sectionIndices() {
+      return sectionIndices;
+    }
+
+    /* Start (inclusive) of section indices of this source. */
+    private final int sectionStart() {
+      return sectionOffsets[index];
+    }
+
+    /* End (exclusive) of section indices of this source. */
+    private final int sectionEnd() {
+      return sectionOffsets[index + 1];
     }
 
     private final double magnitude() {
@@ -265,28 +305,77 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
     }
   }
 
+  /*
+   * Fault section geometry as parsed. Section surfaces are always built from
+   * these values so that a snapshot of a source set reproduces its surfaces
+   * exactly.
+   */
+  static final class SectionGeometry {
+
+    final LocationList trace;
+    final double depth;
+    final double lowerDepth;
+    final double aseis;
+    final double dip;
+    final double dipDir;
+
+    SectionGeometry(
+        LocationList trace,
+        double depth,
+        double lowerDepth,
+        double aseis,
+        double dip,
+        double dipDir) {
+
+      this.trace = trace;
+      this.depth = depth;
+      this.lowerDepth = lowerDepth;
+      this.aseis = aseis;
+      this.dip = dip;
+      this.dipDir = dipDir;
+    }
+
+    GriddedSurface surface() {
+      return DefaultGriddedSurface.builder()
+          .trace(trace)
+          .depth(depth)
+          .lowerDepth(lowerDepth)
+          .aseis(aseis)
+          .dip(dip)
+          .dipDir(dipDir)
+          .build();
+    }
+  }
+
   /*
    * Single use builder. Quirky behavior: Note that sections() must be called
    * before any calls to indices(). All indices and data fields should be
    * repeatedly called in order to ensure correctly ordered fields when
    * iterating ruptures.
+   *
+   * Rupture data are accumulated in primitive columns that grow as needed;
+   * unfiltered UCERF3: FM31 = 253,706 FM32 = 305,709 ruptures.
    */
   static class Builder extends AbstractSourceSet.Builder {
 
-    /* Unfiltered UCERF3: FM31 = 253,706 FM32 = 305,709 */
-    static final int RUP_SET_SIZE = 306000;
+    private static final int DEFAULT_CAPACITY = 1024;
 
     static final String ID = "SystemSourceSet.Builder";
 
     private List<GriddedSurface> sections;
     private List<String> sectionNames;
-    private final List<BitSet> bitsets = new ArrayList<>(RUP_SET_SIZE);
-    private final List<Double> mags = new ArrayList<>(RUP_SET_SIZE);
-    private final List<Double> rates = new ArrayList<>(RUP_SET_SIZE);
-    private final List<Double> depths = new ArrayList<>(RUP_SET_SIZE);
-    private final List<Double> dips = new ArrayList<>(RUP_SET_SIZE);
-    private final List<Double> widths = new ArrayList<>(RUP_SET_SIZE);
-    private final List<Double> rakes = new ArrayList<>(RUP_SET_SIZE);
+    private List<SectionGeometry> sectionGeometry;
+
+    private int[] sectionOffsets = new int[DEFAULT_CAPACITY + 1];
+    private int[] sectionIndices = new int[DEFAULT_CAPACITY * 4];
+    private int ruptureCount = 0;
+    private int indexCount = 0;
+    private final Column mags = new Column();
+    private final Column rates = new Column();
+    private final Column depths = new Column();
+    private final Column dips = new Column();
+    private final Column widths = new Column();
+    private final Column rakes = new Column();
 
     private double mMin = Double.POSITIVE_INFINITY;
     private double mMax = Double.NEGATIVE_INFINITY;
@@ -305,13 +394,41 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
       return this;
     }
 
+    Builder sectionGeometry(List<SectionGeometry> geometry) {
+      checkNotNull(geometry, "Section geometry list is null");
+      checkArgument(geometry.size() > 0, "Section geometry list is empty");
+      this.sectionGeometry = geometry;
+      return this;
+    }
+
     Builder indices(List<Integer> indices) {
       checkState(sections != null, "Indices may only be set after call to sections()");
       checkNotNull(indices, "Rupture index list is null");
       // NOTE we're doublechecking a UCERF3 rule that ruptures be composed
       // of at least 2 sections; this may not be the case in the future.
       checkArgument(indices.size() > 1, "Rupture index list must contain 2 or more values");
-      bitsets.add(Indexing.indicesToBits(indices, sections.size()));
+
+      /* Sort and remove duplicates. */
+      int[] sorted = Ints.toArray(indices);
+      Arrays.sort(sorted);
+      int count = 0;
+      for (int i = 0; i < sorted.length; i++) {
+        checkElementIndex(sorted[i], sections.size());
+        if (count == 0 || sorted[i] != sorted[count - 1]) {
+          sorted[count++] = sorted[i];
+        }
+      }
+
+      if (ruptureCount + 2 > sectionOffsets.length) {
+        sectionOffsets = Arrays.copyOf(sectionOffsets, grow(sectionOffsets.length));
+      }
+      if (indexCount + count > sectionIndices.length) {
+        int capacity = Math.max(grow(sectionIndices.length), indexCount + count);
+        sectionIndices = Arrays.copyOf(sectionIndices, capacity);
+      }
+      System.arraycopy(sorted, 0, sectionIndices, indexCount, count);
+      indexCount += count;
+      sectionOffsets[++ruptureCount] = indexCount;
       return this;
     }
 
@@ -353,13 +470,17 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
       super.validateState(buildId);
 
       checkState(sections.size() > 0, "%s no sections added", buildId);
-      checkState(bitsets.size() > 0, "%s no index lists added", buildId);
+      checkState(ruptureCount > 0, "%s no index lists added", buildId);
       checkState(
           sections.size() == sectionNames.size(),
           "%s section list (%s) and name list (%s) are different sizes",
           buildId, sections.size(), sectionNames.size());
+      checkState(
+          sections.size() == sectionGeometry.size(),
+          "%s section list (%s) and geometry list (%s) are different sizes",
+          buildId, sections.size(), sectionGeometry.size());
 
-      int target = bitsets.size();
+      int target = ruptureCount;
       checkSize(mags.size(), target, buildId, "magnitudes");
       checkSize(rates.size(), target, buildId, "rates");
       checkSize(depths.size(), target, buildId, "depths");
@@ -383,15 +504,43 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
           gmmSet,
           sections.toArray(new GriddedSurface[] {}),
           sectionNames.toArray(new String[] {}),
-          bitsets.toArray(new BitSet[] {}),
-          Doubles.toArray(mags),
-          Doubles.toArray(rates),
-          Doubles.toArray(depths),
-          Doubles.toArray(dips),
-          Doubles.toArray(widths),
-          Doubles.toArray(rakes),
+          sectionGeometry.toArray(new SectionGeometry[] {}),
+          Arrays.copyOf(sectionOffsets, ruptureCount + 1),
+          Arrays.copyOf(sectionIndices, indexCount),
+          mags.toArray(),
+          rates.toArray(),
+          depths.toArray(),
+          dips.toArray(),
+          widths.toArray(),
+          rakes.toArray(),
           stats);
     }
+
+    private static int grow(int capacity) {
+      return capacity + (capacity >> 1) + 1;
+    }
+
+    /* Growable column of rupture data. */
+    private static final class Column {
+
+      private double[] values = new double[DEFAULT_CAPACITY];
+      private int size = 0;
+
+      void add(double value) {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, grow(size));
+        }
+        values[size++] = value;
+      }
+
+      int size() {
+        return size;
+      }
+
+      double[] toArray() {
+        return Arrays.copyOf(values, size);
+      }
+    }
   }
 
   /*
@@ -449,7 +598,7 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
   /*
    * System source calculation pipeline.
    *
-   * Rather than expose highly mutable bitsets and attendant logic that is used
+   * Rather than expose rupture section indices and attendant logic that is used
    * to generate HazardInputs from SystemSourceSets, we opt to locate transform
    * Functions and related classes here.
    *
@@ -469,8 +618,9 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
    * precomuting that data which will be required, and then mining it on a
    * per-source basis, as follows:
    *
-   * 1) For each source, create a BitSet with size = nSections. Set the bits for
-   * each section that the source uses. [sourceBitSet]
+   * 1) For each source, store the ascending indices of the sections that the
+   * source uses. The indices of all sources are stored end-to-end in a single
+   * array with a companion array of per-source offsets. [sourceSections]
    *
    * 2) Create another BitSet with size = nSections. Set the bits for each
    * section within the distance cutoff for a Site. Do this quickly using only
@@ -480,17 +630,16 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
    * distance metrics for each section in the siteBitSet. This is created
    * pre-sorted ascending on rRup (the closest sections to a site come first).
    *
-   * 4) For each sourceBitSet, 'siteBitSet.intersects(sourceBitSet)' returns
-   * whether a source is close enough to the site to be considered.
+   * 4) For each source, whether any of its sourceSections is set in the
+   * siteBitSet determines whether a source is close enough to the site to be
+   * considered.
    *
-   * 5) For each considered source, 'sourceBitSet AND siteBitSet' yields a
-   * BitSet that only includes set bits with indices in the distance metric
-   * table.
+   * 5) Create a table of the rank of each section in the distance map, in order
+   * of ascending rRup; sections that are not in the siteBitSet have no rank.
    *
-   * 6) For each source, loop the ascending indices, checking whether the bit at
-   * 'index' is set in the sources bitset. The first hit will be the closest
-   * section in a source, relative to a site. (the rX value used is keyed to the
-   * minimum rRup).
+   * 6) For each considered source, find the ranked sourceSections with the
+   * lowest ranks. The lowest rank will be the closest section in a source,
+   * relative to a site. (the rX value used is keyed to the minimum rRup).
    *
    * 7) Build GmmInputs and proceed with hazard calculation.
    *
@@ -498,8 +647,8 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
    * calculated first, there are geometries for which min(rRup) != min(rJB);
    * e.g. location on hanging wall of dipping fault that abuts a vertical
    * fault... vertical might yield min(rRup) but min(rJB) would be 0 (over
-   * dipping fault). While checking the bits in a source, we therefore look at
-   * the three closest sections.
+   * dipping fault). While checking the sections in a source, we therefore look
+   * at the four closest sections.
    */
 
   /*
@@ -556,16 +705,16 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
 
         /* Create inputs. */
         Map<Integer, double[]> rMap = rMapBuilder.build();
-        Function<SystemSource, HazardInput> inputGenerator = new InputGenerator(rMap, site);
+        InputGenerator inputGenerator = new InputGenerator(sourceSet, rMap);
         Predicate<SystemSource> rFilter = new BitsetFilter(siteBitset);
         Iterable<SystemSource> sources = Iterables.filter(sourceSet, rFilter);
 
         /* Fill input list. */
-        SystemInputList inputs = new SystemInputList(sourceSet, rMap.keySet());
+        SystemInputList inputs = new SystemInputList(sourceSet, site, rMap.keySet());
         for (SystemSource source : sources) {
-          inputs.add(inputGenerator.apply(source));
+          inputGenerator.addInput(source, inputs);
           // for deagg
-          inputs.addBitset(source.bitset());
+          inputs.addSource(source.index);
         }
 
         return inputs;
@@ -592,8 +741,8 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
 
   /*
    * Predicate that tests the intersection of a site bitset (fault sections
-   * wihtin a specified distance of a site) with source bitsets (fault sections
-   * that participate in a SystemSource/Rupture).
+   * wihtin a specified distance of a site) with source section indices (fault
+   * sections that participate in a SystemSource/Rupture).
    */
   private static class BitsetFilter implements Predicate<SystemSource> {
 
@@ -606,7 +755,13 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
 
     @Override
     public boolean apply(SystemSource source) {
-      return siteBitset.intersects(source.bitset());
+      int[] sectionIndices = source.sectionIndices();
+      for (int i = source.sectionStart(); i < source.sectionEnd(); i++) {
+        if (siteBitset.get(sectionIndices[i])) {
+          return true;
+        }
+      }
+      return false;
     }
 
     @Override
@@ -621,40 +776,64 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
 
   private static final int R_HIT_LIMIT = 3;
 
-  private static final class InputGenerator implements Function<SystemSource, HazardInput> {
-
-    private final Map<Integer, double[]> rMap;
-    private final Site site;
-
-    InputGenerator(
-        final Map<Integer, double[]> rMap,
-        final Site site) {
-
-      this.rMap = rMap;
-      this.site = site;
+  /*
+   * Writes ground motion model inputs for sources directly to the columns of
+   * an InputList; site properties are those of the list. Section distances are
+   * stored by rank, in order of ascending rRup, and the ranks of sections
+   * outside the distance map are -1.
+   */
+  private static final class InputGenerator {
+
+    private final int[] ranks;
+    private final double[][] distances;
+    private final int[] hits = new int[R_HIT_LIMIT + 1];
+
+    InputGenerator(final SystemSourceSet sourceSet, final Map<Integer, double[]> rMap) {
+      ranks = new int[sourceSet.sections.length];
+      Arrays.fill(ranks, -1);
+      distances = new double[rMap.size()][];
+      int rank = 0;
+      for (Map.Entry<Integer, double[]> entry : rMap.entrySet()) {
+        ranks[entry.getKey()] = rank;
+        distances[rank++] = entry.getValue();
+      }
     }
 
-    @Override
-    public HazardInput apply(SystemSource source) {
+    void addInput(SystemSource source, InputList inputs) {
+
+      /* Find the lowest ranked sections, in ascending order. */
+      int[] sectionIndices = source.sectionIndices();
+      int hitCount = 0;
+      for (int i = source.sectionStart(); i < source.sectionEnd(); i++) {
+        int rank = ranks[sectionIndices[i]];
+        if (rank < 0) {
+          continue;
+        }
+        int j;
+        if (hitCount < hits.length) {
+          j = hitCount++;
+        } else if (rank < hits[hits.length - 1]) {
+          j = hits.length - 1;
+        } else {
+          continue;
+        }
+        for (; j > 0 && hits[j - 1] > rank; j--) {
+          hits[j] = hits[j - 1];
+        }
+        hits[j] = rank;
+      }
 
       /* Find r minima. */
-      BitSet sections = source.bitset();
       double rJB = Double.MAX_VALUE;
       double rRup = Double.MAX_VALUE;
       double rX = Double.MAX_VALUE;
-      int hitCount = 0;
-      for (int sectionIndex : rMap.keySet()) {
-        if (sections.get(sectionIndex)) {
-          double[] distances = rMap.get(sectionIndex);
-          rJB = min(rJB, distances[R_JB_INDEX]);
-          double rRupNew = distances[R_RUP_INDEX];
-          if (rRupNew < rRup) {
-            rRup = rRupNew;
-            rX = distances[R_X_INDEX];
-          }
-          if (++hitCount > R_HIT_LIMIT) {
-            break;
-          }
+      for (int i = 0; i < hitCount; i++) {
+        double[] distances = this.distances[hits[i]];
+        rJB = min(rJB, distances[R_JB_INDEX]);
+        double rRupNew = distances[R_RUP_INDEX];
+        if (rRupNew < rRup) {
+          rRup = rRupNew;
+          rX = distances[R_X_INDEX];
         }
       }
 
@@ -663,7 +842,7 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
       double zTop = source.depth();
       double zHyp = Faults.hypocentralDepth(dip, width, zTop);
 
-      return new HazardInput(
+      inputs.add(
           source.rate(),
           source.magnitude(),
           rJB,
@@ -673,21 +852,12 @@ public final class SystemSourceSet extends AbstractSourceSet<SystemSourceSet.Sys
           width,
           zTop,
           zHyp,
-          source.rake(),
-          site.vs30,
-          site.vsInferred,
-          site.z1p0,
-          site.z2p5);
+          source.rake());
     }
   }
 
   private final BitSet bitsetForLocation(final Location loc, final double r) {
-    BitSet bits = new BitSet(sections.length);
-    int count = 0;
-    for (GriddedSurface surface : sections) {
-      bits.set(count++, horzDistanceFast(loc, surface.centroid()) <= r);
-    }
-    return bits;
+    return index.bitsWithin(loc, r);
   }
 
 }
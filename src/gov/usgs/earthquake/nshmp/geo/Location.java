@@ -1,5 +1,6 @@
 package gov.usgs.earthquake.nshmp.geo;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static gov.usgs.earthquake.nshmp.eq.Earthquakes.checkDepth;
 import static gov.usgs.earthquake.nshmp.geo.Coordinates.checkLatitude;
@@ -41,12 +42,18 @@ public final class Location implements Comparable<Location> {
   private final double lon;
   private final double depth;
 
+  /* Latitude and longitude in radians. */
   private Location(double lat, double lon, double depth) {
-    this.lat = checkLatitude(lat) * Maths.TO_RAD;
-    this.lon = checkLongitude(lon) * Maths.TO_RAD;
-    this.depth = checkDepth(depth);
+    this.lat = lat;
+    this.lon = lon;
+    this.depth = depth;
   }
 
+  private static final double LAT_MIN_RAD = Coordinates.LAT_RANGE.lowerEndpoint() * Maths.TO_RAD;
+  private static final double LAT_MAX_RAD = Coordinates.LAT_RANGE.upperEndpoint() * Maths.TO_RAD;
+  private static final double LON_MIN_RAD = Coordinates.LON_RANGE.lowerEndpoint() * Maths.TO_RAD;
+  private static final double LON_MAX_RAD = Coordinates.LON_RANGE.upperEndpoint() * Maths.TO_RAD;
+
   /**
    * Create a new {@code Location} with the supplied latitude and longitude and
    * a depth of 0 km.
@@ -71,7 +78,30 @@ public final class Location implements Comparable<Location> {
    * @see Coordinates
    */
   public static Location create(double lat, double lon, double depth) {
-    return new Location(lat, lon, depth);
+    return new Location(
+        checkLatitude(lat) * Maths.TO_RAD,
+        checkLongitude(lon) * Maths.TO_RAD,
+        checkDepth(depth));
+  }
+
+  /**
+   * Create a new {@code Location} with the supplied latitude and longitude in
+   * radians and depth. Radian values are stored as supplied, so a
+   * {@code Location} created from the {@link #latRad()}, {@link #lonRad()},
+   * and {@link #depth()} of another {@code Location} is equal to it.
+   *
+   * @param latRad latitude in radians
+   * @param lonRad longitude in radians
+   * @param depth in km (positive down)
+   * @throws IllegalArgumentException if any supplied values are out of range
+   * @see Coordinates
+   */
+  public static Location fromRadians(double latRad, double lonRad, double depth) {
+    checkArgument(latRad >= LAT_MIN_RAD && latRad <= LAT_MAX_RAD,
+        "Latitude [%s rad] is out of range", latRad);
+    checkArgument(lonRad > LON_MIN_RAD && lonRad < LON_MAX_RAD,
+        "Longitude [%s rad] is out of range", lonRad);
+    return new Location(latRad, lonRad, checkDepth(depth));
   }
 
   /**
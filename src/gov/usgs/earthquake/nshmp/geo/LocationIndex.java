@@ -0,0 +1,244 @@
+package gov.usgs.earthquake.nshmp.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static gov.usgs.earthquake.nshmp.geo.Coordinates.EARTH_RADIUS_MEAN;
+import static gov.usgs.earthquake.nshmp.geo.Locations.horzDistanceFast;
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import gov.usgs.earthquake.nshmp.util.Maths;
+
+/**
+ * A spatial index of {@code Location}s that supports fast identification of
+ * those locations within a given horizontal distance of a point. Each indexed
+ * {@code Location} is associated with an integer key; multiple locations may
+ * share a key, as when indexing the endpoints of fault traces by source.
+ *
+ * <p>Locations are bucketed into a regular grid of 1° cells so that a query
+ * only considers locations in the cells that overlap a bounding box around the
+ * query point. Locations that pass this coarse check are then tested using
+ * {@link Locations#horzDistanceFast(Location, Location)}, so query results are
+ * identical to those obtained by filtering all locations with
+ * {@link Locations#distanceFilter(Location, double)}.
+ *
+ * @author Peter Powers
+ */
+public final class LocationIndex {
+
+  private static final double CELL_SIZE = 1.0;
+  private static final double PAD = 1e-6;
+
+  /* Cell grid origin and dimensions (degrees) */
+  private final double minLat;
+  private final double minLon;
+  private final int rows;
+  private final int columns;
+
+  /* Cell contents in compressed row form */
+  private final int[] cellStarts;
+  private final int[] keys;
+  private final Location[] locs;
+  private final int keyCount;
+
+  private LocationIndex(
+      double minLat,
+      double minLon,
+      int rows,
+      int columns,
+      int[] cellStarts,
+      int[] keys,
+      Location[] locs,
+      int keyCount) {
+
+    this.minLat = minLat;
+    this.minLon = minLon;
+    this.rows = rows;
+    this.columns = columns;
+    this.cellStarts = cellStarts;
+    this.keys = keys;
+    this.locs = locs;
+    this.keyCount = keyCount;
+  }
+
+  /**
+   * Return the keys, in ascending order, of those locations that are within
+   * {@code distance} km of {@code origin}. A key is only returned once even if
+   * multiple locations associated with it are within range.
+   *
+   * @param origin of query
+   * @param distance (in km) beyond which locations are ignored
+   */
+  public int[] keysWithin(Location origin, double distance) {
+    return bitsWithin(origin, distance).stream().toArray();
+  }
+
+  /**
+   * Return a {@code BitSet} with bits set for the keys of those locations that
+   * are within {@code distance} km of {@code origin}.
+   *
+   * @param origin of query
+   * @param distance (in km) beyond which locations are ignored
+   */
+  public BitSet bitsWithin(Location origin, double distance) {
+    BitSet bits = new BitSet(keyCount);
+    if (keys.length == 0) {
+      return bits;
+    }
+
+    /*
+     * Conservative bounding box. horzDistanceFast scales longitude differences
+     * by the cosine of the mean latitude of two points, which is never smaller
+     * than the cosine of the largest latitude magnitude in range. The box is
+     * padded slightly to guard against rounding.
+     */
+    double Δlat = distance / EARTH_RADIUS_MEAN * Maths.TO_DEG + PAD;
+    double maxAbsLat = abs(origin.lat()) + Δlat;
+    double Δlon = maxAbsLat >= 90.0
+        ? Double.POSITIVE_INFINITY
+        : Δlat / cos(maxAbsLat * Maths.TO_RAD) + PAD;
+
+    int rowMin = max(0, cellIndex(origin.lat() - Δlat, minLat));
+    int rowMax = min(rows - 1, cellIndex(origin.lat() + Δlat, minLat));
+    int colMin = Double.isInfinite(Δlon) ? 0 : max(0, cellIndex(origin.lon() - Δlon, minLon));
+    int colMax = Double.isInfinite(Δlon)
+        ? columns - 1
+        : min(columns - 1, cellIndex(origin.lon() + Δlon, minLon));
+
+    for (int row = rowMin; row <= rowMax; row++) {
+      for (int col = colMin; col <= colMax; col++) {
+        int cell = row * columns + col;
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+          if (!bits.get(keys[i]) && horzDistanceFast(origin, locs[i]) <= distance) {
+            bits.set(keys[i]);
+          }
+        }
+      }
+    }
+    return bits;
+  }
+
+  /*
+   * Cell index of a coordinate. Values below the grid origin return -1 and
+   * callers clamp to the grid extents.
+   */
+  private static int cellIndex(double value, double min) {
+    double index = floor((value - min) / CELL_SIZE);
+    return (int) max(-1.0, min(Integer.MAX_VALUE - 1, index));
+  }
+
+  /**
+   * Return a new index builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A single-use builder of {@code LocationIndex}es.
+   */
+  public static final class Builder {
+
+    private boolean built = false;
+    private final List<Location> locs = new ArrayList<>();
+    private final List<Integer> keys = new ArrayList<>();
+    private int keyCount = 0;
+
+    private Builder() {}
+
+    /**
+     * Add a location with the supplied key.
+     *
+     * @param key to associate with location
+     * @param loc to add
+     * @throws IllegalArgumentException if {@code key < 0}
+     */
+    public Builder add(int key, Location loc) {
+      checkArgument(key >= 0, "Key [%s] must be non-negative", key);
+      locs.add(checkNotNull(loc));
+      keys.add(key);
+      keyCount = max(keyCount, key + 1);
+      return this;
+    }
+
+    /**
+     * Add locations with the supplied key.
+     *
+     * @param key to associate with locations
+     * @param locs to add
+     * @throws IllegalArgumentException if {@code key < 0}
+     */
+    public Builder add(int key, Iterable<Location> locs) {
+      for (Location loc : locs) {
+        add(key, loc);
+      }
+      return this;
+    }
+
+    /**
+     * Return a new {@code LocationIndex}.
+     */
+    public LocationIndex build() {
+      checkState(!built, "This builder has already been used");
+      built = true;
+
+      double minLat = Double.POSITIVE_INFINITY;
+      double maxLat = Double.NEGATIVE_INFINITY;
+      double minLon = Double.POSITIVE_INFINITY;
+      double maxLon = Double.NEGATIVE_INFINITY;
+      for (Location loc : locs) {
+        minLat = min(minLat, loc.lat());
+        maxLat = max(maxLat, loc.lat());
+        minLon = min(minLon, loc.lon());
+        maxLon = max(maxLon, loc.lon());
+      }
+      if (locs.isEmpty()) {
+        minLat = maxLat = minLon = maxLon = 0.0;
+      }
+      minLat = floor(minLat);
+      minLon = floor(minLon);
+      int rows = (int) floor((maxLat - minLat) / CELL_SIZE) + 1;
+      int columns = (int) floor((maxLon - minLon) / CELL_SIZE) + 1;
+
+      /* Counting sort of locations by cell, preserving insertion order */
+      int size = locs.size();
+      int[] cells = new int[size];
+      int[] cellStarts = new int[rows * columns + 1];
+      for (int i = 0; i < size; i++) {
+        Location loc = locs.get(i);
+        int row = min(rows - 1, cellIndex(loc.lat(), minLat));
+        int col = min(columns - 1, cellIndex(loc.lon(), minLon));
+        cells[i] = row * columns + col;
+        cellStarts[cells[i] + 1]++;
+      }
+      for (int i = 0; i < rows * columns; i++) {
+        cellStarts[i + 1] += cellStarts[i];
+      }
+      int[] sortedKeys = new int[size];
+      Location[] sortedLocs = new Location[size];
+      int[] carets = cellStarts.clone();
+      for (int i = 0; i < size; i++) {
+        int j = carets[cells[i]]++;
+        sortedKeys[j] = keys.get(i);
+        sortedLocs[j] = locs.get(i);
+      }
+
+      return new LocationIndex(
+          minLat, minLon,
+          rows, columns,
+          cellStarts,
+          sortedKeys,
+          sortedLocs,
+          keyCount);
+    }
+  }
+
+}
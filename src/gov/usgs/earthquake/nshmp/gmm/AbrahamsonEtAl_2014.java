@@ -17,6 +17,7 @@ import static java.lang.Math.sqrt;
 
 import com.google.common.collect.Range;
 
+import java.util.List;
 import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.data.Interpolate;
@@ -46,7 +47,7 @@ import gov.usgs.earthquake.nshmp.util.Maths;
  * @author Peter Powers
  * @see Gmm#ASK_14
  */
-public final class AbrahamsonEtAl_2014 implements GroundMotionModel {
+public final class AbrahamsonEtAl_2014 implements BatchGroundMotionModel {
 
   static final String NAME = "Abrahamson, Silva & Kamai (2014)";
 
@@ -138,6 +139,23 @@ public final class AbrahamsonEtAl_2014 implements GroundMotionModel {
     return calc(coeffs, in);
   }
 
+  @Override
+  public final void calc(final Inputs in, final double[] μ, final double[] σ) {
+    SiteTerms site = new SiteTerms(coeffs, in.vs30(), in.vsInf(), in.z1p0());
+    for (int i = 0; i < in.size(); i++) {
+      RuptureTerms r = new RuptureTerms(
+          in.Mw(i), in.rJB(i), in.rRup(i), in.rX(i), in.dip(i), in.width(i), in.zTop(i),
+          in.rake(i));
+      calc(coeffs, site, r, μ, σ, i);
+    }
+  }
+
+  /*
+   * Scalar implementation. Terms are computed directly rather than via the
+   * SiteTerms and RuptureTerms used by the batch and spectral implementations,
+   * which avoids allocating term containers for single inputs. Results are
+   * identical to those of the other implementations.
+   */
   private static final ScalarGroundMotion calc(final Coefficients c, final GmmInput in) {
 
     // frequently used method locals
@@ -288,7 +306,231 @@ public final class AbrahamsonEtAl_2014 implements GroundMotionModel {
     double σ = sqrt(phiSq + τ * τ);
 
     return DefaultScalarGroundMotion.create(μ, σ);
+  }
+
+
+  /* Site response and soil depth terms common to all inputs at a site. */
+  private static final class SiteTerms {
+
+    final boolean nonlinear;
+    final double f10;
+    final double lnVs30s;
+    final double vs30sPowN;
+    final double f5_lin;
+    final double f5_rk;
+    final double vs30PowN;
+    final double s1, s2;
+
+    SiteTerms(final Coefficients c, final double vs30, final boolean vsInf,
+        final double z1p0) {
+
+      // Soil Depth Model -- Equation 17
+      f10 = calcSoilTerm(c, vs30, z1p0);
+
+      double v1 = getV1(c.imt); // -- Equation 9
+      double vs30s = (vs30 < v1) ? vs30 : v1; // -- Equation 8
+
+      // Site term -- Equation 7
+      nonlinear = vs30 < c.Vlin;
+      lnVs30s = log(vs30s / c.Vlin);
+      vs30sPowN = pow(vs30s / c.Vlin, N);
+      f5_lin = (c.a10 + c.b * N) * lnVs30s;
+
+      // soil term (f10) for Sa1180 is zero per R. Kamai's code where
+      // Z1 < 0 for Sa1180 loop
+      double vs30s_rk = (VS_RK < v1) ? VS_RK : v1;
+      // use this f5 form for Sa1180 Vlin is always < 1180
+      f5_rk = (c.a10 + c.b * N) * log(vs30s_rk / c.Vlin);
+
+      // used by partial deriv. of ln(soil amp) -- Equation 30
+      vs30PowN = pow(vs30 / c.Vlin, N);
+
+      // Intra-event term coefficients -- Equation 24
+      s1 = vsInf ? c.s1e : c.s1m;
+      s2 = vsInf ? c.s2e : c.s2m;
+    }
+  }
+
+  /*
+   * Spectral implementation. Rupture terms, including the hanging wall tapers,
+   * do not depend on period and are computed once per input.
+   */
+  static final class Spectral extends SpectralModel<AbrahamsonEtAl_2014> {
+
+    Spectral(List<Imt> imts, List<GroundMotionModel> models) {
+      super(AbrahamsonEtAl_2014.class, imts, models);
+    }
+
+    @Override
+    public void calc(final GmmInput in, final ScalarGroundMotion[] gms) {
+      RuptureTerms r = new RuptureTerms(
+          in.Mw, in.rJB, in.rRup, in.rX, in.dip, in.width, in.zTop, in.rake);
+      double[] μ = new double[1];
+      double[] σ = new double[1];
+      for (int i = 0; i < models.size(); i++) {
+        Coefficients c = models.get(i).coeffs;
+        AbrahamsonEtAl_2014.calc(c, new SiteTerms(c, in.vs30, in.vsInf, in.z1p0), r, μ, σ, 0);
+        gms[i] = DefaultScalarGroundMotion.create(μ[0], σ[0]);
+      }
+    }
+  }
+
+  /* Period independent terms of the base and hanging wall models. */
+  private static final class RuptureTerms {
+
+    final double Mw;
+    final double rRup;
+    final double zTop;
+    final double lnR;
+    final double MaxMwSq;
+    final FaultStyle style;
+    final boolean hangingWall;
+    final double T1, T2, T3, T4, T5;
+
+    RuptureTerms(final double Mw, final double rJB, final double rRup, final double rX,
+        final double dip, final double width, final double zTop, final double rake) {
+
+      this.Mw = Mw;
+      this.rRup = rRup;
+      this.zTop = zTop;
+
+      // Magnitude dependent taper -- Equation 4
+      double c4mag = (Mw > 5) ? C4 : (Mw > 4) ? C4 - (C4 - 1.0) * (5.0 - Mw) : 1.0;
+
+      // -- Equation 3
+      double R = sqrt(rRup * rRup + c4mag * c4mag);
+      lnR = log(R);
+
+      // -- Equation 2
+      MaxMwSq = (8.5 - Mw) * (8.5 - Mw);
+
+      style = GmmUtils.rakeToFaultStyle_NSHMP(rake);
+
+      // Hanging Wall Model
+      // short-circuit: f4 is 0 if rJB >= 30, rX < 0, Mw <= 5.5, zTop > 10
+      // these switches have been removed below
+      hangingWall = rJB < 30 && rX >= 0.0 && Mw > 5.5 && zTop <= 10.0;
+      if (!hangingWall) {
+        T1 = T2 = T3 = T4 = T5 = 0.0;
+        return;
+      }
+
+      // ... dip taper -- Equation 11
+      T1 = (dip > 30.0) ? (90.0 - dip) / 45 : 1.33333333; // 60/45
+
+      // ... mag taper -- Equation 12
+      double dM = Mw - 6.5;
+      T2 = (Mw >= 6.5) ? 1 + A2_HW * dM : 1 + A2_HW * dM - (1 - A2_HW) * dM * dM;
+
+      // ... rX taper -- Equation 13
+      double t3 = 0.0;
+      double r1 = width * cos(dip * Maths.TO_RAD);
+      double r2 = 3 * r1;
+      if (rX <= r1) {
+        double rXr1 = rX / r1;
+        t3 = H1 + H2 * rXr1 + H3 * rXr1 * rXr1;
+      } else if (rX <= r2) {
+        t3 = 1 - (rX - r1) / (r2 - r1);
+      }
+      T3 = t3;
+
+      // ... zTop taper -- Equation 14
+      T4 = 1 - (zTop * zTop) / 100.0;
+
+      // ... rX, rY0 taper -- Equation 15b
+      T5 = (rJB == 0.0) ? 1.0 : 1 - rJB / 30.0;
+    }
+  }
+
+  private static final void calc(final Coefficients c, final SiteTerms site,
+      final RuptureTerms r, final double[] μ, final double[] σ, final int index) {
+
+    double Mw = r.Mw;
+    double zTop = r.zTop;
+
+    // ****** Mean ground motion and standard deviation model ******
+
+    // Base Model (magnitude and distance dependence for strike-slip eq)
+
+    // -- Equation 2
+    double MwM1 = Mw - c.M1;
 
+    double f1 = c.a1 + c.a17 * r.rRup;
+    if (Mw > c.M1) {
+      f1 += A5 * MwM1 + c.a8 * r.MaxMwSq + (c.a2 + A3 * MwM1) * r.lnR;
+    } else if (Mw >= M2) {
+      f1 += A4 * MwM1 + c.a8 * r.MaxMwSq + (c.a2 + A3 * MwM1) * r.lnR;
+    } else {
+      double M2M1 = M2 - c.M1;
+      double MaxM2Sq = (8.5 - M2) * (8.5 - M2);
+      double MwM2 = Mw - M2;
+      // a7 == 0; removed a7 * MwM2 * MwM2 below
+      f1 += A4 * M2M1 + c.a8 * MaxM2Sq + c.a6 * MwM2 + (c.a2 + A3 * M2M1) * r.lnR;
+    }
+
+    // Aftershock Model (Class1 = mainshock; Class2 = afershock)
+    // not currently used as rJBc (the rJB from the centroid of the parent
+    // Class1 event) is not defined; requires event type flag -- Equation 7
+    // double f11 = 0.0 * a14;
+    // if (rJBc < 5) {
+    // f11 = a14;
+    // } else if (rJBc <= 15) {
+    // f11 = a14 * (1 - (rJBc - 5.0) / 10.0);
+    // }
+
+    // Hanging Wall Model -- Equation 10
+    double f4 = r.hangingWall ? c.a13 * r.T1 * r.T2 * r.T3 * r.T4 * r.T5 : 0.0;
+
+    // Depth to Rupture Top Model -- Equation 16
+    double f6 = c.a15;
+    if (zTop < 20.0) {
+      f6 *= zTop / 20.0;
+    }
+
+    // Style-of-Faulting Model -- Equations 5 & 6
+    // Note: REVERSE doesn not need to be implemented as f7 always resolves
+    // to 0 as a11==0; we skip f7 here
+    double f78 = (r.style == NORMAL) ? (Mw > 5.0) ? c.a12 : (Mw >= 4.0) ? c.a12 * (Mw - 4) : 0.0
+        : 0.0;
+
+    // Site term -- Equation 7
+    double f5 = site.f5_lin;
+    double saRock = 0.0; // calc Sa1180 (rock reference) if necessary
+    double c_b = c.b;
+    double c_c = c.c;
+    if (site.nonlinear) {
+      saRock = exp(f1 + f78 + site.f5_rk + f4 + f6);
+      f5 = c.a10 * site.lnVs30s - c_b * log(saRock + c_c) + c_b *
+          log(saRock + c_c * site.vs30sPowN);
+    }
+
+    // total model (no aftershock f11) -- Equation 1
+    μ[index] = f1 + f78 + f5 + f4 + f6 + site.f10;
+
+    // ****** Aleatory uncertainty model ******
+
+    // Intra-event term -- Equation 24
+    double phiAsq = getPhiA(Mw, site.s1, site.s2);
+    phiAsq *= phiAsq;
+
+    // Inter-event term -- Equation 25
+    double tauB = getTauA(Mw, c.s3, c.s4);
+
+    // Intra-event term with site amp variability removed -- Equation 27
+    double phiBsq = phiAsq - PHI_AMP_SQ;
+
+    // Parital deriv. of ln(soil amp) w.r.t. ln(SA1180) -- Equation 30
+    // saRock subject to same vs30 < Vlin test as in mean model
+    double dAmp_p1 = get_dAmp(c_b, c_c, site, saRock) + 1.0;
+
+    // phi squared, with non-linear effects -- Equation 28
+    double phiSq = phiBsq * dAmp_p1 * dAmp_p1 + PHI_AMP_SQ;
+
+    // tau squared, with non-linear effects -- Equation 29
+    double τ = tauB * dAmp_p1;
+
+    // total std dev
+    σ[index] = sqrt(phiSq + τ * τ);
   }
 
   // -- Equation 9
@@ -351,4 +593,14 @@ public final class AbrahamsonEtAl_2014 implements GroundMotionModel {
         (b * saRock) / (saRock + c * pow(vs30 / vLin, N));
   }
 
+  // -- Equation 30, site terms precomputed
+  private static final double get_dAmp(final double b, final double c,
+      final SiteTerms site, final double saRock) {
+    if (!site.nonlinear) {
+      return 0.0;
+    }
+    return (-b * saRock) / (saRock + c) +
+        (b * saRock) / (saRock + c * site.vs30PowN);
+  }
+
 }
@@ -0,0 +1,82 @@
+package gov.usgs.earthquake.nshmp.gmm;
+
+/**
+ * Optional interface implemented by ground motion models (GMMs) that can
+ * compute ground motions for many ruptures at a single site in one call.
+ * Implementations compute terms that do not depend on rupture properties (e.g.
+ * site response and basin terms) once per batch and then write the mean and
+ * standard deviation of each rupture directly to caller-supplied arrays,
+ * avoiding the creation of intermediate {@link GmmInput} and
+ * {@link ScalarGroundMotion} instances.
+ *
+ * <p>Results are identical to those obtained from calls to
+ * {@link #calc(GmmInput)} with equivalent arguments.
+ *
+ * @author Peter Powers
+ * @see GroundMotionModel
+ */
+public interface BatchGroundMotionModel extends GroundMotionModel {
+
+  /**
+   * Compute the scalar ground motions and their standard deviations for all
+   * ruptures in the supplied batch of inputs.
+   *
+   * @param inputs the batch of ground motion model inputs
+   * @param μ the array to populate with means (in natural log units); must
+   *        have a length at least equal to {@code inputs.size()}
+   * @param σ the array to populate with standard deviations; must have a
+   *        length at least equal to {@code inputs.size()}
+   */
+  void calc(Inputs inputs, double[] μ, double[] σ);
+
+  /**
+   * Column-oriented view of multiple ground motion model inputs that share the
+   * same site. Rupture properties are accessed by index; site properties are
+   * common to all inputs.
+   */
+  interface Inputs {
+
+    /** The number of inputs in this batch. */
+    int size();
+
+    /** The moment magnitude of the input at {@code index}. */
+    double Mw(int index);
+
+    /** The Joyner-Boore distance of the input at {@code index}. */
+    double rJB(int index);
+
+    /** The rupture distance of the input at {@code index}. */
+    double rRup(int index);
+
+    /** The distance X of the input at {@code index}. */
+    double rX(int index);
+
+    /** The rupture dip of the input at {@code index}. */
+    double dip(int index);
+
+    /** The rupture width of the input at {@code index}. */
+    double width(int index);
+
+    /** The depth to top of rupture of the input at {@code index}. */
+    double zTop(int index);
+
+    /** The hypocentral depth of the input at {@code index}. */
+    double zHyp(int index);
+
+    /** The rupture rake of the input at {@code index}. */
+    double rake(int index);
+
+    /** The site vs30. */
+    double vs30();
+
+    /** Whether the site vs30 is inferred. */
+    boolean vsInf();
+
+    /** The site depth to 1.0 km/s shear wave velocity. */
+    double z1p0();
+
+    /** The site depth to 2.5 km/s shear wave velocity. */
+    double z2p5();
+  }
+
+}
@@ -17,6 +17,7 @@ import static java.lang.Math.sqrt;
 
 import com.google.common.collect.Range;
 
+import java.util.List;
 import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.eq.fault.Faults;
@@ -44,7 +45,7 @@ import gov.usgs.earthquake.nshmp.gmm.GmmInput.Constraints;
  * @author Peter Powers
  * @see Gmm#BSSA_14
  */
-public final class BooreEtAl_2014 implements GroundMotionModel {
+public final class BooreEtAl_2014 implements BatchGroundMotionModel {
 
   static final String NAME = "Boore, Stewart, Seyhan & Atkinson (2014)";
 
@@ -126,28 +127,73 @@ public final class BooreEtAl_2014 implements GroundMotionModel {
 
   @Override
   public final ScalarGroundMotion calc(final GmmInput in) {
-    return calc(coeffs, coeffsPGA, in);
-  }
-
-  private static final ScalarGroundMotion calc(final Coefficients c, final Coefficients cPGA,
-      final GmmInput in) {
 
     FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
-    double pgaRock = calcPGArock(cPGA, in.Mw, in.rJB, style);
+    double pgaRock = calcPGArock(coeffsPGA, in.Mw, in.rJB, style);
 
-    double μ = calcMean(c, style, pgaRock, in);
-    double σ = calcStdDev(c, in);
+    double μ = calcMean(coeffs, style, pgaRock, in.Mw, in.rJB,
+        calcSiteLinear(coeffs, in.vs30),
+        calcSiteNonlinear(coeffs, in.vs30),
+        calcBasin(coeffs, calcDeltaZ1(in.z1p0, in.vs30)));
+    double σ = calcStdDev(coeffs, in.Mw, in.rJB, calcSiteStdDev(coeffs, in.vs30));
 
     return DefaultScalarGroundMotion.create(μ, σ);
   }
 
+  @Override
+  public final void calc(final Inputs in, final double[] μ, final double[] σ) {
+
+    // site terms common to all inputs
+    double vs30 = in.vs30();
+    double lnFlin = calcSiteLinear(coeffs, vs30);
+    double f2 = calcSiteNonlinear(coeffs, vs30);
+    double Fdz1 = calcBasin(coeffs, calcDeltaZ1(in.z1p0(), vs30));
+    double Δφ_v = calcSiteStdDev(coeffs, vs30);
+
+    for (int i = 0; i < in.size(); i++) {
+      double Mw = in.Mw(i);
+      double rJB = in.rJB(i);
+      FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake(i));
+      double pgaRock = calcPGArock(coeffsPGA, Mw, rJB, style);
+      μ[i] = calcMean(coeffs, style, pgaRock, Mw, rJB, lnFlin, f2, Fdz1);
+      σ[i] = calcStdDev(coeffs, Mw, rJB, Δφ_v);
+    }
+  }
+
+  /*
+   * Spectral implementation. Fault style, the PGA reference rock ground motion,
+   * and the basin depth delta do not depend on period and are computed once
+   * per input.
+   */
+  static final class Spectral extends SpectralModel<BooreEtAl_2014> {
+
+    Spectral(List<Imt> imts, List<GroundMotionModel> models) {
+      super(BooreEtAl_2014.class, imts, models);
+    }
+
+    @Override
+    public void calc(final GmmInput in, final ScalarGroundMotion[] gms) {
+
+      FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
+      double pgaRock = calcPGArock(models.get(0).coeffsPGA, in.Mw, in.rJB, style);
+      double DZ1 = calcDeltaZ1(in.z1p0, in.vs30);
+
+      for (int i = 0; i < models.size(); i++) {
+        Coefficients c = models.get(i).coeffs;
+        double μ = calcMean(c, style, pgaRock, in.Mw, in.rJB,
+            calcSiteLinear(c, in.vs30),
+            calcSiteNonlinear(c, in.vs30),
+            calcBasin(c, DZ1));
+        double σ = calcStdDev(c, in.Mw, in.rJB, calcSiteStdDev(c, in.vs30));
+        gms[i] = DefaultScalarGroundMotion.create(μ, σ);
+      }
+    }
+  }
+
   // Mean ground motion model
   private static final double calcMean(final Coefficients c, final FaultStyle style,
-      final double pgaRock, final GmmInput in) {
-
-    double Mw = in.Mw;
-    double rJB = in.rJB;
-    double vs30 = in.vs30;
+      final double pgaRock, final double Mw, final double rJB, final double lnFlin,
+      final double f2, final double Fdz1) {
 
     // Source/Event Term -- Equation 2
     double Fe = calcSourceTerm(c, Mw, style);
@@ -156,19 +202,9 @@ public final class BooreEtAl_2014 implements GroundMotionModel {
     double R = sqrt(rJB * rJB + c.h * c.h);
     double Fp = calcPathTerm(c, Mw, R);
 
-    // Site Linear Term -- Equation 6
-    double vsLin = (vs30 <= c.Vc) ? vs30 : c.Vc;
-    double lnFlin = c.c * log(vsLin / V_REF);
-
-    // Site Nonlinear Term -- Equations 7, 8
-    double f2 = c.f4 * (exp(c.f5 * (min(vs30, 760.0) - 360.0)) - exp(c.f5 * (760.0 - 360.0)));
+    // Site Nonlinear Term -- Equation 7
     double lnFnl = F1 + f2 * log((pgaRock + F3) / F3);
 
-    // Basin depth term -- Equations 9, 10 , 11
-    double DZ1 = calcDeltaZ1(in.z1p0, vs30);
-    double Fdz1 = (c.imt.isSA() && c.imt.period() >= 0.65)
-        ? (DZ1 <= c.f7 / c.f6) ? c.f6 * DZ1 : c.f7 : 0.0;
-
     // Total site term -- Equation 5
     double Fs = lnFlin + lnFnl + Fdz1;
 
@@ -176,6 +212,23 @@ public final class BooreEtAl_2014 implements GroundMotionModel {
     return Fe + Fp + Fs;
   }
 
+  // Site Linear Term -- Equation 6
+  private static final double calcSiteLinear(final Coefficients c, final double vs30) {
+    double vsLin = (vs30 <= c.Vc) ? vs30 : c.Vc;
+    return c.c * log(vsLin / V_REF);
+  }
+
+  // Site Nonlinear Term, f2 -- Equation 8
+  private static final double calcSiteNonlinear(final Coefficients c, final double vs30) {
+    return c.f4 * (exp(c.f5 * (min(vs30, 760.0) - 360.0)) - exp(c.f5 * (760.0 - 360.0)));
+  }
+
+  // Basin depth term -- Equations 9, 10 , 11
+  private static final double calcBasin(final Coefficients c, final double DZ1) {
+    return (c.imt.isSA() && c.imt.period() >= 0.65)
+        ? (DZ1 <= c.f7 / c.f6) ? c.f6 * DZ1 : c.f7 : 0.0;
+  }
+
   // Median PGA for ref rock (Vs30=760m/s); always called with PGA coeffs
   private static final double calcPGArock(final Coefficients c, final double Mw,
       final double rJB, final FaultStyle style) {
@@ -222,12 +275,19 @@ public final class BooreEtAl_2014 implements GroundMotionModel {
     return z1p0 - exp(-7.15 / 4.0 * log((vsPow4 + A) / B)) / 1000.0;
   }
 
-  // Aleatory uncertainty model
-  private static final double calcStdDev(final Coefficients c, final GmmInput in) {
+  // Vs30 dependent reduction of intra-event term -- Equation 17
+  private static final double calcSiteStdDev(final Coefficients c, final double vs30) {
+    if (vs30 <= V1) {
+      return c.Δφ_v;
+    } else if (vs30 < V2) {
+      return c.Δφ_v * (log(V2 / vs30) / log(V2 / V1));
+    }
+    return 0.0;
+  }
 
-    double Mw = in.Mw;
-    double rJB = in.rJB;
-    double vs30 = in.vs30;
+  // Aleatory uncertainty model
+  private static final double calcStdDev(final Coefficients c, final double Mw,
+      final double rJB, final double Δφ_v) {
 
     // Inter-event Term -- Equation 14
     double τ = (Mw >= 5.5) ? c.τ2 : (Mw <= 4.5) ? c.τ1 : c.τ1 + (c.τ2 - c.τ1) * (Mw - 4.5);
@@ -242,12 +302,7 @@ public final class BooreEtAl_2014 implements GroundMotionModel {
       φ_mr += c.Δφ_r * (log(rJB / c.r1) / log(c.r2 / c.r1));
     }
 
-    double φ_mrv = φ_mr;
-    if (vs30 <= V1) {
-      φ_mrv -= c.Δφ_v;
-    } else if (vs30 < V2) {
-      φ_mrv -= c.Δφ_v * (log(V2 / vs30) / log(V2 / V1));
-    }
+    double φ_mrv = φ_mr - Δφ_v;
 
     // Total model -- Equation 13
     return sqrt(φ_mrv * φ_mrv + τ * τ);
@@ -22,6 +22,7 @@ import static java.lang.Math.sqrt;
 import com.google.common.collect.Range;
 
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -52,7 +53,7 @@ import gov.usgs.earthquake.nshmp.util.Maths;
  * @author Peter Powers
  * @see Gmm#CB_14
  */
-public final class CampbellBozorgnia_2014 implements GroundMotionModel {
+public final class CampbellBozorgnia_2014 implements BatchGroundMotionModel {
 
   static final String NAME = "Campbell & Bozorgnia (2014)";
 
@@ -143,36 +144,135 @@ public final class CampbellBozorgnia_2014 implements GroundMotionModel {
 
   @Override
   public final ScalarGroundMotion calc(GmmInput in) {
-    return calc(coeffs, coeffsPGA, in, in.vs30, in.z2p5);
-  }
-
-  private static ScalarGroundMotion calc(
-      Coefficients c,
-      Coefficients cPGA,
-      GmmInput in,
-      double vs30,
-      double z2p5) {
 
+    double vs30 = in.vs30;
+    double z2p5 = in.z2p5;
     FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
 
     // calc pga rock reference value using CA vs30 z2p5 value: 0.398
-    double pgaRock = (vs30 < c.k1)
-        ? exp(calcMean(cPGA, style, 1100.0, 0.398, 0.0, in))
+    double pgaRock = (vs30 < coeffs.k1)
+        ? exp(calcMean(coeffsPGA, style, 1100.0, basinResponseTerm(coeffsPGA, 1100.0, 0.398),
+            0.0, in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp))
         : 0.0;
 
-    double μ = calcMean(c, style, vs30, z2p5, pgaRock, in);
+    double μ = calcMean(coeffs, style, vs30, basinResponseTerm(coeffs, vs30, z2p5),
+        pgaRock, in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp);
 
     // prevent SA<PGA for short periods
-    if (SHORT_PERIODS.contains(c.imt)) {
-      double pgaMean = calcMean(cPGA, style, vs30, z2p5, pgaRock, in);
+    if (SHORT_PERIODS.contains(coeffs.imt)) {
+      double pgaMean = calcMean(coeffsPGA, style, vs30, basinResponseTerm(coeffsPGA, vs30, z2p5),
+          pgaRock, in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp);
       μ = max(μ, pgaMean);
     }
 
-    double σ = calcStdDev(c, cPGA, in.Mw, in.vs30, pgaRock);
+    double σ = calcStdDev(coeffs, coeffsPGA, in.Mw, vs30, pgaRock);
 
     return DefaultScalarGroundMotion.create(μ, σ);
   }
 
+  @Override
+  public final void calc(Inputs in, double[] μ, double[] σ) {
+
+    // site terms common to all inputs
+    double vs30 = in.vs30();
+    double z2p5 = in.z2p5();
+    boolean calcRock = vs30 < coeffs.k1;
+    boolean shortPeriod = SHORT_PERIODS.contains(coeffs.imt);
+    double FsedRock = basinResponseTerm(coeffsPGA, 1100.0, 0.398);
+    double Fsed = basinResponseTerm(coeffs, vs30, z2p5);
+    double FsedPGA = basinResponseTerm(coeffsPGA, vs30, z2p5);
+
+    for (int i = 0; i < in.size(); i++) {
+
+      double Mw = in.Mw(i);
+      double rRup = in.rRup(i);
+      double rJB = in.rJB(i);
+      double rX = in.rX(i);
+      double dip = in.dip(i);
+      double width = in.width(i);
+      double zTop = in.zTop(i);
+      double zHyp = in.zHyp(i);
+      FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake(i));
+
+      double pgaRock = calcRock
+          ? exp(calcMean(coeffsPGA, style, 1100.0, FsedRock, 0.0,
+              Mw, rRup, rJB, rX, dip, width, zTop, zHyp))
+          : 0.0;
+
+      double μi = calcMean(coeffs, style, vs30, Fsed, pgaRock,
+          Mw, rRup, rJB, rX, dip, width, zTop, zHyp);
+
+      if (shortPeriod) {
+        double pgaMean = calcMean(coeffsPGA, style, vs30, FsedPGA, pgaRock,
+            Mw, rRup, rJB, rX, dip, width, zTop, zHyp);
+        μi = max(μi, pgaMean);
+      }
+
+      μ[i] = μi;
+      σ[i] = calcStdDev(coeffs, coeffsPGA, Mw, vs30, pgaRock);
+    }
+  }
+
+  /*
+   * Spectral implementation. Fault style and the PGA ground motions used for
+   * the reference rock and short-period limits do not depend on period and are
+   * computed once per input, when first required. A NaN PGA ground motion
+   * indicates a value not yet computed; recomputation of a genuinely NaN value
+   * yields the same result.
+   */
+  static final class Spectral extends SpectralModel<CampbellBozorgnia_2014> {
+
+    Spectral(List<Imt> imts, List<GroundMotionModel> models) {
+      super(CampbellBozorgnia_2014.class, imts, models);
+    }
+
+    @Override
+    public void calc(GmmInput in, ScalarGroundMotion[] gms) {
+
+      Coefficients cPGA = models.get(0).coeffsPGA;
+      double vs30 = in.vs30;
+      double z2p5 = in.z2p5;
+      FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
+
+      double pgaRockRef = Double.NaN;
+      double pgaMeanRock = Double.NaN;
+      double pgaMeanSoil = Double.NaN;
+
+      for (int i = 0; i < models.size(); i++) {
+        Coefficients c = models.get(i).coeffs;
+
+        // calc pga rock reference value using CA vs30 z2p5 value: 0.398
+        boolean calcRock = vs30 < c.k1;
+        if (calcRock && Double.isNaN(pgaRockRef)) {
+          pgaRockRef = exp(calcMean(cPGA, style, 1100.0, basinResponseTerm(cPGA, 1100.0, 0.398),
+              0.0, in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp));
+        }
+        double pgaRock = calcRock ? pgaRockRef : 0.0;
+
+        double μ = calcMean(c, style, vs30, basinResponseTerm(c, vs30, z2p5),
+            pgaRock, in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp);
+
+        // prevent SA<PGA for short periods
+        if (SHORT_PERIODS.contains(c.imt)) {
+          double pgaMean = calcRock ? pgaMeanRock : pgaMeanSoil;
+          if (Double.isNaN(pgaMean)) {
+            pgaMean = calcMean(cPGA, style, vs30, basinResponseTerm(cPGA, vs30, z2p5),
+                pgaRock, in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp);
+            if (calcRock) {
+              pgaMeanRock = pgaMean;
+            } else {
+              pgaMeanSoil = pgaMean;
+            }
+          }
+          μ = max(μ, pgaMean);
+        }
+
+        double σ = calcStdDev(c, cPGA, in.Mw, vs30, pgaRock);
+        gms[i] = DefaultScalarGroundMotion.create(μ, σ);
+      }
+    }
+  }
+
   /*
    * Convenience method for Campbell site/basin delta relative to rock
    * reference. vs30ref is rock reference vs30 for calling GMM, which may be
@@ -180,36 +280,46 @@ public final class CampbellBozorgnia_2014 implements GroundMotionModel {
    */
   double basinDelta(GmmInput in, double vs30ref) {
     FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
+    double FsedRock = basinResponseTerm(coeffsPGA, 1100.0, 0.398);
 
     /* Rock reference value with default basin term. */
     double pgaRock = (vs30ref < coeffs.k1)
-        ? exp(calcMean(coeffsPGA, style, 1100.0, 0.398, 0.0, in))
+        ? exp(calcMean(coeffsPGA, style, 1100.0, FsedRock, 0.0,
+            in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp))
         : 0.0;
-    double μRock = calcMean(coeffs, style, vs30ref, Double.NaN, pgaRock, in);
-    
+    double μRock = calcMean(coeffs, style, vs30ref,
+        basinResponseTerm(coeffs, vs30ref, Double.NaN), pgaRock,
+        in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp);
+
     /* Now with site/basin effect. */
     pgaRock = (in.vs30 < coeffs.k1)
-        ? exp(calcMean(coeffsPGA, style, 1100.0, 0.398, 0.0, in))
+        ? exp(calcMean(coeffsPGA, style, 1100.0, FsedRock, 0.0,
+            in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp))
         : 0.0;
-    double μBasin = calcMean(coeffs, style, in.vs30, in.z2p5, pgaRock, in);
+    double μBasin = calcMean(coeffs, style, in.vs30,
+        basinResponseTerm(coeffs, in.vs30, in.z2p5), pgaRock,
+        in.Mw, in.rRup, in.rJB, in.rX, in.dip, in.width, in.zTop, in.zHyp);
 
     return μBasin - μRock;
   }
 
-  // Mean ground motion model -- we use supplied vs30 and z2p5 rather than
-  // values from input to impose 1100 and 0.398 when computing rock reference
+  // Mean ground motion model -- we use supplied vs30 and basin term rather
+  // than values from input to impose 1100 and 0.398 when computing rock
+  // reference
   private static double calcMean(
       Coefficients c,
       FaultStyle style,
       double vs30,
-      double z2p5,
+      double Fsed,
       double pgaRock,
-      GmmInput in) {
-
-    double Mw = in.Mw;
-    double rRup = in.rRup;
-    double rX = in.rX;
-    double dip = in.dip;
+      double Mw,
+      double rRup,
+      double rJB,
+      double rX,
+      double dip,
+      double width,
+      double zTop,
+      double zHyp) {
 
     // Magnitude term -- Equation 2
     double Fmag = c.c0 + c.c1 * Mw;
@@ -239,11 +349,11 @@ public final class CampbellBozorgnia_2014 implements GroundMotionModel {
     double Fhw = 0.0;
     // short-circuit: f4 is 0 if rX < 0, Mw <= 5.5, zTop > 16.66
     // these switches have been removed below
-    if (rX >= 0.0 && Mw > 5.5 && in.zTop <= 16.66) { // short-circuit
+    if (rX >= 0.0 && Mw > 5.5 && zTop <= 16.66) { // short-circuit
 
       // Jennifer Donahue's HW Model plus CB08 distance taper
       // -- Equations 9, 10, 11 & 12
-      double r1 = in.width * cos(dip * Maths.TO_RAD);
+      double r1 = width * cos(dip * Maths.TO_RAD);
       double r2 = 62.0 * Mw - 350.0;
       double rXr1 = rX / r1;
       double rXr2r1 = (rX - r1) / (r2 - r1);
@@ -254,7 +364,7 @@ public final class CampbellBozorgnia_2014 implements GroundMotionModel {
       double Fhw_rX = (rX >= r1) ? max(f2_rX, 0.0) : f1_rX;
 
       // ... rRup -- Equation 13
-      double Fhw_rRup = (rRup == 0.0) ? 1.0 : (rRup - in.rJB) / rRup;
+      double Fhw_rRup = (rRup == 0.0) ? 1.0 : (rRup - rJB) / rRup;
 
       // ... magnitude -- Equation 14
       double Fhw_m = 1.0 + c.a2 * (Mw - 6.5);
@@ -263,7 +373,7 @@ public final class CampbellBozorgnia_2014 implements GroundMotionModel {
       }
 
       // ... depth -- Equation 15
-      double Fhw_z = 1.0 - 0.06 * in.zTop;
+      double Fhw_z = 1.0 - 0.06 * zTop;
 
       // ... dip -- Equation 16
       double Fhw_d = (90.0 - dip) / 45.0;
@@ -280,11 +390,7 @@ public final class CampbellBozorgnia_2014 implements GroundMotionModel {
         c.k2 * (log(pgaRock + C * pow(vsk1, N)) - log(pgaRock + C))
         : (c.c11 + c.k2 * N) * log(vsk1);
 
-    // Basin Response term -- Equation 20
-    double Fsed = basinResponseTerm(c, vs30, z2p5);
-
     // Hypocentral Depth term -- Equations 21, 22, 23
-    double zHyp = in.zHyp;
     double Fhyp = (zHyp <= 7.0) ? 0.0 : (zHyp <= 20.0) ? zHyp - 7.0 : 13.0;
     if (Mw <= 5.5) {
       Fhyp *= c.c17;
@@ -20,6 +20,7 @@ import static java.lang.Math.tanh;
 
 import com.google.common.collect.Range;
 
+import java.util.List;
 import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.eq.fault.Faults;
@@ -50,7 +51,7 @@ import gov.usgs.earthquake.nshmp.util.Maths;
  * @author Peter Powers
  * @see Gmm#CY_14
  */
-public final class ChiouYoungs_2014 implements GroundMotionModel {
+public final class ChiouYoungs_2014 implements BatchGroundMotionModel {
 
   // this model includes 0.12 and 0.17s periods that
   // are not generally supported in other models
@@ -140,30 +141,112 @@ public final class ChiouYoungs_2014 implements GroundMotionModel {
 
   @Override
   public final ScalarGroundMotion calc(final GmmInput in) {
-    return calc(coeffs, in);
-  }
-
-  private static final ScalarGroundMotion calc(final Coefficients c, final GmmInput in) {
 
     // terms used by both mean and stdDev
-    double saRef = calcSAref(c, in);
-    double soilNonLin = calcSoilNonLin(c, in.vs30);
+    double saRef = calcSAref(coeffs, in.Mw, in.rJB, in.rRup, in.rX, in.dip, in.zTop, in.rake);
+    double soilNonLin = calcSoilNonLin(coeffs, in.vs30);
 
-    double μ = calcMean(c, in.vs30, in.z1p0, soilNonLin, saRef);
-    double σ = calcStdDev(c, in.Mw, in.vsInf, soilNonLin, saRef);
+    double μ = calcMean(coeffs, calcSoilLin(coeffs, in.vs30), soilNonLin,
+        calcSoilDepth(coeffs, calcDeltaZ1(in.z1p0, in.vs30)), saRef);
+    double σ = calcStdDev(coeffs, in.Mw, in.vsInf, soilNonLin, saRef);
 
     return DefaultScalarGroundMotion.create(μ, σ);
   }
 
-  // Seismic Source Scaling -- Equation 11
-  private static final double calcSAref(final Coefficients c, final GmmInput in) {
+  @Override
+  public final void calc(final Inputs in, final double[] μ, final double[] σ) {
+
+    // site terms common to all inputs
+    double vs30 = in.vs30();
+    boolean vsInf = in.vsInf();
+    double sl = calcSoilLin(coeffs, vs30);
+    double soilNonLin = calcSoilNonLin(coeffs, vs30);
+    double rkdepth = calcSoilDepth(coeffs, calcDeltaZ1(in.z1p0(), vs30));
+
+    for (int i = 0; i < in.size(); i++) {
+      double Mw = in.Mw(i);
+      double saRef = calcSAref(coeffs, Mw, in.rJB(i), in.rRup(i), in.rX(i), in.dip(i),
+          in.zTop(i), in.rake(i));
+      μ[i] = calcMean(coeffs, sl, soilNonLin, rkdepth, saRef);
+      σ[i] = calcStdDev(coeffs, Mw, vsInf, soilNonLin, saRef);
+    }
+  }
 
-    double Mw = in.Mw;
-    double rJB = in.rJB;
-    double rRup = in.rRup;
-    double zTop = in.zTop;
+  /*
+   * Spectral implementation. Rupture terms and the basin depth delta do not
+   * depend on period and are computed once per input.
+   */
+  static final class Spectral extends SpectralModel<ChiouYoungs_2014> {
 
-    FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
+    Spectral(List<Imt> imts, List<GroundMotionModel> models) {
+      super(ChiouYoungs_2014.class, imts, models);
+    }
+
+    @Override
+    public void calc(final GmmInput in, final ScalarGroundMotion[] gms) {
+      RuptureTerms r = new RuptureTerms(in.Mw, in.rJB, in.rRup, in.rX, in.dip, in.zTop, in.rake);
+      double dZ1 = calcDeltaZ1(in.z1p0, in.vs30);
+      for (int i = 0; i < models.size(); i++) {
+        Coefficients c = models.get(i).coeffs;
+        double saRef = calcSAref(c, r.Mw, r.rRup, r.rX, r.style,
+            r.lnRfar, r.coshM, r.cosδ, r.ΔZtop, r.hwTaper);
+        double soilNonLin = calcSoilNonLin(c, in.vs30);
+        double μ = calcMean(c, calcSoilLin(c, in.vs30), soilNonLin,
+            calcSoilDepth(c, dZ1), saRef);
+        double σ = calcStdDev(c, in.Mw, in.vsInf, soilNonLin, saRef);
+        gms[i] = DefaultScalarGroundMotion.create(μ, σ);
+      }
+    }
+  }
+
+  /* Period independent terms of the source scaling model. */
+  private static final class RuptureTerms {
+
+    final double Mw;
+    final double rRup;
+    final double rX;
+    final FaultStyle style;
+    final double lnRfar; // far-field distance
+    final double coshM;
+    final double cosδ;
+    final double ΔZtop;
+    final double hwTaper; // hanging wall distance taper
+
+    RuptureTerms(final double Mw, final double rJB, final double rRup, final double rX,
+        final double dip, final double zTop, final double rake) {
+
+      this.Mw = Mw;
+      this.rRup = rRup;
+      this.rX = rX;
+      style = GmmUtils.rakeToFaultStyle_NSHMP(rake);
+      lnRfar = log(sqrt(rRup * rRup + CRBsq));
+      coshM = cosh(2 * max(Mw - 4.5, 0));
+      cosδ = cos(dip * Maths.TO_RAD);
+      // Center zTop on the zTop-M relation
+      ΔZtop = zTop - calcMwZtop(style, Mw);
+      hwTaper = 1 - sqrt(rJB * rJB + zTop * zTop) / (rRup + 1.0);
+    }
+  }
+
+  // Seismic Source Scaling -- Equation 11
+  private static final double calcSAref(final Coefficients c, final double Mw,
+      final double rJB, final double rRup, final double rX, final double dip,
+      final double zTop, final double rake) {
+
+    // same terms as RuptureTerms, computed without allocation
+    FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(rake);
+    return calcSAref(c, Mw, rRup, rX, style,
+        log(sqrt(rRup * rRup + CRBsq)),
+        cosh(2 * max(Mw - 4.5, 0)),
+        cos(dip * Maths.TO_RAD),
+        zTop - calcMwZtop(style, Mw),
+        1 - sqrt(rJB * rJB + zTop * zTop) / (rRup + 1.0));
+  }
+
+  // Seismic Source Scaling, period independent terms supplied -- Equation 11
+  private static final double calcSAref(final Coefficients c, final double Mw,
+      final double rRup, final double rX, final FaultStyle style, final double lnRfar,
+      final double coshM, final double cosδ, final double ΔZtop, final double hwTaper) {
 
     // Magnitude scaling
     double r1 = c.c1 + C2 * (Mw - 6.0) + ((C2 - c.c3) / c.cn) *
@@ -174,23 +257,19 @@ public final class ChiouYoungs_2014 implements GroundMotionModel {
 
     // Far-field distance scaling
     double γ = (c.γ1 + c.γ2 / cosh(max(Mw - c.γ3, 0.0)));
-    double r3 = dC4 * log(sqrt(rRup * rRup + CRBsq)) + rRup * γ;
+    double r3 = dC4 * lnRfar + rRup * γ;
 
     // Scaling with other source variables
-    double coshM = cosh(2 * max(Mw - 4.5, 0));
-    double cosδ = cos(in.dip * Maths.TO_RAD);
-    // Center zTop on the zTop-M relation
-    double ΔZtop = zTop - calcMwZtop(style, Mw);
     double r4 = (c.c7 + c.c7b / coshM) * ΔZtop + (C11 + c.c11b / coshM) * cosδ * cosδ;
     r4 += (style == REVERSE) ? (c.c1a + c.c1c / coshM)
         : (style == NORMAL) ? (c.c1b + c.c1d / coshM) : 0.0;
 
     // Hanging-wall effect
     double r5 = 0.0;
-    if (in.rX >= 0.0) {
-      r5 = c.c9 * cos(in.dip * Maths.TO_RAD) *
-          (c.c9a + (1.0 - c.c9a) * tanh(in.rX / c.c9b)) *
-          (1 - sqrt(rJB * rJB + zTop * zTop) / (rRup + 1.0));
+    if (rX >= 0.0) {
+      r5 = c.c9 * cosδ *
+          (c.c9a + (1.0 - c.c9a) * tanh(rX / c.c9b)) *
+          hwTaper;
     }
 
     // Directivity effect (not implemented)
@@ -212,20 +291,23 @@ public final class ChiouYoungs_2014 implements GroundMotionModel {
     return c.φ2 * (exp1 - exp2);
   }
 
-  // Mean ground motion model -- Equation 12
-  private static final double calcMean(final Coefficients c, final double vs30,
-      final double z1p0, final double snl, final double saRef) {
+  // Soil effect: linear response
+  private static final double calcSoilLin(final Coefficients c, final double vs30) {
+    return c.φ1 * min(log(vs30 / 1130.0), 0.0);
+  }
 
-    // Soil effect: linear response
-    double sl = c.φ1 * min(log(vs30 / 1130.0), 0.0);
+  // Soil effect: sediment thickness
+  private static final double calcSoilDepth(final Coefficients c, final double dZ1) {
+    return c.φ5 * (1.0 - exp(-dZ1 / PHI6));
+  }
+
+  // Mean ground motion model -- Equation 12
+  private static final double calcMean(final Coefficients c, final double sl,
+      final double snl, final double rkdepth, final double saRef) {
 
     // Soil effect: nonlinear response (base passed in)
     double snl_mod = snl * log((saRef + c.φ4) / c.φ4);
 
-    // Soil effect: sediment thickness
-    double dZ1 = calcDeltaZ1(z1p0, vs30);
-    double rkdepth = c.φ5 * (1.0 - exp(-dZ1 / PHI6));
-
     // total model
     return log(saRef) + sl + snl_mod + rkdepth;
   }
@@ -14,6 +14,7 @@ import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
@@ -873,6 +874,25 @@ public enum Gmm {
     return cache.getUnchecked(imt);
   }
 
+  /**
+   * Retrieve a {@code SpectralGroundMotionModel} that computes ground motions
+   * for all of the supplied intensity measure types in a single call. Models
+   * that do not provide a spectral implementation are supported by calling the
+   * {@code Imt}-specific instance of the model for each {@code Imt}.
+   *
+   * @param imts of the retrieved instance; ground motions are computed in the
+   *        iteration order of this set
+   * @throws UncheckedExecutionException if there is an instantiation problem
+   */
+  public SpectralGroundMotionModel spectralInstance(Set<Imt> imts) {
+    List<Imt> imtList = ImmutableList.copyOf(imts);
+    List<GroundMotionModel> models = new ArrayList<>(imtList.size());
+    for (Imt imt : imtList) {
+      models.add(instance(imt));
+    }
+    return SpectralModel.create(imtList, models);
+  }
+
   /**
    * Retrieve an immutable map of {@code GroundMotionModel} instances, either by
    * creating new ones, or fetching them from a cache.
@@ -12,6 +12,7 @@ import static java.lang.Math.min;
 
 import com.google.common.collect.Range;
 
+import java.util.List;
 import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.eq.fault.Faults;
@@ -43,7 +44,7 @@ import gov.usgs.earthquake.nshmp.gmm.GmmInput.Constraints;
  * @author Peter Powers
  * @see Gmm#IDRISS_14
  */
-public final class Idriss_2014 implements GroundMotionModel {
+public final class Idriss_2014 implements BatchGroundMotionModel {
 
   static final String NAME = "Idriss (2014)";
 
@@ -84,31 +85,62 @@ public final class Idriss_2014 implements GroundMotionModel {
   }
 
   private final Coefficients coeffs;
+  private final double s1;
 
   Idriss_2014(Imt imt) {
     coeffs = new Coefficients(imt, COEFFS);
+    s1 = calcPeriodTerm(coeffs);
   }
 
   @Override
   public final ScalarGroundMotion calc(GmmInput in) {
-    return calc(coeffs, in);
+    FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
+    double μ = calcMean(coeffs, in.Mw, in.rRup, log(in.rRup + 10.0), style,
+        calcSiteTerm(coeffs, calcLnVs30(in.vs30)));
+    double σ = calcStdDev(s1, in.Mw);
+    return DefaultScalarGroundMotion.create(μ, σ);
   }
 
-  private static final ScalarGroundMotion calc(final Coefficients c, final GmmInput in) {
-
-    double μ = calcMean(c, in);
-    double σ = calcStdDev(c, in.Mw);
-
-    return DefaultScalarGroundMotion.create(μ, σ);
+  @Override
+  public final void calc(Inputs in, double[] μ, double[] σ) {
+    double siteTerm = calcSiteTerm(coeffs, calcLnVs30(in.vs30()));
+    for (int i = 0; i < in.size(); i++) {
+      double Mw = in.Mw(i);
+      double rRup = in.rRup(i);
+      FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake(i));
+      μ[i] = calcMean(coeffs, Mw, rRup, log(rRup + 10.0), style, siteTerm);
+      σ[i] = calcStdDev(s1, Mw);
+    }
   }
 
-  // Mean ground motion model - cap of Vs = 1200 m/s
-  private static final double calcMean(final Coefficients c, final GmmInput in) {
+  /*
+   * Spectral implementation. Fault style and the log distance and vs30 terms
+   * do not depend on period and are computed once per input.
+   */
+  static final class Spectral extends SpectralModel<Idriss_2014> {
 
-    double Mw = in.Mw;
-    double rRup = in.rRup;
+    Spectral(List<Imt> imts, List<GroundMotionModel> models) {
+      super(Idriss_2014.class, imts, models);
+    }
 
-    FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
+    @Override
+    public void calc(final GmmInput in, final ScalarGroundMotion[] gms) {
+      FaultStyle style = GmmUtils.rakeToFaultStyle_NSHMP(in.rake);
+      double lnR = log(in.rRup + 10.0);
+      double lnVs30 = calcLnVs30(in.vs30);
+      for (int i = 0; i < models.size(); i++) {
+        Idriss_2014 model = models.get(i);
+        double μ = calcMean(model.coeffs, in.Mw, in.rRup, lnR, style,
+            calcSiteTerm(model.coeffs, lnVs30));
+        double σ = calcStdDev(model.s1, in.Mw);
+        gms[i] = DefaultScalarGroundMotion.create(μ, σ);
+      }
+    }
+  }
+
+  // Mean ground motion model; lnR = ln(rRup + 10)
+  private static final double calcMean(final Coefficients c, final double Mw,
+      final double rRup, final double lnR, final FaultStyle style, final double siteTerm) {
 
     double a1 = c.a1_lo, a2 = c.a2_lo;
     double b1 = c.b1_lo, b2 = c.b2_lo;
@@ -119,15 +151,29 @@ public final class Idriss_2014 implements GroundMotionModel {
       b2 = c.b2_hi;
     }
 
-    return a1 + a2 * Mw + c.a3 * (8.5 - Mw) * (8.5 - Mw) - (b1 + b2 * Mw) * log(rRup + 10.0) +
-        c.ξ * log(min(in.vs30, 1200.0)) + c.γ * rRup + (style == REVERSE ? c.φ : 0.0);
+    return a1 + a2 * Mw + c.a3 * (8.5 - Mw) * (8.5 - Mw) - (b1 + b2 * Mw) * lnR +
+        siteTerm + c.γ * rRup + (style == REVERSE ? c.φ : 0.0);
   }
 
-  // Aleatory uncertainty model
-  private static final double calcStdDev(final Coefficients c, final double Mw) {
+  // Site term - cap of Vs = 1200 m/s
+  private static final double calcSiteTerm(final Coefficients c, final double lnVs30) {
+    return c.ξ * lnVs30;
+  }
+
+  private static final double calcLnVs30(final double vs30) {
+    return log(min(vs30, 1200.0));
+  }
+
+  // Period dependent component of aleatory uncertainty
+  private static final double calcPeriodTerm(final Coefficients c) {
     double s1 = 0.035;
     Double T = c.imt.period();
     s1 *= (T == null || T <= 0.05) ? log(0.05) : (T < 3.0) ? log(T) : log(3d);
+    return s1;
+  }
+
+  // Aleatory uncertainty model
+  private static final double calcStdDev(final double s1, final double Mw) {
     double s2 = 0.06;
     s2 *= (Mw <= 5.0) ? 5.0 : (Mw < 7.5) ? Mw : 7.5;
     return 1.18 + s1 - s2;
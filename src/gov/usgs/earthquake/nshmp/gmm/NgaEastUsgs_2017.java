@@ -11,6 +11,7 @@ import com.google.common.annotations.Beta;
 import com.google.common.collect.Range;
 import com.google.common.primitives.Ints;
 
+import java.util.List;
 import java.util.Map;
 
 import gov.usgs.earthquake.nshmp.calc.ExceedanceModel;
@@ -270,12 +271,66 @@ public abstract class NgaEastUsgs_2017 implements GroundMotionModel {
         double fSite = siteAmp.calc(μPGA, in.vs30);
         μs[i] = μ + fSite;
       }
-      double[] σs = calcSigmas(in.Mw);
+      return calc(μs, in.Mw);
+    }
+
+    /* Combine component model means with sigma branches. */
+    MultiScalarGroundMotion calc(double[] μs, double Mw) {
+      double[] σs = calcSigmas(Mw);
       double[] σWts = σs.length > 1 ? SIGMA_WTS : new double[] { 1.0 };
       return new MultiScalarGroundMotion(μs, weights, σs, σWts);
     }
   }
 
+  /*
+   * Spectral implementation for model groups. The table position and PGA
+   * reference rock ground motions of the component models do not depend on
+   * period and are computed once per input.
+   */
+  static final class GroupSpectral extends SpectralModel<ModelGroup> {
+
+    GroupSpectral(List<Imt> imts, List<GroundMotionModel> models) {
+      super(ModelGroup.class, imts, models);
+    }
+
+    @Override
+    public void calc(GmmInput in, ScalarGroundMotion[] gms) {
+      ModelGroup group = models.get(0);
+      int[] ids = group.models;
+      Position p = group.tables[0].position(in.rRup, in.Mw);
+      double[] μPGAs = new double[ids.length];
+      for (int i = 0; i < ids.length; i++) {
+        μPGAs[i] = exp(group.pgaTables[ids[i] - 1].get(p));
+      }
+      for (int i = 0; i < models.size(); i++) {
+        ModelGroup model = models.get(i);
+        double[] μs = new double[ids.length];
+        for (int j = 0; j < ids.length; j++) {
+          double μ = model.tables[ids[j] - 1].get(p);
+          double fSite = model.siteAmp.calc(μPGAs[j], in.vs30);
+          μs[j] = μ + fSite;
+        }
+        gms[i] = model.calc(μs, in.Mw);
+      }
+    }
+  }
+
+  /*
+   * Create a spectral model from Imt-specific instances. All NGA-East tables
+   * share the same distance and magnitude keys, so a single table position is
+   * valid for every Imt.
+   */
+  static SpectralGroundMotionModel spectral(List<Imt> imts, List<GroundMotionModel> models) {
+    GroundMotionModel model = models.get(0);
+    if (model instanceof ModelGroup) {
+      return new GroupSpectral(imts, models);
+    }
+    if (model instanceof TableModel) {
+      return new TableSpectral(imts, models);
+    }
+    return new SpectralModel.Delegating(imts, models);
+  }
+
   static class TotalSigmaModel extends ModelGroup {
     static final String NAME = NgaEastUsgs_2017.NAME + ": Total";
 
@@ -297,19 +352,17 @@ public abstract class NgaEastUsgs_2017 implements GroundMotionModel {
     }
   }
 
-  static abstract class Sammons extends NgaEastUsgs_2017 {
-    static final String NAME = NgaEastUsgs_2017.NAME + ": Sammons : ";
+  /* Single table models with total sigma: Sammons and seed models. */
+  static abstract class TableModel extends NgaEastUsgs_2017 {
 
-    final int id;
     final GroundMotionTable table;
     final GroundMotionTable pgaTable;
     final SiteAmp siteAmp;
 
-    Sammons(int id, Imt imt) {
+    TableModel(Imt imt, GroundMotionTable table, GroundMotionTable pgaTable) {
       super(imt);
-      this.id = id;
-      this.table = GroundMotionTables.getNgaEast(imt)[id - 1];
-      this.pgaTable = GroundMotionTables.getNgaEast(Imt.PGA)[id - 1];
+      this.table = table;
+      this.pgaTable = pgaTable;
       this.siteAmp = new SiteAmp(imt);
     }
 
@@ -317,6 +370,10 @@ public abstract class NgaEastUsgs_2017 implements GroundMotionModel {
     public ScalarGroundMotion calc(GmmInput in) {
       Position p = table.position(in.rRup, in.Mw);
       double μPGA = exp(pgaTable.get(p));
+      return calc(p, μPGA, in);
+    }
+
+    ScalarGroundMotion calc(Position p, double μPGA, GmmInput in) {
       double fSite = siteAmp.calc(μPGA, in.vs30);
       double μ = table.get(p) + fSite;
       double σ = calcSigmaTotal(in.Mw);
@@ -324,6 +381,41 @@ public abstract class NgaEastUsgs_2017 implements GroundMotionModel {
     }
   }
 
+  /*
+   * Spectral implementation for single table models. The table position and
+   * PGA reference rock ground motion do not depend on period and are computed
+   * once per input.
+   */
+  static final class TableSpectral extends SpectralModel<TableModel> {
+
+    TableSpectral(List<Imt> imts, List<GroundMotionModel> models) {
+      super(TableModel.class, imts, models);
+    }
+
+    @Override
+    public void calc(GmmInput in, ScalarGroundMotion[] gms) {
+      TableModel first = models.get(0);
+      Position p = first.table.position(in.rRup, in.Mw);
+      double μPGA = exp(first.pgaTable.get(p));
+      for (int i = 0; i < models.size(); i++) {
+        gms[i] = models.get(i).calc(p, μPGA, in);
+      }
+    }
+  }
+
+  static abstract class Sammons extends TableModel {
+    static final String NAME = NgaEastUsgs_2017.NAME + ": Sammons : ";
+
+    final int id;
+
+    Sammons(int id, Imt imt) {
+      super(imt,
+          GroundMotionTables.getNgaEast(imt)[id - 1],
+          GroundMotionTables.getNgaEast(Imt.PGA)[id - 1]);
+      this.id = id;
+    }
+  }
+
   static class Sammons_1 extends Sammons {
     static final int ID = 1;
     static final String NAME = Sammons.NAME + ID;
@@ -441,30 +533,16 @@ public abstract class NgaEastUsgs_2017 implements GroundMotionModel {
     }
   }
 
-  static abstract class Seed extends NgaEastUsgs_2017 {
+  static abstract class Seed extends TableModel {
     static final String NAME = NgaEastUsgs_2017.NAME + ": Seed : ";
 
     final String id;
-    final GroundMotionTable table;
-    final GroundMotionTable pgaTable;
-    final SiteAmp siteAmp;
 
     Seed(String id, Imt imt) {
-      super(imt);
+      super(imt,
+          GroundMotionTables.getNgaEastSeed(id, imt),
+          GroundMotionTables.getNgaEastSeed(id, Imt.PGA));
       this.id = id;
-      this.table = GroundMotionTables.getNgaEastSeed(id, imt);
-      this.pgaTable = GroundMotionTables.getNgaEastSeed(id, Imt.PGA);
-      this.siteAmp = new SiteAmp(imt);
-    }
-
-    @Override
-    public ScalarGroundMotion calc(GmmInput in) {
-      Position p = table.position(in.rRup, in.Mw);
-      double μPGA = exp(pgaTable.get(p));
-      double fSite = siteAmp.calc(μPGA, in.vs30);
-      double μ = table.get(p) + fSite;
-      double σ = calcSigmaTotal(in.Mw);
-      return new DefaultScalarGroundMotion(μ, σ);
     }
   }
 
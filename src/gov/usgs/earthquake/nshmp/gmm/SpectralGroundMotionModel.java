@@ -0,0 +1,40 @@
+package gov.usgs.earthquake.nshmp.gmm;
+
+import java.util.List;
+
+/**
+ * A ground motion model (GMM) that computes ground motions for multiple
+ * intensity measure types ({@link Imt}s) and a single {@link GmmInput} in one
+ * call. Implementations compute terms that do not depend on period (e.g.
+ * magnitude and distance scaling, hanging wall geometry, and reference rock
+ * ground motions) once per input and share them across all {@code Imt}s.
+ *
+ * <p>Results are identical to those obtained from calls to
+ * {@link GroundMotionModel#calc(GmmInput)} on the {@code Imt}-specific
+ * instances of the same model. Use {@link Gmm#spectralInstance(java.util.Set)}
+ * to retrieve an instance.
+ *
+ * @author Peter Powers
+ * @see GroundMotionModel
+ * @see Gmm#spectralInstance(java.util.Set)
+ */
+public interface SpectralGroundMotionModel {
+
+  /**
+   * The intensity measure types for which ground motions are computed, in the
+   * order in which results are returned.
+   */
+  List<Imt> imts();
+
+  /**
+   * Compute the scalar ground motions and their standard deviations for each
+   * of the {@link #imts()} of this model and the supplied input.
+   *
+   * @param in a ground motion model input argument container
+   * @param gms the array to populate with ground motions, in the order of
+   *        {@link #imts()}; must have a length at least equal to
+   *        {@code imts().size()}
+   */
+  void calc(GmmInput in, ScalarGroundMotion[] gms);
+
+}
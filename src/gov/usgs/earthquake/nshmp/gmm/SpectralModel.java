@@ -0,0 +1,80 @@
+package gov.usgs.earthquake.nshmp.gmm;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/*
+ * Skeletal SpectralGroundMotionModel implementation that holds the
+ * Imt-specific instances of a single model. Subclasses are nested in the
+ * models they support and have access to their coefficients and term methods.
+ * Models without a spectral implementation are wrapped in a Delegating model
+ * that calls each Imt-specific instance in turn.
+ *
+ * @author Peter Powers
+ */
+abstract class SpectralModel<T extends GroundMotionModel> implements SpectralGroundMotionModel {
+
+  final List<Imt> imts;
+  final List<T> models;
+
+  SpectralModel(Class<T> type, List<Imt> imts, List<GroundMotionModel> models) {
+    this.imts = ImmutableList.copyOf(imts);
+    ImmutableList.Builder<T> builder = ImmutableList.builder();
+    for (GroundMotionModel model : models) {
+      builder.add(type.cast(model));
+    }
+    this.models = builder.build();
+  }
+
+  @Override
+  public final List<Imt> imts() {
+    return imts;
+  }
+
+  /*
+   * Create a spectral model from Imt-specific instances of a model, supplied
+   * in the same order as the Imts.
+   */
+  static SpectralGroundMotionModel create(List<Imt> imts, List<GroundMotionModel> models) {
+    if (models.isEmpty()) {
+      return new Delegating(imts, models);
+    }
+    GroundMotionModel model = models.get(0);
+    if (model instanceof AbrahamsonEtAl_2014) {
+      return new AbrahamsonEtAl_2014.Spectral(imts, models);
+    }
+    if (model instanceof BooreEtAl_2014) {
+      return new BooreEtAl_2014.Spectral(imts, models);
+    }
+    if (model instanceof CampbellBozorgnia_2014) {
+      return new CampbellBozorgnia_2014.Spectral(imts, models);
+    }
+    if (model instanceof ChiouYoungs_2014) {
+      return new ChiouYoungs_2014.Spectral(imts, models);
+    }
+    if (model instanceof Idriss_2014) {
+      return new Idriss_2014.Spectral(imts, models);
+    }
+    if (model instanceof NgaEastUsgs_2017) {
+      return NgaEastUsgs_2017.spectral(imts, models);
+    }
+    return new Delegating(imts, models);
+  }
+
+  /* Spectral model that computes ground motions for each Imt separately. */
+  static final class Delegating extends SpectralModel<GroundMotionModel> {
+
+    Delegating(List<Imt> imts, List<GroundMotionModel> models) {
+      super(GroundMotionModel.class, imts, models);
+    }
+
+    @Override
+    public void calc(GmmInput in, ScalarGroundMotion[] gms) {
+      for (int i = 0; i < models.size(); i++) {
+        gms[i] = models.get(i).calc(in);
+      }
+    }
+  }
+
+}
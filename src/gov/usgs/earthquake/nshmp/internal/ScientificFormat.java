@@ -0,0 +1,149 @@
+package gov.usgs.earthquake.nshmp.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Formats {@code double}s in scientific notation, producing output identical
+ * to {@code String.format("%.Ne", value)} where N is the precision, except
+ * that a value of 0.0 is always written as the more compact string "0.0", as
+ * in {@link Parsing#formatDoubleFunction(String)}.
+ *
+ * <p>Values are appended directly to a supplied {@code StringBuilder}, which
+ * may be reused from one line of output to the next; no intermediate objects
+ * are created. Values that fall within a tiny tolerance of a rounding tie, or
+ * that are very large, very small, or not finite, are formatted with
+ * {@code String.format} to guarantee identical rounding. Instances are
+ * immutable and may be shared across threads.
+ *
+ * @author Peter Powers
+ */
+public final class ScientificFormat {
+
+  /*
+   * Largest precision for which the tie tolerance below still spans many ulps
+   * of a scaled mantissa.
+   */
+  private static final int MAX_PRECISION = 9;
+
+  /* Beyond this range, fall back to String.format. */
+  private static final double MIN_VALUE = 1e-290;
+  private static final double MAX_VALUE = 1e290;
+
+  /*
+   * Fractional mantissa distance from 0.5 inside which rounding is delegated
+   * to String.format. Formatter rounds the shortest decimal representation of
+   * a value rather than its exact binary value, so the two may only disagree
+   * when a value is within an ulp of a tie; the margin here is several hundred
+   * ulps of a scaled mantissa.
+   */
+  private static final double TIE_TOLERANCE = 1e-4;
+
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  private final int precision;
+  private final String format;
+  private final long mantissaMin;
+  private final long mantissaMax;
+
+  private ScientificFormat(int precision) {
+    this.precision = precision;
+    this.format = "%." + precision + "e";
+    this.mantissaMin = (long) POW10[precision];
+    this.mantissaMax = (long) POW10[precision + 1];
+  }
+
+  /**
+   * Create a new formatter.
+   *
+   * @param precision the number of digits after the decimal point
+   * @throws IllegalArgumentException if {@code precision} is outside the range
+   *         [1..9]
+   */
+  public static ScientificFormat create(int precision) {
+    checkArgument(
+        precision >= 1 && precision <= MAX_PRECISION,
+        "Precision [%s] not in range [1..%s]", precision, MAX_PRECISION);
+    return new ScientificFormat(precision);
+  }
+
+  /**
+   * Format the supplied value.
+   *
+   * @param value to format
+   */
+  public String format(double value) {
+    return append(new StringBuilder(precision + 8), value).toString();
+  }
+
+  /**
+   * Append the formatted value to the supplied {@code StringBuilder}.
+   *
+   * @param sb to append to
+   * @param value to format
+   * @return the supplied {@code StringBuilder}
+   */
+  public StringBuilder append(StringBuilder sb, double value) {
+    if (value == 0.0) {
+      return sb.append("0.0");
+    }
+    double abs = Math.abs(value);
+    if (!(abs >= MIN_VALUE && abs <= MAX_VALUE)) {
+      return sb.append(String.format(format, value));
+    }
+
+    /* Scale to a mantissa with precision + 1 integer digits. */
+    int exponent = (int) Math.floor(Math.log10(abs));
+    double scaled = scale(abs, precision - exponent);
+    if (scaled >= mantissaMax) {
+      exponent++;
+      scaled = scale(abs, precision - exponent);
+    } else if (scaled < mantissaMin) {
+      exponent--;
+      scaled = scale(abs, precision - exponent);
+    }
+
+    double floor = Math.floor(scaled);
+    double fraction = scaled - floor;
+    if (Math.abs(fraction - 0.5) < TIE_TOLERANCE) {
+      return sb.append(String.format(format, value));
+    }
+    long mantissa = (long) floor + (fraction > 0.5 ? 1 : 0);
+    if (mantissa == mantissaMax) {
+      mantissa = mantissaMin;
+      exponent++;
+    }
+
+    if (value < 0.0) {
+      sb.append('-');
+    }
+    sb.append((char) ('0' + mantissa / mantissaMin)).append('.');
+    appendDigits(sb, mantissa % mantissaMin, precision);
+    sb.append('e').append(exponent < 0 ? '-' : '+');
+    int absExponent = Math.abs(exponent);
+    if (absExponent < 10) {
+      sb.append('0');
+    }
+    return sb.append(absExponent);
+  }
+
+  /* Compute value * 10^power. */
+  private static double scale(double value, int power) {
+    if (power >= 0) {
+      return value * ((power < POW10.length) ? POW10[power] : Math.pow(10, power));
+    }
+    return value / ((-power < POW10.length) ? POW10[-power] : Math.pow(10, -power));
+  }
+
+  /* Append a non-negative value as exactly 'count' zero-padded digits. */
+  private static void appendDigits(StringBuilder sb, long value, int count) {
+    int start = sb.length();
+    sb.setLength(start + count);
+    for (int i = start + count - 1; i >= start; i--) {
+      sb.setCharAt(i, (char) ('0' + value % 10));
+      value /= 10;
+    }
+  }
+
+}
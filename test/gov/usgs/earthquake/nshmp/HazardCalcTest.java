@@ -0,0 +1,210 @@
+package gov.usgs.earthquake.nshmp;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Function;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import gov.usgs.earthquake.nshmp.calc.CalcConfig;
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics;
+import gov.usgs.earthquake.nshmp.calc.Hazard;
+import gov.usgs.earthquake.nshmp.calc.HazardExport;
+import gov.usgs.earthquake.nshmp.calc.Site;
+import gov.usgs.earthquake.nshmp.calc.Sites;
+import gov.usgs.earthquake.nshmp.eq.model.HazardModel;
+
+@SuppressWarnings("javadoc")
+public class HazardCalcTest {
+
+  private static final int SITE_COUNT = 16;
+  private static final String FAILED_SITE = "S1";
+
+  /*
+   * A site calculation that fails must be reported, rather than leave later
+   * sites, which are more than output.flushLimit sites ahead of it, waiting
+   * forever on a result that never arrives.
+   */
+  @Test
+  public final void failedSite() throws Exception {
+    Path dir = Files.createTempDirectory("hazard-calc");
+    ExecutorService runSvc = Executors.newSingleThreadExecutor();
+    try {
+      HazardModel model = HazardModel.load(writeModel(dir.resolve("model")));
+      final CalcConfig config = config(model, dir);
+      assertTrue(config.performance.siteConcurrency > config.output.flushLimit);
+
+      final Sites sites = Sites.fromCsv(writeSites(dir), config);
+      final Hazard hazard = HazardCalc.calc(
+          model, config, sites.iterator().next(), Optional.empty());
+      final RuntimeException failure = new IllegalStateException("Site failure");
+
+      final Function<Site, Hazard> siteCalc = new Function<Site, Hazard>() {
+        @Override
+        public Hazard apply(Site site) {
+          if (site.name.equals(FAILED_SITE)) {
+            /* Give later sites time to back up behind this one. */
+            sleep(200);
+            throw failure;
+          }
+          return hazard;
+        }
+      };
+
+      final Logger log = Logger.getLogger(HazardCalcTest.class.getName());
+      final HazardExport handler = HazardExport.create(config, sites, log);
+      Future<Void> run = runSvc.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          HazardCalc.calcConcurrent(
+              siteCalc, config, sites, handler, CalcMetrics.create(), log);
+          return null;
+        }
+      });
+
+      try {
+        run.get(60, TimeUnit.SECONDS);
+        fail("Expected site failure to be rethrown");
+      } catch (ExecutionException ee) {
+        assertSame(failure, ee.getCause());
+      } catch (TimeoutException te) {
+        fail("Calculation hung after site failure");
+      }
+
+      /* Sites waiting on the failed site are released by the exporter. */
+      Future<Void> add = runSvc.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          handler.add(SITE_COUNT, hazard, Optional.empty());
+          return null;
+        }
+      });
+      try {
+        add.get(10, TimeUnit.SECONDS);
+        fail("Expected exporter to be aborted");
+      } catch (ExecutionException ee) {
+        assertTrue(ee.getCause() instanceof IllegalStateException);
+        assertSame(failure, ee.getCause().getCause());
+      } catch (TimeoutException te) {
+        fail("Exporter not aborted after site failure");
+      }
+    } finally {
+      runSvc.shutdownNow();
+      delete(dir);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ie);
+    }
+  }
+
+  private static CalcConfig config(HazardModel model, Path dir) throws IOException {
+    Path path = dir.resolve("calc.json");
+    String out = dir.resolve("out").toAbsolutePath().toString().replace('\\', '/');
+    Files.write(path, Arrays.asList(
+        "{",
+        "  \"output\": {",
+        "    \"directory\": \"" + out + "\",",
+        "    \"flushLimit\": 1",
+        "  },",
+        "  \"performance\": {",
+        "    \"siteConcurrency\": 4",
+        "  }",
+        "}"), UTF_8);
+    return CalcConfig.Builder.copyOf(model.config())
+        .extend(CalcConfig.Builder.fromFile(path))
+        .build();
+  }
+
+  private static Path writeSites(Path dir) throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add("name,lon,lat");
+    for (int i = 0; i < SITE_COUNT; i++) {
+      lines.add(String.format("S%d,%.2f,37.20", i, -122.40 + i * 0.05));
+    }
+    Path path = dir.resolve("sites.csv");
+    Files.write(path, lines, UTF_8);
+    assertEquals(FAILED_SITE, lines.get(2).split(",")[0]);
+    return path;
+  }
+
+  /* A model with a single fault source. */
+  private static Path writeModel(Path dir) throws IOException {
+    Files.createDirectories(dir);
+    Files.write(dir.resolve("config.json"), Arrays.asList(
+        "{",
+        "  \"model\": {",
+        "    \"name\": \"Hazard calc test\",",
+        "    \"surfaceSpacing\": 2.0,",
+        "    \"ruptureFloating\": \"OFF\",",
+        "    \"ruptureVariability\": false,",
+        "    \"pointSourceType\": \"FINITE\",",
+        "    \"areaGridScaling\": \"UNIFORM_0P05\"",
+        "  },",
+        "  \"hazard\": {",
+        "    \"imts\": [\"PGA\"]",
+        "  }",
+        "}"), UTF_8);
+
+    Path fault = Files.createDirectory(dir.resolve("Fault"));
+    Files.write(fault.resolve("gmm.xml"), Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<GroundMotionModels>",
+        "  <ModelSet maxDistance=\"300.0\">",
+        "    <Model id=\"ASK_14\" weight=\"1.0\"/>",
+        "  </ModelSet>",
+        "</GroundMotionModels>"), UTF_8);
+    Files.write(fault.resolve("fault.xml"), Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<FaultSourceSet id=\"-1\" name=\"Test Faults\" weight=\"1.0\">",
+        "  <Settings>",
+        "    <SourceProperties ruptureScaling=\"NSHM_FAULT_WC94_LENGTH\"/>",
+        "  </Settings>",
+        "  <Source id=\"1\" name=\"Fault 1\">",
+        "    <IncrementalMfd type=\"SINGLE\" rate=\"0.002\" m=\"6.8\" floats=\"false\"" +
+            " weight=\"1.0\"/>",
+        "    <Geometry depth=\"1.0\" dip=\"60.0\" rake=\"90.0\" width=\"15.0\">",
+        "      <Trace>",
+        "-122.10000,37.40000,0.00000",
+        "-121.90000,36.80000,0.00000",
+        "      </Trace>",
+        "    </Geometry>",
+        "  </Source>",
+        "</FaultSourceSet>"), UTF_8);
+    return dir;
+  }
+
+  private static void delete(Path dir) throws IOException {
+    List<Path> paths = new ArrayList<>();
+    Files.walk(dir).forEach(paths::add);
+    for (int i = paths.size() - 1; i >= 0; i--) {
+      Files.delete(paths.get(i));
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Doubles;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import gov.usgs.earthquake.nshmp.data.XySequence;
+import gov.usgs.earthquake.nshmp.geo.Bounds;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.Locations;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+
+@SuppressWarnings("javadoc")
+public class CurveStoreTest {
+
+  private static final List<Double> IMLS = Doubles.asList(0.01, 0.1, 0.5, 1.0);
+  private static final Bounds BOUNDS = Locations.bounds(ImmutableList.of(
+      Location.create(34.0, -119.0),
+      Location.create(35.0, -117.5)));
+  private static final double SPACING = 0.1;
+
+  @Test
+  public final void doubleRoundTrip() throws IOException {
+    roundTrip(true, 0.0);
+  }
+
+  @Test
+  public final void floatRoundTrip() throws IOException {
+    roundTrip(false, 1e-7);
+  }
+
+  private static void roundTrip(boolean doubles, double tol) throws IOException {
+    Path path = Files.createTempFile("curves", ".store");
+    try {
+      Location written = Location.create(34.3, -118.2);
+      Location corner = Location.create(35.0, -119.0);
+      Location empty = Location.create(34.5, -118.0);
+      double[] ys1 = { 1e-1, 2e-2, 3e-4, 4e-6 };
+      double[] ys2 = { 5e-2, 6e-3, 7e-5, 0.0 };
+
+      try (CurveStore.Writer writer = CurveStore.create(
+          path, Imt.SA1P0, IMLS, BOUNDS, SPACING, 760.0, doubles)) {
+        writer.put(written, XySequence.create(Doubles.toArray(IMLS), ys1));
+        writer.put(corner, XySequence.create(Doubles.toArray(IMLS), ys2));
+      }
+
+      try (CurveStore.Reader reader = CurveStore.open(path)) {
+        assertEquals(Imt.SA1P0, reader.imt());
+        assertEquals(IMLS, reader.imls());
+        assertEquals(760.0, reader.vs30(), 0.0);
+        assertArrayEquals(ys1, yValues(reader.curve(written)), tol);
+        assertArrayEquals(ys2, yValues(reader.curve(corner)), tol);
+        assertArrayEquals(new double[IMLS.size()], yValues(reader.curve(empty)), 0.0);
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static double[] yValues(XySequence curve) {
+    return Doubles.toArray(curve.yValues());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public final void outOfBounds() throws IOException {
+    Path path = Files.createTempFile("curves", ".store");
+    try (CurveStore.Writer writer = CurveStore.create(
+        path, Imt.PGA, IMLS, BOUNDS, SPACING, 760.0, true)) {
+      writer.put(Location.create(36.0, -118.0), XySequence.create(
+          Doubles.toArray(IMLS), new double[IMLS.size()]));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void offGrid() throws IOException {
+    Path path = Files.createTempFile("curves", ".store");
+    try (CurveStore.Writer writer = CurveStore.create(
+        path, Imt.PGA, IMLS, BOUNDS, SPACING, 760.0, true)) {
+      writer.put(Location.create(34.33, -118.2), XySequence.create(
+          Doubles.toArray(IMLS), new double[IMLS.size()]));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void invalidValueSize() throws IOException {
+    Path path = Files.createTempFile("curves", ".store");
+    try {
+      CurveStore.create(path, Imt.PGA, IMLS, BOUNDS, SPACING, 760.0, true).close();
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        ByteBuffer valueSize = ByteBuffer.allocate(Integer.BYTES).order(LITTLE_ENDIAN);
+        valueSize.putInt(3).flip();
+        channel.write(valueSize, 16);
+      }
+      CurveStore.open(path).close();
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+}
@@ -0,0 +1,287 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static gov.usgs.earthquake.nshmp.eq.model.SourceType.CLUSTER;
+import static gov.usgs.earthquake.nshmp.eq.model.SourceType.FAULT;
+import static gov.usgs.earthquake.nshmp.eq.model.SourceType.GRID;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import gov.usgs.earthquake.nshmp.calc.Deaggregation.ImtDeagg;
+import gov.usgs.earthquake.nshmp.data.XySequence;
+import gov.usgs.earthquake.nshmp.eq.model.HazardModel;
+import gov.usgs.earthquake.nshmp.eq.model.SourceType;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.gmm.Gmm;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+
+@SuppressWarnings("javadoc")
+public class DeaggregationTest {
+
+  private static final double IML = 0.1;
+  private static final double OTHER_IML = 0.05;
+
+  private static final List<Location> SITES = ImmutableList.of(
+      Location.create(37.0, -122.0),
+      Location.create(37.2, -121.9),
+      Location.create(37.9, -122.9));
+
+  /*
+   * Deaggregation at an iml binned while hazard curves are computed must be
+   * identical to deaggregation of retained ground motions at the same iml,
+   * whether or not ground motions are retained and whether or not hazard is
+   * computed concurrently, for grid, fault, and cluster source sets.
+   */
+  @Test
+  public final void fusedIml() throws Exception {
+    Path dir = Files.createTempDirectory("deagg-iml");
+    ExecutorService ex = Executors.newFixedThreadPool(4);
+    try {
+      HazardModel model = HazardModel.load(writeModel(dir));
+      CalcConfig hazardOnly = config(model, true);
+      CalcConfig retained = config(model, false);
+      Set<SourceType> types = EnumSet.noneOf(SourceType.class);
+
+      for (Location loc : SITES) {
+        Site site = Site.builder().location(loc).vs30(760.0).build();
+        Hazard expectedHazard = HazardCalcs.hazard(model, retained, site, Optional.empty());
+        String expected = replay(expectedHazard, IML);
+
+        Deaggregation actual = Deaggregation.atIml(expectedHazard, IML, Optional.empty());
+        assertEquals(expected, actual.toString());
+
+        Hazard hazard = HazardCalcs.hazard(model, hazardOnly, site, Optional.empty());
+        actual = Deaggregation.atIml(hazard, IML, Optional.empty());
+        assertEquals(expected, actual.toString());
+
+        hazard = HazardCalcs.hazard(model, hazardOnly, site, Optional.<Executor> of(ex));
+        actual = Deaggregation.atIml(hazard, IML, Optional.empty());
+        assertEquals(expected, actual.toString());
+
+        for (HazardCurveSet curveSet : hazard.sourceSetCurves.values()) {
+          types.add(curveSet.sourceSet.type());
+        }
+      }
+      assertEquals(EnumSet.of(GRID, FAULT, CLUSTER), types);
+    } finally {
+      ex.shutdown();
+      delete(dir);
+    }
+  }
+
+  /*
+   * Deaggregation of hazard computed with deagg.iml set, at some other iml,
+   * must replay retained ground motions, serially or concurrently, and is not
+   * possible for hazard-only results.
+   */
+  @Test
+  public final void otherIml() throws Exception {
+    Path dir = Files.createTempDirectory("deagg-iml");
+    ExecutorService ex = Executors.newFixedThreadPool(4);
+    try {
+      HazardModel model = HazardModel.load(writeModel(dir));
+      Site site = Site.builder().location(SITES.get(0)).vs30(760.0).build();
+
+      Hazard hazard = HazardCalcs.hazard(model, config(model, false), site, Optional.empty());
+      String expected = replay(hazard, OTHER_IML);
+      assertEquals(expected, Deaggregation.atIml(hazard, OTHER_IML, Optional.empty()).toString());
+      assertEquals(expected, Deaggregation.atIml(
+          hazard, OTHER_IML, Optional.empty(), Optional.<Executor> of(ex)).toString());
+      assertNotEquals(expected, Deaggregation.atIml(hazard, IML, Optional.empty()).toString());
+
+      hazard = HazardCalcs.hazard(model, config(model, true), site, Optional.empty());
+      try {
+        Deaggregation.atIml(hazard, OTHER_IML, Optional.empty());
+        fail("Expected hazard-only deaggregation at another iml to be rejected");
+      } catch (IllegalStateException ise) {
+        assertTrue(ise.getMessage().contains("hazard-only"));
+      }
+    } finally {
+      ex.shutdown();
+      delete(dir);
+    }
+  }
+
+  /*
+   * Deaggregate the ground motions retained in hazard at imlLinear, returning
+   * the same string representation as Deaggregation.
+   */
+  private static String replay(Hazard hazard, double imlLinear) {
+    DeaggConfig.Builder cb = DeaggConfig.builder(hazard);
+    double iml = Math.log(imlLinear);
+    List<HazardCurveSet> curveSets = ImmutableList.copyOf(hazard.sourceSetCurves.values());
+    StringBuilder sb = new StringBuilder();
+    for (Imt imt : hazard.totalCurves.keySet()) {
+      XySequence curve = hazard.totalCurves.get(imt);
+      double rate = Deaggregation.RATE_INTERPOLATER.findY(curve, iml);
+      assertTrue(rate > 0.0);
+      DeaggConfig config = cb.imt(imt).iml(iml, rate, 1.0 / rate).build();
+      List<Map<Gmm, DeaggDataset>> datasets = new ArrayList<>();
+      for (HazardCurveSet curveSet : curveSets) {
+        double setRate = Deaggregation.RATE_INTERPOLATER.findY(
+            curveSet.totalCurves.get(imt),
+            iml);
+        datasets.add(Double.isNaN(setRate) || setRate == 0.0
+            ? ImmutableMap.<Gmm, DeaggDataset> of()
+            : Deaggregator.deaggregate(curveSet, config, hazard.site));
+      }
+      sb.append(new ImtDeagg(config, curveSets, datasets));
+    }
+    return sb.toString();
+  }
+
+  private static CalcConfig config(HazardModel model, boolean hazardOnly) {
+    return CalcConfig.Builder.copyOf(model.config())
+        .hazardOnly(hazardOnly)
+        .deaggIml(IML)
+        .build();
+  }
+
+  /* A model with grid, fault, and cluster sources. */
+  private static Path writeModel(Path dir) throws IOException {
+    Files.write(dir.resolve("config.json"), Arrays.asList(
+        "{",
+        "  \"model\": {",
+        "    \"name\": \"Deaggregation test\",",
+        "    \"surfaceSpacing\": 1.0,",
+        "    \"ruptureFloating\": \"OFF\",",
+        "    \"ruptureVariability\": false,",
+        "    \"pointSourceType\": \"FINITE\",",
+        "    \"areaGridScaling\": \"UNIFORM_0P05\"",
+        "  },",
+        "  \"hazard\": {",
+        "    \"imts\": [\"PGA\", \"SA1P0\"]",
+        "  }",
+        "}"), UTF_8);
+
+    Path grid = Files.createDirectory(dir.resolve("Grid"));
+    Files.write(grid.resolve("gmm.xml"), gmms(), UTF_8);
+    List<String> lines = new ArrayList<>();
+    lines.add("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+    lines.add("<GridSourceSet id=\"-1\" name=\"Deagg Grid\" weight=\"1.0\">");
+    lines.add("  <DefaultMfds>");
+    lines.add("    <IncrementalMfd type=\"GR\" a=\"0.005\" b=\"1.0\" mMin=\"5.05\"" +
+        " mMax=\"7.45\" dMag=\"0.1\" weight=\"1.0\"/>");
+    lines.add("  </DefaultMfds>");
+    lines.add("  <SourceProperties" +
+        " focalMechMap=\"[STRIKE_SLIP:0.5,NORMAL:0.25,REVERSE:0.25]\"" +
+        " magDepthMap=\"[6.5::[5.0:0.5,10.0:0.5];10.0::[5.0:1.0]]\"" +
+        " maxDepth=\"14.0\" ruptureScaling=\"NSHM_POINT_WC94_LENGTH\" strike=\"NaN\"/>");
+    lines.add("  <Nodes>");
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 10; j++) {
+        double a = 0.002 + 0.0005 * ((i * 7 + j * 3) % 11);
+        lines.add(String.format(
+            "    <Node type=\"GR\" a=\"%.4f\">%.3f,%.3f,0.0</Node>",
+            a, -123.0 + j * 0.2, 36.5 + i * 0.2));
+      }
+    }
+    lines.add("  </Nodes>");
+    lines.add("</GridSourceSet>");
+    Files.write(grid.resolve("grid.xml"), lines, UTF_8);
+
+    Path fault = Files.createDirectory(dir.resolve("Fault"));
+    Files.write(fault.resolve("gmm.xml"), gmms(), UTF_8);
+    Files.write(fault.resolve("fault.xml"), Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<FaultSourceSet id=\"-1\" name=\"Deagg Faults\" weight=\"1.0\">",
+        "  <Settings>",
+        "    <SourceProperties ruptureScaling=\"NSHM_FAULT_WC94_LENGTH\"/>",
+        "  </Settings>",
+        "  <Source id=\"1\" name=\"Fault 1\">",
+        "    <IncrementalMfd type=\"SINGLE\" rate=\"0.002\" m=\"6.8\" floats=\"false\"" +
+            " weight=\"1.0\"/>",
+        "    <Geometry depth=\"1.0\" dip=\"60.0\" rake=\"90.0\" width=\"15.0\">",
+        "      <Trace>",
+        "-122.10000,37.40000,0.00000",
+        "-121.95000,37.10000,0.00000",
+        "-121.90000,36.80000,0.00000",
+        "      </Trace>",
+        "    </Geometry>",
+        "  </Source>",
+        "</FaultSourceSet>"), UTF_8);
+
+    Path cluster = Files.createDirectory(dir.resolve("Cluster"));
+    Files.write(cluster.resolve("gmm.xml"), gmms(), UTF_8);
+    Files.write(cluster.resolve("cluster.xml"), Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<ClusterSourceSet id=\"-1\" name=\"Deagg Clusters\" weight=\"1.0\">",
+        "  <Settings>",
+        "    <DefaultMfds>",
+        "      <IncrementalMfd type=\"SINGLE\" rate=\"0.002\" m=\"7.0\" floats=\"false\"" +
+            " weight=\"1.0\"/>",
+        "    </DefaultMfds>",
+        "    <SourceProperties ruptureScaling=\"NSHM_FAULT_WC94_LENGTH\"/>",
+        "  </Settings>",
+        "  <Cluster id=\"1\" name=\"Cluster 1\" weight=\"0.6\">",
+        "    <Source id=\"10\" name=\"Cluster Fault 1\">",
+        "      <IncrementalMfd type=\"SINGLE\" rate=\"1.0\" m=\"7.0\" floats=\"false\"" +
+            " weight=\"0.5\"/>",
+        "      <IncrementalMfd type=\"SINGLE\" rate=\"1.0\" m=\"7.2\" floats=\"false\"" +
+            " weight=\"0.5\"/>",
+        "      <Geometry depth=\"0.0\" dip=\"90.0\" rake=\"0.0\" width=\"15.0\">",
+        "        <Trace>-122.1,37.3,0.0 -122.0,37.0,0.0</Trace>",
+        "      </Geometry>",
+        "    </Source>",
+        "    <Source id=\"11\" name=\"Cluster Fault 2\">",
+        "      <IncrementalMfd type=\"SINGLE\" rate=\"1.0\" m=\"6.9\" floats=\"false\"" +
+            " weight=\"1.0\"/>",
+        "      <Geometry depth=\"0.0\" dip=\"90.0\" rake=\"0.0\" width=\"15.0\">",
+        "        <Trace>-121.9,37.3,0.0 -121.8,37.0,0.0</Trace>",
+        "      </Geometry>",
+        "    </Source>",
+        "  </Cluster>",
+        "  <Cluster id=\"2\" name=\"Cluster 2\" weight=\"0.4\">",
+        "    <Source id=\"12\" name=\"Cluster Fault 3\">",
+        "      <IncrementalMfd type=\"SINGLE\" rate=\"1.0\" m=\"7.1\" floats=\"false\"" +
+            " weight=\"1.0\"/>",
+        "      <Geometry depth=\"0.0\" dip=\"90.0\" rake=\"0.0\" width=\"15.0\">",
+        "        <Trace>-122.2,37.4,0.0 -122.1,37.1,0.0</Trace>",
+        "      </Geometry>",
+        "    </Source>",
+        "  </Cluster>",
+        "</ClusterSourceSet>"), UTF_8);
+    return dir;
+  }
+
+  private static List<String> gmms() {
+    return Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<GroundMotionModels>",
+        "  <ModelSet maxDistance=\"300.0\">",
+        "    <Model id=\"ASK_14\" weight=\"0.6\"/>",
+        "    <Model id=\"BSSA_14\" weight=\"0.4\"/>",
+        "  </ModelSet>",
+        "</GroundMotionModels>");
+  }
+
+  private static void delete(Path dir) throws IOException {
+    List<Path> paths = new ArrayList<>();
+    Files.walk(dir).forEach(paths::add);
+    for (int i = paths.size() - 1; i >= 0; i--) {
+      Files.delete(paths.get(i));
+    }
+  }
+
+}
@@ -0,0 +1,49 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static gov.usgs.earthquake.nshmp.calc.ExceedanceModel.TRUNCATION_3SIGMA_UPPER;
+import static gov.usgs.earthquake.nshmp.calc.ExceedanceModel.TRUNCATION_UPPER_ONLY;
+import static gov.usgs.earthquake.nshmp.gmm.Imt.PGA;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class ExceedanceModelTest {
+
+  private static final double TABLE_TOL = 3.1e-8;
+
+  @Test
+  public final void upper3SigmaTable() {
+    for (int i = 0; i <= 100000; i++) {
+      double ε = -9.0 + 12.5 * i / 100000;
+      assertEquals(
+          TRUNCATION_UPPER_ONLY.exceedance(0.0, 1.0, 3.0, PGA, ε),
+          TRUNCATION_3SIGMA_UPPER.exceedance(0.0, 1.0, 3.0, PGA, ε),
+          TABLE_TOL);
+    }
+  }
+
+  @Test
+  public final void upper3SigmaTableScaled() {
+    double μ = -1.7;
+    double σ = 0.65;
+    double[] xs = new double[200];
+    for (int i = 0; i < xs.length; i++) {
+      xs[i] = -6.0 + 0.03 * i;
+    }
+    double[] expected = new double[xs.length];
+    double[] actual = new double[xs.length];
+    TRUNCATION_UPPER_ONLY.exceedance(μ, σ, 3.0, PGA, xs, expected);
+    TRUNCATION_3SIGMA_UPPER.exceedance(μ, σ, 3.0, PGA, xs, actual);
+    assertArrayEquals(expected, actual, TABLE_TOL);
+  }
+
+  @Test
+  public final void upper3SigmaTableLimits() {
+    assertEquals(1.0, TRUNCATION_3SIGMA_UPPER.exceedance(0.0, 1.0, 3.0, PGA, -20.0), 0.0);
+    assertEquals(0.0, TRUNCATION_3SIGMA_UPPER.exceedance(0.0, 1.0, 3.0, PGA, 3.0), 0.0);
+    assertEquals(0.0, TRUNCATION_3SIGMA_UPPER.exceedance(0.0, 1.0, 3.0, PGA, 20.0), 0.0);
+  }
+
+}
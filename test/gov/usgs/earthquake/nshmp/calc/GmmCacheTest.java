@@ -0,0 +1,91 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.SourceSetMetrics;
+import gov.usgs.earthquake.nshmp.gmm.Gmm;
+import gov.usgs.earthquake.nshmp.gmm.GmmInput;
+import gov.usgs.earthquake.nshmp.gmm.GroundMotionModel;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+import gov.usgs.earthquake.nshmp.gmm.ScalarGroundMotion;
+
+@SuppressWarnings("javadoc")
+public class GmmCacheTest {
+
+  private static final Gmm GMM = Gmm.ASK_14;
+  private static final Imt IMT = Imt.SA1P0;
+
+  @Test
+  public final void exact() {
+    GmmCache cache = GmmCache.create(100, 0.0);
+    SourceSetMetrics metrics = new SourceSetMetrics(null);
+    GroundMotionModel model = GMM.instance(IMT);
+
+    GmmInput in = input(12.34, 13.57, 5.21);
+    ScalarGroundMotion expected = model.calc(in);
+    ScalarGroundMotion actual = cache.get(model, in, IMT, GMM, metrics);
+    assertEquals(expected.mean(), actual.mean(), 0.0);
+    assertEquals(expected.sigma(), actual.sigma(), 0.0);
+    assertSame(actual, cache.get(model, input(12.34, 13.57, 5.21), IMT, GMM, metrics));
+
+    /* distinct distances and imts are not shared */
+    cache.get(model, input(12.35, 13.57, 5.21), IMT, GMM, metrics);
+    cache.get(GMM.instance(Imt.PGA), in, Imt.PGA, GMM, metrics);
+    assertEquals(1, metrics.gmmCacheHits());
+    assertEquals(3, metrics.gmmCacheMisses());
+    assertEquals(3L, (long) metrics.gmmCalcs().get(GMM));
+  }
+
+  @Test
+  public final void configScoped() throws IOException {
+    CalcConfig config = CalcConfig.Builder.withDefaults().build();
+    assertNull(config.gmmCache());
+
+    Path path = Files.createTempFile("config", ".json");
+    try {
+      Files.write(path, "{\"performance\":{\"gmmCacheSize\":100}}".getBytes(UTF_8));
+      CalcConfig cached = CalcConfig.Builder.copyOf(config)
+          .extend(CalcConfig.Builder.fromFile(path))
+          .build();
+      assertSame(cached.gmmCache(), cached.gmmCache());
+      CalcConfig other = CalcConfig.Builder.copyOf(cached).build();
+      assertNotSame(cached.gmmCache(), other.gmmCache());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public final void snapped() {
+    GmmCache cache = GmmCache.create(100, 0.5);
+    SourceSetMetrics metrics = new SourceSetMetrics(null);
+    GroundMotionModel model = GMM.instance(IMT);
+
+    ScalarGroundMotion expected = model.calc(input(12.5, 13.5, 5.0));
+    ScalarGroundMotion actual = cache.get(model, input(12.4, 13.6, 5.1), IMT, GMM, metrics);
+    assertEquals(expected.mean(), actual.mean(), 0.0);
+    assertEquals(expected.sigma(), actual.sigma(), 0.0);
+    assertSame(actual, cache.get(model, input(12.6, 13.4, 4.9), IMT, GMM, metrics));
+    assertEquals(1, metrics.gmmCacheHits());
+    assertEquals(1, metrics.gmmCacheMisses());
+  }
+
+  private static GmmInput input(double rJB, double rRup, double rX) {
+    return GmmInput.builder()
+        .withDefaults()
+        .mag(6.8)
+        .distances(rJB, rRup, rX)
+        .build();
+  }
+
+}
@@ -0,0 +1,187 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import gov.usgs.earthquake.nshmp.calc.CalcMetrics.SourceSetMetrics;
+import gov.usgs.earthquake.nshmp.data.XySequence;
+import gov.usgs.earthquake.nshmp.eq.model.GridSourceSet;
+import gov.usgs.earthquake.nshmp.eq.model.HazardModel;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+
+@SuppressWarnings("javadoc")
+public class GridCurveTableTest {
+
+  /*
+   * Relative tolerance. Table curves are summed in a different order than
+   * curves computed per rupture; the largest observed difference is ~3e-13.
+   */
+  private static final double TOLERANCE = 1e-12;
+
+  private static final List<Location> SITES = ImmutableList.of(
+      Location.create(37.0, -122.0),
+      Location.create(37.012, -122.011),
+      Location.create(37.3, -121.55),
+      Location.create(37.9, -122.9));
+
+  /*
+   * Curves computed with grid curve tables must match those computed from
+   * optimized tables for a grid with several focal mechanisms and depths and
+   * more than one ground motion model.
+   */
+  @Test
+  public final void multiMechanism() throws Exception {
+    Path dir = Files.createTempDirectory("grid-table");
+    try {
+      HazardModel model = HazardModel.load(writeModel(dir));
+      CalcConfig optimized = config(model, dir, false);
+      CalcConfig tables = config(model, dir, true);
+      assertTrue(GridCurveTable.enabled(tables));
+      int count = 0;
+
+      for (Location loc : SITES) {
+        Site site = Site.builder().location(loc).vs30(760.0).build();
+        Hazard expected = HazardCalcs.hazard(model, optimized, site, Optional.empty());
+        Hazard actual = HazardCalcs.hazard(model, tables, site, Optional.empty());
+        for (Entry<Imt, XySequence> entry : expected.curves().entrySet()) {
+          XySequence expectedCurve = entry.getValue();
+          XySequence actualCurve = actual.curves().get(entry.getKey());
+          for (int i = 0; i < expectedCurve.size(); i++) {
+            double y = expectedCurve.y(i);
+            assertEquals(y, actualCurve.y(i), y * TOLERANCE);
+            count += (y > 0.0) ? 1 : 0;
+          }
+        }
+      }
+      assertTrue(count > 100);
+    } finally {
+      delete(dir);
+    }
+  }
+
+  /*
+   * Tables are built for the site terms of the first site processed with a
+   * config; hazard at sites with other terms must be computed without tables
+   * and match that computed from optimized tables exactly.
+   */
+  @Test
+  public final void siteTerms() throws Exception {
+    Path dir = Files.createTempDirectory("grid-table");
+    try {
+      HazardModel model = HazardModel.load(writeModel(dir));
+      CalcConfig optimized = config(model, dir, false);
+      CalcConfig tables = config(model, dir, true);
+      GridSourceSet sourceSet = (GridSourceSet) model.iterator().next();
+      SourceSetMetrics metrics = CalcMetrics.create().sourceSet(sourceSet);
+
+      Site first = Site.builder().location(SITES.get(0)).vs30(760.0).build();
+      Site other = Site.builder().location(SITES.get(2)).vs30(400.0).z1p0(0.3).z2p5(1.5).build();
+      HazardCalcs.hazard(model, tables, first, Optional.empty());
+      assertTrue(GridCurveTable.get(sourceSet, tables, first, metrics).isPresent());
+      assertFalse(GridCurveTable.get(sourceSet, tables, other, metrics).isPresent());
+
+      Hazard expected = HazardCalcs.hazard(model, optimized, other, Optional.empty());
+      Hazard actual = HazardCalcs.hazard(model, tables, other, Optional.empty());
+      int count = 0;
+      for (Entry<Imt, XySequence> entry : expected.curves().entrySet()) {
+        XySequence expectedCurve = entry.getValue();
+        XySequence actualCurve = actual.curves().get(entry.getKey());
+        for (int i = 0; i < expectedCurve.size(); i++) {
+          double y = expectedCurve.y(i);
+          assertEquals(y, actualCurve.y(i), 0.0);
+          count += (y > 0.0) ? 1 : 0;
+        }
+      }
+      assertTrue(count > 10);
+    } finally {
+      delete(dir);
+    }
+  }
+
+  private static CalcConfig config(HazardModel model, Path dir, boolean tables)
+      throws IOException {
+    Path path = dir.resolve("calc-" + tables + ".json");
+    Files.write(path, ("{\"performance\":{\"optimizeGrids\":true,\"gridCurveTables\":" +
+        tables + "}}").getBytes(UTF_8));
+    return CalcConfig.Builder.copyOf(model.config())
+        .extend(CalcConfig.Builder.fromFile(path))
+        .build();
+  }
+
+  private static Path writeModel(Path dir) throws IOException {
+    Files.write(dir.resolve("config.json"), Arrays.asList(
+        "{",
+        "  \"model\": {",
+        "    \"name\": \"Grid curve table test\",",
+        "    \"surfaceSpacing\": 1.0,",
+        "    \"ruptureFloating\": \"OFF\",",
+        "    \"ruptureVariability\": false,",
+        "    \"pointSourceType\": \"FINITE\",",
+        "    \"areaGridScaling\": \"UNIFORM_0P05\"",
+        "  },",
+        "  \"hazard\": {",
+        "    \"imts\": [\"PGA\", \"SA1P0\"]",
+        "  }",
+        "}"), UTF_8);
+
+    Path grid = Files.createDirectory(dir.resolve("Grid"));
+    Files.write(grid.resolve("gmm.xml"), Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<GroundMotionModels>",
+        "  <ModelSet maxDistance=\"300.0\">",
+        "    <Model id=\"ASK_14\" weight=\"0.5\"/>",
+        "    <Model id=\"BSSA_14\" weight=\"0.5\"/>",
+        "  </ModelSet>",
+        "</GroundMotionModels>"), UTF_8);
+
+    List<String> lines = new ArrayList<>();
+    lines.add("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+    lines.add("<GridSourceSet id=\"-1\" name=\"Multi-mechanism Grid\" weight=\"1.0\">");
+    lines.add("  <DefaultMfds>");
+    lines.add("    <IncrementalMfd type=\"GR\" a=\"0.005\" b=\"1.0\" mMin=\"5.05\"" +
+        " mMax=\"7.45\" dMag=\"0.1\" weight=\"1.0\"/>");
+    lines.add("  </DefaultMfds>");
+    lines.add("  <SourceProperties" +
+        " focalMechMap=\"[STRIKE_SLIP:0.5,NORMAL:0.25,REVERSE:0.25]\"" +
+        " magDepthMap=\"[6.5::[5.0:0.5,10.0:0.5];10.0::[5.0:1.0]]\"" +
+        " maxDepth=\"14.0\" ruptureScaling=\"NSHM_POINT_WC94_LENGTH\" strike=\"NaN\"/>");
+    lines.add("  <Nodes>");
+    for (int i = 0; i < 20; i++) {
+      for (int j = 0; j < 20; j++) {
+        double a = 0.002 + 0.0005 * ((i * 7 + j * 3) % 11);
+        lines.add(String.format(
+            "    <Node type=\"GR\" a=\"%.4f\">%.3f,%.3f,0.0</Node>",
+            a, -123.0 + j * 0.1, 36.5 + i * 0.1));
+      }
+    }
+    lines.add("  </Nodes>");
+    lines.add("</GridSourceSet>");
+    Files.write(grid.resolve("grid.xml"), lines, UTF_8);
+    return dir;
+  }
+
+  private static void delete(Path dir) throws IOException {
+    List<Path> paths = new ArrayList<>();
+    Files.walk(dir).forEach(paths::add);
+    for (int i = paths.size() - 1; i >= 0; i--) {
+      Files.delete(paths.get(i));
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+package gov.usgs.earthquake.nshmp.calc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+@SuppressWarnings("javadoc")
+public class SitesTest {
+
+  private static final CalcConfig DEFAULTS = CalcConfig.Builder.withDefaults().build();
+
+  private static final int CSV_SIZE = 10000;
+
+  @Test
+  public final void csv() throws IOException {
+    Path path = Files.createTempFile("sites", ".csv");
+    try {
+      StringBuilder sb = new StringBuilder("# comment\r\nname,lon,lat,vs30\r\n\r\n");
+      for (int i = 0; i < CSV_SIZE; i++) {
+        sb.append("s").append(i).append(",")
+            .append(-120.0 + i * 0.001).append(",")
+            .append(35.0).append(",")
+            .append(200 + i % 500)
+            .append(i % 1000 == 0 ? "\r\n# comment\n" : "\n");
+      }
+      Files.write(path, sb.toString().getBytes(UTF_8));
+
+      Sites sites = Sites.fromCsv(path, DEFAULTS);
+      assertEquals(CSV_SIZE, sites.size());
+      List<Site> all = Lists.newArrayList(sites);
+      assertEquals(CSV_SIZE, all.size());
+      assertEquals(all.get(0).toString(), sites.first().toString());
+      for (int i = 0; i < CSV_SIZE; i++) {
+        Site site = all.get(i);
+        assertEquals("s" + i, site.name);
+        assertEquals(-120.0 + i * 0.001, site.location.lon(), 1e-9);
+        assertEquals(200 + i % 500, site.vs30, 0.0);
+      }
+      for (int index : ImmutableList.of(0, 1, 4095, 4096, 4097, 9999)) {
+        assertResumes(sites, all, index);
+      }
+      assertFalse(sites.iterator(CSV_SIZE).hasNext());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public final void csvIllegalKey() throws IOException {
+    Path path = Files.createTempFile("sites", ".csv");
+    try {
+      Files.write(path, "name,lon,lat,depth\ns,-120,35,1\n".getBytes(UTF_8));
+      Sites.fromCsv(path, DEFAULTS);
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public final void json() throws IOException {
+    Path path = Files.createTempFile("sites", ".geojson");
+    try {
+      StringBuilder sb = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+      for (int i = 0; i < 20; i++) {
+        sb.append(i == 0 ? "" : ",")
+            .append("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",")
+            .append("\"coordinates\":[").append(-120.0 + i).append(",35.0]},")
+            .append("\"properties\":{\"title\":\"s").append(i).append("\"}}");
+      }
+      Files.write(path, sb.append("]}").toString().getBytes(UTF_8));
+
+      Sites sites = Sites.fromJson(path, DEFAULTS);
+      assertEquals(20, sites.size());
+      List<Site> all = Lists.newArrayList(sites);
+      assertEquals("s7", all.get(7).name);
+      assertEquals(all.get(0).toString(), sites.first().toString());
+      assertEquals(-113.0, all.get(7).location.lon(), 0.0);
+      for (int index : ImmutableList.of(0, 7, 19)) {
+        assertResumes(sites, all, index);
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static void assertResumes(Sites sites, List<Site> all, int index) {
+    Iterator<Site> it = sites.iterator(index);
+    for (int i = index; i < all.size(); i++) {
+      assertEquals(all.get(i).toString(), it.next().toString());
+    }
+    assertFalse(it.hasNext());
+  }
+
+}
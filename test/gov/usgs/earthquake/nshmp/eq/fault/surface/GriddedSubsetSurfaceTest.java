@@ -0,0 +1,149 @@
+package gov.usgs.earthquake.nshmp.eq.fault.surface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gov.usgs.earthquake.nshmp.eq.model.Distance;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationList;
+
+@SuppressWarnings("javadoc")
+public class GriddedSubsetSurfaceTest {
+
+  private static final LocationList TRACE = LocationList.create(
+      Location.create(34.0, -118.0),
+      Location.create(34.2, -117.95),
+      Location.create(34.4, -118.0));
+
+  private static final List<Location> SITES = ImmutableList.of(
+      Location.create(34.2, -118.0),
+      Location.create(34.1, -117.975),
+      Location.create(34.2, -117.92),
+      Location.create(34.2, -117.8),
+      Location.create(34.1, -118.3),
+      Location.create(34.6, -118.1),
+      Location.create(33.5, -117.0));
+
+  @Test
+  public final void dippingDistances() {
+    checkWindows(surface(45.0));
+  }
+
+  @Test
+  public final void verticalDistances() {
+    checkWindows(surface(90.0));
+  }
+
+  @Test
+  public final void parentDistances() {
+    LocationList lower = LocationList.create(
+        Location.create(34.0, -117.9, 10.0),
+        Location.create(34.2, -117.85, 12.0),
+        Location.create(34.4, -117.9, 10.0));
+    List<GriddedSurface> parents = ImmutableList.<GriddedSurface> of(
+        surface(45.0),
+        surface(90.0),
+        new ApproxGriddedSurface(TRACE, lower, 2.0));
+    for (GriddedSurface parent : parents) {
+      for (Location site : SITES) {
+        Distance expected = Distance.compute(parent, site);
+        Distance actual = parent.distanceTo(site);
+        assertEquals(expected.rJB, actual.rJB, 0.0);
+        assertEquals(expected.rRup, actual.rRup, 0.0);
+        assertEquals(expected.rX, actual.rX, 0.0);
+      }
+      checkWindows(parent);
+    }
+  }
+
+  @Test
+  public final void windowCoordinates() {
+    DefaultGriddedSurface parent = surface(45.0);
+    for (GriddedSubsetSurface window : windows(parent)) {
+      assertSame(parent.coordinates(), window.coordinates());
+      double depth = 0.0;
+      for (Location loc : window.getRow(0)) {
+        depth += loc.depth();
+      }
+      assertEquals(depth / window.getNumCols(), window.depth(), 0.0);
+      /* windows into windows are not indexed by their parent's coordinates */
+      GriddedSubsetSurface nested = new GriddedSubsetSurface(
+          window.getNumRows(), window.getNumCols(), 0, 0, window);
+      for (Location site : SITES) {
+        Distance expected = Distance.compute(nested, site);
+        Distance actual = nested.distanceTo(site);
+        assertEquals(expected.rJB, actual.rJB, 0.0);
+        assertEquals(expected.rRup, actual.rRup, 0.0);
+        assertEquals(expected.rX, actual.rX, 0.0);
+      }
+    }
+  }
+
+  @Test
+  public final void gridLocations() {
+    DefaultGriddedSurface parent = surface(45.0);
+    GridCoordinates coordinates = parent.coordinates();
+    for (int row = 0; row < parent.getNumRows(); row++) {
+      for (int col = 0; col < parent.getNumCols(); col++) {
+        Location loc = parent.get(row, col);
+        int index = row * coordinates.cols() + col;
+        assertEquals(loc, coordinates.location(index));
+        assertEquals(loc.latRad(), coordinates.latRad(index), 0.0);
+        assertEquals(loc.lonRad(), coordinates.lonRad(index), 0.0);
+        assertEquals(loc.depth(), coordinates.depth(index), 0.0);
+      }
+    }
+  }
+
+  /*
+   * Window distances must be identical to those computed directly from the
+   * window grid, including when sites and parent surfaces alternate.
+   */
+  private static void checkWindows(GriddedSurface parent) {
+    GriddedSubsetSurface other = windows(surface(60.0)).get(0);
+    for (GriddedSubsetSurface window : windows(parent)) {
+      for (Location site : SITES) {
+        Distance expected = Distance.compute(window, site);
+        Distance actual = window.distanceTo(site);
+        assertEquals(expected.rJB, actual.rJB, 0.0);
+        assertEquals(expected.rRup, actual.rRup, 0.0);
+        assertEquals(expected.rX, actual.rX, 0.0);
+        other.distanceTo(site);
+      }
+    }
+  }
+
+  private static DefaultGriddedSurface surface(double dip) {
+    return DefaultGriddedSurface.builder()
+        .trace(TRACE)
+        .depth(1.0)
+        .dip(dip)
+        .width(12.0)
+        .spacing(2.0)
+        .build();
+  }
+
+  private static List<GriddedSubsetSurface> windows(GriddedSurface parent) {
+    List<GriddedSubsetSurface> windows = new ArrayList<>();
+    int rows = parent.getNumRows();
+    int cols = parent.getNumCols();
+    for (int numRows = 1; numRows <= rows; numRows += 2) {
+      for (int numCols = 2; numCols <= cols; numCols += 3) {
+        for (int startRow = 0; startRow + numRows <= rows; startRow++) {
+          for (int startCol = 0; startCol + numCols <= cols; startCol += 2) {
+            windows.add(new GriddedSubsetSurface(numRows, numCols, startRow, startCol, parent));
+          }
+        }
+      }
+    }
+    return windows;
+  }
+
+}
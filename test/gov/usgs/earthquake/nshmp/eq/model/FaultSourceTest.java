@@ -0,0 +1,89 @@
+package gov.usgs.earthquake.nshmp.eq.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gov.usgs.earthquake.nshmp.eq.fault.surface.RuptureFloating;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.RuptureScaling;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.geo.LocationList;
+import gov.usgs.earthquake.nshmp.mfd.IncrementalMfd;
+import gov.usgs.earthquake.nshmp.mfd.Mfds;
+
+@SuppressWarnings("javadoc")
+public class FaultSourceTest {
+
+  private static final LocationList TRACE = LocationList.create(
+      Location.create(34.0, -118.0),
+      Location.create(34.2, -117.95),
+      Location.create(34.4, -118.0));
+
+  private static final Location SITE = Location.create(34.1, -118.1);
+
+  @Test
+  public final void lazyRupturesOn() {
+    checkLazyRuptures(RuptureFloating.ON);
+  }
+
+  @Test
+  public final void lazyRupturesNshm() {
+    checkLazyRuptures(RuptureFloating.NSHM);
+  }
+
+  private static void checkLazyRuptures(RuptureFloating floating) {
+    List<double[]> expected = ruptureValues(source(floating, false));
+    List<double[]> actual = ruptureValues(source(floating, true));
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      for (int j = 0; j < expected.get(i).length; j++) {
+        assertEquals(expected.get(i)[j], actual.get(i)[j], 0.0);
+      }
+    }
+  }
+
+  /* Lazy ruptures may be reused; record values as they are supplied. */
+  private static List<double[]> ruptureValues(FaultSource source) {
+    List<double[]> values = new ArrayList<>();
+    for (Rupture rupture : source) {
+      Distance d = rupture.surface().distanceTo(SITE);
+      values.add(new double[] {
+          rupture.mag(), rupture.rate(), rupture.rake(), d.rJB, d.rRup, d.rX });
+    }
+    return values;
+  }
+
+  private static FaultSource source(RuptureFloating floating, boolean lazy) {
+    /* floating, with a negligible rate bin that is skipped */
+    IncrementalMfd floatingMfd = Mfds.newIncrementalMFD(
+        new double[] { 6.5, 6.6, 6.7, 6.8 },
+        new double[] { 1e-3, 1e-16, 5e-4, 2e-4 });
+    /* negligible rates at the start of a distribution */
+    IncrementalMfd skippedMfd = Mfds.newIncrementalMFD(
+        new double[] { 6.2, 6.3, 6.4 },
+        new double[] { 0.0, 1e-15, 3e-4 });
+    IncrementalMfd singleMfd = Mfds.newSingleMFD(7.1, 1e-4, false);
+
+    return new FaultSource.Builder()
+        .name("Test Fault")
+        .id(1)
+        .trace(TRACE)
+        .dip(60.0)
+        .width(15.0)
+        .depth(0.0)
+        .rake(90.0)
+        .mfd(floatingMfd)
+        .mfd(skippedMfd)
+        .mfd(singleMfd)
+        .surfaceSpacing(1.0)
+        .ruptureScaling(RuptureScaling.NSHM_FAULT_WC94_LENGTH)
+        .ruptureFloating(floating)
+        .ruptureVariability(false)
+        .lazyRuptures(lazy)
+        .buildFaultSource();
+  }
+
+}
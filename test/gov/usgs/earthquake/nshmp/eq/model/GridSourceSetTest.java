@@ -0,0 +1,121 @@
+package gov.usgs.earthquake.nshmp.eq.model;
+
+import static gov.usgs.earthquake.nshmp.eq.model.SourceType.GRID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import gov.usgs.earthquake.nshmp.data.XySequence;
+import gov.usgs.earthquake.nshmp.eq.fault.FocalMech;
+import gov.usgs.earthquake.nshmp.eq.fault.surface.RuptureScaling;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.gmm.Gmm;
+
+@SuppressWarnings("javadoc")
+public class GridSourceSetTest {
+
+  private static final double[] MAGS = { 5.05, 5.15, 5.25, 5.35, 5.45, 5.55 };
+
+  private static final List<Location> SITES = ImmutableList.of(
+      Location.create(35.0, -118.0),
+      Location.create(35.013, -117.967),
+      Location.create(35.55, -117.45),
+      Location.create(35.013, -117.967));
+
+  /*
+   * Tables from a cache with a snap of zero must be identical to those built
+   * without a cache, including when a table is built from node distances
+   * cached for another source set on the same nodes, and when a table is
+   * itself retrieved from the cache.
+   */
+  @Test
+  public final void cachedTables() {
+    List<GridSourceSet> sourceSets = ImmutableList.of(
+        sourceSet(0.002, mechs(0.5, 0.25)),
+        sourceSet(0.004, mechs(0.6, 0.2)),
+        sourceSet(0.003, mechs(1.0, 0.0)));
+    for (int pass = 0; pass < 2; pass++) {
+      for (Location site : SITES) {
+        for (GridSourceSet sourceSet : sourceSets) {
+          SourceSet<? extends Source> expected = GridSourceSet.optimizer(site).apply(sourceSet);
+          SourceSet<? extends Source> actual = GridSourceSet.optimizer(site, 10, 0.0)
+              .apply(sourceSet);
+          assertEquals(
+              GridSourceSet.sizeString(expected, expected.size()),
+              GridSourceSet.sizeString(actual, actual.size()));
+          assertEquals(sources(expected, site), sources(actual, site));
+        }
+      }
+    }
+  }
+
+  /* Source locations and mfd values, in order, as a list of strings. */
+  private static List<String> sources(SourceSet<? extends Source> sourceSet, Location site) {
+    List<String> values = new ArrayList<>();
+    for (Source source : sourceSet.iterableForLocation(site)) {
+      values.add(source.location(site).toString());
+      for (XySequence mfd : source.mfds()) {
+        for (int i = 0; i < mfd.size(); i++) {
+          values.add(Double.toString(mfd.x(i)) + ":" + Double.toString(mfd.y(i)));
+        }
+      }
+    }
+    assertTrue(values.size() > 0);
+    return values;
+  }
+
+  private static Map<FocalMech, Double> mechs(double strikeSlip, double reverse) {
+    Map<FocalMech, Double> mechs = Maps.newEnumMap(FocalMech.class);
+    mechs.put(FocalMech.STRIKE_SLIP, strikeSlip);
+    mechs.put(FocalMech.REVERSE, reverse);
+    mechs.put(FocalMech.NORMAL, 1.0 - strikeSlip - reverse);
+    return mechs;
+  }
+
+  /* A grid of nodes with spatially varying rates and one of two mech maps. */
+  private static GridSourceSet sourceSet(double rate, Map<FocalMech, Double> mechs) {
+    GmmSet gmmSet = new GmmSet.Builder()
+        .primaryModelMap(ImmutableMap.of(Gmm.ASK_14, 1.0))
+        .primaryMaxDistance(200.0)
+        .build();
+    GridSourceSet.Builder builder = new GridSourceSet.Builder();
+    builder.name("Grid " + rate)
+        .id(-1)
+        .weight(1.0)
+        .gmms(gmmSet);
+    builder.depthMap(
+        ImmutableSortedMap.of(10.0, ImmutableMap.of(5.0, 1.0)), GRID)
+        .maxDepth(14.0, GRID)
+        .mechs(mechs)
+        .ruptureScaling(RuptureScaling.NSHM_POINT_WC94_LENGTH)
+        .strike(Double.NaN);
+    builder.sourceType(PointSourceType.FINITE);
+    int count = 0;
+    for (int i = 0; i < 20; i++) {
+      for (int j = 0; j < 20; j++) {
+        Location loc = Location.create(34.5 + i * 0.1, -118.5 + j * 0.1);
+        double[] rates = new double[MAGS.length];
+        for (int k = 0; k < MAGS.length; k++) {
+          rates[k] = rate * (1 + count % 7) * Math.pow(10, -k * 0.1);
+        }
+        builder.location(loc, XySequence.createImmutable(MAGS, rates), mechs(
+            (count % 3 == 0) ? 1.0 : mechs.get(FocalMech.STRIKE_SLIP),
+            (count % 3 == 0) ? 0.0 : mechs.get(FocalMech.REVERSE)));
+        count++;
+      }
+    }
+    builder.mfdData(MAGS[0], MAGS[MAGS.length - 1], 0.1);
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,281 @@
+package gov.usgs.earthquake.nshmp.eq.model;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import gov.usgs.earthquake.nshmp.calc.Hazard;
+import gov.usgs.earthquake.nshmp.calc.HazardCalcs;
+import gov.usgs.earthquake.nshmp.calc.Site;
+import gov.usgs.earthquake.nshmp.data.XySequence;
+import gov.usgs.earthquake.nshmp.geo.Location;
+import gov.usgs.earthquake.nshmp.gmm.Imt;
+
+@SuppressWarnings("javadoc")
+public class ModelSnapshotTest {
+
+  private static final List<Location> SITES = ImmutableList.of(
+      Location.create(37.0, -122.0),
+      Location.create(37.3, -121.55),
+      Location.create(37.9, -122.9));
+
+  /*
+   * A model read from a snapshot must have the same config and source sets as
+   * the model that was written, and must yield identical hazard.
+   */
+  @Test
+  public final void directory() throws Exception {
+    Path dir = Files.createTempDirectory("model-snapshot");
+    try {
+      Path model = writeModel(dir.resolve("model"));
+      HazardModel expected = HazardModel.load(model);
+      Path snapshot = dir.resolve("model.snapshot");
+      expected.writeSnapshot(snapshot, model);
+      checkModel(expected, HazardModel.readSnapshot(snapshot, model));
+    } finally {
+      delete(dir);
+    }
+  }
+
+  /*
+   * Snapshots of models loaded from Zip files may be written to and read from
+   * a Zip file system.
+   */
+  @Test
+  public final void zip() throws Exception {
+    Path dir = Files.createTempDirectory("model-snapshot");
+    try {
+      Path modelZip = dir.resolve("model.zip");
+      try (FileSystem zipFs = zipFileSystem(modelZip)) {
+        writeModel(zipFs.getPath("/model"));
+      }
+      HazardModel expected = HazardModel.load(modelZip);
+      Path snapshotZip = dir.resolve("snapshot.zip");
+      try (FileSystem zipFs = zipFileSystem(snapshotZip)) {
+        expected.writeSnapshot(zipFs.getPath("/model.snapshot"), modelZip);
+      }
+      try (FileSystem zipFs = zipFileSystem(snapshotZip)) {
+        checkModel(expected,
+            HazardModel.readSnapshot(zipFs.getPath("/model.snapshot"), modelZip));
+      }
+    } finally {
+      delete(dir);
+    }
+  }
+
+  /*
+   * A snapshot must be rejected once a source file of the model it was written
+   * from changes; loading with a snapshot path must then rebuild the model from
+   * XML and rewrite the snapshot.
+   */
+  @Test
+  public final void stale() throws Exception {
+    Path dir = Files.createTempDirectory("model-snapshot");
+    try {
+      Path model = writeModel(dir.resolve("model"));
+      Path snapshot = dir.resolve("model.snapshot");
+      HazardModel.load(model, snapshot);
+      assertTrue(Files.exists(snapshot));
+      HazardModel.readSnapshot(snapshot, model);
+
+      Path fault = model.resolve("Fault").resolve("fault.xml");
+      String xml = new String(Files.readAllBytes(fault), UTF_8);
+      Files.write(fault, xml.replace("rate=\"0.002\"", "rate=\"0.004\"").getBytes(UTF_8));
+      try {
+        HazardModel.readSnapshot(snapshot, model);
+        fail("Expected stale snapshot to be rejected");
+      } catch (IOException ioe) {
+        assertTrue(ioe.getMessage().contains("stale"));
+      }
+
+      HazardModel expected = HazardModel.load(model);
+      checkModel(expected, HazardModel.load(model, snapshot));
+      checkModel(expected, HazardModel.readSnapshot(snapshot, model));
+    } finally {
+      delete(dir);
+    }
+  }
+
+  private static void checkModel(HazardModel expected, HazardModel actual) throws Exception {
+    assertEquals(expected.name(), actual.name());
+    assertEquals(expected.config().toJson(), actual.config().toJson());
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.types(), actual.types());
+    Iterator<SourceSet<? extends Source>> actualSets = actual.iterator();
+    for (SourceSet<? extends Source> sourceSet : expected) {
+      SourceSet<? extends Source> actualSet = actualSets.next();
+      assertEquals(sourceSet.type(), actualSet.type());
+      assertEquals(sourceSet.name(), actualSet.name());
+      assertEquals(sourceSet.size(), actualSet.size());
+      assertEquals(sourceSet.weight(), actualSet.weight(), 0.0);
+      assertEquals(sourceSet.groundMotionModels().gmms(), actualSet.groundMotionModels().gmms());
+    }
+
+    int count = 0;
+    for (Location loc : SITES) {
+      Site site = Site.builder().location(loc).vs30(760.0).build();
+      Hazard expectedHazard = HazardCalcs.hazard(
+          expected, expected.config(), site, Optional.empty());
+      Hazard actualHazard = HazardCalcs.hazard(
+          actual, actual.config(), site, Optional.empty());
+      for (Entry<Imt, XySequence> entry : expectedHazard.curves().entrySet()) {
+        XySequence expectedCurve = entry.getValue();
+        XySequence actualCurve = actualHazard.curves().get(entry.getKey());
+        for (int i = 0; i < expectedCurve.size(); i++) {
+          double y = expectedCurve.y(i);
+          assertEquals(y, actualCurve.y(i), 0.0);
+          count += (y > 0.0) ? 1 : 0;
+        }
+      }
+    }
+    assertTrue(count > 50);
+  }
+
+  private static FileSystem zipFileSystem(Path zip) throws IOException {
+    URI uri = URI.create("jar:" + zip.toUri());
+    return FileSystems.newFileSystem(uri, ImmutableMap.of("create", "true"));
+  }
+
+  /* A model with grid, fault and single- and dual-trace interface sources. */
+  private static Path writeModel(Path dir) throws IOException {
+    Files.createDirectories(dir);
+    Files.write(dir.resolve("config.json"), Arrays.asList(
+        "{",
+        "  \"model\": {",
+        "    \"name\": \"Model snapshot test\",",
+        "    \"surfaceSpacing\": 2.0,",
+        "    \"ruptureFloating\": \"NSHM\",",
+        "    \"ruptureVariability\": false,",
+        "    \"pointSourceType\": \"FINITE\",",
+        "    \"areaGridScaling\": \"UNIFORM_0P05\"",
+        "  },",
+        "  \"hazard\": {",
+        "    \"imts\": [\"PGA\", \"SA1P0\"],",
+        "    \"truncationLevel\": 2.5",
+        "  }",
+        "}"), UTF_8);
+
+    Path grid = Files.createDirectory(dir.resolve("Grid"));
+    Files.write(grid.resolve("gmm.xml"), gmms("ASK_14", "BSSA_14"), UTF_8);
+    List<String> lines = new ArrayList<>();
+    lines.add("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+    lines.add("<GridSourceSet id=\"-1\" name=\"Snapshot Grid\" weight=\"1.0\">");
+    lines.add("  <DefaultMfds>");
+    lines.add("    <IncrementalMfd type=\"GR\" a=\"0.005\" b=\"1.0\" mMin=\"5.05\"" +
+        " mMax=\"7.45\" dMag=\"0.1\" weight=\"1.0\"/>");
+    lines.add("  </DefaultMfds>");
+    lines.add("  <SourceProperties" +
+        " focalMechMap=\"[STRIKE_SLIP:0.5,NORMAL:0.25,REVERSE:0.25]\"" +
+        " magDepthMap=\"[6.5::[5.0:0.5,10.0:0.5];10.0::[5.0:1.0]]\"" +
+        " maxDepth=\"14.0\" ruptureScaling=\"NSHM_POINT_WC94_LENGTH\" strike=\"NaN\"/>");
+    lines.add("  <Nodes>");
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 10; j++) {
+        double a = 0.002 + 0.0005 * ((i * 7 + j * 3) % 11);
+        lines.add(String.format(
+            "    <Node type=\"GR\" a=\"%.4f\">%.3f,%.3f,0.0</Node>",
+            a, -123.0 + j * 0.2, 36.5 + i * 0.2));
+      }
+    }
+    lines.add("  </Nodes>");
+    lines.add("</GridSourceSet>");
+    Files.write(grid.resolve("grid.xml"), lines, UTF_8);
+
+    Path fault = Files.createDirectory(dir.resolve("Fault"));
+    Files.write(fault.resolve("gmm.xml"), gmms("ASK_14", "CB_14"), UTF_8);
+    Files.write(fault.resolve("fault.xml"), Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<FaultSourceSet id=\"-1\" name=\"Snapshot Faults\" weight=\"1.0\">",
+        "  <Settings>",
+        "    <SourceProperties ruptureScaling=\"NSHM_FAULT_WC94_LENGTH\"/>",
+        "  </Settings>",
+        "  <Source id=\"1\" name=\"Fault 1\">",
+        "    <IncrementalMfd type=\"SINGLE\" rate=\"0.002\" m=\"6.8\" floats=\"true\"" +
+            " weight=\"1.0\"/>",
+        "    <Geometry depth=\"1.0\" dip=\"60.0\" rake=\"90.0\" width=\"15.0\">",
+        "      <Trace>",
+        "-122.10000,37.40000,0.00000",
+        "-121.95000,37.10000,0.00000",
+        "-121.90000,36.80000,0.00000",
+        "      </Trace>",
+        "    </Geometry>",
+        "  </Source>",
+        "</FaultSourceSet>"), UTF_8);
+
+    Path inter = Files.createDirectory(dir.resolve("Interface"));
+    Files.write(inter.resolve("gmm.xml"), gmms("AB_03_GLOBAL_INTERFACE", "AM_09_INTERFACE"),
+        UTF_8);
+    Files.write(inter.resolve("interface.xml"), Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<SubductionSourceSet id=\"-1\" name=\"Snapshot Interface\" weight=\"1.0\">",
+        "  <Settings>",
+        "    <SourceProperties ruptureScaling=\"NSHM_SUB_GEOMAT_LENGTH\"/>",
+        "  </Settings>",
+        "  <Source id=\"2\" name=\"Single Trace\">",
+        "    <IncrementalMfd type=\"SINGLE\" rate=\"0.001\" m=\"8.5\" floats=\"true\"" +
+            " weight=\"1.0\"/>",
+        "    <Geometry depth=\"5.0\" dip=\"15.0\" rake=\"90.0\" width=\"80.0\">",
+        "      <Trace>",
+        "-123.50000,38.50000,0.00000",
+        "-123.40000,36.50000,0.00000",
+        "      </Trace>",
+        "    </Geometry>",
+        "  </Source>",
+        "  <Source id=\"3\" name=\"Dual Trace\">",
+        "    <IncrementalMfd type=\"SINGLE\" rate=\"0.001\" m=\"8.3\" floats=\"true\"" +
+            " weight=\"1.0\"/>",
+        "    <Geometry rake=\"90.0\">",
+        "      <Trace>",
+        "-123.80000,38.60000,5.00000",
+        "-123.70000,37.50000,6.00000",
+        "-123.60000,36.40000,5.00000",
+        "      </Trace>",
+        "      <LowerTrace>",
+        "-123.00000,38.60000,25.00000",
+        "-122.90000,36.40000,25.00000",
+        "      </LowerTrace>",
+        "    </Geometry>",
+        "  </Source>",
+        "</SubductionSourceSet>"), UTF_8);
+    return dir;
+  }
+
+  private static List<String> gmms(String gmm1, String gmm2) {
+    return Arrays.asList(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>",
+        "<GroundMotionModels>",
+        "  <ModelSet maxDistance=\"300.0\">",
+        "    <Model id=\"" + gmm1 + "\" weight=\"0.6\"/>",
+        "    <Model id=\"" + gmm2 + "\" weight=\"0.4\"/>",
+        "  </ModelSet>",
+        "</GroundMotionModels>");
+  }
+
+  private static void delete(Path dir) throws IOException {
+    List<Path> paths = new ArrayList<>();
+    Files.walk(dir).forEach(paths::add);
+    for (int i = paths.size() - 1; i >= 0; i--) {
+      Files.delete(paths.get(i));
+    }
+  }
+
+}
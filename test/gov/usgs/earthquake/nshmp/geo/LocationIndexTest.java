@@ -0,0 +1,74 @@
+package gov.usgs.earthquake.nshmp.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Predicate;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+@SuppressWarnings("javadoc")
+public class LocationIndexTest {
+
+  private static final double[] DISTANCES = { 10.0, 200.0, 1000.0, 5000.0 };
+
+  @Test
+  public final void matchesDistanceFilter() {
+    Random random = new Random(0);
+    for (double[] origin : new double[][] { { 35.0, -118.0 }, { 75.0, 170.0 } }) {
+      List<Location> locs = new ArrayList<>();
+      LocationIndex.Builder builder = LocationIndex.builder();
+      for (int i = 0; i < 2000; i++) {
+        Location loc = Location.create(
+            Math.min(90.0, origin[0] + 20.0 * (random.nextDouble() - 0.5)),
+            origin[1] + 20.0 * (random.nextDouble() - 0.5));
+        locs.add(loc);
+        builder.add(i, loc);
+      }
+      LocationIndex index = builder.build();
+      for (int i = 0; i < 100; i++) {
+        Location site = locs.get(random.nextInt(locs.size()));
+        for (double distance : DISTANCES) {
+          Predicate<Location> filter = Locations.distanceFilter(site, distance);
+          BitSet expected = new BitSet();
+          for (int j = 0; j < locs.size(); j++) {
+            expected.set(j, filter.apply(locs.get(j)));
+          }
+          assertEquals(expected, index.bitsWithin(site, distance));
+        }
+      }
+    }
+  }
+
+  @Test
+  public final void sharedKeys() {
+    LocationIndex index = LocationIndex.builder()
+        .add(2, Location.create(34.0, -118.0))
+        .add(2, Location.create(34.1, -118.0))
+        .add(0, Location.create(40.0, -118.0))
+        .add(1, Location.create(34.2, -118.0))
+        .build();
+    Location site = Location.create(34.0, -118.1);
+    assertArrayEquals(new int[] { 1, 2 }, index.keysWithin(site, 50.0));
+    assertArrayEquals(new int[] { 0, 1, 2 }, index.keysWithin(site, 1000.0));
+    assertArrayEquals(new int[] {}, index.keysWithin(Location.create(0.0, 0.0), 100.0));
+  }
+
+  @Test
+  public final void empty() {
+    LocationIndex index = LocationIndex.builder().build();
+    assertTrue(index.bitsWithin(Location.create(0.0, 0.0), 1000.0).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void negativeKey() {
+    LocationIndex.builder().add(-1, Location.create(0.0, 0.0));
+  }
+
+}
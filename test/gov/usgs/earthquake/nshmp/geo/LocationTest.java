@@ -57,6 +57,25 @@ public class LocationTest {
     Location.create(0, -360.0);
   }
 
+  @Test
+  public final void fromRadians() {
+    Location loc = Location.create(V, -V, V);
+    assertEquals(Location.fromRadians(loc.latRad(), loc.lonRad(), loc.depth()), loc);
+    loc = Location.fromRadians(Math.PI / 2, -Math.PI, V);
+    assertEquals(loc.lat(), 90.0, 0);
+    assertEquals(loc.lon(), -180.0, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void fromRadians_IAE1() {
+    Location.fromRadians(90.1 * Maths.TO_RAD, 0, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void fromRadians_IAE2() {
+    Location.fromRadians(0, 360.0 * Maths.TO_RAD, 0);
+  }
+
   @Test
   public final void fromString() {
     String s = "10.0,10.0,10.0";
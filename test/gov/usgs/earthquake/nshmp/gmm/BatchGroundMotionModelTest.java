@@ -0,0 +1,148 @@
+package gov.usgs.earthquake.nshmp.gmm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import gov.usgs.earthquake.nshmp.gmm.BatchGroundMotionModel.Inputs;
+
+@SuppressWarnings("javadoc")
+public class BatchGroundMotionModelTest {
+
+  private static final Set<Gmm> NGAW2_GMMS = EnumSet.of(
+      Gmm.ASK_14,
+      Gmm.BSSA_14,
+      Gmm.CB_14,
+      Gmm.CY_14,
+      Gmm.IDRISS_14);
+
+  /*
+   * Batch ground motions must be identical to scalar ground motions. Every
+   * site in the NGA inputs is combined with every rupture in a batch.
+   */
+  @Test
+  public final void ngaWest2() throws IOException {
+    List<GmmInput> inputs = GmmTest.loadInputs("NGA_inputs.csv");
+    double[] μ = new double[inputs.size()];
+    double[] σ = new double[inputs.size()];
+    for (Gmm gmm : NGAW2_GMMS) {
+      for (Imt imt : gmm.supportedIMTs()) {
+        GroundMotionModel model = gmm.instance(imt);
+        assertTrue(model instanceof BatchGroundMotionModel);
+        BatchGroundMotionModel batchModel = (BatchGroundMotionModel) model;
+        for (GmmInput site : inputs) {
+          List<GmmInput> siteInputs = withSite(inputs, site);
+          batchModel.calc(new ListInputs(siteInputs, site), μ, σ);
+          for (int i = 0; i < siteInputs.size(); i++) {
+            ScalarGroundMotion expected = model.calc(siteInputs.get(i));
+            assertEquals(expected.mean(), μ[i], 0.0);
+            assertEquals(expected.sigma(), σ[i], 0.0);
+          }
+        }
+      }
+    }
+  }
+
+  /* Copies of inputs with the site properties of site. */
+  private static List<GmmInput> withSite(List<GmmInput> inputs, GmmInput site) {
+    List<GmmInput> siteInputs = new ArrayList<>();
+    for (GmmInput in : inputs) {
+      siteInputs.add(GmmInput.builder()
+          .fromCopy(in)
+          .vs30(site.vs30, site.vsInf)
+          .z1p0(site.z1p0)
+          .z2p5(site.z2p5)
+          .build());
+    }
+    return siteInputs;
+  }
+
+  private static final class ListInputs implements Inputs {
+
+    final List<GmmInput> inputs;
+    final GmmInput site;
+
+    ListInputs(List<GmmInput> inputs, GmmInput site) {
+      this.inputs = inputs;
+      this.site = site;
+    }
+
+    @Override
+    public int size() {
+      return inputs.size();
+    }
+
+    @Override
+    public double Mw(int index) {
+      return inputs.get(index).Mw;
+    }
+
+    @Override
+    public double rJB(int index) {
+      return inputs.get(index).rJB;
+    }
+
+    @Override
+    public double rRup(int index) {
+      return inputs.get(index).rRup;
+    }
+
+    @Override
+    public double rX(int index) {
+      return inputs.get(index).rX;
+    }
+
+    @Override
+    public double dip(int index) {
+      return inputs.get(index).dip;
+    }
+
+    @Override
+    public double width(int index) {
+      return inputs.get(index).width;
+    }
+
+    @Override
+    public double zTop(int index) {
+      return inputs.get(index).zTop;
+    }
+
+    @Override
+    public double zHyp(int index) {
+      return inputs.get(index).zHyp;
+    }
+
+    @Override
+    public double rake(int index) {
+      return inputs.get(index).rake;
+    }
+
+    @Override
+    public double vs30() {
+      return site.vs30;
+    }
+
+    @Override
+    public boolean vsInf() {
+      return site.vsInf;
+    }
+
+    @Override
+    public double z1p0() {
+      return site.z1p0;
+    }
+
+    @Override
+    public double z2p5() {
+      return site.z2p5;
+    }
+  }
+
+}
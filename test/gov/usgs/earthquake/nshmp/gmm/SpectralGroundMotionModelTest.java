@@ -0,0 +1,74 @@
+package gov.usgs.earthquake.nshmp.gmm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+@SuppressWarnings("javadoc")
+public class SpectralGroundMotionModelTest {
+
+  private static final Set<Gmm> NGAW2_GMMS = EnumSet.of(
+      Gmm.ASK_14,
+      Gmm.BSSA_14,
+      Gmm.CB_14,
+      Gmm.CY_14,
+      Gmm.IDRISS_14);
+
+  private static final Set<Gmm> NGA_EAST_GMMS = EnumSet.of(
+      Gmm.NGA_EAST,
+      Gmm.NGA_EAST_BRANCHING_Σ,
+      Gmm.NGA_EAST_1,
+      Gmm.NGA_EAST_SEED_2CVSP);
+
+  @Test
+  public final void ngaWest2() throws IOException {
+    checkSpectra(NGAW2_GMMS, GmmTest.loadInputs("NGA_inputs.csv"));
+  }
+
+  @Test
+  public final void ngaEast() throws IOException {
+    checkSpectra(NGA_EAST_GMMS, GmmTest.loadInputs("CEUS_vs760_inputs.csv"));
+    checkSpectra(NGA_EAST_GMMS, GmmTest.loadInputs("CEUS_vs2000_inputs.csv"));
+  }
+
+  @Test
+  public final void delegating() throws IOException {
+    checkSpectra(EnumSet.of(Gmm.ZHAO_06_INTERFACE), GmmTest.loadInputs("INTERFACE_inputs.csv"));
+  }
+
+  /* Spectral ground motions must be identical to Imt-specific ground motions. */
+  private static void checkSpectra(Set<Gmm> gmms, List<GmmInput> inputs) {
+    for (Gmm gmm : gmms) {
+      SpectralGroundMotionModel model = gmm.spectralInstance(gmm.supportedIMTs());
+      List<Imt> imts = model.imts();
+      assertEquals(gmm.supportedIMTs().size(), imts.size());
+      ScalarGroundMotion[] sgms = new ScalarGroundMotion[imts.size()];
+      for (GmmInput in : inputs) {
+        model.calc(in, sgms);
+        for (int i = 0; i < imts.size(); i++) {
+          ScalarGroundMotion expected = gmm.instance(imts.get(i)).calc(in);
+          ScalarGroundMotion actual = sgms[i];
+          assertEquals(expected.mean(), actual.mean(), 0.0);
+          assertEquals(expected.sigma(), actual.sigma(), 0.0);
+          if (expected instanceof MultiScalarGroundMotion) {
+            assertTrue(actual instanceof MultiScalarGroundMotion);
+            MultiScalarGroundMotion msgmExpected = (MultiScalarGroundMotion) expected;
+            MultiScalarGroundMotion msgmActual = (MultiScalarGroundMotion) actual;
+            assertArrayEquals(msgmExpected.means(), msgmActual.means(), 0.0);
+            assertArrayEquals(msgmExpected.meanWeights(), msgmActual.meanWeights(), 0.0);
+            assertArrayEquals(msgmExpected.sigmas(), msgmActual.sigmas(), 0.0);
+            assertArrayEquals(msgmExpected.sigmaWeights(), msgmActual.sigmaWeights(), 0.0);
+          }
+        }
+      }
+    }
+  }
+
+}
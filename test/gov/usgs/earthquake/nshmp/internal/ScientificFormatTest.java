@@ -0,0 +1,52 @@
+package gov.usgs.earthquake.nshmp.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+@SuppressWarnings("javadoc")
+public class ScientificFormatTest {
+
+  private static final ScientificFormat FORMAT = ScientificFormat.create(8);
+
+  @Test
+  public final void matchesStringFormat() {
+    Random random = new Random(0);
+    for (int i = 0; i < 200000; i++) {
+      double value = Math.pow(10, -300 + 600 * random.nextDouble());
+      value = random.nextBoolean() ? value : -value;
+      assertEquals(String.format("%.8e", value), FORMAT.format(value));
+    }
+  }
+
+  @Test
+  public final void rounding() {
+    double[] values = {
+        1.0, 9.999999995, 9.9999999949, 1.234567885, 1.234567895,
+        2.5e-5, 0.15, 0.35, 1e-10, 9.99999999999e-100, 1.7976931348623157e308,
+        Double.MIN_VALUE, 4.9e-300 };
+    for (double value : values) {
+      assertEquals(String.format("%.8e", value), FORMAT.format(value));
+    }
+  }
+
+  @Test
+  public final void special() {
+    assertEquals("0.0", FORMAT.format(0.0));
+    assertEquals("0.0", FORMAT.format(-0.0));
+    assertEquals(String.format("%.8e", Double.NaN), FORMAT.format(Double.NaN));
+    assertEquals(String.format("%.8e", Double.POSITIVE_INFINITY),
+        FORMAT.format(Double.POSITIVE_INFINITY));
+  }
+
+  @Test
+  public final void append() {
+    StringBuilder sb = new StringBuilder("a,");
+    FORMAT.append(sb, 1.5e-3).append(',');
+    FORMAT.append(sb, 0.0);
+    assertEquals("a,1.50000000e-03,0.0", sb.toString());
+  }
+
+}